@@ -0,0 +1,254 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+/**
+ * Provides builders for {@link StreamingDecoder}s unpacking archives and
+ * compressed files while they are being received. Only entries of interest are
+ * decoded, all other entries are skipped without being buffered or extracted.
+ */
+public class ArchiveDecoders {
+
+    /**
+     * Builds a streaming decoder which decodes the first archive entry whose name
+     * is accepted by the given filter. Directory entries are ignored.
+     * <p>
+     * Once the entry has been decoded, the remaining response body is abandoned
+     * (see {@link HttpRetrieval#abandonResponseBody()}), so the rest of a large
+     * archive is not transferred. Searching for the entry reads (but does not
+     * buffer) all preceding entries.
+     * </p>
+     *
+     * @param <T> type returned by entry decoder
+     * @param format format of the archive; must not be null
+     * @param entryNameFilter accepts names of entries to decode; must not be null
+     * @param decoder decodes the entry; must not be null
+     * @return result of entry decoder; null if no entry has been accepted
+     */
+    public <T> StreamingDecoder<T> firstArchiveEntry(ArchiveFormat format, Predicate<String> entryNameFilter, ArchiveEntryDecoder<T> decoder) {
+        checkArchiveDecoderArguments(format, entryNameFilter, decoder);
+
+        return new StreamingDecoder<T>() {
+            @Override
+            @SuppressWarnings("rawtypes")
+            public T decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                ArchiveInputStream archive = format.open(content);
+
+                ArchiveEntry entry = findNextEntry(archive, entryNameFilter);
+                if (entry == null) {
+                    return null;
+                }
+
+                T result = decodeEntry(archive, entry, decoder);
+                retrieval.abandonResponseBody();
+
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Builds a streaming decoder which decodes all archive entries whose names
+     * are accepted by the given filter. Directory entries are ignored. The whole
+     * archive is read but only accepted entries are decoded.
+     *
+     * @param <T> type returned by entry decoder
+     * @param format format of the archive; must not be null
+     * @param entryNameFilter accepts names of entries to decode; must not be null
+     * @param decoder decodes each entry; must not be null
+     * @return results of entry decoder in order of entries in archive
+     */
+    public <T> StreamingDecoder<List<T>> archiveEntries(ArchiveFormat format, Predicate<String> entryNameFilter, ArchiveEntryDecoder<T> decoder) {
+        checkArchiveDecoderArguments(format, entryNameFilter, decoder);
+
+        return new StreamingDecoder<List<T>>() {
+            @Override
+            @SuppressWarnings("rawtypes")
+            public List<T> decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                ArchiveInputStream archive = format.open(content);
+
+                List<T> results = new ArrayList<>();
+
+                ArchiveEntry entry = findNextEntry(archive, entryNameFilter);
+                while (entry != null) {
+                    results.add(decodeEntry(archive, entry, decoder));
+                    entry = findNextEntry(archive, entryNameFilter);
+                }
+
+                return results;
+            }
+        };
+    }
+
+    /**
+     * Builds a streaming decoder which decompresses a compressed file (such as a
+     * .bz2 file) before passing it to the given decoder.
+     * <p>
+     * This is not needed for compression applied on transfer, as indicated by
+     * Content-Encoding, which is reverted automatically.
+     * </p>
+     *
+     * @param <T> type returned by wrapped decoder
+     * @param format compression format of the file; must not be null
+     * @param decoder decodes the decompressed file; must not be null
+     * @return result of wrapped decoder
+     */
+    public <T> StreamingDecoder<T> decompressed(CompressionFormat format, StreamingDecoder<T> decoder) {
+        if (format == null) {
+            throw new IllegalArgumentException("compression format must not be null");
+        }
+
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        return new StreamingDecoder<T>() {
+            @Override
+            public T decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                return decoder.decode(retrieval, format.decompress(content));
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which decompresses a buffered compressed file in parallel
+     * on the common {@link ForkJoinPool} before passing it to the given decoder.
+     * See {@link #decompressedInParallel(CompressionFormat, StreamingDecoder, ForkJoinPool)}
+     * for details.
+     *
+     * @param <T> type returned by wrapped decoder
+     * @param format compression format of the file; must not be null
+     * @param decoder decodes the decompressed file; must not be null
+     * @return result of wrapped decoder
+     */
+    public <T> Function<HttpRetrieval, T> decompressedInParallel(CompressionFormat format, StreamingDecoder<T> decoder) {
+        return decompressedInParallel(format, decoder, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a decoder which decompresses a buffered compressed file in parallel
+     * on the given {@link ForkJoinPool} before passing it to the given decoder.
+     * <p>
+     * Files consisting of multiple concatenated compressed streams, such as
+     * multi-member gzip files (as written by parallel compressors or by
+     * appending to files) or multi-stream bzip2 files, are split into chunks at
+     * stream boundaries found in the buffered (or spilled) body. Chunks are
+     * decompressed concurrently; the wrapped decoder receives the decompressed
+     * file in original order. Only a limited number of chunks, depending on the
+     * parallelism of the pool, is decompressed ahead of the decoder, each being
+     * held completely in memory. Chunks decompressing to more than 16 MiB are
+     * not held in memory; the remaining file is streamed through a sequential
+     * decompressor instead, starting with such a chunk. Files consisting of
+     * only a single stream and formats not supporting parallel decompression
+     * ({@link CompressionFormat#XZ}) are decompressed sequentially.
+     * </p>
+     * <p>
+     * Stream boundaries are only guessed from headers, so a chunk which fails to
+     * decompress is retried sequentially together with all following data. If
+     * decompression or the wrapped decoder fails, the decoder fails with an
+     * {@link UncheckedIOException} caused by the original exception.
+     * </p>
+     *
+     * @param <T> type returned by wrapped decoder
+     * @param format compression format of the file; must not be null
+     * @param decoder decodes the decompressed file; must not be null
+     * @param pool pool to decompress on; must not be null
+     * @return result of wrapped decoder
+     */
+    public <T> Function<HttpRetrieval, T> decompressedInParallel(CompressionFormat format, StreamingDecoder<T> decoder, ForkJoinPool pool) {
+        if (format == null) {
+            throw new IllegalArgumentException("compression format must not be null");
+        }
+
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+
+        return new Function<HttpRetrieval, T>() {
+            @Override
+            public T apply(HttpRetrieval retrieval) {
+                ByteBuffer body = retrieval.getResponseBody();
+                if (body == null) {
+                    body = ByteBuffer.allocate(0);
+                }
+
+                try (
+                    InputStream is = new ParallelDecompressingInputStream(
+                        body,
+                        format,
+                        pool,
+                        2 * pool.getParallelism(),
+                        ParallelDecompressingInputStream.DEFAULT_MINIMUM_CHUNK_SIZE,
+                        ParallelDecompressingInputStream.DEFAULT_MAXIMUM_DECOMPRESSED_CHUNK_SIZE //
+                    )
+                ) {
+                    return decoder.decode(retrieval, is);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+    }
+
+    private static void checkArchiveDecoderArguments(ArchiveFormat format, Predicate<String> entryNameFilter, ArchiveEntryDecoder<?> decoder) {
+        if (format == null) {
+            throw new IllegalArgumentException("archive format must not be null");
+        }
+
+        if (entryNameFilter == null) {
+            throw new IllegalArgumentException("entry name filter must not be null");
+        }
+
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+    }
+
+    /**
+     * Skips to the next file entry accepted by the given filter.
+     *
+     * @param archive archive to read
+     * @param entryNameFilter accepts names of entries to return
+     * @return next accepted entry; null if the archive has no further accepted
+     *         entries
+     * @throws IOException if the archive cannot be read
+     */
+    @SuppressWarnings("rawtypes")
+    private static ArchiveEntry findNextEntry(ArchiveInputStream archive, Predicate<String> entryNameFilter) throws IOException {
+        ArchiveEntry entry = archive.getNextEntry();
+        while (entry != null) {
+            if (!entry.isDirectory() && entryNameFilter.test(entry.getName())) {
+                return entry;
+            }
+
+            entry = archive.getNextEntry();
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static <T> T decodeEntry(ArchiveInputStream archive, ArchiveEntry entry, ArchiveEntryDecoder<T> decoder) throws IOException {
+        if (!archive.canReadEntryData(entry)) {
+            throw new IOException("Data of archive entry \"" + entry.getName() + "\" cannot be read (unsupported feature or compression method).");
+        }
+
+        return decoder.decode(entry, CloseShieldInputStream.wrap(archive));
+    }
+}
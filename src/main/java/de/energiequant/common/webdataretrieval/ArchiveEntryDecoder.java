@@ -0,0 +1,27 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+
+/**
+ * Decodes a single entry of an archive while it is being received, see
+ * {@link ArchiveDecoders}.
+ *
+ * @param <T> type of decoded result
+ */
+@FunctionalInterface
+public interface ArchiveEntryDecoder<T> {
+    /**
+     * Decodes the content of an archive entry. The stream ends with the entry
+     * and does not need to be read completely; closing it has no effect. It must
+     * not be used after this method returns.
+     *
+     * @param entry archive entry being decoded, providing name and meta data
+     * @param content uncompressed content of the entry
+     * @return decoded result
+     * @throws IOException if reading or decoding the entry fails
+     */
+    T decode(ArchiveEntry entry, InputStream content) throws IOException;
+}
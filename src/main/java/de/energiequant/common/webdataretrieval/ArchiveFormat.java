@@ -0,0 +1,80 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+
+/**
+ * Archive formats which can be unpacked entry by entry while being received,
+ * see {@link ArchiveDecoders}.
+ */
+public enum ArchiveFormat {
+    /**
+     * ZIP archives (.zip). As archives are read sequentially, the central
+     * directory at the end of the archive is not evaluated; entries are read
+     * from their local headers.
+     */
+    ZIP(null) {
+        @Override
+        @SuppressWarnings("rawtypes")
+        ArchiveInputStream openArchive(InputStream in) {
+            return new ZipArchiveInputStream(in);
+        }
+    },
+
+    /**
+     * uncompressed TAR archives (.tar)
+     */
+    TAR(null),
+
+    /**
+     * gzip compressed TAR archives (.tar.gz, .tgz)
+     */
+    TAR_GZIP(CompressionFormat.GZIP),
+
+    /**
+     * bzip2 compressed TAR archives (.tar.bz2)
+     */
+    TAR_BZIP2(CompressionFormat.BZIP2),
+
+    /**
+     * XZ compressed TAR archives (.tar.xz)
+     */
+    TAR_XZ(CompressionFormat.XZ);
+
+    private final CompressionFormat compressionFormat;
+
+    private ArchiveFormat(CompressionFormat compressionFormat) {
+        this.compressionFormat = compressionFormat;
+    }
+
+    /**
+     * Wraps the given stream to read archive entries, decompressing the archive
+     * if needed.
+     *
+     * @param in archive stream
+     * @return stream reading archive entries
+     * @throws IOException if the stream cannot be read or is not in this format
+     */
+    @SuppressWarnings("rawtypes")
+    ArchiveInputStream open(InputStream in) throws IOException {
+        InputStream archive = (compressionFormat != null) ? compressionFormat.decompress(in) : in;
+
+        return openArchive(archive);
+    }
+
+    /**
+     * Wraps the given uncompressed stream to read archive entries. TAR unless
+     * overridden.
+     *
+     * @param in uncompressed archive stream
+     * @return stream reading archive entries
+     */
+    @SuppressWarnings("rawtypes")
+    ArchiveInputStream openArchive(InputStream in) {
+        return new TarArchiveInputStream(in);
+    }
+}
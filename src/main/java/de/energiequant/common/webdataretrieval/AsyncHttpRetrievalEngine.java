@@ -0,0 +1,389 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.Method;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.io.CloseMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Performs requests for {@link HttpRetrieval}s without blocking a thread while
+ * waiting for the network. Requests are executed by a long-lived
+ * {@link CloseableHttpAsyncClient}; futures are completed from its I/O reactor
+ * and threads of the given {@link Executor} are only used to decode responses.
+ * <p>
+ * A single engine can be shared by retrievals of any configuration, settings
+ * are being applied per request. The engine is thread-safe and should be
+ * closed on shutdown.
+ * </p>
+ * <p>
+ * Use {@link HttpPromiseBuilder#withAsyncEngine(AsyncHttpRetrievalEngine)} to
+ * perform requests through an engine while keeping the usual decoders.
+ * </p>
+ */
+public class AsyncHttpRetrievalEngine implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncHttpRetrievalEngine.class.getName());
+
+    private final Function<HttpVersionMode, CloseableHttpAsyncClient> clientFactory;
+    private final Map<HttpVersionMode, CloseableHttpAsyncClient> clients = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates and starts a new engine using the default connection limits of
+     * {@link HttpClientPool}.
+     */
+    public AsyncHttpRetrievalEngine() {
+        this(HttpClientPool.DEFAULT_MAXIMUM_CONNECTIONS_TOTAL, HttpClientPool.DEFAULT_MAXIMUM_CONNECTIONS_PER_ROUTE);
+    }
+
+    /**
+     * Creates and starts a new engine applying the given connection limits.
+     * HTTP/2 connections are limited to one connection per host as requests are
+     * multiplexed.
+     *
+     * @param maximumConnectionsTotal maximum number of connections held in total;
+     *        must be positive
+     * @param maximumConnectionsPerRoute maximum number of connections held per
+     *        route; must be positive and must not exceed total limit
+     */
+    public AsyncHttpRetrievalEngine(int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        this.clientFactory = checkedClientFactory(maximumConnectionsTotal, maximumConnectionsPerRoute);
+
+        // default client is always needed, start it right away
+        getClient(HttpVersionMode.HTTP_1_1);
+    }
+
+    /**
+     * Creates a new engine using the given client for HTTP/1.1 requests. The
+     * client will be started. Required for unit-testing.
+     *
+     * @param client client to execute requests with
+     */
+    AsyncHttpRetrievalEngine(CloseableHttpAsyncClient client) {
+        this.clientFactory = httpVersionMode -> client;
+
+        // default client is always needed, start it right away
+        getClient(HttpVersionMode.HTTP_1_1);
+    }
+
+    /**
+     * Creates a new engine using the given factory to build clients per
+     * {@link HttpVersionMode} on first use. Clients will be started. Required for
+     * unit-testing.
+     *
+     * @param clientFactory builds clients for the given mode
+     */
+    AsyncHttpRetrievalEngine(Function<HttpVersionMode, CloseableHttpAsyncClient> clientFactory) {
+        this.clientFactory = clientFactory;
+
+        // default client is always needed, start it right away
+        getClient(HttpVersionMode.HTTP_1_1);
+    }
+
+    private static Function<HttpVersionMode, CloseableHttpAsyncClient> checkedClientFactory(int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        if (maximumConnectionsTotal < 1) {
+            throw new IllegalArgumentException("maximum total number of connections must be positive");
+        }
+
+        if ((maximumConnectionsPerRoute < 1) || (maximumConnectionsPerRoute > maximumConnectionsTotal)) {
+            throw new IllegalArgumentException(
+                "maximum number of connections per route must be positive and must not exceed total limit");
+        }
+
+        return httpVersionMode -> buildAsyncClient(httpVersionMode, maximumConnectionsTotal, maximumConnectionsPerRoute);
+    }
+
+    /**
+     * Builds a new asynchronous client for the given mode. The client still needs
+     * to be started.
+     *
+     * @param httpVersionMode HTTP version(s) to be supported by the client
+     * @param maximumConnectionsTotal maximum number of connections held in total
+     * @param maximumConnectionsPerRoute maximum number of connections held per
+     *        route; not applicable to HTTP/2 only clients
+     * @return new client, not started yet
+     */
+    @SuppressWarnings("deprecation")
+    static CloseableHttpAsyncClient buildAsyncClient(HttpVersionMode httpVersionMode, int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        if (httpVersionMode == HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE) {
+            // HTTP/2 only: one multiplexed connection per host
+            return HttpAsyncClients.customHttp2().build();
+        }
+
+        HttpVersionPolicy versionPolicy = (httpVersionMode == HttpVersionMode.HTTP_2_NEGOTIATE)
+            ? HttpVersionPolicy.NEGOTIATE
+            : HttpVersionPolicy.FORCE_HTTP_1;
+
+        return HttpAsyncClients.custom()
+            .setVersionPolicy(versionPolicy)
+            .setConnectionManager(
+                PoolingAsyncClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(maximumConnectionsTotal)
+                    .setMaxConnPerRoute(maximumConnectionsPerRoute)
+                    .build() //
+            )
+            .build();
+    }
+
+    /**
+     * Returns the started client for the given mode, building it on first use.
+     *
+     * @param httpVersionMode HTTP version(s) to be supported by the client
+     * @return started client
+     * @throws IllegalStateException if the engine has already been closed
+     */
+    private CloseableHttpAsyncClient getClient(HttpVersionMode httpVersionMode) {
+        if (closed) {
+            throw new IllegalStateException("engine has already been closed");
+        }
+
+        CloseableHttpAsyncClient client = clients.computeIfAbsent(httpVersionMode, mode -> {
+            CloseableHttpAsyncClient newClient = clientFactory.apply(mode);
+            newClient.start();
+            return newClient;
+        });
+
+        // engine may have been closed concurrently, don't leak a new client
+        if (closed) {
+            closeClients();
+            throw new IllegalStateException("engine has been closed concurrently");
+        }
+
+        return client;
+    }
+
+    /**
+     * Requests the given URL using a GET request, applying the configuration of
+     * the given retrieval. The response will be stored to the retrieval the same
+     * way as {@link HttpRetrieval#requestByGet(CharSequence)} does.
+     * <p>
+     * The returned future completes with the same meaning as the return value of
+     * {@link HttpRetrieval#requestByGet(CharSequence)}; it only indicates very
+     * basic network-level success and only completes exceptionally with an
+     * {@link IllegalStateException} if the engine has been closed. Response
+     * content is decoded on the given executor before the future completes.
+     * </p>
+     *
+     * @param retrieval retrieval to configure the request by and to store the
+     *        response to; must not be used concurrently
+     * @param url URL to request
+     * @param executor used to decode the response
+     * @return future completing with basic network level success (i.e. do we
+     *         have an HTTP response? The result does not interpret actual HTTP
+     *         status/response!)
+     */
+    public CompletableFuture<Boolean> requestByGet(final HttpRetrieval retrieval, final CharSequence url, final Executor executor) {
+        if (closed) {
+            return failedFuture(new IllegalStateException("engine has already been closed"));
+        }
+
+        if (!retrieval.beginRequest(url)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        if (retrieval.restoreFreshCachedResponse()) {
+            logger.debug("restored fresh response for \"{}\" from cache", url);
+            return CompletableFuture.completedFuture(true);
+        }
+
+        logger.debug("requesting \"{}\" asynchronously by GET method", url);
+
+        CloseableHttpAsyncClient client;
+        try {
+            client = getClient(retrieval.getHttpVersionMode());
+        } catch (IllegalStateException ex) {
+            return failedFuture(ex);
+        }
+
+        HttpClientContext context = retrieval.createHttpClientContext();
+
+        return execute(client, retrieval, url, context).thenCompose(response -> {
+            if (response == null) {
+                return CompletableFuture.completedFuture(false);
+            }
+
+            try {
+                return CompletableFuture.supplyAsync(
+                    () -> handleResponse(retrieval, url, response, context),
+                    executor //
+                );
+            } catch (RejectedExecutionException ex) {
+                logger.warn("Decoding response of GET request to \"{}\" was rejected.", url, ex);
+                return CompletableFuture.completedFuture(false);
+            }
+        });
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Executes a GET request for the given URL on the given client, applying the
+     * configuration of the given retrieval. The response is not handled yet.
+     *
+     * @param client started client to execute the request on
+     * @param retrieval retrieval to configure the request by
+     * @param url URL to request
+     * @param context context to execute the request with
+     * @return future completing with the received response from the I/O reactor;
+     *         completes with null if the request failed (failure has already been
+     *         logged); exceeded size limits are recorded on the retrieval
+     */
+    static CompletableFuture<SimpleHttpResponse> execute(final CloseableHttpAsyncClient client, final HttpRetrieval retrieval, final CharSequence url, final HttpClientContext context) {
+        CompletableFuture<SimpleHttpResponse> future = new CompletableFuture<>();
+
+        SimpleHttpRequest request;
+        try {
+            request = buildHttpGet(retrieval, url);
+        } catch (IllegalArgumentException ex) {
+            logger.warn("GET request to \"{}\" failed with an exception.", url, ex);
+            future.complete(null);
+            return future;
+        }
+
+        FutureCallback<SimpleHttpResponse> callback = new FutureCallback<SimpleHttpResponse>() {
+            @Override
+            public void completed(SimpleHttpResponse response) {
+                retrieval.onRequestFinished();
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                retrieval.onRequestFinished();
+                logger.warn("GET request to \"{}\" failed with an exception.", url, ex);
+                future.complete(null);
+            }
+
+            @Override
+            public void cancelled() {
+                retrieval.onRequestFinished();
+                logger.warn("GET request to \"{}\" has been cancelled.", url);
+                future.complete(null);
+            }
+        };
+
+        Future<SimpleHttpResponse> exchange;
+        if (retrieval.hasResponseSizeLimit()) {
+            exchange = client.execute(
+                SimpleRequestProducer.create(request),
+                new SizeLimitedResponseConsumer(
+                    retrieval.getMaximumResponseBodySize(),
+                    retrieval.getMaximumCompressedResponseBodySize(),
+                    retrieval::onResponseSizeLimitExceeded //
+                ),
+                context,
+                callback //
+            );
+        } else {
+            exchange = client.execute(request, context, callback);
+        }
+
+        if ((exchange != null) && !future.isDone()) {
+            // allows the exchange to be aborted through the retrieval
+            retrieval.onRequestStarted(() -> exchange.cancel(true));
+        }
+
+        return future;
+    }
+
+    /**
+     * Stores the given response to the retrieval. Decoding is performed on the
+     * calling thread.
+     *
+     * @param retrieval retrieval to store the response to
+     * @param url requested URL, for logging
+     * @param response received response
+     * @param context context the request has been executed with
+     * @return basic network-level success
+     */
+    static boolean handleResponse(final HttpRetrieval retrieval, final CharSequence url, final SimpleHttpResponse response, final HttpClientContext context) {
+        try {
+            retrieval.onAsyncHttpResponseCompleted(response, context);
+        } catch (RuntimeException ex) {
+            logger.warn("Handling response of GET request to \"{}\" failed with an exception.", url, ex);
+            return false;
+        }
+
+        ResponseSizeLimitExceededException sizeLimitExceeded = retrieval.getResponseSizeLimitExceededException();
+        if (sizeLimitExceeded != null) {
+            logger.warn("Response of GET request to \"{}\" exceeded size limit.", url, sizeLimitExceeded);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Builds the request for the given URL, applying the configuration of the
+     * given retrieval.
+     *
+     * @param retrieval retrieval to apply configuration of
+     * @param url URL to request
+     * @return configured request
+     * @throws IllegalArgumentException if the URL is malformed
+     */
+    static SimpleHttpRequest buildHttpGet(final HttpRetrieval retrieval, final CharSequence url) {
+        SimpleHttpRequest request = new SimpleHttpRequest(Method.GET.name(), URI.create(url.toString()));
+
+        request.setConfig(retrieval.buildRequestConfig());
+        request.setHeader(HttpHeaders.USER_AGENT, retrieval.getUserAgent());
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, retrieval.buildAcceptEncodingHeaderValue());
+        retrieval.applyConditionalRequestHeaders(request);
+
+        return request;
+    }
+
+    /**
+     * Checks if the engine has been closed.
+     *
+     * @return Has the engine been closed?
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the engine. Connections are shut down gracefully. The engine cannot
+     * be used any more after it has been closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeClients();
+    }
+
+    private void closeClients() {
+        Iterator<CloseableHttpAsyncClient> it = clients.values().iterator();
+        while (it.hasNext()) {
+            CloseableHttpAsyncClient client = it.next();
+            it.remove();
+
+            client.close(CloseMode.GRACEFUL);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Holds reusable buffers for response bodies to reduce garbage when polling
+ * medium-sized responses at high frequency.
+ * <p>
+ * Buffers are organized by power-of-two size classes; a buffer acquired from
+ * the pool may thus be larger than requested. Buffers exceeding the maximum
+ * retained size are allocated normally and will not be retained on release.
+ * The pool is thread-safe.
+ * </p>
+ * <p>
+ * See {@link HttpRetrieval#setBodyBufferPool(BodyBufferPool)} for usage.
+ * </p>
+ */
+public class BodyBufferPool {
+
+    /**
+     * Default maximum size of retained buffers (32 MiB).
+     */
+    public static final int DEFAULT_MAXIMUM_RETAINED_BUFFER_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Default maximum number of buffers retained per size class.
+     */
+    public static final int DEFAULT_MAXIMUM_RETAINED_BUFFERS_PER_SIZE = 4;
+
+    private static final int MINIMUM_SIZE_CLASS = 12; // 4 KiB
+
+    private final int maximumRetainedBufferSize;
+    private final int maximumRetainedBuffersPerSize;
+    private final Queue<byte[]>[] retainedBuffers;
+    private final AtomicIntegerArray numRetainedBuffers;
+
+    /**
+     * Creates a new pool using default limits.
+     */
+    public BodyBufferPool() {
+        this(DEFAULT_MAXIMUM_RETAINED_BUFFER_SIZE, DEFAULT_MAXIMUM_RETAINED_BUFFERS_PER_SIZE);
+    }
+
+    /**
+     * Creates a new pool applying the given limits. The memory held by a pool is
+     * bounded by roughly twice the maximum buffer size multiplied by the maximum
+     * number of buffers per size.
+     *
+     * @param maximumRetainedBufferSize maximum size of buffers to retain; must be
+     *        positive
+     * @param maximumRetainedBuffersPerSize maximum number of buffers to retain per
+     *        size class; must be positive
+     */
+    @SuppressWarnings("unchecked")
+    public BodyBufferPool(int maximumRetainedBufferSize, int maximumRetainedBuffersPerSize) {
+        if (maximumRetainedBufferSize < 1) {
+            throw new IllegalArgumentException("maximum retained buffer size must be positive");
+        }
+
+        if (maximumRetainedBuffersPerSize < 1) {
+            throw new IllegalArgumentException("maximum number of retained buffers per size must be positive");
+        }
+
+        this.maximumRetainedBufferSize = maximumRetainedBufferSize;
+        this.maximumRetainedBuffersPerSize = maximumRetainedBuffersPerSize;
+
+        int numSizeClasses = sizeClassOf(maximumRetainedBufferSize) + 1;
+        retainedBuffers = new Queue[numSizeClasses];
+        for (int i = 0; i < numSizeClasses; i++) {
+            retainedBuffers[i] = new ConcurrentLinkedQueue<>();
+        }
+        numRetainedBuffers = new AtomicIntegerArray(numSizeClasses);
+    }
+
+    /**
+     * Returns the size class of the given size, i.e. the exponent of the smallest
+     * power of two to hold the given size.
+     *
+     * @param size minimum size
+     * @return size class
+     */
+    private static int sizeClassOf(int size) {
+        if (size <= (1 << MINIMUM_SIZE_CLASS)) {
+            return MINIMUM_SIZE_CLASS;
+        }
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Returns a buffer holding at least the given number of bytes. Content of the
+     * buffer is undefined.
+     *
+     * @param minimumSize minimum size of the buffer in bytes; must not be
+     *        negative
+     * @return buffer, possibly larger than requested
+     */
+    public byte[] acquire(int minimumSize) {
+        if (minimumSize < 0) {
+            throw new IllegalArgumentException("buffer size must not be negative");
+        }
+
+        if (minimumSize > maximumRetainedBufferSize) {
+            return new byte[minimumSize];
+        }
+
+        int sizeClass = sizeClassOf(minimumSize);
+        int bufferSize = 1 << sizeClass;
+        if (bufferSize > maximumRetainedBufferSize) {
+            // size class exceeds retained size, would never be pooled
+            return new byte[minimumSize];
+        }
+
+        byte[] buffer = retainedBuffers[sizeClass].poll();
+        if (buffer == null) {
+            return new byte[bufferSize];
+        }
+
+        numRetainedBuffers.decrementAndGet(sizeClass);
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer to the pool. The buffer must not be used any more
+     * by the caller. Buffers not acquired from the pool or exceeding its limits
+     * are silently dropped.
+     *
+     * @param buffer buffer to release; ignored if null
+     */
+    public void release(byte[] buffer) {
+        if ((buffer == null) || (buffer.length > maximumRetainedBufferSize)) {
+            return;
+        }
+
+        int sizeClass = sizeClassOf(buffer.length);
+        if ((1 << sizeClass) != buffer.length) {
+            // not a pooled buffer
+            return;
+        }
+
+        if (numRetainedBuffers.incrementAndGet(sizeClass) > maximumRetainedBuffersPerSize) {
+            numRetainedBuffers.decrementAndGet(sizeClass);
+            return;
+        }
+
+        retainedBuffers[sizeClass].offer(buffer);
+    }
+
+    /**
+     * Returns the number of buffers currently retained by the pool.
+     *
+     * @return number of retained buffers
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < numRetainedBuffers.length(); i++) {
+            size += numRetainedBuffers.get(i);
+        }
+        return size;
+    }
+}
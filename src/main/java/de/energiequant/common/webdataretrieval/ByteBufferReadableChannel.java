@@ -0,0 +1,56 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads from a {@link ByteBuffer} without copying it to an intermediate array.
+ * The source buffer is consumed; callers should pass a duplicate if the original
+ * position needs to be retained.
+ */
+class ByteBufferReadableChannel implements ReadableByteChannel {
+
+    private final ByteBuffer source;
+    private volatile boolean isOpen = true;
+
+    /**
+     * Creates a new channel reading the remaining bytes of the given buffer.
+     *
+     * @param source buffer to read from
+     */
+    ByteBufferReadableChannel(ByteBuffer source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        if (!isOpen) {
+            throw new ClosedChannelException();
+        }
+
+        if (!source.hasRemaining()) {
+            return -1;
+        }
+
+        int length = Math.min(source.remaining(), dst.remaining());
+
+        ByteBuffer slice = source.duplicate();
+        slice.limit(slice.position() + length);
+        dst.put(slice);
+
+        source.position(source.position() + length);
+
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public void close() {
+        isOpen = false;
+    }
+}
@@ -0,0 +1,137 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
+/**
+ * Compression formats of files, as opposed to compression applied on transfer
+ * as indicated by Content-Encoding which is reverted automatically. Files
+ * consisting of multiple concatenated streams are decompressed completely.
+ */
+public enum CompressionFormat {
+    /**
+     * gzip compressed files (.gz)
+     */
+    GZIP {
+        private static final int GZIP_MAGIC_1 = 0x1F;
+        private static final int GZIP_MAGIC_2 = 0x8B;
+        private static final int METHOD_DEFLATE = 8;
+        private static final int RESERVED_FLAGS = 0xE0;
+        private static final int MAXIMUM_KNOWN_OS = 13;
+        private static final int UNKNOWN_OS = 0xFF;
+        private static final int HEADER_SIZE = 10;
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new GzipCompressorInputStream(in, true);
+        }
+
+        @Override
+        int findStreamStart(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i <= to - HEADER_SIZE; i++) {
+                if (((buffer.get(i) & 0xFF) != GZIP_MAGIC_1)
+                    || ((buffer.get(i + 1) & 0xFF) != GZIP_MAGIC_2)
+                    || (buffer.get(i + 2) != METHOD_DEFLATE)
+                    || ((buffer.get(i + 3) & RESERVED_FLAGS) != 0)) {
+                    continue;
+                }
+
+                int extraFlags = buffer.get(i + 8);
+                int os = buffer.get(i + 9) & 0xFF;
+                if (((extraFlags == 0) || (extraFlags == 2) || (extraFlags == 4))
+                    && ((os <= MAXIMUM_KNOWN_OS) || (os == UNKNOWN_OS))) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+    },
+
+    /**
+     * bzip2 compressed files (.bz2)
+     */
+    BZIP2 {
+        private static final int HEADER_SIZE = 4;
+
+        private final byte[] blockMagic = { 0x31, 0x41, 0x59, 0x26, 0x53, 0x59 };
+        private final byte[] endOfStreamMagic = { 0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90 };
+
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new BZip2CompressorInputStream(in, true);
+        }
+
+        @Override
+        int findStreamStart(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i <= to - HEADER_SIZE - blockMagic.length; i++) {
+                if ((buffer.get(i) != 'B')
+                    || (buffer.get(i + 1) != 'Z')
+                    || (buffer.get(i + 2) != 'h')
+                    || (buffer.get(i + 3) < '1')
+                    || (buffer.get(i + 3) > '9')) {
+                    continue;
+                }
+
+                int magicOffset = i + HEADER_SIZE;
+                if (matches(buffer, magicOffset, blockMagic) || matches(buffer, magicOffset, endOfStreamMagic)) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private boolean matches(ByteBuffer buffer, int offset, byte[] expected) {
+            for (int i = 0; i < expected.length; i++) {
+                if (buffer.get(offset + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    },
+
+    /**
+     * XZ compressed files (.xz)
+     */
+    XZ {
+        @Override
+        InputStream decompress(InputStream in) throws IOException {
+            return new XZCompressorInputStream(in, true);
+        }
+    };
+
+    /**
+     * Wraps the given stream to decompress it while being read.
+     *
+     * @param in compressed stream
+     * @return decompressed stream
+     * @throws IOException if the stream cannot be read or is not in this format
+     */
+    abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Searches the given buffer for a position which looks like the start of a
+     * compressed stream (a gzip member or bzip2 stream). Formats not supporting
+     * the search never find any candidates.
+     * <p>
+     * Candidates are only identified by their headers, so they may also be
+     * false positives found in the middle of compressed data. Callers need to
+     * verify candidates by decompressing.
+     * </p>
+     *
+     * @param buffer buffer to search; accessed by absolute positions only
+     * @param from first position to check (inclusive)
+     * @param to end of data to search (exclusive)
+     * @return position of first candidate; -1 if not found
+     */
+    int findStreamStart(ByteBuffer buffer, int from, int to) {
+        return -1;
+    }
+}
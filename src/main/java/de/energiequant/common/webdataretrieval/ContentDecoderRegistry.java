@@ -0,0 +1,184 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
+import org.apache.commons.compress.compressors.brotli.BrotliUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.luben.zstd.util.Native;
+
+/**
+ * Holds the content decoders shared by all {@link HttpRetrieval}s, indexed by
+ * their HTTP Content-Encoding header value. The registry is built only once
+ * and is immutable, so it can be used concurrently without any locking.
+ * <p>
+ * Decoders are registered in order of preference as they are advertised in
+ * that order by the Accept-Encoding header: Brotli ({@code br}), Zstandard
+ * ({@code zstd}), gzip ({@code gzip}, {@code x-gzip}) and deflate
+ * ({@code deflate}, accepting both zlib-wrapped and raw streams). gzip and
+ * deflate are decoded using pooled inflaters and large read buffers. Brotli and
+ * Zstandard are only registered if their implementations are available on the
+ * class path, requiring the optional Brotli decoder and zstd-jni dependencies.
+ * Zstandard additionally requires the native library of zstd-jni to be
+ * loadable on the current platform.
+ * </p>
+ */
+class ContentDecoderRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentDecoderRegistry.class.getName());
+
+    private static final Map<String, InputStreamFactory> DEFAULT_DECODERS = Collections.unmodifiableMap(
+        createDefaultDecoders() //
+    );
+
+    private static final ConcurrentMap<Long, LinkedHashMap<String, InputStreamFactory>> DEFAULT_REGISTRIES_BY_COMPRESSED_LIMIT = new ConcurrentHashMap<>();
+
+    private ContentDecoderRegistry() {
+        // utility class
+    }
+
+    /**
+     * Creates a new map of all decoders supported by the runtime, in order of
+     * preference.
+     * <p>
+     * Required for unit-testing.
+     * </p>
+     *
+     * @return all supported decoders in order of preference
+     */
+    static LinkedHashMap<String, InputStreamFactory> createDefaultDecoders() {
+        return createDecoders(
+            BrotliUtils.isBrotliCompressionAvailable(),
+            isZstdAvailable() //
+        );
+    }
+
+    /**
+     * Checks if Zstandard can actually be decoded. zstd-jni being present on the
+     * class path is not sufficient as its native library may not be available
+     * for the current platform, so the library is attempted to be loaded once.
+     *
+     * @return Is Zstandard supported?
+     */
+    private static boolean isZstdAvailable() {
+        if (!ZstdUtils.isZstdCompressionAvailable()) {
+            return false;
+        }
+
+        try {
+            Native.load();
+            return true;
+        } catch (LinkageError | RuntimeException ex) {
+            logger.warn("zstd-jni is available but its native library failed to load, Zstandard will not be supported", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a new map of decoders in order of preference. Decoders depending on
+     * optional libraries are only added if indicated.
+     * <p>
+     * Required for unit-testing.
+     * </p>
+     *
+     * @param isBrotliAvailable Should Brotli be supported?
+     * @param isZstdAvailable Should Zstandard be supported?
+     * @return decoders in order of preference
+     */
+    static LinkedHashMap<String, InputStreamFactory> createDecoders(boolean isBrotliAvailable, boolean isZstdAvailable) {
+        LinkedHashMap<String, InputStreamFactory> decoders = new LinkedHashMap<>();
+
+        if (isBrotliAvailable) {
+            decoders.put("br", (InputStreamFactory) BrotliCompressorInputStream::new);
+        }
+
+        if (isZstdAvailable) {
+            decoders.put("zstd", (InputStreamFactory) ZstdCompressorInputStream::new);
+        }
+
+        InputStreamFactory gzip = (InputStreamFactory) (InputStream instream) -> new PooledGzipInputStream(
+            instream,
+            InflaterPool.getShared(),
+            PooledInflaterInputStream.DEFAULT_BUFFER_SIZE //
+        );
+        decoders.put("gzip", gzip);
+        decoders.put("x-gzip", gzip);
+
+        decoders.put(
+            "deflate",
+            (InputStreamFactory) (InputStream instream) -> PooledInflaterInputStream.deflate(
+                instream,
+                InflaterPool.getShared(),
+                PooledInflaterInputStream.DEFAULT_BUFFER_SIZE //
+            ) //
+        );
+
+        return decoders;
+    }
+
+    /**
+     * Returns the shared decoders supported by the runtime.
+     *
+     * @return shared unmodifiable map of decoders in order of preference
+     */
+    static Map<String, InputStreamFactory> getDefaultDecoders() {
+        return DEFAULT_DECODERS;
+    }
+
+    /**
+     * Returns the shared decoders as needed to configure a classic HttpClient,
+     * wrapped to read at most the given number of bytes from encoded streams.
+     * The returned map is shared between all callers for the same limit and thus
+     * must not be modified.
+     *
+     * @param maximumCompressedSize maximum number of bytes to read from encoded
+     *        streams; negative for no limit
+     * @return shared map of limited decoders in order of preference; must not be
+     *         modified
+     */
+    static LinkedHashMap<String, InputStreamFactory> getDefaultRegistry(long maximumCompressedSize) {
+        long key = Math.max(-1, maximumCompressedSize);
+        return DEFAULT_REGISTRIES_BY_COMPRESSED_LIMIT.computeIfAbsent(
+            key,
+            limit -> limitCompressedSize(DEFAULT_DECODERS, limit) //
+        );
+    }
+
+    /**
+     * Wraps all given decoders to read at most the given number of bytes from
+     * encoded streams.
+     *
+     * @param decoders decoders to wrap
+     * @param maximumCompressedSize maximum number of bytes to read from encoded
+     *        streams; negative for no limit
+     * @return new map of limited decoders, in same order as given
+     */
+    static LinkedHashMap<String, InputStreamFactory> limitCompressedSize(Map<String, InputStreamFactory> decoders, long maximumCompressedSize) {
+        LinkedHashMap<String, InputStreamFactory> registry = new LinkedHashMap<>();
+
+        for (Map.Entry<String, InputStreamFactory> entry : decoders.entrySet()) {
+            InputStreamFactory decoder = entry.getValue();
+
+            if (maximumCompressedSize >= 0) {
+                InputStreamFactory unlimitedDecoder = decoder;
+                decoder = (InputStreamFactory) (InputStream instream) -> unlimitedDecoder.create(
+                    new SizeLimitedInputStream(instream, maximumCompressedSize, true, null) //
+                );
+            }
+
+            registry.put(entry.getKey(), decoder);
+        }
+
+        return registry;
+    }
+}
@@ -0,0 +1,280 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.BaseStream;
+
+/**
+ * Keeps the results of decoders in memory, so that retrieving an unchanged
+ * response body again returns the previously decoded instance instead of
+ * running the decoder again. See
+ * {@link DefaultHttpRetrievalDecoders#withDecodedResultCache(java.util.function.Function, DecodedResultCache)}
+ * for how to apply the cache to a decoder.
+ * <p>
+ * Results are stored per requested URL together with a validator identifying
+ * the response body they have been decoded from (see
+ * {@link #computeValidator(HttpRetrieval)}). Only the last result is kept per
+ * URL. Once the maximum number of entries is exceeded, least recently used
+ * entries are evicted.
+ * </p>
+ * <p>
+ * As cached results are returned to all later retrievals of the same body,
+ * only immutable, fully materialized results may be cached and they must not be
+ * modified by callers. Results which can only be consumed once or which are
+ * views of the response body (readers, streams, iterators and buffers) are
+ * rejected, see {@link #isCacheable(Object)}. The cache can be shared by any
+ * number of threads but should only be used with a single decoder as results
+ * are not distinguished by the decoder that produced them.
+ * </p>
+ *
+ * @param <T> type of decoded results
+ */
+public class DecodedResultCache<T> {
+
+    private static final String HTTP_HEADER_ETAG = "ETag";
+    private static final String HTTP_HEADER_CONTENT_TYPE = "Content-Type";
+    private static final String HTTP_HEADER_VARY = "Vary";
+
+    private static final String VARY_ACCEPT_ENCODING = "accept-encoding";
+
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final String VALIDATOR_PREFIX_ETAG = "etag:";
+    private static final String VALIDATOR_PREFIX_HASH = "sha256:";
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final int maximumEntries;
+    private final Map<String, CachedResult<T>> entriesByUrl;
+
+    private static class CachedResult<T> {
+        final String validator;
+        final T value;
+
+        CachedResult(String validator, T value) {
+            this.validator = validator;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Creates a new cache holding at most the given number of results.
+     *
+     * @param maximumEntries maximum number of results to keep; must be positive
+     */
+    public DecodedResultCache(int maximumEntries) {
+        if (maximumEntries < 1) {
+            throw new IllegalArgumentException("maximum number of entries must be positive");
+        }
+
+        this.maximumEntries = maximumEntries;
+        this.entriesByUrl = new LinkedHashMap<String, CachedResult<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult<T>> eldest) {
+                return size() > DecodedResultCache.this.maximumEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the result previously stored for the given URL if it has been
+     * decoded from a body matching the given validator.
+     *
+     * @param url requested URL
+     * @param validator validator of the current response body, see
+     *        {@link #computeValidator(HttpRetrieval)}
+     * @return previously decoded result; null if there is none or the body has
+     *         changed
+     */
+    public T lookup(String url, String validator) {
+        synchronized (entriesByUrl) {
+            CachedResult<T> entry = entriesByUrl.get(url);
+            if ((entry == null) || !entry.validator.equals(validator)) {
+                return null;
+            }
+
+            return entry.value;
+        }
+    }
+
+    /**
+     * Stores a decoded result for the given URL, replacing any previous result.
+     *
+     * @param url requested URL; must not be null
+     * @param validator validator of the response body the result has been
+     *        decoded from; must not be null
+     * @param value decoded result; must not be null and must be cacheable, see
+     *        {@link #isCacheable(Object)}
+     */
+    public void store(String url, String validator, T value) {
+        if (url == null) {
+            throw new IllegalArgumentException("URL must not be null");
+        }
+
+        if (validator == null) {
+            throw new IllegalArgumentException("validator must not be null");
+        }
+
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+
+        if (!isCacheable(value)) {
+            throw new IllegalArgumentException(
+                "value of " + value.getClass().getName() + " cannot be cached as it is not fully materialized");
+        }
+
+        synchronized (entriesByUrl) {
+            entriesByUrl.put(url, new CachedResult<>(validator, value));
+        }
+    }
+
+    /**
+     * Removes any result stored for the given URL.
+     *
+     * @param url requested URL
+     */
+    public void invalidate(String url) {
+        synchronized (entriesByUrl) {
+            entriesByUrl.remove(url);
+        }
+    }
+
+    /**
+     * Returns the number of stored results.
+     *
+     * @return number of stored results
+     */
+    public int size() {
+        synchronized (entriesByUrl) {
+            return entriesByUrl.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of stored results.
+     *
+     * @return maximum number of stored results
+     */
+    public int getMaximumEntries() {
+        return maximumEntries;
+    }
+
+    /**
+     * Checks if the given decoded result may be cached. Readers, input streams,
+     * streams, iterators and spliterators can only be consumed once, buffers are
+     * usually views of a response body which may be released after decoding.
+     * Such results are not fully materialized and thus cannot be returned again
+     * to later retrievals.
+     *
+     * @param value decoded result
+     * @return Can the result be cached?
+     */
+    public static boolean isCacheable(Object value) {
+        return !((value instanceof Reader)
+            || (value instanceof InputStream)
+            || (value instanceof BaseStream)
+            || (value instanceof Iterator)
+            || (value instanceof Spliterator)
+            || (value instanceof Buffer));
+    }
+
+    /**
+     * Computes a validator identifying the response body of the given retrieval.
+     * <p>
+     * Content-Type and Content-Encoding are always part of the validator.
+     * Strong ETags already identify the exact body and are used without reading
+     * the body unless the response varies by request headers other than
+     * Accept-Encoding (which is covered by the Content-Encoding). Otherwise (no
+     * or only a weak ETag) the body is hashed as stored, so bodies whose
+     * decoding has been deferred do not need to be decoded. As results are
+     * stored per URL, the URL is not part of the validator.
+     * </p>
+     *
+     * @param retrieval retrieval holding the response
+     * @return validator identifying the response body; null if there is no
+     *         response body
+     */
+    static String computeValidator(HttpRetrieval retrieval) {
+        CaseInsensitiveHeaders headers = retrieval.getResponseHeaders();
+
+        String contentType = (headers != null) ? headers.getFirstByName(HTTP_HEADER_CONTENT_TYPE) : null;
+        String contentEncoding = retrieval.getResponseContentEncoding();
+
+        MessageDigest digest = createDigest();
+        updateDigest(digest, contentType);
+        updateDigest(digest, contentEncoding);
+
+        String etag = (headers != null) ? headers.getFirstByName(HTTP_HEADER_ETAG) : null;
+        if ((etag != null) && !etag.isEmpty() && !etag.startsWith(WEAK_ETAG_PREFIX) && !isVaryingByRequest(headers)) {
+            updateDigest(digest, etag);
+            return VALIDATOR_PREFIX_ETAG + toHex(digest.digest());
+        }
+
+        ByteBuffer body = retrieval.getEncodedResponseBody();
+        if (body == null) {
+            return null;
+        }
+
+        digest.update(body.duplicate());
+
+        return VALIDATOR_PREFIX_HASH + toHex(digest.digest());
+    }
+
+    /**
+     * Checks if the response varies by request headers other than
+     * Accept-Encoding, so that a strong ETag may not identify the body received
+     * for the request performed by this client.
+     *
+     * @param headers response headers
+     * @return Does the response vary by other request headers?
+     */
+    private static boolean isVaryingByRequest(CaseInsensitiveHeaders headers) {
+        for (String value : headers.getAllByName(HTTP_HEADER_VARY)) {
+            for (String name : value.split(",")) {
+                name = name.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty() && !name.equals(VARY_ACCEPT_ENCODING)) {
+                    // also covers "*"
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 is required to be supported by all Java platforms
+            throw new IllegalStateException(HASH_ALGORITHM + " is not supported", ex);
+        }
+    }
+
+    private static void updateDigest(MessageDigest digest, String s) {
+        if (s != null) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // separator so that values cannot be shifted between fields
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -1,10 +1,28 @@
 package de.energiequant.common.webdataretrieval;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.io.IOUtils;
 
 /**
  * Provides builders for some commonly used functions for decoding of
@@ -45,6 +63,123 @@ public class DefaultHttpRetrievalDecoders {
         };
     }
 
+    /**
+     * Builds a streaming decoder which provides meta data about retrieval by
+     * wrapping the result of another streaming decoder into a
+     * {@link RetrievedData} container. Streaming counterpart of
+     * {@link #withMetaData(Function)}.
+     *
+     * @param <T> type returned by wrapped decoder
+     * @param decoder streaming decoder to be wrapped, must not be null
+     * @return results of given decoder inside a container holding meta data about
+     *         retrieval
+     */
+    public <T> StreamingDecoder<RetrievedData<T>> streamingWithMetaData(StreamingDecoder<T> decoder) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        return new StreamingDecoder<RetrievedData<T>>() {
+            @Override
+            public RetrievedData<T> decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                Instant time = getInstantNow();
+                String lastRequestedLocation = retrieval.getLastRequestedLocation();
+                String lastRetrievedLocation = retrieval.getLastRetrievedLocation();
+
+                T data = decoder.decode(retrieval, content);
+
+                return new RetrievedData<>(time, lastRequestedLocation, lastRetrievedLocation, data);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which only runs another decoder if the response body has
+     * changed since the last retrieval of the same URL. Otherwise the result
+     * decoded before is taken from the given cache and returned as the same
+     * instance. Bodies are identified by strong ETags or a hash of their
+     * content, see {@link DecodedResultCache}.
+     * <p>
+     * Results are only cached for complete content responses; null results are
+     * never cached. As the same instance is returned to all later retrievals,
+     * only decoders providing immutable, fully materialized results may be
+     * wrapped. Decoders providing readers, streams or views of the response
+     * body (e.g. {@link #bodyAsReaderWithHeaderCharacterSet(Charset)},
+     * {@link #bodyAsLinesWithHeaderCharacterSet(Charset)} or
+     * {@link #bodyAsByteBuffer()}) are not supported and will fail with an
+     * {@link IllegalArgumentException} on decoding, see
+     * {@link DecodedResultCache#isCacheable(Object)}. Wrap the returned decoder
+     * in {@link #withMetaData(Function)}
+     * to have {@link RetrievedData} indicate the time of each retrieval, also
+     * if its result has been taken from cache.
+     * </p>
+     *
+     * @param <T> type returned by wrapped decoder
+     * @param decoder decoder to be wrapped, must not be null
+     * @param cache cache holding previously decoded results, must not be null
+     * @return results of given decoder, reused for unchanged response bodies
+     */
+    public <T> Function<HttpRetrieval, T> withDecodedResultCache(Function<HttpRetrieval, T> decoder, DecodedResultCache<T> cache) {
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null");
+        }
+
+        return new Function<HttpRetrieval, T>() {
+            @Override
+            public T apply(HttpRetrieval retrieval) {
+                String url = retrieval.getLastRequestedLocation();
+                if ((url == null) || !retrieval.hasCompleteContentResponseStatus()) {
+                    return decoder.apply(retrieval);
+                }
+
+                String validator = DecodedResultCache.computeValidator(retrieval);
+                if (validator == null) {
+                    return decoder.apply(retrieval);
+                }
+
+                T cached = cache.lookup(url, validator);
+                if (cached != null) {
+                    return cached;
+                }
+
+                T data = decoder.apply(retrieval);
+                if (data == null) {
+                    return null;
+                }
+
+                if (!DecodedResultCache.isCacheable(data)) {
+                    closeQuietly(data);
+                    throw new IllegalArgumentException(
+                        "decoder result of " + data.getClass().getName()
+                            + " is not fully materialized and cannot be cached");
+                }
+
+                cache.store(url, validator, data);
+
+                return data;
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which provides the response body as a read-only buffer
+     * without copying it, see {@link HttpRetrieval#getResponseBody()}.
+     *
+     * @return read-only view of the response body
+     */
+    public Function<HttpRetrieval, ByteBuffer> bodyAsByteBuffer() {
+        return new Function<HttpRetrieval, ByteBuffer>() {
+            @Override
+            public ByteBuffer apply(HttpRetrieval retrieval) {
+                return retrieval.getResponseBody();
+            }
+        };
+    }
+
     /**
      * Builds a decoder which always decodes the response body with a fixed
      * character set.
@@ -83,10 +218,7 @@ public class DefaultHttpRetrievalDecoders {
         return new Function<HttpRetrieval, String>() {
             @Override
             public String apply(HttpRetrieval retrieval) {
-                Charset charset = getCharacterSetByContentType(retrieval);
-                if (charset == null) {
-                    charset = fallbackCharacterSet;
-                }
+                Charset charset = resolveCharacterSet(retrieval, fallbackCharacterSet);
 
                 byte[] bytes = retrieval.getResponseBodyBytes();
 
@@ -95,6 +227,350 @@ public class DefaultHttpRetrievalDecoders {
         };
     }
 
+    /**
+     * Builds a streaming decoder which always decodes the response body with a
+     * fixed character set. Streaming counterpart of
+     * {@link #bodyAsStringWithFixedCharacterSet(Charset)}.
+     *
+     * @param characterSet character set to apply for decoding
+     * @return response body decoded with specified character set
+     */
+    public StreamingDecoder<String> streamingBodyAsStringWithFixedCharacterSet(Charset characterSet) {
+        if (characterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new StreamingDecoder<String>() {
+            @Override
+            public String decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                return IOUtils.toString(content, characterSet);
+            }
+        };
+    }
+
+    /**
+     * Builds a streaming decoder which decodes the response body using the
+     * character set specified in HTTP headers. If header-specified character set
+     * is unavailable, the given fallback character set will be used instead.
+     * Streaming counterpart of
+     * {@link #bodyAsStringWithHeaderCharacterSet(Charset)}.
+     *
+     * @param fallbackCharacterSet fallback character set to apply if retrieving
+     *        character set from header fails
+     * @return response body decoded with header-specified or fallback character set
+     */
+    public StreamingDecoder<String> streamingBodyAsStringWithHeaderCharacterSet(Charset fallbackCharacterSet) {
+        if (fallbackCharacterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new StreamingDecoder<String>() {
+            @Override
+            public String decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                Charset charset = resolveCharacterSet(retrieval, fallbackCharacterSet);
+
+                return IOUtils.toString(content, charset);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which provides the response body as a {@link Reader}
+     * always decoding with a fixed character set. Characters are decoded
+     * incrementally while being read directly from the response body, so unlike
+     * {@link #bodyAsStringWithFixedCharacterSet(Charset)} the whole text is never
+     * held in memory at once. Malformed input is replaced as it would be when
+     * decoding to a {@link String}.
+     *
+     * @param characterSet character set to apply for decoding
+     * @return reader decoding the response body with specified character set
+     */
+    public Function<HttpRetrieval, Reader> bodyAsReaderWithFixedCharacterSet(Charset characterSet) {
+        if (characterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new Function<HttpRetrieval, Reader>() {
+            @Override
+            public Reader apply(HttpRetrieval retrieval) {
+                return createBodyReader(retrieval, characterSet);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which provides the response body as a {@link Reader}
+     * decoding with the character set specified in HTTP headers. If
+     * header-specified character set is unavailable, the given fallback character
+     * set will be used instead. Characters are decoded incrementally, see
+     * {@link #bodyAsReaderWithFixedCharacterSet(Charset)}.
+     *
+     * @param fallbackCharacterSet fallback character set to apply if retrieving
+     *        character set from header fails
+     * @return reader decoding the response body with header-specified or fallback
+     *         character set
+     */
+    public Function<HttpRetrieval, Reader> bodyAsReaderWithHeaderCharacterSet(Charset fallbackCharacterSet) {
+        if (fallbackCharacterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new Function<HttpRetrieval, Reader>() {
+            @Override
+            public Reader apply(HttpRetrieval retrieval) {
+                Charset charset = resolveCharacterSet(retrieval, fallbackCharacterSet);
+
+                return createBodyReader(retrieval, charset);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which provides the lines of the response body as a lazily
+     * populated {@link Stream}, always decoding with a fixed character set. Lines
+     * are terminated by LF, CR or CR LF, same as for
+     * {@link BufferedReader#lines()}.
+     * <p>
+     * Lines are only decoded when consumed and the body is never held as a single
+     * {@link String}. For UTF-8 and other ASCII-compatible character sets the
+     * stream can be split at line boundaries to be processed in parallel; other
+     * character sets (such as UTF-16) are decoded sequentially.
+     * </p>
+     *
+     * @param characterSet character set to apply for decoding
+     * @return lines of response body decoded with specified character set
+     */
+    public Function<HttpRetrieval, Stream<String>> bodyAsLinesWithFixedCharacterSet(Charset characterSet) {
+        if (characterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new Function<HttpRetrieval, Stream<String>>() {
+            @Override
+            public Stream<String> apply(HttpRetrieval retrieval) {
+                return createBodyLineStream(retrieval, characterSet);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which provides the lines of the response body as a lazily
+     * populated {@link Stream}, decoding with the character set specified in HTTP
+     * headers. If header-specified character set is unavailable, the given
+     * fallback character set will be used instead. See
+     * {@link #bodyAsLinesWithFixedCharacterSet(Charset)} for details.
+     *
+     * @param fallbackCharacterSet fallback character set to apply if retrieving
+     *        character set from header fails
+     * @return lines of response body decoded with header-specified or fallback
+     *         character set
+     */
+    public Function<HttpRetrieval, Stream<String>> bodyAsLinesWithHeaderCharacterSet(Charset fallbackCharacterSet) {
+        if (fallbackCharacterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        return new Function<HttpRetrieval, Stream<String>>() {
+            @Override
+            public Stream<String> apply(HttpRetrieval retrieval) {
+                Charset charset = resolveCharacterSet(retrieval, fallbackCharacterSet);
+
+                return createBodyLineStream(retrieval, charset);
+            }
+        };
+    }
+
+    /**
+     * Builds a decoder which parses delimited records of the response body in
+     * parallel on the common {@link ForkJoinPool}. See
+     * {@link #recordsInParallel(byte, Function, ForkJoinPool)} for details.
+     *
+     * @param <R> type of parsed records
+     * @param delimiter byte separating records, e.g. <code>'\n'</code>
+     * @param recordParser parses a single record; must not be null
+     * @return parsed records in order of occurrence
+     */
+    public <R> Function<HttpRetrieval, List<R>> recordsInParallel(byte delimiter, Function<ByteBuffer, R> recordParser) {
+        return recordsInParallel(delimiter, recordParser, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds a decoder which parses delimited records of the response body in
+     * parallel on the given {@link ForkJoinPool}.
+     * <p>
+     * The buffered body is recursively split into chunks at record boundaries;
+     * records of each chunk are passed to the given parser which may be called
+     * concurrently and thus needs to be thread-safe. Each record is provided as a
+     * read-only buffer holding the record without delimiter and must not be used
+     * after the parser returns. Results are returned in order of records in the
+     * body. A trailing delimiter does not start another record. If the parser
+     * fails, the decoder fails with the same exception.
+     * </p>
+     * <p>
+     * Records are searched on byte level, so for text bodies the delimiter must
+     * not occur as part of other characters, as is the case for ASCII characters
+     * in UTF-8.
+     * </p>
+     *
+     * @param <R> type of parsed records
+     * @param delimiter byte separating records, e.g. <code>'\n'</code>
+     * @param recordParser parses a single record; must not be null
+     * @param pool pool to parse on; must not be null
+     * @return parsed records in order of occurrence
+     */
+    public <R> Function<HttpRetrieval, List<R>> recordsInParallel(byte delimiter, Function<ByteBuffer, R> recordParser, ForkJoinPool pool) {
+        if (recordParser == null) {
+            throw new IllegalArgumentException("record parser must not be null");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+
+        return new Function<HttpRetrieval, List<R>>() {
+            @Override
+            public List<R> apply(HttpRetrieval retrieval) {
+                ByteBuffer body = retrieval.getResponseBody();
+                if (body == null) {
+                    return new ArrayList<>();
+                }
+
+                return pool.invoke(new ParallelRecordParser<>(
+                    body,
+                    delimiter,
+                    recordParser,
+                    ParallelRecordParser.DEFAULT_MINIMUM_CHUNK_SIZE //
+                ));
+            }
+        };
+    }
+
+    /**
+     * Builds a streaming decoder which passes the response body as a
+     * {@link Reader} to the given decoder, always decoding with a fixed character
+     * set. Characters are decoded incrementally while the body is being
+     * received.
+     *
+     * @param <T> type returned by given decoder
+     * @param characterSet character set to apply for decoding
+     * @param decoder decodes the characters of the response body, must not be
+     *        null
+     * @return result of given decoder
+     */
+    public <T> StreamingDecoder<T> streamingBodyAsReaderWithFixedCharacterSet(Charset characterSet, ReaderDecoder<T> decoder) {
+        if (characterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        return new StreamingDecoder<T>() {
+            @Override
+            public T decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                return decoder.decode(retrieval, new InputStreamReader(content, createCharsetDecoder(characterSet)));
+            }
+        };
+    }
+
+    /**
+     * Builds a streaming decoder which passes the response body as a
+     * {@link Reader} to the given decoder, decoding with the character set
+     * specified in HTTP headers. If header-specified character set is
+     * unavailable, the given fallback character set will be used instead.
+     * Characters are decoded incrementally while the body is being received.
+     *
+     * @param <T> type returned by given decoder
+     * @param fallbackCharacterSet fallback character set to apply if retrieving
+     *        character set from header fails
+     * @param decoder decodes the characters of the response body, must not be
+     *        null
+     * @return result of given decoder
+     */
+    public <T> StreamingDecoder<T> streamingBodyAsReaderWithHeaderCharacterSet(Charset fallbackCharacterSet, ReaderDecoder<T> decoder) {
+        if (fallbackCharacterSet == null) {
+            throw new IllegalArgumentException("character set must not be null");
+        }
+
+        if (decoder == null) {
+            throw new IllegalArgumentException("decoder must not be null");
+        }
+
+        return new StreamingDecoder<T>() {
+            @Override
+            public T decode(HttpRetrieval retrieval, InputStream content) throws IOException {
+                Charset charset = resolveCharacterSet(retrieval, fallbackCharacterSet);
+
+                return decoder.decode(retrieval, new InputStreamReader(content, createCharsetDecoder(charset)));
+            }
+        };
+    }
+
+    /**
+     * Creates a reader incrementally decoding the buffered response body.
+     *
+     * @param retrieval retrieval holding the response body
+     * @param charset character set to decode with
+     * @return reader decoding the response body; empty if there is no body
+     */
+    private Reader createBodyReader(HttpRetrieval retrieval, Charset charset) {
+        ReadableByteChannel channel = retrieval.openResponseBodyChannel();
+        if (channel == null) {
+            return new StringReader("");
+        }
+
+        return Channels.newReader(channel, createCharsetDecoder(charset), -1);
+    }
+
+    /**
+     * Creates a stream of lines of the buffered response body.
+     *
+     * @param retrieval retrieval holding the response body
+     * @param charset character set to decode with
+     * @return lines of response body; empty if there is no body
+     */
+    private Stream<String> createBodyLineStream(HttpRetrieval retrieval, Charset charset) {
+        if (!LineSpliterator.isSupported(charset)) {
+            return new BufferedReader(createBodyReader(retrieval, charset)).lines();
+        }
+
+        ByteBuffer body = retrieval.getResponseBody();
+        if (body == null) {
+            return Stream.empty();
+        }
+
+        return StreamSupport.stream(new LineSpliterator(body, charset), false);
+    }
+
+    /**
+     * Creates a decoder for the given character set replacing malformed input and
+     * unmappable characters, same as {@link String#String(byte[], Charset)}.
+     *
+     * @param charset character set to decode
+     * @return new decoder
+     */
+    private static CharsetDecoder createCharsetDecoder(Charset charset) {
+        return charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Returns the character set specified by Content-Type HTTP header or the
+     * given fallback if unavailable.
+     *
+     * @param retrieval used to retrieve response headers from
+     * @param fallbackCharacterSet character set to use if header does not
+     *        specify an available character set
+     * @return character set to decode response body with
+     */
+    private Charset resolveCharacterSet(HttpRetrieval retrieval, Charset fallbackCharacterSet) {
+        Charset charset = getCharacterSetByContentType(retrieval);
+
+        return (charset != null) ? charset : fallbackCharacterSet;
+    }
+
     /**
      * Returns the character set to be applied according to Content-Type HTTP
      * header.
@@ -134,6 +610,24 @@ public class DefaultHttpRetrievalDecoders {
         return null;
     }
 
+    /**
+     * Closes the given decoder result if it holds resources. Failures are
+     * ignored as the result is being discarded anyway.
+     *
+     * @param value decoder result to close
+     */
+    private static void closeQuietly(Object value) {
+        if (!(value instanceof AutoCloseable)) {
+            return;
+        }
+
+        try {
+            ((AutoCloseable) value).close();
+        } catch (Exception ex) {
+            // ignored, result is discarded anyway
+        }
+    }
+
     /**
      * Returns current time via static method call {@link Instant#now()}. Required
      * for unit-testing.
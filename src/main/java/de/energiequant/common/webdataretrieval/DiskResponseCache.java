@@ -0,0 +1,981 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps responses in a directory so they survive restarts of the application.
+ * After a restart, fresh responses are restored without performing any
+ * request and stale responses are validated by conditional requests, so
+ * unchanged bodies do not need to be transferred again.
+ * <p>
+ * Responses are stored following the same rules as {@link MemoryResponseCache}:
+ * only successful responses which are either fresh for some time or hold
+ * validators are stored, {@code no-store} responses never are. Once the total
+ * size of all stored bodies exceeds the maximum, the responses which have been
+ * stored or validated the longest time ago are evicted. Unlike
+ * {@link MemoryResponseCache}, eviction is by storage age only (first in, first
+ * out): lookups are not recorded as that would require writing to the index
+ * shared with other processes on every lookup.
+ * </p>
+ * <p>
+ * Each body is written to its own file which is moved into place atomically
+ * and never modified afterwards; revalidated responses keep referencing their
+ * existing body file. All other information is kept in memory and
+ * persisted by appending records to an index file; records are framed by
+ * their length and a checksum so incomplete records written by a crash are
+ * discarded. The index is compacted by rewriting it once it mostly consists of
+ * obsolete records.
+ * </p>
+ * <p>
+ * The directory may be shared by multiple processes on the same host: all
+ * access to the index is guarded by file locks and each process picks up
+ * records appended by others before looking up or storing responses. Lookups
+ * only check whether the index file has changed since it has last been read;
+ * as long as it has not, they are answered from memory without taking any
+ * lock. Within a
+ * process only one instance should be created per directory as file locks
+ * are held on behalf of the whole JVM. Bodies replaced by another process may
+ * disappear while they are about to be read; such lookups are treated as
+ * misses.
+ * </p>
+ * <p>
+ * I/O errors after construction are logged and treated like misses, so a
+ * broken cache never causes retrievals to fail. The cache should be closed
+ * when no longer used.
+ * </p>
+ */
+public class DiskResponseCache implements ResponseCache, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DiskResponseCache.class.getName());
+
+    static final String INDEX_FILE_NAME = "index";
+    static final String LOCK_FILE_NAME = "lock";
+    static final String BODY_FILE_SUFFIX = ".body";
+
+    /**
+     * Index files are compacted once they hold more than this number of records
+     * and less than half of their records describe current entries.
+     */
+    static final int COMPACTION_MINIMUM_RECORDS = 1000;
+
+    private static final String TEMPORARY_FILE_PREFIX = "tmp-";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final Duration ORPHANED_FILE_MINIMUM_AGE = Duration.ofHours(1);
+    private static final Pattern BODY_FILE_NAME_PATTERN = Pattern.compile("^[0-9a-f\\-]+" + Pattern.quote(BODY_FILE_SUFFIX) + "$");
+
+    private static final int INDEX_MAGIC = 0x48524331; // "HRC1"
+    private static final int INDEX_HEADER_SIZE = 4 + 8;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    private static final byte RECORD_TYPE_STORE = 1;
+    private static final byte RECORD_TYPE_INVALIDATE = 2;
+
+    private final Path directory;
+    private final Path indexFile;
+    private final long maximumSize;
+    private final FileChannel lockChannel;
+
+    // entries are only modified while synchronizing on this instance but may
+    // be read at any time; the map is replaced as a whole when the index is
+    // read completely so lookups never see a partially loaded index
+    private volatile Map<String, Entry> entriesByUrl = new ConcurrentHashMap<>();
+    private volatile IndexSignature loadedIndexSignature = null;
+
+    // all following fields are guarded by synchronizing on this instance
+    private long totalSize = 0;
+    private long loadedGeneration = 0;
+    private long indexPosition = -1;
+    private int numIndexRecords = 0;
+
+    private static class Entry {
+        final StoredResponse metadata;
+        final String bodyFileName;
+        final int bodyLength;
+
+        Entry(StoredResponse metadata, String bodyFileName, int bodyLength) {
+            this.metadata = metadata;
+            this.bodyFileName = bodyFileName;
+            this.bodyLength = bodyLength;
+        }
+    }
+
+    /**
+     * Identifies a state of the index file. Appending records changes the size
+     * and modification time, rewriting the index replaces the file.
+     */
+    private static class IndexSignature {
+        final long size;
+        final FileTime lastModifiedTime;
+        final Object fileKey;
+
+        IndexSignature(BasicFileAttributes attributes) {
+            this.size = attributes.size();
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.fileKey = attributes.fileKey();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IndexSignature)) {
+                return false;
+            }
+
+            IndexSignature other = (IndexSignature) obj;
+            return (size == other.size)
+                && lastModifiedTime.equals(other.lastModifiedTime)
+                && Objects.equals(fileKey, other.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModifiedTime, fileKey);
+        }
+    }
+
+    private interface IndexOperation<T> {
+        T perform() throws IOException;
+    }
+
+    /**
+     * Opens a cache in the given directory, creating it if it does not exist
+     * yet. All responses already stored in the directory are available
+     * immediately.
+     *
+     * @param directory directory to store responses in; must not be null
+     * @param maximumSize maximum total size of all stored bodies in bytes; must
+     *        be positive
+     * @throws IOException if the directory or index cannot be created or read
+     */
+    public DiskResponseCache(Path directory, long maximumSize) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must not be null");
+        }
+
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximum size must be positive");
+        }
+
+        this.directory = directory;
+        this.indexFile = directory.resolve(INDEX_FILE_NAME);
+        this.maximumSize = maximumSize;
+
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(
+            directory.resolve(LOCK_FILE_NAME),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE //
+        );
+
+        try {
+            withIndexLock(false, () -> {
+                if (!Files.exists(indexFile) || (Files.size(indexFile) < INDEX_HEADER_SIZE)) {
+                    rewriteIndex();
+                }
+
+                refreshIndex();
+                return null;
+            });
+        } catch (IOException | RuntimeException ex) {
+            lockChannel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public StoredResponse lookup(String url) {
+        Entry entry;
+        try {
+            if (isIndexUnchanged()) {
+                entry = entriesByUrl.get(url);
+            } else {
+                entry = withIndexLock(true, () -> {
+                    refreshIndex();
+                    return entriesByUrl.get(url);
+                });
+            }
+        } catch (IOException ex) {
+            logger.warn("failed to look up \"{}\" in cache {}", url, directory, ex);
+            return null;
+        }
+
+        if (entry == null) {
+            return null;
+        }
+
+        StoredResponse metadata = entry.metadata;
+        if (!metadata.hasValidators() && !metadata.isFresh(getInstantNow())) {
+            // expired and cannot be validated, so reading the body is pointless
+            return null;
+        }
+
+        byte[] body = readBody(entry);
+        if (body == null) {
+            return null;
+        }
+
+        return new StoredResponse(
+            metadata.getRequestedLocation(),
+            metadata.getRetrievedLocation(),
+            metadata.getStatusCode(),
+            metadata.getHeaders(),
+            body,
+            metadata.getContentEncoding(),
+            metadata.getStoredTime(),
+            metadata.getVaryingRequestHeaders() //
+        );
+    }
+
+    @Override
+    public void store(String url, StoredResponse response) {
+        if (!response.isWorthStoring() || (response.getBody().length > maximumSize)) {
+            invalidate(url);
+            return;
+        }
+
+        // bodies are written before locking the index as they may be large
+        String bodyFileName;
+        try {
+            bodyFileName = writeBody(response.getBody());
+        } catch (IOException ex) {
+            logger.warn("failed to write body of \"{}\" to cache {}", url, directory, ex);
+            invalidate(url);
+            return;
+        }
+
+        Entry entry = new Entry(withoutBody(response), bodyFileName, response.getBody().length);
+
+        List<String> obsoleteBodyFileNames;
+        try {
+            obsoleteBodyFileNames = withIndexLock(false, () -> {
+                refreshIndex();
+
+                List<String> obsolete = new ArrayList<>();
+                appendRecord(encodeStoreRecord(url, entry));
+                Entry previous = putEntry(url, entry);
+                if (previous != null) {
+                    obsolete.add(previous.bodyFileName);
+                }
+
+                obsolete.addAll(evictIfNecessary(url));
+                compactIfNecessary();
+
+                return obsolete;
+            });
+        } catch (IOException ex) {
+            logger.warn("failed to store \"{}\" to cache {}", url, directory, ex);
+            deleteBodyFile(bodyFileName);
+            return;
+        }
+
+        obsoleteBodyFileNames.forEach(this::deleteBodyFile);
+    }
+
+    /**
+     * Only appends the updated metadata to the index, referencing the body file
+     * already stored for the URL, so revalidations do not rewrite unchanged
+     * bodies. If the stored entry no longer is the one the previous response
+     * has been looked up from (e.g. it has been replaced by another process),
+     * the revalidated response is stored completely.
+     */
+    @Override
+    public void storeRevalidated(String url, StoredResponse previous, StoredResponse revalidated) {
+        if (!revalidated.isWorthStoring()) {
+            invalidate(url);
+            return;
+        }
+
+        boolean isUpdated;
+        try {
+            isUpdated = withIndexLock(false, () -> {
+                refreshIndex();
+
+                Entry current = entriesByUrl.get(url);
+                if ((current == null) || !isSameBody(current, previous)) {
+                    return false;
+                }
+
+                Entry entry = new Entry(withoutBody(revalidated), current.bodyFileName, current.bodyLength);
+                appendRecord(encodeStoreRecord(url, entry));
+                putEntry(url, entry);
+                compactIfNecessary();
+
+                return true;
+            });
+        } catch (IOException ex) {
+            logger.warn("failed to update \"{}\" in cache {}", url, directory, ex);
+            return;
+        }
+
+        if (!isUpdated) {
+            store(url, revalidated);
+        }
+    }
+
+    /**
+     * Checks if the given entry holds the body of the given response as it has
+     * been looked up before. Entries are identified by their stored time which
+     * changes with each store or revalidation.
+     *
+     * @param entry entry currently stored
+     * @param response previously looked up response
+     * @return true if the entry still holds the body of the response
+     */
+    private static boolean isSameBody(Entry entry, StoredResponse response) {
+        return entry.metadata.getStoredTime().equals(response.getStoredTime())
+            && (entry.bodyLength == response.getBody().length);
+    }
+
+    private static StoredResponse withoutBody(StoredResponse response) {
+        return new StoredResponse(
+            response.getRequestedLocation(),
+            response.getRetrievedLocation(),
+            response.getStatusCode(),
+            response.getHeaders(),
+            new byte[0],
+            response.getContentEncoding(),
+            response.getStoredTime(),
+            response.getVaryingRequestHeaders() //
+        );
+    }
+
+    @Override
+    public void invalidate(String url) {
+        Entry previous;
+        try {
+            previous = withIndexLock(false, () -> {
+                refreshIndex();
+
+                if (!entriesByUrl.containsKey(url)) {
+                    return null;
+                }
+
+                appendRecord(encodeInvalidateRecord(url));
+                return removeEntry(url);
+            });
+        } catch (IOException ex) {
+            logger.warn("failed to invalidate \"{}\" in cache {}", url, directory, ex);
+            return;
+        }
+
+        if (previous != null) {
+            deleteBodyFile(previous.bodyFileName);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lockChannel.close();
+    }
+
+    /**
+     * Checks if the index file is still in the state it has been in when this
+     * instance last accessed it, so the entries held in memory are up-to-date.
+     *
+     * @return true if the index file has not changed, false if it has or its
+     *         state cannot be determined
+     */
+    private boolean isIndexUnchanged() {
+        IndexSignature loaded = loadedIndexSignature;
+        if (loaded == null) {
+            return false;
+        }
+
+        try {
+            return loaded.equals(readIndexSignature());
+        } catch (IOException ex) {
+            logger.debug("failed to check index {} for changes", indexFile, ex);
+            return false;
+        }
+    }
+
+    private IndexSignature readIndexSignature() throws IOException {
+        return new IndexSignature(Files.readAttributes(indexFile, BasicFileAttributes.class));
+    }
+
+    /**
+     * Performs the given operation while holding the JVM-wide lock on this
+     * instance and the file lock shared with other processes. The state of the
+     * index file is remembered afterwards, see {@link #isIndexUnchanged()}.
+     *
+     * @param <T> result type
+     * @param shared Is a shared lock sufficient (operation does not modify the
+     *        index)?
+     * @param operation operation to perform
+     * @return result of operation
+     * @throws IOException if locking or the operation fails
+     */
+    private synchronized <T> T withIndexLock(boolean shared, IndexOperation<T> operation) throws IOException {
+        try (FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, shared)) {
+            loadedIndexSignature = null;
+            T result = operation.perform();
+            loadedIndexSignature = readIndexSignature();
+            return result;
+        }
+    }
+
+    /**
+     * Reads all records appended to the index since it has last been read. If
+     * the index has been rewritten by another process, it is read completely
+     * into new entries which replace the previous ones only once complete.
+     * Records which are incomplete or fail their checksum end the index; they
+     * are truncated by the next append. Intact records which cannot be applied
+     * (e.g. of unknown types written by a newer version) are skipped and kept.
+     *
+     * @throws IOException if reading fails or the file is not an index
+     */
+    private void refreshIndex() throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+
+            if (header.getInt() != INDEX_MAGIC) {
+                throw new IOException(indexFile + " is not a response cache index");
+            }
+
+            long generation = header.getLong();
+            Map<String, Entry> entries = entriesByUrl;
+            if ((generation != loadedGeneration) || (indexPosition < 0)) {
+                entries = new ConcurrentHashMap<>();
+                totalSize = 0;
+                numIndexRecords = 0;
+                indexPosition = INDEX_HEADER_SIZE;
+                loadedGeneration = generation;
+            }
+
+            long remaining = channel.size() - indexPosition;
+            if (remaining > 0) {
+                try {
+                    readRecords(channel, entries, remaining);
+                } catch (IOException ex) {
+                    // entries may be incomplete, read everything again next time
+                    indexPosition = -1;
+                    throw ex;
+                }
+            }
+
+            entriesByUrl = entries;
+        }
+    }
+
+    private void readRecords(FileChannel channel, Map<String, Entry> entries, long remaining) throws IOException {
+        if (remaining > Integer.MAX_VALUE) {
+            throw new IOException(indexFile + " is too large");
+        }
+
+        ByteBuffer records = ByteBuffer.allocate((int) remaining);
+        readFully(channel, records, indexPosition);
+        records.flip();
+
+        while (records.remaining() >= RECORD_HEADER_SIZE) {
+            int length = records.getInt();
+            int checksum = records.getInt();
+            if ((length < 1) || (length > records.remaining())) {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            records.get(payload);
+            if (computeChecksum(payload) != checksum) {
+                break;
+            }
+
+            try {
+                applyRecord(entries, ByteBuffer.wrap(payload));
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                // record is intact, so it must not be truncated by the next append
+                logger.warn("skipping unsupported record in {} at position {}", indexFile, indexPosition, ex);
+            }
+
+            indexPosition += RECORD_HEADER_SIZE + length;
+            numIndexRecords++;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int numBytes = channel.read(buffer, position);
+            if (numBytes < 0) {
+                throw new IOException("unexpected end of file");
+            }
+
+            position += numBytes;
+        }
+    }
+
+    private static int computeChecksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private void applyRecord(Map<String, Entry> entries, ByteBuffer payload) {
+        byte type = payload.get();
+        String url = readString(payload);
+
+        if (type == RECORD_TYPE_INVALIDATE) {
+            removeEntry(entries, url);
+            return;
+        } else if (type != RECORD_TYPE_STORE) {
+            throw new IllegalArgumentException("unknown record type " + type);
+        }
+
+        String bodyFileName = readString(payload);
+        if ((bodyFileName == null) || !BODY_FILE_NAME_PATTERN.matcher(bodyFileName).matches()) {
+            throw new IllegalArgumentException("invalid body file name");
+        }
+
+        int bodyLength = payload.getInt();
+        String requestedLocation = readString(payload);
+        String retrievedLocation = readString(payload);
+        int statusCode = payload.getInt();
+        Instant storedTime = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+        String contentEncoding = readString(payload);
+        Header[] headers = readHeaders(payload);
+        Header[] varyingRequestHeaders = readHeaders(payload);
+
+        StoredResponse metadata = new StoredResponse(
+            requestedLocation,
+            retrievedLocation,
+            statusCode,
+            headers,
+            new byte[0],
+            contentEncoding,
+            storedTime,
+            varyingRequestHeaders //
+        );
+
+        putEntry(entries, url, new Entry(metadata, bodyFileName, bodyLength));
+    }
+
+    private Entry putEntry(String url, Entry entry) {
+        return putEntry(entriesByUrl, url, entry);
+    }
+
+    private Entry putEntry(Map<String, Entry> entries, String url, Entry entry) {
+        Entry previous = entries.put(url, entry);
+        totalSize += entry.bodyLength - ((previous != null) ? previous.bodyLength : 0);
+        return previous;
+    }
+
+    private Entry removeEntry(String url) {
+        return removeEntry(entriesByUrl, url);
+    }
+
+    private Entry removeEntry(Map<String, Entry> entries, String url) {
+        Entry previous = entries.remove(url);
+        if (previous != null) {
+            totalSize -= previous.bodyLength;
+        }
+        return previous;
+    }
+
+    /**
+     * Appends the given record to the index, truncating any incomplete or
+     * corrupted records left behind by a crash first.
+     *
+     * @param payload record payload
+     * @throws IOException if writing fails
+     */
+    private void appendRecord(byte[] payload) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(computeChecksum(payload));
+        record.put(payload);
+        record.flip();
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+            if (channel.size() > indexPosition) {
+                channel.truncate(indexPosition);
+            }
+
+            long position = indexPosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            channel.force(false);
+        }
+
+        indexPosition += RECORD_HEADER_SIZE + payload.length;
+        numIndexRecords++;
+    }
+
+    /**
+     * Evicts the entries which have been stored or revalidated the longest time
+     * ago until the total size no longer exceeds the maximum size. Entries are
+     * not sorted completely as usually only a few need to be evicted.
+     *
+     * @param keptUrl URL which must not be evicted
+     * @return names of body files of evicted entries
+     * @throws IOException if writing to the index fails
+     */
+    private List<String> evictIfNecessary(String keptUrl) throws IOException {
+        List<String> evictedBodyFileNames = new ArrayList<>();
+        if (totalSize <= maximumSize) {
+            return evictedBodyFileNames;
+        }
+
+        PriorityQueue<Map.Entry<String, Entry>> candidates = new PriorityQueue<>(
+            Math.max(1, entriesByUrl.size()),
+            Comparator.comparing(candidate -> candidate.getValue().metadata.getStoredTime()) //
+        );
+        candidates.addAll(entriesByUrl.entrySet());
+
+        while ((totalSize > maximumSize) && !candidates.isEmpty()) {
+            Map.Entry<String, Entry> candidate = candidates.poll();
+
+            String url = candidate.getKey();
+            if (url.equals(keptUrl)) {
+                continue;
+            }
+
+            appendRecord(encodeInvalidateRecord(url));
+            removeEntry(url);
+            evictedBodyFileNames.add(candidate.getValue().bodyFileName);
+        }
+
+        return evictedBodyFileNames;
+    }
+
+    private void compactIfNecessary() throws IOException {
+        if ((numIndexRecords <= COMPACTION_MINIMUM_RECORDS) || (numIndexRecords <= 2 * entriesByUrl.size())) {
+            return;
+        }
+
+        rewriteIndex();
+        deleteOrphanedFiles();
+    }
+
+    /**
+     * Writes a new index holding only the current entries and atomically
+     * replaces the existing index. The new index gets a new generation so other
+     * processes know they need to read it completely.
+     *
+     * @throws IOException if writing fails
+     */
+    private void rewriteIndex() throws IOException {
+        long generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while (generation == loadedGeneration);
+
+        List<byte[]> payloads = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entriesByUrl.entrySet()) {
+            payloads.add(encodeStoreRecord(entry.getKey(), entry.getValue()));
+        }
+
+        Path temporaryFile = Files.createTempFile(directory, TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+        long position = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+                header.putInt(INDEX_MAGIC);
+                header.putLong(generation);
+                header.flip();
+                position += writeFully(channel, header);
+
+                for (byte[] payload : payloads) {
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+                    record.putInt(payload.length);
+                    record.putInt(computeChecksum(payload));
+                    record.put(payload);
+                    record.flip();
+                    position += writeFully(channel, record);
+                }
+
+                channel.force(true);
+            }
+
+            Files.move(temporaryFile, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+
+        loadedGeneration = generation;
+        indexPosition = position;
+        numIndexRecords = payloads.size();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int numBytes = 0;
+        while (buffer.hasRemaining()) {
+            numBytes += channel.write(buffer);
+        }
+        return numBytes;
+    }
+
+    /**
+     * Deletes body and temporary files which are not referenced by the index,
+     * for example after a crash. Only files older than
+     * {@link #ORPHANED_FILE_MINIMUM_AGE} are deleted as other processes may
+     * just be about to reference them.
+     */
+    private void deleteOrphanedFiles() {
+        Set<String> referencedFileNames = new HashSet<>();
+        for (Entry entry : entriesByUrl.values()) {
+            referencedFileNames.add(entry.bodyFileName);
+        }
+
+        Instant threshold = getInstantNow().minus(ORPHANED_FILE_MINIMUM_AGE);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                boolean isCandidate = (fileName.endsWith(BODY_FILE_SUFFIX) && !referencedFileNames.contains(fileName))
+                    || (fileName.startsWith(TEMPORARY_FILE_PREFIX) && fileName.endsWith(TEMPORARY_FILE_SUFFIX));
+                if (!isCandidate) {
+                    continue;
+                }
+
+                try {
+                    if (Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException ex) {
+                    logger.debug("failed to delete orphaned file {}", file, ex);
+                }
+            }
+        } catch (IOException ex) {
+            logger.warn("failed to list {} for orphaned files", directory, ex);
+        }
+    }
+
+    /**
+     * Writes the given body to a new file which is moved into place
+     * atomically.
+     *
+     * @param body body to write
+     * @return name of written body file
+     * @throws IOException if writing fails
+     */
+    private String writeBody(byte[] body) throws IOException {
+        String bodyFileName = UUID.randomUUID().toString() + BODY_FILE_SUFFIX;
+
+        Path temporaryFile = Files.createTempFile(directory, TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(body));
+                channel.force(false);
+            }
+
+            Files.move(temporaryFile, directory.resolve(bodyFileName), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporaryFile);
+            throw ex;
+        }
+
+        return bodyFileName;
+    }
+
+    /**
+     * Reads the body of the given entry.
+     *
+     * @param entry entry to read the body of
+     * @return body; null if it cannot be read (e.g. has been replaced
+     *         concurrently)
+     */
+    private byte[] readBody(Entry entry) {
+        Path file = directory.resolve(entry.bodyFileName);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != entry.bodyLength) {
+                logger.warn("cached body {} has unexpected length, ignoring", file);
+                return null;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(entry.bodyLength);
+            readFully(channel, body, 0);
+            return body.array();
+        } catch (NoSuchFileException ex) {
+            logger.debug("cached body {} has been removed", file);
+            return null;
+        } catch (IOException ex) {
+            logger.warn("failed to read cached body {}", file, ex);
+            return null;
+        }
+    }
+
+    private void deleteBodyFile(String bodyFileName) {
+        try {
+            Files.deleteIfExists(directory.resolve(bodyFileName));
+        } catch (IOException ex) {
+            logger.warn("failed to delete cached body {} in {}", bodyFileName, directory, ex);
+        }
+    }
+
+    private static byte[] encodeStoreRecord(String url, Entry entry) throws IOException {
+        StoredResponse metadata = entry.metadata;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeByte(RECORD_TYPE_STORE);
+            writeString(dos, url);
+            writeString(dos, entry.bodyFileName);
+            dos.writeInt(entry.bodyLength);
+            writeString(dos, metadata.getRequestedLocation());
+            writeString(dos, metadata.getRetrievedLocation());
+            dos.writeInt(metadata.getStatusCode());
+            dos.writeLong(metadata.getStoredTime().getEpochSecond());
+            dos.writeInt(metadata.getStoredTime().getNano());
+            writeString(dos, metadata.getContentEncoding());
+            writeHeaders(dos, metadata.getHeaders());
+            writeHeaders(dos, metadata.getVaryingRequestHeaders());
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static byte[] encodeInvalidateRecord(String url) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeByte(RECORD_TYPE_INVALIDATE);
+            writeString(dos, url);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream dos, String s) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeHeaders(DataOutputStream dos, Header[] headers) throws IOException {
+        dos.writeInt(headers.length);
+        for (Header header : headers) {
+            writeString(dos, header.getName());
+            writeString(dos, header.getValue());
+        }
+    }
+
+    private static Header[] readHeaders(ByteBuffer buffer) {
+        int numHeaders = buffer.getInt();
+        if ((numHeaders < 0) || (numHeaders > buffer.remaining())) {
+            throw new IllegalArgumentException("invalid number of headers: " + numHeaders);
+        }
+
+        Header[] headers = new Header[numHeaders];
+        for (int i = 0; i < numHeaders; i++) {
+            String name = readString(buffer);
+            String value = readString(buffer);
+            if (name == null) {
+                throw new IllegalArgumentException("header name must not be null");
+            }
+
+            headers[i] = new BasicHeader(name, value);
+        }
+
+        return headers;
+    }
+
+    /**
+     * Returns current time via static method call {@link Instant#now()}. Required
+     * for unit-testing.
+     *
+     * @return current time via {@link Instant#now()}
+     */
+    Instant getInstantNow() {
+        return Instant.now();
+    }
+
+    /**
+     * Returns the number of stored responses, including those stored by other
+     * processes.
+     *
+     * @return number of stored responses
+     * @throws IOException if the index cannot be read
+     */
+    public int size() throws IOException {
+        return withIndexLock(true, () -> {
+            refreshIndex();
+            return entriesByUrl.size();
+        });
+    }
+
+    /**
+     * Returns the total size of all stored bodies, including those stored by
+     * other processes.
+     *
+     * @return total size of bodies in bytes
+     * @throws IOException if the index cannot be read
+     */
+    public long getTotalSize() throws IOException {
+        return withIndexLock(true, () -> {
+            refreshIndex();
+            return totalSize;
+        });
+    }
+
+    /**
+     * Returns the maximum total size of all stored bodies.
+     *
+     * @return maximum total size of bodies in bytes
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the directory responses are stored in.
+     *
+     * @return cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+}
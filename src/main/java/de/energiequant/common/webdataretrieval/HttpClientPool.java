@@ -0,0 +1,207 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.io.ModalCloseable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds long-lived {@link CloseableHttpClient}s to be shared by all
+ * {@link HttpRetrieval}s which have been configured to use this pool.
+ * <p>
+ * Clients are built on first use and indexed by the effective client
+ * configuration of the requesting {@link HttpRetrieval} (see
+ * {@link HttpRetrieval#describeHttpClientConfiguration()}), so retrievals of
+ * equal configuration reuse the same client and thus the same connections.
+ * Each client is backed by its own pooling connection manager.
+ * </p>
+ * <p>
+ * Retrievals using HTTP/2 (see {@link HttpVersionMode}) are provided with
+ * asynchronous clients, shared the same way.
+ * </p>
+ * <p>
+ * The pool is thread-safe. It should be closed on shutdown to release all
+ * connections; requests attempted after closing will fail.
+ * </p>
+ */
+public class HttpClientPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientPool.class.getName());
+
+    /**
+     * Default maximum number of connections to be held by each client in total.
+     */
+    public static final int DEFAULT_MAXIMUM_CONNECTIONS_TOTAL = 50;
+
+    /**
+     * Default maximum number of connections to be held by each client per route
+     * (usually per host).
+     */
+    public static final int DEFAULT_MAXIMUM_CONNECTIONS_PER_ROUTE = 10;
+
+    private final int maximumConnectionsTotal;
+    private final int maximumConnectionsPerRoute;
+    private final Map<List<Object>, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<List<Object>, CloseableHttpAsyncClient> asyncClients = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new pool using default connection limits.
+     */
+    public HttpClientPool() {
+        this(DEFAULT_MAXIMUM_CONNECTIONS_TOTAL, DEFAULT_MAXIMUM_CONNECTIONS_PER_ROUTE);
+    }
+
+    /**
+     * Creates a new pool applying the given connection limits to each client.
+     *
+     * @param maximumConnectionsTotal maximum number of connections held by each
+     *        client in total; must be positive
+     * @param maximumConnectionsPerRoute maximum number of connections held by each
+     *        client per route; must be positive and must not exceed total limit
+     */
+    public HttpClientPool(int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        if (maximumConnectionsTotal < 1) {
+            throw new IllegalArgumentException("maximum total number of connections must be positive");
+        }
+
+        if ((maximumConnectionsPerRoute < 1) || (maximumConnectionsPerRoute > maximumConnectionsTotal)) {
+            throw new IllegalArgumentException(
+                "maximum number of connections per route must be positive and must not exceed total limit");
+        }
+
+        this.maximumConnectionsTotal = maximumConnectionsTotal;
+        this.maximumConnectionsPerRoute = maximumConnectionsPerRoute;
+    }
+
+    /**
+     * Returns the client to be used for the given retrieval's configuration. The
+     * client is built by the retrieval if no client has been built for an equal
+     * configuration yet. Returned clients must not be closed by callers.
+     *
+     * @param retrieval retrieval to provide a client for
+     * @return shared client matching the retrieval's configuration
+     * @throws IllegalStateException if the pool has already been closed
+     */
+    CloseableHttpClient getHttpClient(final HttpRetrieval retrieval) {
+        if (closed) {
+            throw new IllegalStateException("HTTP client pool has already been closed");
+        }
+
+        List<Object> key = retrieval.describeHttpClientConfiguration();
+        CloseableHttpClient client = clients.computeIfAbsent(
+            key,
+            k -> retrieval.buildHttpClient(createConnectionManager()) //
+        );
+
+        // pool may have been closed concurrently, don't leak a new client
+        if (closed) {
+            closeClients();
+            throw new IllegalStateException("HTTP client pool has been closed concurrently");
+        }
+
+        return client;
+    }
+
+    /**
+     * Returns the started asynchronous client to be used for the given
+     * retrieval's configuration. The client is built by the retrieval if no client
+     * has been built for an equal configuration yet. Returned clients must not be
+     * closed by callers.
+     *
+     * @param retrieval retrieval to provide a client for
+     * @return shared asynchronous client matching the retrieval's configuration
+     * @throws IllegalStateException if the pool has already been closed
+     */
+    CloseableHttpAsyncClient getHttpAsyncClient(final HttpRetrieval retrieval) {
+        if (closed) {
+            throw new IllegalStateException("HTTP client pool has already been closed");
+        }
+
+        List<Object> key = retrieval.describeHttpClientConfiguration();
+        CloseableHttpAsyncClient client = asyncClients.computeIfAbsent(key, k -> {
+            CloseableHttpAsyncClient newClient = retrieval.buildHttpAsyncClient(
+                maximumConnectionsTotal,
+                maximumConnectionsPerRoute //
+            );
+            newClient.start();
+            return newClient;
+        });
+
+        // pool may have been closed concurrently, don't leak a new client
+        if (closed) {
+            closeClients();
+            throw new IllegalStateException("HTTP client pool has been closed concurrently");
+        }
+
+        return client;
+    }
+
+    /**
+     * Creates a new connection manager applying the configured limits.
+     *
+     * @return new connection manager
+     */
+    HttpClientConnectionManager createConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maximumConnectionsTotal)
+            .setMaxConnPerRoute(maximumConnectionsPerRoute)
+            .build();
+    }
+
+    /**
+     * Returns the number of clients currently held by this pool.
+     *
+     * @return number of held clients
+     */
+    public int size() {
+        return clients.size() + asyncClients.size();
+    }
+
+    /**
+     * Checks if the pool has been closed.
+     *
+     * @return Has the pool been closed?
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes all clients held by this pool. Connections are shut down gracefully.
+     * The pool cannot be used any more after it has been closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeClients();
+    }
+
+    private void closeClients() {
+        closeAll(clients.values().iterator());
+        closeAll(asyncClients.values().iterator());
+    }
+
+    private void closeAll(Iterator<? extends ModalCloseable> it) {
+        while (it.hasNext()) {
+            ModalCloseable client = it.next();
+            it.remove();
+
+            try {
+                client.close(CloseMode.GRACEFUL);
+            } catch (RuntimeException ex) {
+                logger.warn("failed to close pooled client", ex);
+            }
+        }
+    }
+}
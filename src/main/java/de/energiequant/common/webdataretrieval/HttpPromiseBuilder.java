@@ -1,6 +1,18 @@
 package de.energiequant.common.webdataretrieval;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -12,6 +24,15 @@ import java.util.function.Supplier;
  * retrieval's response body to the inferred return type T.
  * </p>
  * <p>
+ * Alternatively, a {@link StreamingDecoder} can be given which decodes the
+ * response body while it is being received instead of waiting for the full body
+ * to be buffered.
+ * </p>
+ * <p>
+ * Concurrent requests for the same URL can optionally be coalesced into a
+ * single request, see {@link #withRequestCoalescing()}.
+ * </p>
+ * <p>
  * Retrieval errors and exceptions should be expected and handled through
  * default API of {@link CompletableFuture}.
  * </p>
@@ -21,7 +42,13 @@ import java.util.function.Supplier;
 public class HttpPromiseBuilder<T> {
 
     private volatile HttpRetrieval lastProvidedConfigurationTemplate = createDefaultConfigurationTemplate();
+    private volatile HttpClientPool httpClientPool = null;
+    private volatile AsyncHttpRetrievalEngine asyncEngine = null;
+    private volatile Executor executor = null;
+    private volatile boolean isRequestCoalescing = false;
     private final Function<HttpRetrieval, T> decoder;
+    private final StreamingDecoder<T> streamingDecoder;
+    private final ConcurrentMap<CoalescingKey, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
 
     /**
      * Constructs a new builder applying the given decoder to all requests.
@@ -32,6 +59,28 @@ public class HttpPromiseBuilder<T> {
      */
     public HttpPromiseBuilder(Function<HttpRetrieval, T> decoder) {
         this.decoder = decoder;
+        this.streamingDecoder = null;
+    }
+
+    /**
+     * Constructs a new builder applying the given streaming decoder to all
+     * requests.
+     * <p>
+     * The decoder is only invoked for responses indicating complete content (see
+     * {@link HttpRetrieval#hasCompleteContentResponseStatus()}) and reads the body
+     * while it is being received, so it does not need to be held in memory.
+     * Requests performed through an asynchronous engine, using HTTP/2 or using a
+     * {@link ResponseCache} receive the full body before it is passed to the
+     * decoder.
+     * </p>
+     *
+     * @param streamingDecoder decodes the bodies of all successful responses to
+     *        type T; should be stateless in order to reuse builder and apply
+     *        concurrently
+     */
+    public HttpPromiseBuilder(StreamingDecoder<T> streamingDecoder) {
+        this.decoder = null;
+        this.streamingDecoder = streamingDecoder;
     }
 
     /**
@@ -64,42 +113,371 @@ public class HttpPromiseBuilder<T> {
         return this;
     }
 
+    /**
+     * Subsequently initiated requests will obtain their HTTP clients from the
+     * given pool, regardless of the pool set on the configuration template.
+     * <p>
+     * Sharing a pool between builders and other {@link HttpRetrieval}s allows
+     * connections to be reused for all requests of equal configuration. The pool
+     * is not closed by the builder.
+     * </p>
+     *
+     * @param httpClientPool pool to obtain shared HTTP clients from
+     * @return same builder for method-chaining
+     */
+    public HttpPromiseBuilder<T> withHttpClientPool(HttpClientPool httpClientPool) {
+        if (httpClientPool == null) {
+            throw new IllegalArgumentException("HTTP client pool must not be null!");
+        }
+
+        this.httpClientPool = httpClientPool;
+
+        return this;
+    }
+
+    /**
+     * Subsequently initiated requests will be performed through the given
+     * asynchronous engine instead of blocking a thread for each request.
+     * <p>
+     * Only decoding will occupy threads of the executor; the network round trip
+     * is handled by the engine's I/O reactor. The engine is not closed by the
+     * builder.
+     * </p>
+     *
+     * @param asyncEngine engine to perform requests with
+     * @return same builder for method-chaining
+     */
+    public HttpPromiseBuilder<T> withAsyncEngine(AsyncHttpRetrievalEngine asyncEngine) {
+        if (asyncEngine == null) {
+            throw new IllegalArgumentException("asynchronous engine must not be null!");
+        }
+
+        this.asyncEngine = asyncEngine;
+
+        return this;
+    }
+
+    /**
+     * Subsequently initiated requests will be run on the given executor.
+     * <p>
+     * Unless configured otherwise, the common {@link ForkJoinPool} is used, which
+     * is shared with all other asynchronous tasks of the JVM and is sized for
+     * CPU-bound work. Blocking requests should rather be run on a dedicated pool,
+     * see {@link RetrievalExecutors#newBoundedIoPool(String, int, int)}. If an
+     * asynchronous engine is used, the executor is only used for decoding.
+     * </p>
+     * <p>
+     * Requests rejected by the executor result in futures completing
+     * exceptionally with a {@link RejectedExecutionException}. The executor is not
+     * shut down by the builder.
+     * </p>
+     *
+     * @param executor executor to run requests on
+     * @return same builder for method-chaining
+     */
+    public HttpPromiseBuilder<T> withExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null!");
+        }
+
+        this.executor = executor;
+
+        return this;
+    }
+
+    /**
+     * Subsequently initiated requests will each be run on a new virtual thread.
+     * Virtual threads require Java 21 or later.
+     * <p>
+     * This is a shorthand for {@link #withExecutor(Executor)} using
+     * {@link RetrievalExecutors#getSharedVirtualThreadExecutor()}, so all
+     * builders share the same executor which does not need to be shut down.
+     * </p>
+     *
+     * @return same builder for method-chaining
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     *         by the runtime
+     */
+    public HttpPromiseBuilder<T> withVirtualThreads() {
+        return withExecutor(RetrievalExecutors.getSharedVirtualThreadExecutor());
+    }
+
+    /**
+     * Subsequently initiated requests will be coalesced with requests of the same
+     * URL which are still in flight and have been initiated by this builder with
+     * the same configuration template, client pool, asynchronous engine and
+     * executor.
+     * <p>
+     * Only the first of such concurrent requests is actually performed and
+     * decoded; all others receive the same result or failure. This avoids
+     * repeatedly fetching and decoding the same content if many callers request
+     * it at the same time, for example after a cached response has expired.
+     * Requests are only coalesced while in flight; once completed, the next
+     * request is performed again.
+     * </p>
+     * <p>
+     * Each caller receives its own future which can be cancelled without
+     * affecting other callers. The shared request is only aborted once all
+     * callers have cancelled their futures, see {@link HttpRetrieval#abort()}.
+     * </p>
+     * <p>
+     * As decoded results are shared between all coalesced callers, they must not
+     * be modified by callers.
+     * </p>
+     * <p>
+     * This is a shorthand for {@link #withRequestCoalescing(boolean)} enabling
+     * coalescing.
+     * </p>
+     *
+     * @return same builder for method-chaining
+     */
+    public HttpPromiseBuilder<T> withRequestCoalescing() {
+        return withRequestCoalescing(true);
+    }
+
+    /**
+     * Enables or disables coalescing of subsequently initiated requests, see
+     * {@link #withRequestCoalescing()}. Requests already in flight are not
+     * affected when disabling coalescing.
+     *
+     * @param isRequestCoalescing true to coalesce concurrent requests, false to
+     *        perform each request individually
+     * @return same builder for method-chaining
+     */
+    public HttpPromiseBuilder<T> withRequestCoalescing(boolean isRequestCoalescing) {
+        this.isRequestCoalescing = isRequestCoalescing;
+
+        return this;
+    }
+
     /**
      * The returned future retrieves the decoded content from specified URL. Failure
      * to retrieve or decode the content (including exceptions of any kind) should
      * be expected and can easily be handled through default
      * {@link CompletableFuture} API.
+     * <p>
+     * If a response exceeds a size limit set on the configuration, the future
+     * completes exceptionally caused by a
+     * {@link ResponseSizeLimitExceededException}.
+     * </p>
+     * <p>
+     * If request coalescing is enabled (see {@link #withRequestCoalescing()}),
+     * the future may share its result with other concurrent requests.
+     * </p>
      *
      * @param url URL of content to be retrieved
      * @return future retrieving decoded content from specified URL
      */
     public CompletableFuture<T> requestByGet(CharSequence url) {
         final HttpRetrieval configurationTemplate = this.lastProvidedConfigurationTemplate;
+        final HttpClientPool httpClientPool = this.httpClientPool;
+        final AsyncHttpRetrievalEngine asyncEngine = this.asyncEngine;
+        final Executor executor = getEffectiveExecutor();
 
-        CompletableFuture<T> future = CompletableFuture.supplyAsync(new Supplier<T>() {
-            @Override
-            public T get() {
-                HttpRetrieval retrieval = createRetrieval();
-                configurationTemplate.copyConfigurationTo(retrieval);
-
-                boolean success = retrieval.requestByGet(url);
+        if (!isRequestCoalescing || (url == null)) {
+            return performRequest(url, createConfiguredRetrieval(configurationTemplate, httpClientPool), asyncEngine, executor);
+        }
 
-                if (!success) {
-                    throw new RuntimeException("GET request for " + url + " failed on network level.");
+        CoalescingKey key = new CoalescingKey(url.toString(), configurationTemplate, httpClientPool, asyncEngine, executor);
+        while (true) {
+            InFlightRequest created = null;
+            InFlightRequest inFlight = inFlightRequests.get(key);
+            if (inFlight == null) {
+                created = new InFlightRequest(key);
+                inFlight = inFlightRequests.putIfAbsent(key, created);
+                if (inFlight == null) {
+                    inFlight = created;
                 }
+            }
 
-                if (!retrieval.hasCompleteContentResponseStatus()) {
-                    throw new RuntimeException(
-                        "GET request for " + url + " returned incomplete content by HTTP response status code.");
+            CompletableFuture<T> subscriber = inFlight.subscribe();
+            if (subscriber == null) {
+                // all previous subscribers cancelled, request needs to be performed again
+                inFlightRequests.remove(key, inFlight);
+                continue;
+            }
+
+            if (inFlight == created) {
+                HttpRetrieval retrieval = createConfiguredRetrieval(configurationTemplate, httpClientPool);
+                created.start(retrieval, performRequest(url, retrieval, asyncEngine, executor));
+            }
+
+            return subscriber;
+        }
+    }
+
+    /**
+     * Performs a single request without any coalescing.
+     *
+     * @param url URL of content to be retrieved
+     * @param retrieval configured retrieval to perform the request with
+     * @param asyncEngine engine to perform the request with; null to perform a
+     *        blocking request on the executor
+     * @param executor executor to run the request or decoding on
+     * @return future retrieving decoded content from specified URL
+     */
+    private CompletableFuture<T> performRequest(CharSequence url, HttpRetrieval retrieval, AsyncHttpRetrievalEngine asyncEngine, Executor executor) {
+        if (asyncEngine != null) {
+            return asyncEngine.requestByGet(retrieval, url, executor)
+                .thenApply(success -> decode(retrieval, success, url));
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(new Supplier<T>() {
+                @Override
+                public T get() {
+                    if ((streamingDecoder != null) && (retrieval.getResponseCache() == null)) {
+                        return requestAndDecodeStreaming(retrieval, url);
+                    }
+
+                    boolean success = retrieval.requestByGet(url);
+
+                    return decode(retrieval, success, url);
                 }
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+
+        return future;
+    }
+
+    /**
+     * Returns the executor to run requests on.
+     *
+     * @return configured executor; common {@link ForkJoinPool} if unconfigured
+     */
+    Executor getEffectiveExecutor() {
+        Executor executor = this.executor;
+
+        return (executor != null) ? executor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Creates a new {@link HttpRetrieval} configured by the given template.
+     *
+     * @param configurationTemplate configuration to apply
+     * @param httpClientPool pool to override template's pool with; null to keep
+     *        template's pool
+     * @return configured retrieval
+     */
+    private HttpRetrieval createConfiguredRetrieval(HttpRetrieval configurationTemplate, HttpClientPool httpClientPool) {
+        HttpRetrieval retrieval = createRetrieval();
+        configurationTemplate.copyConfigurationTo(retrieval);
+        if (httpClientPool != null) {
+            retrieval.setHttpClientPool(httpClientPool);
+        }
+
+        return retrieval;
+    }
+
+    /**
+     * Performs a request passing the response body to the streaming decoder while
+     * it is being received.
+     *
+     * @param retrieval retrieval to perform the request with
+     * @param url URL to request
+     * @return decoded content
+     * @throws CompletionException caused by {@link ResponseSizeLimitExceededException}
+     *         if the response exceeded a configured size limit or caused by the
+     *         {@link IOException} the decoder failed with
+     * @throws RuntimeException if the request failed or content is incomplete
+     */
+    private T requestAndDecodeStreaming(HttpRetrieval retrieval, CharSequence url) {
+        AtomicReference<T> decoded = new AtomicReference<>();
+        AtomicReference<IOException> decoderFailure = new AtomicReference<>();
 
-                T decoded = decoder.apply(retrieval);
+        boolean success = retrieval.requestByGet(url, (streamingRetrieval, content) -> {
+            if (!streamingRetrieval.hasCompleteContentResponseStatus()) {
+                // body is not decoded; status is checked again after the request
+                return;
+            }
 
-                return decoded;
+            try {
+                decoded.set(streamingDecoder.decode(streamingRetrieval, content));
+            } catch (IOException ex) {
+                decoderFailure.set(ex);
+                throw ex;
             }
         });
 
-        return future;
+        checkResponseSizeLimit(retrieval);
+
+        IOException failure = decoderFailure.get();
+        if (failure != null) {
+            throw new CompletionException(failure);
+        }
+
+        checkResponse(retrieval, success, url);
+
+        return decoded.get();
+    }
+
+    /**
+     * Checks the result of a request and applies the decoder. Streaming decoders
+     * are fed from the already buffered response body.
+     *
+     * @param retrieval retrieval holding the response
+     * @param success network-level success as indicated by the request
+     * @param url requested URL, for error messages
+     * @return decoded content
+     * @throws CompletionException caused by {@link ResponseSizeLimitExceededException}
+     *         if the response exceeded a configured size limit or caused by the
+     *         {@link IOException} a streaming decoder failed with
+     * @throws RuntimeException if the request failed or content is incomplete
+     */
+    private T decode(HttpRetrieval retrieval, boolean success, CharSequence url) {
+        checkResponseSizeLimit(retrieval);
+        checkResponse(retrieval, success, url);
+
+        if (streamingDecoder != null) {
+            ReadableByteChannel body = retrieval.openResponseBodyChannel();
+            try (InputStream content = (body != null) ? Channels.newInputStream(body) : new ByteArrayInputStream(new byte[0])) {
+                return streamingDecoder.decode(retrieval, content);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }
+
+        T decoded = decoder.apply(retrieval);
+
+        return decoded;
+    }
+
+    /**
+     * Fails if the response exceeded a configured size limit.
+     *
+     * @param retrieval retrieval holding the response
+     * @throws CompletionException caused by {@link ResponseSizeLimitExceededException}
+     *         if the response exceeded a configured size limit
+     */
+    private void checkResponseSizeLimit(HttpRetrieval retrieval) {
+        ResponseSizeLimitExceededException sizeLimitExceeded = retrieval.getResponseSizeLimitExceededException();
+        if (sizeLimitExceeded != null) {
+            // thrown as cause without additional wrapping to be easily identifiable
+            throw new CompletionException(sizeLimitExceeded);
+        }
+    }
+
+    /**
+     * Checks that a request succeeded and indicated complete content.
+     *
+     * @param retrieval retrieval holding the response
+     * @param success network-level success as indicated by the request
+     * @param url requested URL, for error messages
+     * @throws RuntimeException if the request failed or content is incomplete
+     */
+    private void checkResponse(HttpRetrieval retrieval, boolean success, CharSequence url) {
+        if (!success) {
+            throw new RuntimeException("GET request for " + url + " failed on network level.");
+        }
+
+        if (!retrieval.hasCompleteContentResponseStatus()) {
+            throw new RuntimeException(
+                "GET request for " + url + " returned incomplete content by HTTP response status code.");
+        }
     }
 
     /**
@@ -120,4 +498,164 @@ public class HttpPromiseBuilder<T> {
     HttpRetrieval createDefaultConfigurationTemplate() {
         return new HttpRetrieval();
     }
+
+    /**
+     * Identifies requests which can be coalesced: requests of same URL using
+     * the same instances of configuration template, client pool, asynchronous
+     * engine and executor.
+     */
+    private static final class CoalescingKey {
+        private final String url;
+        private final HttpRetrieval configurationTemplate;
+        private final HttpClientPool httpClientPool;
+        private final AsyncHttpRetrievalEngine asyncEngine;
+        private final Executor executor;
+
+        CoalescingKey(String url, HttpRetrieval configurationTemplate, HttpClientPool httpClientPool, AsyncHttpRetrievalEngine asyncEngine, Executor executor) {
+            this.url = url;
+            this.configurationTemplate = configurationTemplate;
+            this.httpClientPool = httpClientPool;
+            this.asyncEngine = asyncEngine;
+            this.executor = executor;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof CoalescingKey)) {
+                return false;
+            }
+
+            CoalescingKey other = (CoalescingKey) obj;
+            return url.equals(other.url)
+                && (configurationTemplate == other.configurationTemplate)
+                && (httpClientPool == other.httpClientPool)
+                && (asyncEngine == other.asyncEngine)
+                && (executor == other.executor);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = url.hashCode();
+            hash = 31 * hash + System.identityHashCode(configurationTemplate);
+            hash = 31 * hash + System.identityHashCode(httpClientPool);
+            hash = 31 * hash + System.identityHashCode(asyncEngine);
+            hash = 31 * hash + System.identityHashCode(executor);
+            return hash;
+        }
+    }
+
+    /**
+     * Tracks a request which is in flight and all callers subscribed to its
+     * result.
+     */
+    private final class InFlightRequest {
+        private final CoalescingKey key;
+        private final CompletableFuture<T> shared = new CompletableFuture<>();
+
+        // guarded by synchronizing on this instance
+        private int numSubscribers = 0;
+        private boolean isAbandoned = false;
+        private HttpRetrieval retrieval = null;
+        private CompletableFuture<T> request = null;
+
+        InFlightRequest(CoalescingKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Subscribes a new caller to the result of the request.
+         *
+         * @return future completing with the shared result, cancellable without
+         *         affecting other subscribers; null if the request has already
+         *         been abandoned because all previous subscribers cancelled
+         */
+        synchronized CompletableFuture<T> subscribe() {
+            if (isAbandoned) {
+                return null;
+            }
+
+            numSubscribers++;
+
+            CompletableFuture<T> subscriber = new CompletableFuture<>();
+            shared.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    subscriber.completeExceptionally(ex);
+                } else {
+                    subscriber.complete(result);
+                }
+            });
+            subscriber.whenComplete((result, ex) -> {
+                if (subscriber.isCancelled()) {
+                    unsubscribe();
+                }
+            });
+
+            return subscriber;
+        }
+
+        /**
+         * Unsubscribes a cancelled caller, abandoning the request if it was the
+         * last subscriber.
+         */
+        private synchronized void unsubscribe() {
+            numSubscribers--;
+            if ((numSubscribers > 0) || shared.isDone()) {
+                return;
+            }
+
+            isAbandoned = true;
+            inFlightRequests.remove(key, this);
+            shared.cancel(false);
+
+            if (request != null) {
+                abort(retrieval, request);
+            }
+        }
+
+        /**
+         * Starts passing the result of the actually performed request to all
+         * subscribers.
+         *
+         * @param retrieval retrieval performing the request, aborted if the
+         *        request is abandoned
+         * @param request future of performed request
+         */
+        void start(HttpRetrieval retrieval, CompletableFuture<T> request) {
+            synchronized (this) {
+                this.retrieval = retrieval;
+                this.request = request;
+                if (isAbandoned) {
+                    abort(retrieval, request);
+                }
+            }
+
+            request.whenComplete((result, ex) -> {
+                // completed requests must not be joined by further callers
+                inFlightRequests.remove(key, this);
+
+                if (ex != null) {
+                    shared.completeExceptionally(ex);
+                } else {
+                    shared.complete(result);
+                }
+            });
+        }
+
+        /**
+         * Aborts an abandoned request. Cancelling the future alone would only
+         * skip decoding; the exchange itself is stopped by aborting the
+         * retrieval.
+         *
+         * @param retrieval retrieval performing the request
+         * @param request future of performed request
+         */
+        private void abort(HttpRetrieval retrieval, CompletableFuture<T> request) {
+            request.cancel(false);
+            retrieval.abort();
+        }
+    }
 }
@@ -1,34 +1,57 @@
 package de.energiequant.common.webdataretrieval;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.classic.HttpClient;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.protocol.RedirectLocations;
+import org.apache.hc.core5.concurrent.Cancellable;
 import org.apache.hc.core5.http.ClassicHttpRequest;
 import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.io.CloseMode;
 import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,10 +63,33 @@ public class HttpRetrieval {
     protected Duration timeout = Duration.ofSeconds(30);
     protected String userAgent = "HttpRetrieval";
     protected int maximumFollowedRedirects = 5;
-    protected Map<String, InputStreamFactory> unmodifiableContentDecoderMap = null;
+    protected volatile Map<String, InputStreamFactory> unmodifiableContentDecoderMap = null;
+    protected HttpClientPool httpClientPool = null;
+    protected HttpVersionMode httpVersionMode = HttpVersionMode.HTTP_1_1;
+    protected BodyBufferPool bodyBufferPool = null;
+    protected long responseBodySpillThreshold = -1;
+    protected long maximumResponseBodySize = -1;
+    protected long maximumCompressedResponseBodySize = -1;
+    protected boolean responseBodyDecodingDeferred = false;
+    protected ResponseCache responseCache = null;
     protected CompletedHttpResponse httpResponse = null;
     private HttpClientContext httpClientContext = null;
     private String lastRequestedLocation = null;
+    private volatile Cancellable currentRequest = null;
+    private volatile ResponseSizeLimitExceededException responseSizeLimitExceededException = null;
+    private volatile boolean isResponseBodyAbandoned = false;
+    private volatile boolean isAborted = false;
+    private StoredResponse cachedResponse = null;
+    private boolean isResponseNotModified = false;
+    private boolean isResponseFromCache = false;
+    private String cachedRetrievedLocation = null;
+
+    private static final int DEFAULT_BODY_BUFFER_SIZE = 8192;
+    private static final int MAXIMUM_BODY_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MAXIMUM_PRESIZED_BODY_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final long FILE_TRANSFER_CHUNK_SIZE = 1024 * 1024;
+    private static final String TEMPORARY_FILE_SUFFIX = ".part";
+    private static final String SPILL_FILE_PREFIX = "HttpRetrieval-body-";
 
     private static final Pattern PATTERN_URL_PROTOCOL = Pattern.compile("^([a-z]+)://.*", Pattern.CASE_INSENSITIVE);
     private static final Set<String> supportedUrlProtocols = new TreeSet<String>(Arrays.asList(new String[] {
@@ -53,32 +99,317 @@ public class HttpRetrieval {
     }));
 
     class CompletedHttpResponse {
-        private final byte[] bytes;
+        private byte[] bytes;
+        private int length;
+        private ByteBuffer mappedBytes;
+        private final BodyBufferPool bodyBufferPool;
+        private final long spillThreshold;
         private final int code;
         private final Header[] headers;
+        private final String contentEncoding;
+        private boolean isShared = false;
+
+        CompletedHttpResponse(int code, Header[] headers, byte[] bytes) {
+            this(code, headers, bytes, null);
+        }
+
+        /**
+         * Creates a response holding the given body.
+         *
+         * @param code HTTP status code
+         * @param headers response headers
+         * @param bytes response body
+         * @param contentEncoding Content-Encoding the body is still encoded with;
+         *        null if the body has already been decoded
+         */
+        CompletedHttpResponse(int code, Header[] headers, byte[] bytes, String contentEncoding) {
+            this.code = code;
+            this.headers = headers;
+            this.bytes = bytes;
+            this.length = (bytes != null) ? bytes.length : 0;
+            this.bodyBufferPool = null;
+            this.spillThreshold = -1;
+            this.contentEncoding = contentEncoding;
+        }
 
-        CompletedHttpResponse(CloseableHttpResponse actualResponse) {
+        /**
+         * Creates a response by reading the body of the given upstream response.
+         *
+         * @param actualResponse upstream response to read
+         * @param bodyBufferPool pool to obtain body buffers from; may be null
+         * @param spillThreshold maximum body size to hold on heap; negative to
+         *        never spill
+         * @param contentEncoding Content-Encoding the entity is still encoded with
+         *        and should be retained as; null if the entity has already been
+         *        decoded by the client
+         * @throws ResponseSizeLimitExceededException if a size limit has been
+         *         exceeded
+         */
+        CompletedHttpResponse(CloseableHttpResponse actualResponse, BodyBufferPool bodyBufferPool, long spillThreshold, String contentEncoding) throws ResponseSizeLimitExceededException {
             this.code = actualResponse.getCode();
 
             this.headers = actualResponse.getHeaders();
 
-            byte[] bytes = null;
+            this.bodyBufferPool = bodyBufferPool;
+            this.spillThreshold = spillThreshold;
+            this.contentEncoding = contentEncoding;
+
             try {
-                bytes = IOUtils.toByteArray(actualResponse.getEntity().getContent());
+                HttpEntity entity = actualResponse.getEntity();
+                if (entity == null) {
+                    // responses such as 304 do not have a body
+                    bytes = new byte[0];
+                    length = 0;
+                    return;
+                }
+
+                long contentLength = entity.getContentLength();
+                checkAnnouncedContentLength(contentLength, contentEncoding != null);
+
+                InputStream content = entity.getContent();
+                content = (contentEncoding != null) ? limitEncodedContent(content) : limitDecodedContent(content);
+                readBody(content, contentLength);
+            } catch (ResponseSizeLimitExceededException ex) {
+                release();
+                throw ex;
             } catch (IOException | UnsupportedOperationException ex) {
                 logger.warn("Failed to copy bytes from HTTP response.", ex);
+                release();
             }
-            this.bytes = bytes;
+        }
+
+        /**
+         * Reads the body from the given stream. The buffer is pre-sized if the
+         * length is known in advance; as the length is announced by the server,
+         * which may not be trusted, the initial size is capped and the buffer is
+         * grown as content actually arrives. Buffers are obtained from the pool,
+         * if set.
+         * Bodies exceeding the spill threshold, if set, are spilled to a file.
+         *
+         * @param is stream to read from
+         * @param contentLength expected length of content; negative if unknown
+         * @throws IOException if reading fails
+         */
+        private void readBody(InputStream is, long contentLength) throws IOException {
+            if (contentLength > MAXIMUM_BODY_BUFFER_SIZE) {
+                // could neither be buffered nor mapped, don't even start to read
+                throw new IOException("announced response body length exceeds maximum size to be held");
+            }
+
+            boolean isKnownLength = (contentLength >= 0) && (contentLength <= MAXIMUM_BODY_BUFFER_SIZE);
+
+            boolean isSpillEnabled = (spillThreshold >= 0);
+
+            if (isSpillEnabled && (contentLength > spillThreshold)) {
+                bytes = null;
+                length = 0;
+                spillBody(is, -1);
+                return;
+            }
+
+            bytes = allocateBodyBuffer(
+                isKnownLength
+                    ? (int) Math.min(contentLength, MAXIMUM_PRESIZED_BODY_BUFFER_SIZE)
+                    : DEFAULT_BODY_BUFFER_SIZE //
+            );
+            length = 0;
+
+            while (true) {
+                // never buffer more than the spill threshold on heap
+                int capacity = isSpillEnabled ? (int) Math.min(bytes.length, spillThreshold) : bytes.length;
+
+                if (length == capacity) {
+                    // probe for end of stream before growing, so we don't need
+                    // to copy if the buffer has been sized exactly
+                    int nextByte = is.read();
+                    if (nextByte < 0) {
+                        break;
+                    }
+
+                    if (isSpillEnabled && (length >= spillThreshold)) {
+                        spillBody(is, nextByte);
+                        return;
+                    }
+
+                    growBodyBuffer();
+                    bytes[length++] = (byte) nextByte;
+                    continue;
+                }
+
+                int read = is.read(bytes, length, capacity - length);
+                if (read < 0) {
+                    break;
+                }
+
+                length += read;
+            }
+
+            if ((bodyBufferPool == null) && (length != bytes.length)) {
+                bytes = Arrays.copyOf(bytes, length);
+            }
+        }
+
+        /**
+         * Writes the body to a temporary file which is then mapped to memory. Any
+         * bytes buffered so far are written first, followed by the given pending
+         * byte (if any) and the remainder of the stream. Writing stops as soon as
+         * the body exceeds the maximum size that can be mapped. The file is
+         * deleted once it has been mapped; if the operating system does not
+         * permit that, deletion is deferred until JVM exit.
+         *
+         * @param is stream to read remaining content from
+         * @param pendingByte byte already read from the stream, negative if none
+         * @throws IOException if spilling fails
+         */
+        private void spillBody(InputStream is, int pendingByte) throws IOException {
+            Path file = Files.createTempFile(SPILL_FILE_PREFIX, TEMPORARY_FILE_SUFFIX);
+
+            long position;
+            try (
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE) //
+            ) {
+                if (bytes != null) {
+                    ByteBuffer buffered = ByteBuffer.wrap(bytes, 0, length);
+                    while (buffered.hasRemaining()) {
+                        channel.write(buffered);
+                    }
+                }
+
+                if (pendingByte >= 0) {
+                    channel.write(ByteBuffer.wrap(new byte[] { (byte) pendingByte }));
+                }
+
+                // source channel must not be closed, stream is owned by response
+                ReadableByteChannel source = Channels.newChannel(is);
+                position = channel.position();
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, FILE_TRANSFER_CHUNK_SIZE)) > 0) {
+                    position += transferred;
+
+                    if (position > MAXIMUM_BODY_BUFFER_SIZE) {
+                        throw new IOException("response body exceeds maximum size to be mapped");
+                    }
+                }
+
+                mappedBytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, position).asReadOnlyBuffer();
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                    // some operating systems do not allow mapped files to be deleted
+                    logger.debug("failed to delete spilled response body {}, deferring until exit", file, ex);
+                    file.toFile().deleteOnExit();
+                }
+            }
+
+            if ((bodyBufferPool != null) && (bytes != null)) {
+                bodyBufferPool.release(bytes);
+            }
+
+            bytes = null;
+            length = (int) position;
+        }
+
+        private byte[] allocateBodyBuffer(int minimumSize) {
+            return (bodyBufferPool != null) ? bodyBufferPool.acquire(minimumSize) : new byte[minimumSize];
+        }
+
+        private void growBodyBuffer() throws IOException {
+            if (bytes.length >= MAXIMUM_BODY_BUFFER_SIZE) {
+                throw new IOException("response body exceeds maximum buffer size");
+            }
+
+            long grownSize = Math.max(2L * bytes.length, (long) bytes.length + DEFAULT_BODY_BUFFER_SIZE);
+            byte[] grown = allocateBodyBuffer((int) Math.min(grownSize, MAXIMUM_BODY_BUFFER_SIZE));
+            System.arraycopy(bytes, 0, grown, 0, length);
+
+            if (bodyBufferPool != null) {
+                bodyBufferPool.release(bytes);
+            }
+
+            bytes = grown;
         }
 
         int getCode() {
             return code;
         }
 
+        String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        /**
+         * Marks the body as being shared with a {@link ResponseCache}, so it is
+         * copied before being handed out as an array which may be modified.
+         */
+        void markShared() {
+            isShared = true;
+        }
+
+        /**
+         * Returns the body as an array of exact length. Pooled and shared buffers
+         * are always copied, so the returned array is never shared with a
+         * {@link BodyBufferPool} or {@link ResponseCache} and remains valid after
+         * {@link #release()}.
+         *
+         * @return body of exact length; null if there is no body
+         */
         public byte[] getEntityContent() {
+            if ((bytes == null) && (mappedBytes != null)) {
+                // materialize spilled body only on demand
+                bytes = new byte[length];
+                mappedBytes.duplicate().get(bytes);
+            }
+
+            if (bytes == null) {
+                return null;
+            }
+
+            if ((bodyBufferPool == null) && !isShared && (length == bytes.length)) {
+                return bytes;
+            }
+
+            return Arrays.copyOf(bytes, length);
+        }
+
+        int getEntityLength() {
+            return length;
+        }
+
+        byte[] getEntityBackingArray() {
             return bytes;
         }
 
+        ByteBuffer getEntityMapped() {
+            return (mappedBytes != null) ? mappedBytes.duplicate() : null;
+        }
+
+        ByteBuffer getEntityBuffer() {
+            if (mappedBytes != null) {
+                return mappedBytes.duplicate();
+            }
+
+            if (bytes == null) {
+                return null;
+            }
+
+            return ByteBuffer.wrap(bytes, 0, length).slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * Releases the body buffer to the pool it has been obtained from, if any.
+         * The body is not available any more afterwards.
+         */
+        void release() {
+            if ((bodyBufferPool != null) && (bytes != null) && (mappedBytes == null)) {
+                bodyBufferPool.release(bytes);
+            }
+
+            bytes = null;
+            mappedBytes = null;
+            length = 0;
+        }
+
         public Header[] getHeaders() {
             return headers;
         }
@@ -95,6 +426,14 @@ public class HttpRetrieval {
         other.setTimeout(getTimeout());
         other.setUserAgent(getUserAgent());
         other.setMaximumFollowedRedirects(getMaximumFollowedRedirects());
+        other.setHttpClientPool(getHttpClientPool());
+        other.setHttpVersionMode(getHttpVersionMode());
+        other.setBodyBufferPool(getBodyBufferPool());
+        other.setResponseBodySpillThreshold(getResponseBodySpillThreshold());
+        other.setMaximumResponseBodySize(getMaximumResponseBodySize());
+        other.setMaximumCompressedResponseBodySize(getMaximumCompressedResponseBodySize());
+        other.setResponseBodyDecodingDeferred(isResponseBodyDecodingDeferred());
+        other.setResponseCache(getResponseCache());
     }
 
     /**
@@ -182,6 +521,284 @@ public class HttpRetrieval {
         return this.maximumFollowedRedirects;
     }
 
+    /**
+     * Sets the pool to obtain shared HTTP clients from. If no pool is set, a new
+     * client will be built and closed for each request.
+     * <p>
+     * Shared clients keep connections alive between requests, so a pool should be
+     * used if requests are performed frequently. The pool is not closed by this
+     * instance.
+     * </p>
+     *
+     * @param httpClientPool pool to obtain clients from; null to build a new
+     *        client per request
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setHttpClientPool(final HttpClientPool httpClientPool) {
+        this.httpClientPool = httpClientPool;
+
+        return this;
+    }
+
+    /**
+     * Returns the pool to obtain shared HTTP clients from.
+     *
+     * @return pool to obtain clients from; null if a new client is built per
+     *         request
+     */
+    public HttpClientPool getHttpClientPool() {
+        return this.httpClientPool;
+    }
+
+    /**
+     * Sets the HTTP protocol version(s) to be used for all following requests.
+     * Requests using HTTP/2 are performed through an asynchronous client, see
+     * {@link HttpVersionMode} for details.
+     *
+     * @param httpVersionMode HTTP version(s) to use; must not be null
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setHttpVersionMode(final HttpVersionMode httpVersionMode) {
+        if (httpVersionMode == null) {
+            throw new IllegalArgumentException("HTTP version mode must not be null");
+        }
+
+        this.httpVersionMode = httpVersionMode;
+
+        return this;
+    }
+
+    /**
+     * Returns the HTTP protocol version(s) to be used for all following requests.
+     *
+     * @return HTTP version(s) to use
+     */
+    public HttpVersionMode getHttpVersionMode() {
+        return this.httpVersionMode;
+    }
+
+    /**
+     * Sets the pool to obtain response body buffers from. If no pool is set,
+     * buffers are allocated per response.
+     * <p>
+     * Pooled buffers are only reused after being handed back by
+     * {@link #releaseResponseBody()}, so a pool should only be used by callers
+     * processing the body right away. Buffers obtained from a pool may be larger
+     * than the actual body, see {@link #getResponseBodyBackingArray()}.
+     * </p>
+     *
+     * @param bodyBufferPool pool to obtain buffers from; null to allocate buffers
+     *        per response
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setBodyBufferPool(final BodyBufferPool bodyBufferPool) {
+        this.bodyBufferPool = bodyBufferPool;
+
+        return this;
+    }
+
+    /**
+     * Returns the pool to obtain response body buffers from.
+     *
+     * @return pool to obtain buffers from; null if buffers are allocated per
+     *         response
+     */
+    public BodyBufferPool getBodyBufferPool() {
+        return this.bodyBufferPool;
+    }
+
+    /**
+     * Sets the size above which response bodies are spilled to a temporary file
+     * instead of being held on heap. Spilled bodies are accessible as a
+     * memory-mapped buffer through {@link #getResponseBodyMapped()};
+     * {@link #getResponseBodyBytes()} copies them to heap only when called.
+     * <p>
+     * Spilling is disabled by default. Only bodies retrieved through
+     * {@link #requestByGet(CharSequence)} using HTTP/1.1 are spilled, HTTP/2
+     * responses are always received on heap.
+     * </p>
+     *
+     * @param responseBodySpillThreshold maximum body size in bytes to hold on
+     *        heap; negative to disable spilling
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setResponseBodySpillThreshold(final long responseBodySpillThreshold) {
+        this.responseBodySpillThreshold = (responseBodySpillThreshold < 0) ? -1 : responseBodySpillThreshold;
+
+        return this;
+    }
+
+    /**
+     * Returns the size above which response bodies are spilled to a temporary
+     * file.
+     *
+     * @return maximum body size in bytes to hold on heap; -1 if spilling is
+     *         disabled
+     */
+    public long getResponseBodySpillThreshold() {
+        return this.responseBodySpillThreshold;
+    }
+
+    /**
+     * Sets the maximum size of decoded response bodies. Requests are aborted as
+     * soon as the limit is exceeded; the request then fails and
+     * {@link #getResponseSizeLimitExceededException()} indicates the reason.
+     * <p>
+     * The limit applies to the body after content decoding, protecting against
+     * excessive decompression. Unlimited by default.
+     * </p>
+     *
+     * @param maximumResponseBodySize maximum size of decoded bodies in bytes;
+     *        negative for no limit
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setMaximumResponseBodySize(final long maximumResponseBodySize) {
+        this.maximumResponseBodySize = (maximumResponseBodySize < 0) ? -1 : maximumResponseBodySize;
+
+        return this;
+    }
+
+    /**
+     * Returns the maximum size of decoded response bodies.
+     *
+     * @return maximum size of decoded bodies in bytes; -1 if unlimited
+     */
+    public long getMaximumResponseBodySize() {
+        return this.maximumResponseBodySize;
+    }
+
+    /**
+     * Sets the maximum size of content-encoded (compressed) response bodies as
+     * transferred. Requests are aborted as soon as the limit is exceeded; the
+     * request then fails and {@link #getResponseSizeLimitExceededException()}
+     * indicates the reason.
+     * <p>
+     * The limit only applies to bodies using a Content-Encoding; bodies without
+     * encoding are limited by {@link #setMaximumResponseBodySize(long)}.
+     * Unlimited by default.
+     * </p>
+     *
+     * @param maximumCompressedResponseBodySize maximum size of compressed bodies
+     *        in bytes; negative for no limit
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setMaximumCompressedResponseBodySize(final long maximumCompressedResponseBodySize) {
+        this.maximumCompressedResponseBodySize = (maximumCompressedResponseBodySize < 0)
+            ? -1
+            : maximumCompressedResponseBodySize;
+
+        return this;
+    }
+
+    /**
+     * Returns the maximum size of content-encoded (compressed) response bodies.
+     *
+     * @return maximum size of compressed bodies in bytes; -1 if unlimited
+     */
+    public long getMaximumCompressedResponseBodySize() {
+        return this.maximumCompressedResponseBodySize;
+    }
+
+    /**
+     * Sets if content-encoded (compressed) response bodies should be kept as
+     * received instead of being decoded immediately. This reduces memory usage
+     * for responses which are stored or forwarded rather than parsed right away,
+     * as compressed bodies are usually much smaller than their decoded content.
+     * <p>
+     * Bodies are then decoded on demand each time they are accessed through
+     * {@link #getResponseBodyBytes()}, {@link #getResponseBody()},
+     * {@link #openResponseBodyChannel()} or {@link #openDecodedResponseBody()},
+     * so decoders work unchanged. The encoded body is available through
+     * {@link #getEncodedResponseBody()} together with
+     * {@link #getResponseContentEncoding()}; accessors which avoid copying
+     * ({@link #getResponseBodyBackingArray()}, {@link #getResponseBodyLength()}
+     * and {@link #getResponseBodyMapped()}) also refer to the encoded body.
+     * Response headers keep Content-Encoding and Content-Length as received.
+     * </p>
+     * <p>
+     * Bodies streamed to consumers, see
+     * {@link #requestByGet(CharSequence, ResponseBodyConsumer)}, are always
+     * decoded. When deferred, encoded bodies are limited by
+     * {@link #setMaximumCompressedResponseBodySize(long)} while being received
+     * and by {@link #setMaximumResponseBodySize(long)} while being decoded.
+     * Disabled by default.
+     * </p>
+     *
+     * @param responseBodyDecodingDeferred Should decoding be deferred until the
+     *        body is accessed?
+     * @return same instance to enable method-chaining
+     */
+    public HttpRetrieval setResponseBodyDecodingDeferred(final boolean responseBodyDecodingDeferred) {
+        this.responseBodyDecodingDeferred = responseBodyDecodingDeferred;
+
+        return this;
+    }
+
+    /**
+     * Checks if decoding of content-encoded response bodies is deferred until the
+     * body is accessed, see {@link #setResponseBodyDecodingDeferred(boolean)}.
+     *
+     * @return Is decoding deferred until the body is accessed?
+     */
+    public boolean isResponseBodyDecodingDeferred() {
+        return this.responseBodyDecodingDeferred;
+    }
+
+    /**
+     * Sets a cache to store complete responses to and to restore them from.
+     * <p>
+     * Requests for URLs with a stored response holding validators (ETag or
+     * Last-Modified headers) are performed conditionally by sending
+     * If-None-Match and If-Modified-Since headers. If the server indicates that
+     * the response has not been modified (304), the stored response is restored
+     * and the retrieval behaves as if the full response had been received again,
+     * see {@link #isResponseNotModified()}. Successful responses (200) are
+     * offered to the cache which decides whether to store them.
+     * </p>
+     * <p>
+     * Stored responses which are still fresh according to their Cache-Control,
+     * Expires and Age headers are restored without performing any request, see
+     * {@link #isResponseFromCache()}. Stored responses varying by request
+     * headers (Vary header) are only used if this retrieval sends the same
+     * values for those headers.
+     * </p>
+     * <p>
+     * Caching only applies to buffered requests; bodies streamed through
+     * {@link #requestByGet(CharSequence, ResponseBodyConsumer)} are never
+     * restored. Bodies spilled to disk (see
+     * {@link #setResponseBodySpillThreshold(long)}) are not stored either, as that
+     * would copy them back onto the heap. Caches are usually shared with other
+     * retrievals. No cache is used by default.
+     * </p>
+     *
+     * @param responseCache cache to use; null to disable caching
+     * @return same instance to enable method-chaining
+     * @see ValidatorCache
+     */
+    public HttpRetrieval setResponseCache(final ResponseCache responseCache) {
+        this.responseCache = responseCache;
+
+        return this;
+    }
+
+    /**
+     * Returns the cache responses are stored to and restored from.
+     *
+     * @return cache used for responses; null if caching is disabled
+     */
+    public ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    /**
+     * Checks if any response size limit has been configured.
+     *
+     * @return Has any response size limit been configured?
+     */
+    boolean hasResponseSizeLimit() {
+        return (getMaximumResponseBodySize() >= 0) || (getMaximumCompressedResponseBodySize() >= 0);
+    }
+
     /**
      * Helper method to aid in injecting a mock for testing buildHttpClient.
      *
@@ -194,26 +811,26 @@ public class HttpRetrieval {
     /**
      * Returns a single instance of a map of InputStreamFactory instances to be used
      * for decoding streams indexed by their HTTP Content-Encoding header. The
-     * returned map should usually be unmodifiable so it can be reused safely after
-     * a single initialization. Content-Encoding usually indicates compression, so
-     * decoders should perform gzip decompression etc.
+     * returned map should usually be unmodifiable so it can be reused safely.
+     * Content-Encoding usually indicates compression, so decoders should perform
+     * gzip decompression etc. All supported encodings are advertised through the
+     * Accept-Encoding header in iteration order of the map.
+     * <p>
+     * Unless {@link #unmodifiableContentDecoderMap} has been set, the registry
+     * shared by all instances is returned, supporting Brotli ({@code br}),
+     * Zstandard ({@code zstd}, requires zstd-jni on the class path), gzip and
+     * deflate.
+     * </p>
      *
      * @return InputStreamFactory instances to be used for content stream decoding
      */
     protected Map<String, InputStreamFactory> getContentDecoderMap() {
-        // only initialize map once
-        synchronized (this) {
-            if (unmodifiableContentDecoderMap == null) {
-                Map<String, InputStreamFactory> contentDecoderMap = new HashMap<>();
-                contentDecoderMap.put(
-                    "gzip",
-                    (InputStreamFactory) (InputStream instream) -> new GZIPInputStream(instream) //
-                );
-                unmodifiableContentDecoderMap = Collections.unmodifiableMap(contentDecoderMap);
-            }
+        Map<String, InputStreamFactory> map = unmodifiableContentDecoderMap;
+        if (map != null) {
+            return map;
         }
 
-        return unmodifiableContentDecoderMap;
+        return ContentDecoderRegistry.getDefaultDecoders();
     }
 
     /**
@@ -223,22 +840,119 @@ public class HttpRetrieval {
      * @return fully configured HttpClient
      */
     protected CloseableHttpClient buildHttpClient() {
+        return buildHttpClient(null);
+    }
+
+    /**
+     * Builds an HttpClient instance, fully configured by the settings and defaults
+     * of this instance, using the given connection manager.
+     *
+     * @param connectionManager connection manager to use; null to use the client's
+     *        default
+     * @return fully configured HttpClient
+     */
+    protected CloseableHttpClient buildHttpClient(final HttpClientConnectionManager connectionManager) {
+        RequestConfig config = buildRequestConfig();
+
+        HttpClientBuilder builder = getHttpClientBuilder()
+            .setDefaultRequestConfig(config)
+            .setUserAgent(getUserAgent())
+            .setContentDecoderRegistry(buildContentDecoderRegistry());
+
+        if (connectionManager != null) {
+            builder.setConnectionManager(connectionManager);
+        }
+
+        HttpClient client = builder.build();
+
+        return (CloseableHttpClient) client;
+    }
+
+    /**
+     * Builds the content decoder registry for {@link #buildHttpClient()}. If a
+     * maximum compressed body size is set, decoders are limited to read at most
+     * that number of bytes from the encoded stream. Registries for the shared
+     * default decoders are only built once per limit and then reused, so the
+     * returned map must not be modified.
+     *
+     * @return content decoder registry; must not be modified
+     */
+    LinkedHashMap<String, InputStreamFactory> buildContentDecoderRegistry() {
+        Map<String, InputStreamFactory> decoders = getContentDecoderMap();
+        long limit = getMaximumCompressedResponseBodySize();
+
+        if (decoders == ContentDecoderRegistry.getDefaultDecoders()) {
+            return ContentDecoderRegistry.getDefaultRegistry(limit);
+        }
+
+        return ContentDecoderRegistry.limitCompressedSize(decoders, limit);
+    }
+
+    /**
+     * Builds the request configuration to be applied to all requests, fully
+     * configured by the settings and defaults of this instance.
+     *
+     * @return request configuration
+     */
+    protected RequestConfig buildRequestConfig() {
         int timeoutMillis = (int) getTimeout().toMillis();
 
-        RequestConfig config = RequestConfig.custom()
+        return RequestConfig.custom()
             .setConnectTimeout(Timeout.ofMilliseconds(timeoutMillis))
             .setConnectionRequestTimeout(Timeout.ofMilliseconds(timeoutMillis))
             .setMaxRedirects(getMaximumFollowedRedirects())
-            .setContentCompressionEnabled(true)
+            // compression is handled without the client if decoding is deferred
+            .setContentCompressionEnabled(!isResponseBodyDecodingDeferred())
             .build();
+    }
 
-        HttpClient client = getHttpClientBuilder()
-            .setDefaultRequestConfig(config)
-            .setUserAgent(getUserAgent())
-            .setContentDecoderRegistry(new LinkedHashMap<String, InputStreamFactory>(getContentDecoderMap()))
-            .build();
+    /**
+     * Describes all settings which affect the HttpClient built by
+     * {@link #buildHttpClient()}. Retrievals with equal descriptions are able to
+     * share the same client through a {@link HttpClientPool}. Subclasses which
+     * change client construction need to extend the description accordingly.
+     *
+     * @return values of all settings affecting HttpClient construction
+     */
+    protected List<Object> describeHttpClientConfiguration() {
+        return Arrays.asList(
+            getClass(),
+            getTimeout(),
+            getUserAgent(),
+            getMaximumFollowedRedirects(),
+            getContentDecoderMap(),
+            getHttpVersionMode(),
+            getMaximumCompressedResponseBodySize(),
+            isResponseBodyDecodingDeferred() //
+        );
+    }
 
-        return (CloseableHttpClient) client;
+    /**
+     * Builds the value of the Accept-Encoding request header, listing all
+     * supported content encodings in order of preference.
+     *
+     * @return value of Accept-Encoding request header
+     */
+    String buildAcceptEncodingHeaderValue() {
+        return String.join(", ", getContentDecoderMap().keySet());
+    }
+
+    /**
+     * Builds an asynchronous HttpClient instance for the configured
+     * {@link HttpVersionMode}. Settings other than the version mode are applied
+     * per request. The client still needs to be started.
+     *
+     * @param maximumConnectionsTotal maximum number of connections held in total
+     * @param maximumConnectionsPerRoute maximum number of connections held per
+     *        route
+     * @return asynchronous HttpClient, not started yet
+     */
+    protected CloseableHttpAsyncClient buildHttpAsyncClient(int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        return AsyncHttpRetrievalEngine.buildAsyncClient(
+            getHttpVersionMode(),
+            maximumConnectionsTotal,
+            maximumConnectionsPerRoute //
+        );
     }
 
     /**
@@ -286,48 +1000,552 @@ public class HttpRetrieval {
      *         status/response!)
      */
     public boolean requestByGet(final CharSequence url) {
-        httpResponse = null;
-
-        if (url == null) {
-            logger.warn("Attempted to perform a GET request with null as URL.");
-            lastRequestedLocation = null;
+        if (!beginRequest(url)) {
             return false;
         }
 
-        lastRequestedLocation = url.toString();
-
-        boolean isSupportedProtocol = checkSupportedUrlProtocol(url);
-        if (!isSupportedProtocol) {
-            logger.warn("Unsupported protocol used in URL for GET request: \"{}\"", url);
-            return false;
+        if (restoreFreshCachedResponse()) {
+            logger.debug("restored fresh response for \"{}\" from cache", url);
+            return true;
         }
 
         logger.debug("requesting \"{}\" by GET method", url);
 
-        // TODO: client should be reused according to 4.x-5.x migration guide
-        CloseableHttpClient client = buildHttpClient();
-        ClassicHttpRequest request = buildHttpGet(url);
-
-        try {
-            httpClientContext = createHttpClientContext();
-            CloseableHttpResponse response = (CloseableHttpResponse) client.execute(request, httpClientContext);
-            onHttpResponseCompleted(response);
-        } catch (IOException ex) {
-            logger.warn("GET request to \"{}\" failed with an exception.", url, ex);
-            return false;
-        } finally {
-            try {
-                client.close();
-            } catch (IOException ex) {
-                logger.warn("failed to close client", ex);
-            }
+        if (getHttpVersionMode().requiresAsyncClient()) {
+            return requestByGetThroughAsyncClient(url);
         }
 
-        return true;
+        return requestByGetThroughClassicClient(url, this::onHttpResponseCompleted);
     }
 
     /**
-     * Creates a new instance of {@link HttpClientContext}. Required for unit
+     * Requests the given URL using a GET request, passing the response body to
+     * the given consumer while the connection is still open. Unlike
+     * {@link #requestByGet(CharSequence)} the body is not held in memory, so large
+     * responses can be processed without buffering them first.
+     * <p>
+     * Status and headers are available through this instance during and after
+     * consumption; {@link #getResponseBodyBytes()} returns null as the body has
+     * already been consumed. The connection is released after consumption.
+     * </p>
+     * <p>
+     * Retrievals configured for HTTP/2 are performed through asynchronous clients
+     * which receive the full body before it is passed to the consumer.
+     * </p>
+     *
+     * @param url URL to request
+     * @param consumer consumes the decoded response body; must not be null
+     * @return basic network level success, also false if the consumer failed with
+     *         an {@link IOException} (does not interpret actual HTTP status)
+     */
+    public boolean requestByGet(final CharSequence url, final ResponseBodyConsumer consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer must not be null");
+        }
+
+        if (!beginRequest(url)) {
+            return false;
+        }
+
+        logger.debug("requesting \"{}\" by GET method, streaming response", url);
+
+        // streamed bodies cannot be restored, so don't request conditionally
+        cachedResponse = null;
+
+        if (getHttpVersionMode().requiresAsyncClient()) {
+            if (!requestByGetThroughAsyncClient(url)) {
+                return false;
+            }
+
+            CompletedHttpResponse bufferedResponse = httpResponse;
+            byte[] bytes = bufferedResponse.getEntityContent();
+            if (bytes == null) {
+                httpResponse = null;
+                return false;
+            }
+
+            httpResponse = new CompletedHttpResponse(bufferedResponse.getCode(), bufferedResponse.getHeaders(), null);
+
+            String contentEncoding = bufferedResponse.getContentEncoding();
+            try (InputStream is = decodeStoredContent(new ByteArrayInputStream(bytes), contentEncoding)) {
+                consumer.consume(this, is);
+            } catch (IOException ex) {
+                logger.warn("Consuming response of GET request to \"{}\" failed with an exception.", url, ex);
+                httpResponse = null;
+                return false;
+            }
+
+            return true;
+        }
+
+        return requestByGetThroughClassicClient(url, response -> onHttpResponseStreamed(response, consumer));
+    }
+
+    /**
+     * Requests the given URL using a GET request, writing the decoded response
+     * body directly to the given file without buffering it in memory.
+     * <p>
+     * The body is only written if the response indicates complete content (see
+     * {@link #hasCompleteContentResponseStatus()}), otherwise the file remains
+     * untouched. The body is first written to a temporary file in the same
+     * directory which then replaces the target file atomically if supported by
+     * the file system, so the target never holds partial content. Status,
+     * headers and redirect information remain available after the request.
+     * </p>
+     *
+     * @param url URL to request
+     * @param target file to write the response body to; must not be null, parent
+     *        directory must exist
+     * @return basic network level success, also false if the file could not be
+     *         written (does not interpret actual HTTP status)
+     */
+    public boolean requestByGetToFile(final CharSequence url, final Path target) {
+        if (target == null) {
+            throw new IllegalArgumentException("target file must not be null");
+        }
+
+        return requestByGet(url, (retrieval, content) -> {
+            if (retrieval.hasCompleteContentResponseStatus()) {
+                writeToFileAtomically(content, target);
+            }
+        });
+    }
+
+    /**
+     * Writes the given stream to a temporary file which is then moved to the
+     * target, replacing any existing file. The move is atomic if supported by the
+     * file system. The temporary file is removed if writing fails.
+     * <p>
+     * The file is created with default permissions (subject to the umask on POSIX
+     * systems); when replacing an existing file, its POSIX permissions are kept.
+     * </p>
+     *
+     * @param content stream to write
+     * @param target file to write to
+     * @throws IOException if writing fails
+     */
+    static void writeToFileAtomically(final InputStream content, final Path target) throws IOException {
+        Path absoluteTarget = target.toAbsolutePath();
+
+        // createTempFile would restrict permissions to the owner
+        Path temporaryFile = Files.createFile(absoluteTarget.resolveSibling(
+            "." + absoluteTarget.getFileName() + "." + UUID.randomUUID() + TEMPORARY_FILE_SUFFIX //
+        ));
+
+        boolean success = false;
+        try {
+            copyPosixFilePermissions(absoluteTarget, temporaryFile);
+
+            try (
+                FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE);
+                ReadableByteChannel source = Channels.newChannel(content) //
+            ) {
+                long position = 0;
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, FILE_TRANSFER_CHUNK_SIZE)) > 0) {
+                    position += transferred;
+                }
+            }
+
+            try {
+                Files.move(temporaryFile, absoluteTarget, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                logger.debug("atomic move not supported, replacing \"{}\" non-atomically", absoluteTarget);
+                Files.move(temporaryFile, absoluteTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            success = true;
+        } finally {
+            if (!success) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    /**
+     * Copies the POSIX permissions of the given source file, if it exists, to the
+     * given target file. Nothing is copied if the file system does not support
+     * POSIX permissions.
+     *
+     * @param source file to copy permissions from; may not exist
+     * @param target file to apply permissions to
+     * @throws IOException if permissions could not be read or applied
+     */
+    private static void copyPosixFilePermissions(Path source, Path target) throws IOException {
+        if (!Files.exists(source) || (Files.getFileAttributeView(source, PosixFileAttributeView.class) == null)) {
+            return;
+        }
+
+        Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+    }
+
+    /**
+     * Handles a response received by a classic client.
+     */
+    @FunctionalInterface
+    private interface ClassicResponseHandler {
+        void handle(CloseableHttpResponse response) throws IOException;
+    }
+
+    /**
+     * Performs a GET request through a classic client, passing the response to
+     * the given handler.
+     *
+     * @param url URL to request
+     * @param responseHandler handles and closes the response
+     * @return basic network level success
+     */
+    private boolean requestByGetThroughClassicClient(final CharSequence url, final ClassicResponseHandler responseHandler) {
+        HttpClientPool pool = getHttpClientPool();
+        boolean isSharedClient = (pool != null);
+
+        CloseableHttpClient client;
+        try {
+            client = isSharedClient ? pool.getHttpClient(this) : buildHttpClient();
+        } catch (IllegalStateException ex) {
+            logger.warn("No HTTP client available for GET request to \"{}\".", url, ex);
+            return false;
+        }
+
+        ClassicHttpRequest request = buildHttpGet(url);
+        if (isResponseBodyDecodingDeferred()) {
+            // client does not advertise encodings if compression is disabled
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, buildAcceptEncodingHeaderValue());
+        }
+
+        applyConditionalRequestHeaders(request);
+
+        onRequestStarted((request instanceof Cancellable) ? (Cancellable) request : null);
+
+        try {
+            httpClientContext = createHttpClientContext();
+            CloseableHttpResponse response = (CloseableHttpResponse) client.execute(request, httpClientContext);
+            responseHandler.handle(response);
+        } catch (IOException ex) {
+            logger.warn("GET request to \"{}\" failed with an exception.", url, ex);
+            return false;
+        } finally {
+            onRequestFinished();
+
+            if (!isSharedClient) {
+                try {
+                    client.close();
+                } catch (IOException ex) {
+                    logger.warn("failed to close client", ex);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Performs a GET request through an asynchronous client, blocking until the
+     * response has been handled. Required for HTTP/2 which is not supported by
+     * classic clients.
+     *
+     * @param url URL to request
+     * @return basic network level success
+     */
+    private boolean requestByGetThroughAsyncClient(final CharSequence url) {
+        HttpClientPool pool = getHttpClientPool();
+        boolean isSharedClient = (pool != null);
+
+        CloseableHttpAsyncClient client;
+        try {
+            if (isSharedClient) {
+                client = pool.getHttpAsyncClient(this);
+            } else {
+                client = buildHttpAsyncClient(1, 1);
+                client.start();
+            }
+        } catch (IllegalStateException ex) {
+            logger.warn("No HTTP client available for GET request to \"{}\".", url, ex);
+            return false;
+        }
+
+        try {
+            httpClientContext = createHttpClientContext();
+            HttpClientContext context = httpClientContext;
+
+            SimpleHttpResponse response = AsyncHttpRetrievalEngine.execute(client, this, url, context).join();
+            if (response == null) {
+                return false;
+            }
+
+            return AsyncHttpRetrievalEngine.handleResponse(this, url, response, context);
+        } finally {
+            if (!isSharedClient) {
+                client.close(CloseMode.GRACEFUL);
+            }
+        }
+    }
+
+    /**
+     * Clears any previous response and checks if the given URL can be requested.
+     * Failed checks are being logged.
+     *
+     * @param url URL to be requested
+     * @return Can the URL be requested?
+     */
+    boolean beginRequest(final CharSequence url) {
+        httpResponse = null;
+        responseSizeLimitExceededException = null;
+        isResponseBodyAbandoned = false;
+        cachedResponse = null;
+        isResponseNotModified = false;
+        isResponseFromCache = false;
+        cachedRetrievedLocation = null;
+
+        if (url == null) {
+            logger.warn("Attempted to perform a GET request with null as URL.");
+            lastRequestedLocation = null;
+            return false;
+        }
+
+        lastRequestedLocation = url.toString();
+
+        if (isAborted) {
+            logger.debug("Not performing GET request to \"{}\" as retrieval has been aborted.", url);
+            return false;
+        }
+
+        boolean isSupportedProtocol = checkSupportedUrlProtocol(url);
+        if (!isSupportedProtocol) {
+            logger.warn("Unsupported protocol used in URL for GET request: \"{}\"", url);
+            return false;
+        }
+
+        cachedResponse = lookupCachedResponse(lastRequestedLocation);
+
+        return true;
+    }
+
+    /**
+     * Looks up a stored response for the given URL which is either still fresh
+     * or can be validated by a conditional request. Responses varying by request
+     * headers are only returned if this retrieval sends the same values.
+     *
+     * @param url requested URL
+     * @return usable stored response; null if caching is disabled or no such
+     *         response is stored
+     */
+    private StoredResponse lookupCachedResponse(final String url) {
+        ResponseCache cache = getResponseCache();
+        if (cache == null) {
+            return null;
+        }
+
+        StoredResponse stored = cache.lookup(url);
+        if ((stored == null) || !stored.matchesVaryingRequestHeaders(this::getRequestHeaderValue)) {
+            return null;
+        }
+
+        if (!stored.hasValidators() && !stored.isFresh(getInstantNow())) {
+            return null;
+        }
+
+        return stored;
+    }
+
+    /**
+     * Restores the stored response found by {@link #beginRequest(CharSequence)}
+     * in place of performing a request if it is still fresh.
+     *
+     * @return true if a fresh response has been restored and no request needs to
+     *         be performed, false if a request is needed
+     */
+    boolean restoreFreshCachedResponse() {
+        StoredResponse cached = cachedResponse;
+        if ((cached == null) || !cached.isFresh(getInstantNow())) {
+            return false;
+        }
+
+        cachedResponse = null;
+        httpResponse = new CompletedHttpResponse(
+            cached.getStatusCode(),
+            cached.getHeaders(),
+            cached.getBody(),
+            cached.getContentEncoding() //
+        );
+        httpResponse.markShared();
+        cachedRetrievedLocation = cached.getRetrievedLocation();
+        isResponseFromCache = true;
+
+        return true;
+    }
+
+    /**
+     * Returns the value this retrieval sends for the given request header, as
+     * needed to match stored responses varying by request headers.
+     *
+     * @param name lower-case header name
+     * @return value sent for the header; null if not sent or unknown
+     */
+    private String getRequestHeaderValue(final String name) {
+        if (HttpHeaders.USER_AGENT.equalsIgnoreCase(name)) {
+            return getUserAgent();
+        } else if (HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(name)) {
+            return buildAcceptEncodingHeaderValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Collects the values this retrieval sends for all request headers the given
+     * response headers vary by.
+     *
+     * @param responseHeaders response headers possibly including Vary headers
+     * @return sent request headers the response varies by
+     */
+    private Header[] getVaryingRequestHeaders(final Header[] responseHeaders) {
+        List<Header> headers = new ArrayList<>();
+
+        for (String name : StoredResponse.getVaryHeaderNames(responseHeaders)) {
+            String value = getRequestHeaderValue(name);
+            if (value != null) {
+                headers.add(new BasicHeader(name, value));
+            }
+        }
+
+        return headers.toArray(new Header[0]);
+    }
+
+    /**
+     * Adds headers to the given request to only transfer the response if it
+     * differs from the stored response found by {@link #beginRequest(CharSequence)},
+     * if any.
+     *
+     * @param request request to add conditional headers to
+     */
+    void applyConditionalRequestHeaders(final HttpRequest request) {
+        StoredResponse cached = cachedResponse;
+        if (cached == null) {
+            return;
+        }
+
+        String eTag = cached.getETag();
+        if (eTag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        }
+
+        String lastModified = cached.getLastModified();
+        if (lastModified != null) {
+            request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+
+    /**
+     * Updates the response cache, if any, with the response just received. If
+     * the server indicated that the stored response has not been modified, the
+     * stored response is restored in place of the received one.
+     */
+    private void updateResponseCache() {
+        StoredResponse cached = cachedResponse;
+        cachedResponse = null;
+
+        ResponseCache cache = getResponseCache();
+        CompletedHttpResponse response = httpResponse;
+        if ((cache == null) || (response == null)) {
+            return;
+        }
+
+        String url = getLastRequestedLocation();
+        int statusCode = response.getCode();
+
+        if ((statusCode == HttpStatus.SC_NOT_MODIFIED) && (cached != null)) {
+            StoredResponse revalidated = cached.revalidated(
+                response.getHeaders(),
+                getLastRetrievedLocation(),
+                getInstantNow() //
+            );
+            cache.storeRevalidated(url, cached, revalidated);
+
+            response.release();
+            httpResponse = new CompletedHttpResponse(
+                revalidated.getStatusCode(),
+                revalidated.getHeaders(),
+                revalidated.getBody(),
+                revalidated.getContentEncoding() //
+            );
+            httpResponse.markShared();
+            isResponseNotModified = true;
+            return;
+        }
+
+        if (statusCode != HttpStatus.SC_OK) {
+            return;
+        }
+
+        if (response.getEntityMapped() != null) {
+            // storing would copy the spilled body back onto the heap; any
+            // previously stored response is outdated by now
+            cache.invalidate(url);
+            return;
+        }
+
+        byte[] body = response.getEntityContent();
+        if (body == null) {
+            // body could not be read
+            return;
+        }
+
+        // unpooled bodies are stored without copying, so callers must only
+        // receive copies from now on
+        response.markShared();
+
+        cache.store(
+            url,
+            new StoredResponse(
+                url,
+                getLastRetrievedLocation(),
+                statusCode,
+                response.getHeaders(),
+                body,
+                response.getContentEncoding(),
+                getInstantNow(),
+                getVaryingRequestHeaders(response.getHeaders()) //
+            ) //
+        );
+    }
+
+    /**
+     * Checks if the server indicated that the stored response has not been
+     * modified (304) so it has been restored from the response cache, see
+     * {@link #setResponseCache(ResponseCache)}. Status, headers and body then
+     * reflect the restored response.
+     *
+     * @return Has the last response been restored after the server indicated it
+     *         has not been modified?
+     */
+    public boolean isResponseNotModified() {
+        return isResponseNotModified;
+    }
+
+    /**
+     * Checks if the last response has been restored from the response cache
+     * without performing any request because the stored response was still
+     * fresh, see {@link #setResponseCache(ResponseCache)}.
+     *
+     * @return Has the last response been restored without performing a request?
+     */
+    public boolean isResponseFromCache() {
+        return isResponseFromCache;
+    }
+
+    /**
+     * Returns current time via static method call {@link Instant#now()}. Required
+     * for unit-testing.
+     *
+     * @return current time via {@link Instant#now()}
+     */
+    Instant getInstantNow() {
+        return Instant.now();
+    }
+
+    /**
+     * Creates a new instance of {@link HttpClientContext}. Required for unit
      * testing.
      *
      * @return new instance of {@link HttpClientContext}
@@ -358,7 +1576,16 @@ public class HttpRetrieval {
      *         redirects; null if retrieval failed or no URL has been requested yet
      */
     public String getLastRetrievedLocation() {
-        if (httpResponse == null || httpClientContext == null) {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        if (cachedRetrievedLocation != null) {
+            // restored from cache without performing a request
+            return cachedRetrievedLocation;
+        }
+
+        if (httpClientContext == null) {
             return null;
         }
 
@@ -383,17 +1610,227 @@ public class HttpRetrieval {
      * Returns the response body as a byte array. If transfer had been compressed,
      * this method will not return the raw compressed data but instead yield the
      * uncompressed result, so consumers do not need to care about compression.
+     * <p>
+     * If the body has been buffered using a {@link BodyBufferPool} or is held by
+     * a {@link ResponseCache}, a copy of exact length is returned, so callers may
+     * modify it; see {@link #getResponseBodyBackingArray()} to avoid copying. If decoding has been deferred (see
+     * {@link #setResponseBodyDecodingDeferred(boolean)}), the body is decoded on
+     * each call.
+     * </p>
      *
-     * @return response body
+     * @return response body; null if there is no response body or it could not
+     *         be decoded
      */
     public byte[] getResponseBodyBytes() {
         if (httpResponse == null) {
             return null;
         }
 
+        if (httpResponse.getContentEncoding() != null) {
+            return decodeStoredResponseBody();
+        }
+
         return httpResponse.getEntityContent();
     }
 
+    /**
+     * Returns the Content-Encoding the stored response body is still encoded
+     * with. Bodies are only kept encoded if decoding has been deferred, see
+     * {@link #setResponseBodyDecodingDeferred(boolean)}.
+     *
+     * @return Content-Encoding of the stored response body; null if the body is
+     *         not encoded or there is no response
+     */
+    public String getResponseContentEncoding() {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        return httpResponse.getContentEncoding();
+    }
+
+    /**
+     * Returns the response body as it has been stored, without decoding it. If
+     * decoding has been deferred (see
+     * {@link #setResponseBodyDecodingDeferred(boolean)}), this is the body as
+     * transferred, encoded as indicated by {@link #getResponseContentEncoding()},
+     * which can be passed on as-is. Otherwise the body is identical to
+     * {@link #getResponseBody()}. The buffer is not copied and must not be used
+     * after {@link #releaseResponseBody()} has been called.
+     *
+     * @return read-only view of the stored response body; null if there is no
+     *         response body
+     */
+    public ByteBuffer getEncodedResponseBody() {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        return httpResponse.getEntityBuffer();
+    }
+
+    /**
+     * Opens a stream decoding the stored response body. Bodies which are not
+     * encoded are read as stored. The decoded size is limited by
+     * {@link #setMaximumResponseBodySize(long)}. The stream should be closed
+     * after use to release decoder resources.
+     *
+     * @return stream reading the decoded response body; null if there is no
+     *         response body
+     * @throws IOException if the body cannot be decoded
+     */
+    public InputStream openDecodedResponseBody() throws IOException {
+        ByteBuffer body = getEncodedResponseBody();
+        if (body == null) {
+            return null;
+        }
+
+        InputStream stored = Channels.newInputStream(new ByteBufferReadableChannel(body));
+
+        return decodeStoredContent(stored, httpResponse.getContentEncoding());
+    }
+
+    /**
+     * Decodes the stored response body completely, logging failures.
+     *
+     * @return decoded response body; null if decoding failed
+     */
+    private byte[] decodeStoredResponseBody() {
+        try (InputStream is = openDecodedResponseBody()) {
+            return (is != null) ? IOUtils.toByteArray(is) : null;
+        } catch (IOException ex) {
+            logger.warn("Failed to decode stored response body.", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the length of the response body in bytes. If decoding has been
+     * deferred (see {@link #setResponseBodyDecodingDeferred(boolean)}), this is
+     * the length of the body as stored, i.e. still encoded.
+     *
+     * @return length of response body; 0 if there is no response body
+     */
+    public int getResponseBodyLength() {
+        if (httpResponse == null) {
+            return 0;
+        }
+
+        return httpResponse.getEntityLength();
+    }
+
+    /**
+     * Returns the array backing the response body without copying it. Only the
+     * first {@link #getResponseBodyLength()} bytes hold the body; the array may be
+     * larger if it has been obtained from a {@link BodyBufferPool}. The array
+     * must not be modified and must not be used after
+     * {@link #releaseResponseBody()} has been called. If decoding has been
+     * deferred (see {@link #setResponseBodyDecodingDeferred(boolean)}), the array
+     * holds the body as stored, i.e. still encoded.
+     *
+     * @return array backing the response body; null if there is no response body
+     *         or the body has been spilled to a file and not been copied to heap
+     *         yet, see {@link #getResponseBodyMapped()}
+     */
+    public byte[] getResponseBodyBackingArray() {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        return httpResponse.getEntityBackingArray();
+    }
+
+    /**
+     * Returns the response body as a read-only memory-mapped buffer if it has
+     * been spilled to a file because it exceeded the threshold set by
+     * {@link #setResponseBodySpillThreshold(long)}. Each call returns a new
+     * buffer positioned at the start of the body. If decoding has been deferred
+     * (see {@link #setResponseBodyDecodingDeferred(boolean)}), the buffer holds
+     * the body as stored, i.e. still encoded.
+     *
+     * @return read-only memory-mapped response body; null if the body is held on
+     *         heap or there is no response body
+     */
+    public ByteBuffer getResponseBodyMapped() {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        return httpResponse.getEntityMapped();
+    }
+
+    /**
+     * Returns the response body as a read-only buffer without copying it. The
+     * buffer is either backed by the heap array holding the body or memory-mapped
+     * if the body has been spilled to a file. Each call returns a new buffer
+     * positioned at the start of the body and limited to its length. The buffer
+     * must not be used after {@link #releaseResponseBody()} has been called.
+     * <p>
+     * If decoding has been deferred (see
+     * {@link #setResponseBodyDecodingDeferred(boolean)}), the body is decoded to
+     * a new heap buffer on each call instead.
+     * </p>
+     *
+     * @return read-only view of the response body; null if there is no response
+     *         body or it could not be decoded
+     */
+    public ByteBuffer getResponseBody() {
+        if (httpResponse == null) {
+            return null;
+        }
+
+        if (httpResponse.getContentEncoding() != null) {
+            byte[] bytes = decodeStoredResponseBody();
+            return (bytes != null) ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : null;
+        }
+
+        return httpResponse.getEntityBuffer();
+    }
+
+    /**
+     * Opens a channel reading the response body from start without copying it
+     * to an intermediate array. The channel does not need to be closed as it does
+     * not hold any resources but the body itself; it must not be used after
+     * {@link #releaseResponseBody()} has been called. Bodies whose decoding has
+     * been deferred are decoded first, see {@link #getResponseBody()}.
+     *
+     * @return channel reading the response body; null if there is no response
+     *         body or it could not be decoded
+     */
+    public ReadableByteChannel openResponseBodyChannel() {
+        ByteBuffer body = getResponseBody();
+        if (body == null) {
+            return null;
+        }
+
+        return new ByteBufferReadableChannel(body);
+    }
+
+    /**
+     * Releases the response body, handing its buffer back to the
+     * {@link BodyBufferPool} if it has been obtained from one. The body is not
+     * available any more afterwards, other response data remains available.
+     * Bodies which are not released are simply garbage collected.
+     */
+    public void releaseResponseBody() {
+        if (httpResponse != null) {
+            httpResponse.release();
+        }
+    }
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return HTTP status code; -1 if there is no response
+     */
+    public int getResponseStatusCode() {
+        if (httpResponse == null) {
+            return -1;
+        }
+
+        return httpResponse.getCode();
+    }
+
     /**
      * Returns all response headers.
      *
@@ -458,7 +1895,422 @@ public class HttpRetrieval {
      * @throws IOException
      */
     void onHttpResponseCompleted(CloseableHttpResponse response) throws IOException {
-        httpResponse = new CompletedHttpResponse(response);
-        response.close();
+        // client only leaves content encoded if decoding is deferred
+        String contentEncoding = isResponseBodyDecodingDeferred()
+            ? getRetainedContentEncoding(response.getFirstHeader(HttpHeaders.CONTENT_ENCODING))
+            : null;
+
+        try {
+            httpResponse = new CompletedHttpResponse(response, getBodyBufferPool(), getResponseBodySpillThreshold(), contentEncoding);
+        } finally {
+            closeResponse(response);
+        }
+
+        updateResponseCache();
+    }
+
+    /**
+     * Handles the given upstream response by passing the decoded body to the
+     * given consumer while the connection is still open. Status and headers are
+     * recorded before consumption. Closes the response after consumption,
+     * releasing the connection.
+     *
+     * @param response upstream response to handle and close
+     * @param consumer consumes the response body
+     * @throws IOException if the body could not be read or consumption failed
+     */
+    void onHttpResponseStreamed(CloseableHttpResponse response, ResponseBodyConsumer consumer) throws IOException {
+        try {
+            httpResponse = new CompletedHttpResponse(response.getCode(), response.getHeaders(), null);
+
+            HttpEntity entity = response.getEntity();
+            InputStream content = (entity != null) ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+
+            String contentEncoding = isResponseBodyDecodingDeferred()
+                ? getRetainedContentEncoding(response.getFirstHeader(HttpHeaders.CONTENT_ENCODING))
+                : null;
+            if (contentEncoding != null) {
+                // client did not decode, consumers still expect decoded content
+                content = decodeContent(limitEncodedContent(content), contentEncoding);
+            }
+
+            try (InputStream is = abortOnCloseIfAbandoned(limitDecodedContent(content))) {
+                consumer.consume(this, is);
+            }
+
+            if (responseSizeLimitExceededException != null) {
+                // consumer may have swallowed the exception
+                throw responseSizeLimitExceededException;
+            }
+        } catch (IOException ex) {
+            httpResponse = null;
+            throw (responseSizeLimitExceededException != null) ? responseSizeLimitExceededException : ex;
+        } finally {
+            closeResponse(response);
+        }
+    }
+
+    /**
+     * Wraps the given decoded content stream to enforce the maximum response body
+     * size, if configured. Exceeding limits, also those enforced before decoding,
+     * aborts the current request.
+     *
+     * @param content decoded content stream
+     * @return stream enforcing size limits
+     */
+    InputStream limitDecodedContent(InputStream content) {
+        if (!hasResponseSizeLimit()) {
+            return content;
+        }
+
+        return new SizeLimitedInputStream(content, getMaximumResponseBodySize(), false, this::onResponseSizeLimitExceeded);
+    }
+
+    /**
+     * Fails early if the Content-Length announced by the server already exceeds
+     * the applicable size limit, so that no buffer is allocated for it and the
+     * request is aborted before reading the body.
+     *
+     * @param contentLength announced length of content; negative if unknown
+     * @param isEncoded true if the content is still content-encoded
+     *        (compressed), false if it is decoded
+     * @throws ResponseSizeLimitExceededException if the announced length exceeds
+     *         the limit
+     */
+    void checkAnnouncedContentLength(long contentLength, boolean isEncoded) throws ResponseSizeLimitExceededException {
+        long limit = isEncoded ? getMaximumCompressedResponseBodySize() : getMaximumResponseBodySize();
+        if ((limit < 0) || (contentLength <= limit)) {
+            return;
+        }
+
+        ResponseSizeLimitExceededException ex = new ResponseSizeLimitExceededException(limit, isEncoded);
+        onResponseSizeLimitExceeded(ex);
+        throw ex;
+    }
+
+    /**
+     * Wraps the given content-encoded stream as received to enforce the maximum
+     * compressed response body size, if configured. Exceeding the limit aborts
+     * the current request.
+     *
+     * @param content encoded content stream as received
+     * @return stream enforcing the compressed size limit
+     */
+    InputStream limitEncodedContent(InputStream content) {
+        long limit = getMaximumCompressedResponseBodySize();
+        if (limit < 0) {
+            return content;
+        }
+
+        return new SizeLimitedInputStream(content, limit, true, this::onResponseSizeLimitExceeded);
+    }
+
+    /**
+     * Records that a response size limit has been exceeded and aborts the
+     * current request, if any, so the connection is not drained.
+     *
+     * @param ex exception indicating the exceeded limit
+     */
+    void onResponseSizeLimitExceeded(ResponseSizeLimitExceededException ex) {
+        if (responseSizeLimitExceededException == null) {
+            responseSizeLimitExceededException = ex;
+        }
+
+        Cancellable request = currentRequest;
+        if (request != null) {
+            logger.debug("aborting request due to exceeded response size limit");
+            request.cancel();
+        }
+    }
+
+    /**
+     * Wraps the given content stream to abort the current request when being
+     * closed if the remaining body has been abandoned, see
+     * {@link #abandonResponseBody()}.
+     *
+     * @param content content stream to wrap
+     * @return stream aborting the current request on close if abandoned
+     */
+    private InputStream abortOnCloseIfAbandoned(InputStream content) {
+        return new FilterInputStream(content) {
+            @Override
+            public void close() throws IOException {
+                if (!isResponseBodyAbandoned) {
+                    super.close();
+                    return;
+                }
+
+                Cancellable request = currentRequest;
+                if (request != null) {
+                    logger.debug("aborting request as remaining response body has been abandoned");
+                    request.cancel();
+                }
+
+                try {
+                    super.close();
+                } catch (IOException ex) {
+                    logger.debug("failed to close abandoned response body", ex);
+                }
+            }
+        };
+    }
+
+    /**
+     * Aborts the request currently being performed, if any, and prevents any
+     * further requests from being performed by this instance. Aborted requests
+     * fail on network level. This is meant to stop requests whose result is no
+     * longer of interest from another thread; the instance should be discarded
+     * afterwards.
+     */
+    public void abort() {
+        isAborted = true;
+
+        Cancellable request = currentRequest;
+        if (request != null) {
+            logger.debug("aborting request");
+            request.cancel();
+        }
+    }
+
+    /**
+     * Checks if this instance has been aborted, see {@link #abort()}.
+     *
+     * @return Has this instance been aborted?
+     */
+    public boolean isAborted() {
+        return isAborted;
+    }
+
+    /**
+     * Records the request which is being performed, so that it can be aborted.
+     * Requests started after this instance has been aborted are aborted right
+     * away.
+     *
+     * @param request request being performed; null if it cannot be aborted
+     */
+    void onRequestStarted(Cancellable request) {
+        currentRequest = request;
+
+        if (isAborted && (request != null)) {
+            // aborted while the request was being started
+            request.cancel();
+        }
+    }
+
+    /**
+     * Clears the request recorded by {@link #onRequestStarted(Cancellable)}
+     * after it has been completed.
+     */
+    void onRequestFinished() {
+        currentRequest = null;
+    }
+
+    /**
+     * Abandons the remaining response body while it is being consumed through
+     * {@link #requestByGet(CharSequence, ResponseBodyConsumer)} or a
+     * {@link StreamingDecoder}. When the body stream is closed, the request is
+     * aborted instead of reading the remaining body, which would be required to
+     * reuse the connection. This is useful if only the beginning of a large body
+     * is of interest; the request is still regarded as successful.
+     * <p>
+     * The stream must not be read any further after calling this method. Bodies
+     * which have already been received completely are not affected.
+     * </p>
+     */
+    public void abandonResponseBody() {
+        isResponseBodyAbandoned = true;
+    }
+
+    /**
+     * Closes the given response. Failures to close responses of aborted requests
+     * are expected and thus ignored.
+     *
+     * @param response response to close
+     * @throws IOException if closing fails for a request which has not been
+     *         aborted
+     */
+    private void closeResponse(CloseableHttpResponse response) throws IOException {
+        if ((responseSizeLimitExceededException == null) && !isResponseBodyAbandoned) {
+            response.close();
+            return;
+        }
+
+        try {
+            response.close();
+        } catch (IOException ex) {
+            logger.debug("failed to close aborted response", ex);
+        }
+    }
+
+    /**
+     * Returns the reason if the last request failed because a response size limit
+     * has been exceeded, see {@link #setMaximumResponseBodySize(long)} and
+     * {@link #setMaximumCompressedResponseBodySize(long)}.
+     *
+     * @return exception indicating the exceeded limit; null if the last request
+     *         did not exceed any limit
+     */
+    public ResponseSizeLimitExceededException getResponseSizeLimitExceededException() {
+        return responseSizeLimitExceededException;
+    }
+
+    /**
+     * Handles the given response as received by an asynchronous client. Unlike
+     * the classic client, asynchronous clients do not decode the content, so
+     * content decoding as indicated by Content-Encoding is performed here using
+     * {@link #getContentDecoderMap()}. Decoding should thus not be performed on
+     * I/O threads.
+     * <p>
+     * No response is recorded if decoding exceeds the maximum response body
+     * size, see {@link #getResponseSizeLimitExceededException()}.
+     * </p>
+     *
+     * @param response upstream response to handle
+     * @param context context the request has been executed with
+     */
+    void onAsyncHttpResponseCompleted(SimpleHttpResponse response, HttpClientContext context) {
+        httpClientContext = context;
+
+        Header contentEncodingHeader = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        String contentEncoding = (contentEncodingHeader != null) ? contentEncodingHeader.getValue() : null;
+
+        byte[] bytes = response.getBodyBytes();
+        if (bytes == null) {
+            bytes = new byte[0];
+        }
+
+        Header[] headers = response.getHeaders();
+
+        if (isResponseBodyDecodingDeferred()) {
+            httpResponse = new CompletedHttpResponse(response.getCode(), headers, bytes, getRetainedContentEncoding(contentEncodingHeader));
+            updateResponseCache();
+            return;
+        }
+
+        if (contentEncoding != null) {
+            try {
+                bytes = decodeContent(bytes, contentEncoding);
+            } catch (ResponseSizeLimitExceededException ex) {
+                // already recorded, request fails
+                return;
+            } catch (IOException ex) {
+                logger.warn("Failed to decode bytes from HTTP response.", ex);
+                bytes = null;
+            }
+
+            // decoded content no longer matches encoding or length,
+            // remove headers as the classic client does
+            headers = Arrays.stream(headers)
+                .filter(header -> !header.getName().equalsIgnoreCase(HttpHeaders.CONTENT_ENCODING))
+                .filter(header -> !header.getName().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH))
+                .filter(header -> !header.getName().equalsIgnoreCase(HttpHeaders.CONTENT_MD5))
+                .toArray(Header[]::new);
+        }
+
+        httpResponse = new CompletedHttpResponse(response.getCode(), headers, bytes);
+        updateResponseCache();
+    }
+
+    /**
+     * Decodes the given bytes as indicated by a Content-Encoding header value.
+     * Multiple encodings are being decoded in reverse order of application.
+     *
+     * @param bytes encoded bytes
+     * @param contentEncoding value of Content-Encoding header
+     * @return decoded bytes
+     * @throws IOException if decoding fails or an encoding is not supported
+     */
+    byte[] decodeContent(byte[] bytes, String contentEncoding) throws IOException {
+        try (InputStream is = limitDecodedContent(decodeContent(new ByteArrayInputStream(bytes), contentEncoding))) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    /**
+     * Wraps the given stream to decode content as indicated by a
+     * Content-Encoding header value. Multiple encodings are being decoded in
+     * reverse order of application. Size limits are not applied.
+     *
+     * @param content encoded content stream
+     * @param contentEncoding value of Content-Encoding header
+     * @return stream reading decoded content; closing it also closes the given
+     *         stream
+     * @throws IOException if decoding fails or an encoding is not supported
+     */
+    InputStream decodeContent(InputStream content, String contentEncoding) throws IOException {
+        String[] encodings = contentEncoding.split(",");
+        Map<String, InputStreamFactory> decoders = getContentDecoderMap();
+
+        InputStream decoded = content;
+        try {
+            for (int i = encodings.length - 1; i >= 0; i--) {
+                String encoding = encodings[i].trim().toLowerCase(Locale.ROOT);
+                if (encoding.isEmpty() || "identity".equals(encoding)) {
+                    continue;
+                }
+
+                InputStreamFactory decoder = decoders.get(encoding);
+                if (decoder == null) {
+                    throw new IOException("Unsupported Content-Encoding: " + encoding);
+                }
+
+                decoded = decoder.create(decoded);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // release resources held by decoders created so far
+            try {
+                decoded.close();
+            } catch (IOException closeException) {
+                ex.addSuppressed(closeException);
+            }
+            throw ex;
+        }
+
+        return decoded;
+    }
+
+    /**
+     * Wraps the given stream to decode a stored response body, limited to the
+     * maximum response body size. Unlike while receiving, exceeding the limit
+     * only fails the stream as there is no request left to abort.
+     *
+     * @param stored stored response body, encoded as indicated
+     * @param contentEncoding value of Content-Encoding header; null if the body
+     *        is not encoded
+     * @return stream reading decoded content
+     * @throws IOException if decoding fails or an encoding is not supported
+     */
+    private InputStream decodeStoredContent(InputStream stored, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return stored;
+        }
+
+        InputStream decoded = decodeContent(stored, contentEncoding);
+
+        long limit = getMaximumResponseBodySize();
+        if (limit < 0) {
+            return decoded;
+        }
+
+        return new SizeLimitedInputStream(decoded, limit, false, null);
+    }
+
+    /**
+     * Determines the Content-Encoding to retain for an undecoded body.
+     *
+     * @param contentEncodingHeader Content-Encoding header; may be null
+     * @return Content-Encoding header value; null if the body is not encoded
+     */
+    private static String getRetainedContentEncoding(Header contentEncodingHeader) {
+        if (contentEncodingHeader == null) {
+            return null;
+        }
+
+        String contentEncoding = contentEncodingHeader.getValue();
+        if ((contentEncoding == null) || contentEncoding.trim().isEmpty() || "identity".equalsIgnoreCase(contentEncoding.trim())) {
+            return null;
+        }
+
+        return contentEncoding;
     }
 }
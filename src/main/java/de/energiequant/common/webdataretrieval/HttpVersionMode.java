@@ -0,0 +1,45 @@
+package de.energiequant.common.webdataretrieval;
+
+/**
+ * Selects the HTTP protocol version(s) to be used for requests.
+ * <p>
+ * HTTP/2 allows many requests to the same host to be multiplexed over a
+ * single connection. Retrievals configured for HTTP/2 are performed through
+ * asynchronous clients, also when requested blocking through
+ * {@link HttpRetrieval#requestByGet(CharSequence)}.
+ * </p>
+ */
+public enum HttpVersionMode {
+    /**
+     * Only use HTTP/1.1 (or lower, if required by server). This is the default.
+     */
+    HTTP_1_1(false),
+
+    /**
+     * Negotiate HTTP/2 by ALPN for TLS connections, falling back to HTTP/1.1 if
+     * the server does not support HTTP/2. Plain-text connections use HTTP/1.1.
+     */
+    HTTP_2_NEGOTIATE(true),
+
+    /**
+     * Only use HTTP/2. Plain-text connections use HTTP/2 with prior knowledge
+     * (h2c) without any upgrade or fallback, TLS connections negotiate HTTP/2 by
+     * ALPN. Requests fail if the server does not support HTTP/2.
+     */
+    HTTP_2_PRIOR_KNOWLEDGE(true);
+
+    private final boolean requiresAsyncClient;
+
+    private HttpVersionMode(boolean requiresAsyncClient) {
+        this.requiresAsyncClient = requiresAsyncClient;
+    }
+
+    /**
+     * Checks if requests need to be performed through an asynchronous client.
+     *
+     * @return Do requests need to be performed through an asynchronous client?
+     */
+    boolean requiresAsyncClient() {
+        return requiresAsyncClient;
+    }
+}
@@ -0,0 +1,126 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Holds reusable {@link Inflater}s to avoid allocating and freeing native zlib
+ * memory for every decoded response.
+ * <p>
+ * Inflaters for raw deflate streams (as wrapped by gzip) and zlib-wrapped
+ * streams are held separately. Inflaters exceeding the pool capacity are ended
+ * on release. The pool is thread-safe.
+ * </p>
+ */
+class InflaterPool {
+
+    /**
+     * Default maximum number of inflaters retained per type.
+     */
+    static final int DEFAULT_MAXIMUM_RETAINED_INFLATERS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final InflaterPool SHARED = new InflaterPool(DEFAULT_MAXIMUM_RETAINED_INFLATERS);
+
+    private final int maximumRetainedInflaters;
+    private final Queue<Inflater> retainedRawInflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> retainedZlibInflaters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numRetainedRawInflaters = new AtomicInteger();
+    private final AtomicInteger numRetainedZlibInflaters = new AtomicInteger();
+
+    /**
+     * Creates a new pool retaining at most the given number of inflaters per
+     * type.
+     *
+     * @param maximumRetainedInflaters maximum number of inflaters to retain per
+     *        type; must be positive
+     */
+    InflaterPool(int maximumRetainedInflaters) {
+        if (maximumRetainedInflaters < 1) {
+            throw new IllegalArgumentException("maximum number of retained inflaters must be positive");
+        }
+
+        this.maximumRetainedInflaters = maximumRetainedInflaters;
+    }
+
+    /**
+     * Returns the pool shared by all decoders.
+     *
+     * @return shared pool
+     */
+    static InflaterPool getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns an inflater ready to decode a new stream.
+     *
+     * @param nowrap true to decode raw deflate streams, false to decode
+     *        zlib-wrapped streams
+     * @return inflater in initial state
+     */
+    Inflater acquire(boolean nowrap) {
+        Inflater inflater = retainedInflaters(nowrap).poll();
+        if (inflater == null) {
+            return createInflater(nowrap);
+        }
+
+        numRetainedInflaters(nowrap).decrementAndGet();
+        return inflater;
+    }
+
+    /**
+     * Returns the given inflater to the pool. The inflater must not be used any
+     * more by the caller. Inflaters exceeding the capacity of the pool are ended.
+     *
+     * @param inflater inflater to release; ignored if null
+     * @param nowrap type of inflater, as it has been acquired
+     */
+    void release(Inflater inflater, boolean nowrap) {
+        if (inflater == null) {
+            return;
+        }
+
+        AtomicInteger numRetained = numRetainedInflaters(nowrap);
+        if (numRetained.incrementAndGet() > maximumRetainedInflaters) {
+            numRetained.decrementAndGet();
+            inflater.end();
+            return;
+        }
+
+        inflater.reset();
+        retainedInflaters(nowrap).offer(inflater);
+    }
+
+    /**
+     * Creates a new inflater.
+     * <p>
+     * Required for unit-testing.
+     * </p>
+     *
+     * @param nowrap true to decode raw deflate streams, false to decode
+     *        zlib-wrapped streams
+     * @return new inflater
+     */
+    Inflater createInflater(boolean nowrap) {
+        return new Inflater(nowrap);
+    }
+
+    /**
+     * Returns the number of inflaters currently retained by the pool.
+     *
+     * @return number of retained inflaters
+     */
+    int size() {
+        return numRetainedRawInflaters.get() + numRetainedZlibInflaters.get();
+    }
+
+    private Queue<Inflater> retainedInflaters(boolean nowrap) {
+        return nowrap ? retainedRawInflaters : retainedZlibInflaters;
+    }
+
+    private AtomicInteger numRetainedInflaters(boolean nowrap) {
+        return nowrap ? numRetainedRawInflaters : numRetainedZlibInflaters;
+    }
+}
@@ -0,0 +1,170 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits a buffered body into lines without decoding it as a whole. Lines are
+ * terminated by LF, CR or CR LF, same as for
+ * {@link java.io.BufferedReader#readLine()}; terminators are not part of the
+ * lines.
+ * <p>
+ * Line terminators are searched on byte level, so the character set must
+ * encode them as single ASCII bytes which do not occur as part of other
+ * characters, see {@link #isSupported(Charset)}. This allows the body to be
+ * split at any line terminator for parallel processing.
+ * </p>
+ */
+class LineSpliterator implements Spliterator<String> {
+
+    private static final byte LF = 0x0A;
+    private static final byte CR = 0x0D;
+
+    /**
+     * Ranges smaller than this number of bytes are not split any further.
+     */
+    static final int MINIMUM_SPLIT_SIZE = 8192;
+
+    private final ByteBuffer body;
+    private final Charset charset;
+    private final int minimumSplitSize;
+    private int position;
+    private final int end;
+
+    /**
+     * Creates a new spliterator for the remaining bytes of the given buffer.
+     *
+     * @param body buffer holding the body; must not be modified while the
+     *        spliterator is in use
+     * @param charset character set to decode lines with
+     */
+    LineSpliterator(ByteBuffer body, Charset charset) {
+        this(body, charset, MINIMUM_SPLIT_SIZE, body.position(), body.limit());
+    }
+
+    /**
+     * Creates a new spliterator for a range of the given buffer. Required for
+     * unit-testing.
+     *
+     * @param body buffer holding the body
+     * @param charset character set to decode lines with
+     * @param minimumSplitSize ranges smaller than this number of bytes are not
+     *        split any further
+     * @param position first byte of range (inclusive)
+     * @param end end of range (exclusive)
+     */
+    LineSpliterator(ByteBuffer body, Charset charset, int minimumSplitSize, int position, int end) {
+        this.body = body;
+        this.charset = charset;
+        this.minimumSplitSize = minimumSplitSize;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * Checks if the given character set encodes line terminators as single ASCII
+     * bytes, so lines can be split on byte level. This holds for UTF-8 and
+     * ASCII-compatible single-byte character sets but not for UTF-16 or UTF-32.
+     *
+     * @param charset character set to check
+     * @return Can lines of bodies encoded in given character set be split?
+     */
+    static boolean isSupported(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+
+        byte[] encoded = "\r\n".getBytes(charset);
+
+        return (encoded.length == 2) && (encoded[0] == CR) && (encoded[1] == LF);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (position >= end) {
+            return false;
+        }
+
+        int lineEnd = findLineTerminator(position);
+        String line = decode(position, lineEnd);
+        position = skipLineTerminator(lineEnd);
+
+        action.accept(line);
+
+        return true;
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        int remaining = end - position;
+        if (remaining < minimumSplitSize) {
+            return null;
+        }
+
+        int lineEnd = findLineTerminator(position + (remaining / 2));
+        int splitPosition = skipLineTerminator(lineEnd);
+        if (splitPosition >= end) {
+            return null;
+        }
+
+        LineSpliterator prefix = new LineSpliterator(body, charset, minimumSplitSize, position, splitPosition);
+        position = splitPosition;
+
+        return prefix;
+    }
+
+    /**
+     * Finds the next line terminator starting at the given position.
+     *
+     * @param from position to start searching at
+     * @return position of next CR or LF; end of range if there is none
+     */
+    private int findLineTerminator(int from) {
+        for (int i = from; i < end; i++) {
+            byte b = body.get(i);
+            if ((b == LF) || (b == CR)) {
+                return i;
+            }
+        }
+
+        return end;
+    }
+
+    /**
+     * Skips the line terminator at the given position.
+     *
+     * @param lineEnd position of a line terminator or end of range
+     * @return position of the next line
+     */
+    private int skipLineTerminator(int lineEnd) {
+        if (lineEnd >= end) {
+            return end;
+        }
+
+        if ((body.get(lineEnd) == CR) && (lineEnd + 1 < end) && (body.get(lineEnd + 1) == LF)) {
+            return lineEnd + 2;
+        }
+
+        return lineEnd + 1;
+    }
+
+    private String decode(int from, int to) {
+        ByteBuffer slice = body.duplicate();
+        slice.limit(to).position(from);
+
+        return charset.decode(slice).toString();
+    }
+
+    @Override
+    public long estimateSize() {
+        // number of remaining bytes is an upper bound of remaining lines
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
@@ -0,0 +1,283 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hc.core5.http.Header;
+
+/**
+ * Keeps responses in memory up to a maximum total size in bytes, honoring
+ * Cache-Control and Expires headers.
+ * <p>
+ * Successful responses are stored if they are either fresh for some time
+ * ({@code max-age} or Expires) or can be validated by a conditional request
+ * (ETag or Last-Modified). Fresh responses are restored by
+ * {@link HttpRetrieval} without performing any request, stale responses are
+ * validated first. Responses marked {@code no-store} are never stored. Only
+ * the last response is kept per URL; responses varying by request headers
+ * (Vary) are thus only restored for retrievals sending the same values.
+ * </p>
+ * <p>
+ * The size of an entry is estimated from its body, headers and a fixed
+ * overhead. Once the total size exceeds the maximum, least recently used
+ * entries are evicted. Entries larger than the maximum size are not stored at
+ * all.
+ * </p>
+ * <p>
+ * Recency is tracked by stamping each entry on access; entries are additionally
+ * indexed by their stamps so eviction directly finds the least recently used
+ * ones. Lookups only synchronize on the entry they access to update the index
+ * and eviction only blocks other stores which exceed the maximum size at the
+ * same time. The cache can be shared by any number of retrievals.
+ * </p>
+ */
+public class MemoryResponseCache implements ResponseCache {
+
+    /**
+     * Estimated number of bytes occupied by each entry in addition to its body
+     * and headers.
+     */
+    static final int ENTRY_OVERHEAD = 256;
+
+    private final long maximumSize;
+
+    private final ConcurrentMap<String, Entry> entriesByUrl = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Entry> entriesByLastAccess = new ConcurrentSkipListMap<>();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicLong accessCounter = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private static class Entry {
+        final String url;
+        final StoredResponse response;
+        final long size;
+
+        // guarded by synchronizing on the entry
+        long lastAccess = 0;
+        boolean isRemoved = false;
+
+        Entry(String url, StoredResponse response, long size) {
+            this.url = url;
+            this.response = response;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Creates a new cache holding at most the given number of bytes.
+     *
+     * @param maximumSize maximum total size of all entries in bytes; must be
+     *        positive
+     */
+    public MemoryResponseCache(long maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximum size must be positive");
+        }
+
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public StoredResponse lookup(String url) {
+        Entry entry = entriesByUrl.get(url);
+        if (entry == null) {
+            return null;
+        }
+
+        StoredResponse response = entry.response;
+        if (!response.hasValidators() && !response.isFresh(getInstantNow())) {
+            // expired and cannot be validated, so it is of no use any more
+            remove(url, entry);
+            return null;
+        }
+
+        touch(entry);
+
+        return response;
+    }
+
+    @Override
+    public void store(String url, StoredResponse response) {
+        if (!response.isWorthStoring()) {
+            invalidate(url);
+            return;
+        }
+
+        long size = estimateSize(url, response);
+        if (size > maximumSize) {
+            invalidate(url);
+            return;
+        }
+
+        Entry entry = new Entry(url, response, size);
+        Entry previous = entriesByUrl.put(url, entry);
+        totalSize.addAndGet(size - ((previous != null) ? previous.size : 0));
+        if (previous != null) {
+            unindex(previous);
+        }
+        touch(entry);
+
+        evictIfNecessary();
+    }
+
+    @Override
+    public void invalidate(String url) {
+        Entry previous = entriesByUrl.remove(url);
+        if (previous != null) {
+            totalSize.addAndGet(-previous.size);
+            unindex(previous);
+        }
+    }
+
+    /**
+     * Estimates the number of bytes occupied by the given entry.
+     * <p>
+     * Required for unit-testing.
+     * </p>
+     *
+     * @param url URL the response is stored for
+     * @param response stored response
+     * @return estimated size in bytes
+     */
+    static long estimateSize(String url, StoredResponse response) {
+        long size = ENTRY_OVERHEAD + response.getBody().length;
+
+        // strings are assumed to use 2 bytes per character
+        size += 2L * url.length();
+        size += 2L * response.getRetrievedLocation().length();
+        for (Header header : response.getHeaders()) {
+            size += 2L * (header.getName().length() + header.getValue().length());
+        }
+        for (Header header : response.getVaryingRequestHeaders()) {
+            size += 2L * (header.getName().length() + header.getValue().length());
+        }
+
+        return size;
+    }
+
+    /**
+     * Evicts least recently used entries until the total size no longer exceeds
+     * the maximum size.
+     */
+    private void evictIfNecessary() {
+        if (totalSize.get() <= maximumSize) {
+            return;
+        }
+
+        evictionLock.lock();
+        try {
+            if (totalSize.get() <= maximumSize) {
+                // already evicted by another thread
+                return;
+            }
+
+            while (totalSize.get() > maximumSize) {
+                Map.Entry<Long, Entry> eldest = entriesByLastAccess.firstEntry();
+                if (eldest == null) {
+                    break;
+                }
+
+                Entry entry = eldest.getValue();
+                if (!remove(entry.url, entry)) {
+                    // removed concurrently, drop the index entry if still present
+                    entriesByLastAccess.remove(eldest.getKey(), entry);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the given entry unless it has already been replaced.
+     *
+     * @param url URL the entry is stored for
+     * @param entry entry to remove
+     * @return true if the entry has been removed, false if it was no longer
+     *         stored
+     */
+    private boolean remove(String url, Entry entry) {
+        if (!entriesByUrl.remove(url, entry)) {
+            return false;
+        }
+
+        totalSize.addAndGet(-entry.size);
+        unindex(entry);
+
+        return true;
+    }
+
+    /**
+     * Stamps the given entry as most recently used, moving it to the end of
+     * {@link #entriesByLastAccess}. Entries which have already been removed are
+     * not indexed again.
+     *
+     * @param entry entry being accessed
+     */
+    private void touch(Entry entry) {
+        synchronized (entry) {
+            if (entry.isRemoved) {
+                return;
+            }
+
+            entriesByLastAccess.remove(entry.lastAccess, entry);
+            entry.lastAccess = accessCounter.incrementAndGet();
+            entriesByLastAccess.put(entry.lastAccess, entry);
+        }
+    }
+
+    /**
+     * Removes the given entry from {@link #entriesByLastAccess} after it has
+     * been removed from {@link #entriesByUrl}.
+     *
+     * @param entry removed entry
+     */
+    private void unindex(Entry entry) {
+        synchronized (entry) {
+            entry.isRemoved = true;
+            entriesByLastAccess.remove(entry.lastAccess, entry);
+        }
+    }
+
+    /**
+     * Returns current time via static method call {@link Instant#now()}. Required
+     * for unit-testing.
+     *
+     * @return current time via {@link Instant#now()}
+     */
+    Instant getInstantNow() {
+        return Instant.now();
+    }
+
+    /**
+     * Returns the number of stored responses.
+     *
+     * @return number of stored responses
+     */
+    public int size() {
+        return entriesByUrl.size();
+    }
+
+    /**
+     * Returns the estimated total size of all stored responses.
+     *
+     * @return estimated total size in bytes
+     */
+    public long getTotalSize() {
+        return totalSize.get();
+    }
+
+    /**
+     * Returns the maximum total size of all stored responses.
+     *
+     * @return maximum total size in bytes
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+}
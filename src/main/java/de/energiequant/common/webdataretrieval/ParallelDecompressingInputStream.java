@@ -0,0 +1,286 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Decompresses a buffered file consisting of multiple concatenated compressed
+ * streams (such as multi-member gzip or multi-stream bzip2 files) by
+ * decompressing chunks of streams concurrently. Decompressed data is provided
+ * in original order.
+ * <p>
+ * The buffer is split into chunks of at least a minimum size at positions
+ * which look like the start of another stream, see
+ * {@link CompressionFormat#findStreamStart(ByteBuffer, int, int)}. Each chunk
+ * is decompressed completely into memory on the given executor. Only a limited
+ * number of chunks is decompressed ahead of the reader, each holding at most a
+ * maximum number of decompressed bytes, so at most
+ * {@code maximumPendingChunks * maximumDecompressedChunkSize} bytes are held
+ * at any time.
+ * </p>
+ * <p>
+ * If a chunk fails to decompress, for example because a split position has
+ * been a false positive, or decompresses to more than the maximum size, all
+ * remaining data is streamed through a sequential decompressor instead,
+ * starting with that chunk. Actually corrupted data thus fails as it would
+ * when decompressing sequentially. Files consisting of a single stream or
+ * using formats without support for finding stream starts are always
+ * decompressed sequentially.
+ * </p>
+ */
+class ParallelDecompressingInputStream extends InputStream {
+
+    /**
+     * Chunks are split after at least this number of compressed bytes (1 MiB).
+     */
+    static final int DEFAULT_MINIMUM_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Chunks decompressing to more than this number of bytes (16 MiB) are not
+     * held in memory but streamed sequentially.
+     */
+    static final int DEFAULT_MAXIMUM_DECOMPRESSED_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ByteBuffer body;
+    private final CompressionFormat format;
+    private final Executor executor;
+    private final int maximumPendingChunks;
+    private final int maximumDecompressedChunkSize;
+    private final int[] chunkStarts;
+
+    private final Deque<CompletableFuture<byte[]>> pendingChunks = new ArrayDeque<>();
+    private int nextSubmittedChunk = 0;
+    private int nextConsumedChunk = 0;
+
+    private byte[] currentChunk = EMPTY;
+    private int currentChunkPosition = 0;
+    private InputStream sequentialRemainder = null;
+
+    private final byte[] singleByte = new byte[1];
+    private boolean isClosed = false;
+
+    /**
+     * Creates a new stream decompressing all remaining bytes of the given buffer.
+     *
+     * @param body buffer holding the compressed file; must not be modified while
+     *        decompressing
+     * @param format compression format of the file
+     * @param executor executor to decompress chunks on
+     * @param maximumPendingChunks maximum number of chunks to decompress ahead
+     *        of the reader; must be positive
+     * @param minimumChunkSize minimum number of compressed bytes per chunk; must
+     *        be positive
+     * @param maximumDecompressedChunkSize maximum number of decompressed bytes
+     *        to hold per chunk; larger chunks are decompressed sequentially;
+     *        must be positive
+     * @throws IOException if decompression needs to be performed sequentially
+     *         and the start of the file cannot be decompressed
+     */
+    ParallelDecompressingInputStream(ByteBuffer body, CompressionFormat format, Executor executor, int maximumPendingChunks, int minimumChunkSize, int maximumDecompressedChunkSize) throws IOException {
+        if (maximumPendingChunks < 1) {
+            throw new IllegalArgumentException("maximum number of pending chunks must be positive");
+        }
+
+        if (minimumChunkSize < 1) {
+            throw new IllegalArgumentException("minimum chunk size must be positive");
+        }
+
+        if (maximumDecompressedChunkSize < 1) {
+            throw new IllegalArgumentException("maximum decompressed chunk size must be positive");
+        }
+
+        this.body = body;
+        this.format = format;
+        this.executor = executor;
+        this.maximumPendingChunks = maximumPendingChunks;
+        this.maximumDecompressedChunkSize = maximumDecompressedChunkSize;
+        this.chunkStarts = findChunkStarts(body, format, minimumChunkSize);
+
+        if (chunkStarts.length == 1) {
+            sequentialRemainder = format.decompress(openRange(body.position(), body.limit()));
+        }
+    }
+
+    /**
+     * Splits the given buffer into chunks of at least the given size, starting at
+     * candidate stream starts.
+     *
+     * @param body buffer to split
+     * @param format compression format, used to find stream starts
+     * @param minimumChunkSize minimum number of bytes per chunk
+     * @return start positions of all chunks in ascending order; the first chunk
+     *         starts at the position of the buffer
+     */
+    static int[] findChunkStarts(ByteBuffer body, CompressionFormat format, int minimumChunkSize) {
+        List<Integer> chunkStarts = new ArrayList<>();
+
+        int chunkStart = body.position();
+        int end = body.limit();
+        chunkStarts.add(chunkStart);
+
+        while ((end - chunkStart) > minimumChunkSize) {
+            chunkStart = format.findStreamStart(body, chunkStart + minimumChunkSize, end);
+            if (chunkStart < 0) {
+                break;
+            }
+
+            chunkStarts.add(chunkStart);
+        }
+
+        return chunkStarts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public int read() throws IOException {
+        int numBytes = read(singleByte, 0, 1);
+        return (numBytes < 0) ? -1 : (singleByte[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (isClosed) {
+            throw new IOException("Stream closed");
+        }
+
+        if ((off < 0) || (len < 0) || (len > b.length - off)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            if (sequentialRemainder != null) {
+                return sequentialRemainder.read(b, off, len);
+            }
+
+            int available = currentChunk.length - currentChunkPosition;
+            if (available > 0) {
+                int numBytes = Math.min(len, available);
+                System.arraycopy(currentChunk, currentChunkPosition, b, off, numBytes);
+                currentChunkPosition += numBytes;
+                return numBytes;
+            }
+
+            if (!nextChunk()) {
+                return -1;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+
+        isClosed = true;
+        cancelPendingChunks();
+        currentChunk = EMPTY;
+
+        if (sequentialRemainder != null) {
+            sequentialRemainder.close();
+        }
+    }
+
+    /**
+     * Waits for the next chunk to be decompressed, switching to sequential
+     * decompression if it failed or exceeded the maximum size.
+     *
+     * @return true if decompression continues, false if all chunks have been
+     *         consumed
+     * @throws IOException if sequential decompression cannot be started
+     */
+    private boolean nextChunk() throws IOException {
+        if (nextConsumedChunk >= chunkStarts.length) {
+            return false;
+        }
+
+        submitPendingChunks();
+
+        CompletableFuture<byte[]> future = pendingChunks.poll();
+        int chunkIndex = nextConsumedChunk++;
+
+        try {
+            currentChunk = future.join();
+            currentChunkPosition = 0;
+        } catch (CompletionException ex) {
+            // chunk may have been split at a false positive, verify sequentially;
+            // also streams chunks too large to be held in memory
+            cancelPendingChunks();
+            currentChunk = EMPTY;
+            nextConsumedChunk = chunkStarts.length;
+            sequentialRemainder = format.decompress(openRange(chunkStarts[chunkIndex], body.limit()));
+        }
+
+        return true;
+    }
+
+    private void submitPendingChunks() {
+        while ((pendingChunks.size() < maximumPendingChunks) && (nextSubmittedChunk < chunkStarts.length)) {
+            int chunkIndex = nextSubmittedChunk++;
+            pendingChunks.add(CompletableFuture.supplyAsync(() -> decompressChunk(chunkIndex), executor));
+        }
+    }
+
+    private void cancelPendingChunks() {
+        CompletableFuture<byte[]> future = pendingChunks.poll();
+        while (future != null) {
+            future.cancel(false);
+            future = pendingChunks.poll();
+        }
+    }
+
+    private byte[] decompressChunk(int chunkIndex) {
+        int from = chunkStarts[chunkIndex];
+        int to = (chunkIndex + 1 < chunkStarts.length) ? chunkStarts[chunkIndex + 1] : body.limit();
+
+        try (InputStream is = format.decompress(openRange(from, to))) {
+            return readChunk(is);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private byte[] readChunk(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+
+        int numBytes = is.read(buffer);
+        while (numBytes >= 0) {
+            if (numBytes > maximumDecompressedChunkSize - baos.size()) {
+                throw new IOException("chunk exceeds " + maximumDecompressedChunkSize + " decompressed bytes");
+            }
+
+            baos.write(buffer, 0, numBytes);
+            numBytes = is.read(buffer);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private InputStream openRange(int from, int to) {
+        ByteBuffer range = body.duplicate();
+        range.limit(to);
+        range.position(from);
+
+        // decompressors may read single bytes which are expensive on channels
+        return new BufferedInputStream(Channels.newInputStream(new ByteBufferReadableChannel(range)), READ_BUFFER_SIZE);
+    }
+}
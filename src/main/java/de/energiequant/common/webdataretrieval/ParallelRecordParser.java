@@ -0,0 +1,120 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Parses delimited records of a buffered body by recursively splitting it into
+ * record-aligned chunks which are parsed in parallel on a
+ * {@link java.util.concurrent.ForkJoinPool}. Results are returned in order of
+ * records.
+ * <p>
+ * Records are separated by a single delimiter byte which is not passed to the
+ * parser. A trailing delimiter does not start another record, so an empty body
+ * or a body consisting only of a delimiter result in no or one empty record,
+ * respectively.
+ * </p>
+ *
+ * @param <R> type of parsed records
+ */
+class ParallelRecordParser<R> extends RecursiveTask<List<R>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Chunks smaller than this number of bytes are parsed sequentially.
+     */
+    static final int DEFAULT_MINIMUM_CHUNK_SIZE = 64 * 1024;
+
+    private final transient ByteBuffer body;
+    private final byte delimiter;
+    private final transient Function<ByteBuffer, R> recordParser;
+    private final int minimumChunkSize;
+    private final int from;
+    private final int to;
+
+    /**
+     * Creates a new task parsing all remaining bytes of the given buffer.
+     *
+     * @param body buffer holding the body; must not be modified while parsing
+     * @param delimiter byte separating records
+     * @param recordParser parses a single record; receives a read-only buffer
+     *        holding only the record
+     * @param minimumChunkSize chunks smaller than this number of bytes are
+     *        parsed sequentially
+     */
+    ParallelRecordParser(ByteBuffer body, byte delimiter, Function<ByteBuffer, R> recordParser, int minimumChunkSize) {
+        this(body, delimiter, recordParser, minimumChunkSize, body.position(), body.limit());
+    }
+
+    private ParallelRecordParser(ByteBuffer body, byte delimiter, Function<ByteBuffer, R> recordParser, int minimumChunkSize, int from, int to) {
+        this.body = body;
+        this.delimiter = delimiter;
+        this.recordParser = recordParser;
+        this.minimumChunkSize = minimumChunkSize;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected List<R> compute() {
+        int length = to - from;
+        if (length >= minimumChunkSize) {
+            int splitPosition = findRecordStart(from + (length / 2));
+            if ((splitPosition > from) && (splitPosition < to)) {
+                ParallelRecordParser<R> head = new ParallelRecordParser<>(body, delimiter, recordParser, minimumChunkSize, from, splitPosition);
+                ParallelRecordParser<R> tail = new ParallelRecordParser<>(body, delimiter, recordParser, minimumChunkSize, splitPosition, to);
+
+                tail.fork();
+                List<R> results = head.compute();
+                results.addAll(tail.join());
+
+                return results;
+            }
+        }
+
+        return parseSequentially();
+    }
+
+    /**
+     * Finds the start of the next record at or after the given position.
+     *
+     * @param position position to start searching at
+     * @return position following the next delimiter; end of range if there is
+     *         none
+     */
+    private int findRecordStart(int position) {
+        for (int i = position; i < to; i++) {
+            if (body.get(i) == delimiter) {
+                return i + 1;
+            }
+        }
+
+        return to;
+    }
+
+    private List<R> parseSequentially() {
+        List<R> results = new ArrayList<>();
+
+        int recordStart = from;
+        while (recordStart < to) {
+            int recordEnd = findRecordStart(recordStart);
+            int recordLength = recordEnd - recordStart;
+            if (body.get(recordEnd - 1) == delimiter) {
+                // delimiter is not part of the record
+                recordLength--;
+            }
+
+            ByteBuffer record = body.duplicate();
+            record.limit(recordStart + recordLength).position(recordStart);
+            results.add(recordParser.apply(record.slice().asReadOnlyBuffer()));
+
+            recordStart = recordEnd;
+        }
+
+        return results;
+    }
+}
@@ -0,0 +1,208 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+
+/**
+ * Decodes gzip streams (RFC 1952) like {@link java.util.zip.GZIPInputStream}
+ * but using an inflater borrowed from an {@link InflaterPool} and reading the
+ * encoded stream in large chunks. Streams consisting of multiple concatenated
+ * members are decoded completely. The inflater is returned to the pool when
+ * the stream is closed; streams must thus always be closed.
+ */
+class PooledGzipInputStream extends PooledInflaterInputStream {
+
+    private static final int GZIP_MAGIC = 0x8B1F;
+    private static final int METHOD_DEFLATE = 8;
+
+    private static final int FLAG_HEADER_CRC = 1 << 1;
+    private static final int FLAG_EXTRA = 1 << 2;
+    private static final int FLAG_NAME = 1 << 3;
+    private static final int FLAG_COMMENT = 1 << 4;
+
+    private static final int FIXED_HEADER_SIZE = 10;
+    private static final int SKIPPED_FIXED_HEADER_SIZE = 6; // MTIME, XFL, OS
+    private static final int TRAILER_SIZE = 8;
+
+    private final CRC32 crc = new CRC32();
+    private boolean isEndOfStream = false;
+
+    /**
+     * Creates a new stream decoding the given gzip stream. The header of the
+     * first member is read immediately.
+     *
+     * @param in encoded stream
+     * @param pool pool to borrow the inflater from
+     * @param bufferSize size of the buffer used to read encoded data; must be
+     *        positive
+     * @throws EOFException if the stream ends before a complete header could be
+     *         read
+     * @throws ZipException if the stream is not in gzip format
+     * @throws IOException if the stream cannot be read
+     */
+    PooledGzipInputStream(InputStream in, InflaterPool pool, int bufferSize) throws IOException {
+        super(in, pool, true, bufferSize);
+
+        try {
+            readHeader(in);
+        } catch (IOException | RuntimeException ex) {
+            releaseInflater();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (isEndOfStream) {
+            return -1;
+        }
+
+        int numBytes = super.read(b, off, len);
+        if (numBytes < 0) {
+            if (readTrailer()) {
+                isEndOfStream = true;
+                return -1;
+            }
+
+            return read(b, off, len);
+        }
+
+        crc.update(b, off, numBytes);
+        return numBytes;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (isEndOfStream) {
+            return 0;
+        }
+
+        return super.available();
+    }
+
+    /**
+     * Reads a member header, resetting the checksum to start with the member's
+     * data.
+     *
+     * @param source stream to read from
+     * @return number of header bytes read
+     * @throws IOException if the header cannot be read or is invalid
+     */
+    private int readHeader(InputStream source) throws IOException {
+        crc.reset();
+        CheckedInputStream checkedSource = new CheckedInputStream(source, crc);
+
+        if (readUnsignedShort(checkedSource) != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+
+        if (readUnsignedByte(checkedSource) != METHOD_DEFLATE) {
+            throw new ZipException("Unsupported compression method");
+        }
+
+        int flags = readUnsignedByte(checkedSource);
+        IOUtils.skipFully(checkedSource, SKIPPED_FIXED_HEADER_SIZE);
+        int headerSize = FIXED_HEADER_SIZE;
+
+        if ((flags & FLAG_EXTRA) != 0) {
+            int extraSize = readUnsignedShort(checkedSource);
+            IOUtils.skipFully(checkedSource, extraSize);
+            headerSize += extraSize + 2;
+        }
+
+        if ((flags & FLAG_NAME) != 0) {
+            headerSize += skipZeroTerminated(checkedSource);
+        }
+
+        if ((flags & FLAG_COMMENT) != 0) {
+            headerSize += skipZeroTerminated(checkedSource);
+        }
+
+        if ((flags & FLAG_HEADER_CRC) != 0) {
+            int expectedHeaderCrc = (int) crc.getValue() & 0xFFFF;
+            if (readUnsignedShort(checkedSource) != expectedHeaderCrc) {
+                throw new ZipException("Corrupt GZIP header");
+            }
+            headerSize += 2;
+        }
+
+        crc.reset();
+        return headerSize;
+    }
+
+    /**
+     * Reads and verifies a member trailer, then checks if another member follows.
+     * If so, its header is read and the inflater is prepared to continue
+     * decoding. Data following the last member which does not start with a valid
+     * header is ignored.
+     *
+     * @return true if the end of the last member has been reached, false if
+     *         another member follows
+     * @throws IOException if the trailer cannot be read or is invalid
+     */
+    private boolean readTrailer() throws IOException {
+        InputStream source = in;
+        int remaining = inf.getRemaining();
+        if (remaining > 0) {
+            // trailer starts with data already read into the buffer
+            source = new SequenceInputStream(
+                new ByteArrayInputStream(buf, len - remaining, remaining),
+                CloseShieldInputStream.wrap(in) //
+            );
+        }
+
+        if ((readUnsignedInt(source) != crc.getValue()) || (readUnsignedInt(source) != (inf.getBytesWritten() & 0xFFFFFFFFL))) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+
+        int headerSize;
+        try {
+            headerSize = readHeader(source);
+        } catch (EOFException | ZipException ex) {
+            // no further member
+            return true;
+        }
+
+        inf.reset();
+
+        int consumed = TRAILER_SIZE + headerSize;
+        if (remaining > consumed) {
+            inf.setInput(buf, len - remaining + consumed, remaining - consumed);
+        }
+
+        return false;
+    }
+
+    private static int skipZeroTerminated(InputStream source) throws IOException {
+        int numBytes = 1;
+        while (readUnsignedByte(source) != 0) {
+            numBytes++;
+        }
+        return numBytes;
+    }
+
+    private static long readUnsignedInt(InputStream source) throws IOException {
+        return readUnsignedShort(source) | ((long) readUnsignedShort(source) << 16);
+    }
+
+    private static int readUnsignedShort(InputStream source) throws IOException {
+        return readUnsignedByte(source) | (readUnsignedByte(source) << 8);
+    }
+
+    private static int readUnsignedByte(InputStream source) throws IOException {
+        int b = source.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of GZIP stream");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,110 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Decodes deflate streams using an {@link java.util.zip.Inflater} borrowed
+ * from an {@link InflaterPool}, reading the encoded stream in large chunks.
+ * The inflater is returned to the pool when the stream is closed; streams must
+ * thus always be closed.
+ */
+class PooledInflaterInputStream extends InflaterInputStream {
+
+    /**
+     * Default size of the buffer used to read encoded data (64 KiB).
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int ZLIB_HEADER_SIZE = 2;
+    private static final int ZLIB_METHOD_DEFLATE = 8;
+    private static final int ZLIB_MAXIMUM_WINDOW_BITS = 7;
+
+    private final InflaterPool pool;
+    private final boolean nowrap;
+    private boolean isInflaterReleased = false;
+
+    /**
+     * Creates a new stream decoding the given deflate stream.
+     *
+     * @param in encoded stream
+     * @param pool pool to borrow the inflater from
+     * @param nowrap true to decode a raw deflate stream, false to decode a
+     *        zlib-wrapped stream
+     * @param bufferSize size of the buffer used to read encoded data; must be
+     *        positive
+     */
+    PooledInflaterInputStream(InputStream in, InflaterPool pool, boolean nowrap, int bufferSize) {
+        super(in, pool.acquire(nowrap), bufferSize);
+        this.pool = pool;
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * Creates a new stream decoding the given stream as indicated by HTTP
+     * Content-Encoding {@code deflate}. Although the encoding is specified to be
+     * zlib-wrapped, some servers send raw deflate streams instead. Both variants
+     * are accepted by checking for a zlib header.
+     *
+     * @param in encoded stream
+     * @param pool pool to borrow the inflater from
+     * @param bufferSize size of the buffer used to read encoded data; must be
+     *        positive
+     * @return decoded stream
+     * @throws IOException if the stream cannot be read
+     */
+    static PooledInflaterInputStream deflate(InputStream in, InflaterPool pool, int bufferSize) throws IOException {
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(in, ZLIB_HEADER_SIZE);
+
+        byte[] header = new byte[ZLIB_HEADER_SIZE];
+        int headerLength = IOUtils.read(pushbackInputStream, header);
+        if (headerLength > 0) {
+            pushbackInputStream.unread(header, 0, headerLength);
+        }
+
+        boolean isZlibWrapped = (headerLength == ZLIB_HEADER_SIZE) && isZlibHeader(header[0], header[1]);
+
+        return new PooledInflaterInputStream(pushbackInputStream, pool, !isZlibWrapped, bufferSize);
+    }
+
+    /**
+     * Checks if the given bytes form a zlib header (RFC 1950).
+     *
+     * @param cmf compression method and flags (first byte)
+     * @param flg flags (second byte)
+     * @return Do the bytes form a zlib header?
+     */
+    static boolean isZlibHeader(byte cmf, byte flg) {
+        int method = cmf & 0x0F;
+        int windowBits = (cmf >> 4) & 0x0F;
+        int check = ((cmf & 0xFF) << 8) | (flg & 0xFF);
+
+        return (method == ZLIB_METHOD_DEFLATE) && (windowBits <= ZLIB_MAXIMUM_WINDOW_BITS) && ((check % 31) == 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            releaseInflater();
+        }
+    }
+
+    /**
+     * Returns the inflater to the pool. The stream must not be read any more.
+     * Subsequent calls have no effect.
+     */
+    void releaseInflater() {
+        if (isInflaterReleased) {
+            return;
+        }
+
+        isInflaterReleased = true;
+        pool.release(inf, nowrap);
+    }
+}
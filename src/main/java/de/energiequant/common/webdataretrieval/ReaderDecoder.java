@@ -0,0 +1,28 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Decodes a response body from characters while it is being received. See
+ * {@link DefaultHttpRetrievalDecoders#streamingBodyAsReaderWithHeaderCharacterSet(java.nio.charset.Charset, ReaderDecoder)}.
+ *
+ * @param <T> type of decoded result
+ */
+@FunctionalInterface
+public interface ReaderDecoder<T> {
+    /**
+     * Decodes the response body. Status and headers of the response are
+     * available through the given retrieval.
+     * <p>
+     * The reader decodes characters incrementally as they are read; it must not
+     * be used after this method returns.
+     * </p>
+     *
+     * @param retrieval retrieval the response has been received by
+     * @param reader reads the response body as characters
+     * @return decoded result
+     * @throws IOException if reading or decoding the body fails
+     */
+    T decode(HttpRetrieval retrieval, Reader reader) throws IOException;
+}
@@ -0,0 +1,27 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes a response body while the connection is still open, see
+ * {@link HttpRetrieval#requestByGet(CharSequence, ResponseBodyConsumer)}.
+ */
+@FunctionalInterface
+public interface ResponseBodyConsumer {
+    /**
+     * Consumes the response body. Status and headers of the response are already
+     * available through the given retrieval while the body is being consumed.
+     * <p>
+     * The stream provides the decoded content, i.e. compression as indicated by
+     * Content-Encoding has already been reverted. The stream must not be used
+     * after this method returns; it will be closed by the caller.
+     * </p>
+     *
+     * @param retrieval retrieval the response has been received by
+     * @param content decoded response body
+     * @throws IOException if consumption fails; the request is then regarded as
+     *         failed
+     */
+    void consume(HttpRetrieval retrieval, InputStream content) throws IOException;
+}
@@ -0,0 +1,51 @@
+package de.energiequant.common.webdataretrieval;
+
+/**
+ * Stores complete responses per URL so they can be restored by later requests,
+ * see {@link HttpRetrieval#setResponseCache(ResponseCache)}. Implementations
+ * decide which responses are worth storing and must be thread-safe as a cache
+ * is usually shared by many retrievals.
+ */
+public interface ResponseCache {
+    /**
+     * Looks up the response stored for the given URL.
+     *
+     * @param url requested URL
+     * @return stored response; null if none is stored
+     */
+    StoredResponse lookup(String url);
+
+    /**
+     * Offers a complete response received for the given URL. Implementations
+     * may decline to store the response, in which case any response previously
+     * stored for the URL should be removed as it is outdated.
+     *
+     * @param url requested URL
+     * @param response received response
+     */
+    void store(String url, StoredResponse response);
+
+    /**
+     * Offers a response which has been revalidated by a conditional request.
+     * The body of the revalidated response is the same as that of the
+     * previously looked up response, only headers and stored time have been
+     * updated, so implementations may keep the body they already hold.
+     * <p>
+     * By default, the revalidated response is simply stored again.
+     * </p>
+     *
+     * @param url requested URL
+     * @param previous response previously looked up for the URL
+     * @param revalidated revalidated response
+     */
+    default void storeRevalidated(String url, StoredResponse previous, StoredResponse revalidated) {
+        store(url, revalidated);
+    }
+
+    /**
+     * Removes any response stored for the given URL.
+     *
+     * @param url requested URL
+     */
+    void invalidate(String url);
+}
@@ -0,0 +1,57 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+
+/**
+ * Indicates that a response body exceeded a size limit configured on
+ * {@link HttpRetrieval}. The request has been aborted as soon as the limit was
+ * exceeded.
+ * <p>
+ * Futures of {@link HttpPromiseBuilder} complete exceptionally with this
+ * exception as cause.
+ * </p>
+ */
+public class ResponseSizeLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+    private final boolean isCompressedLimit;
+
+    /**
+     * Creates a new exception for the given limit.
+     *
+     * @param limit exceeded limit in bytes
+     * @param isCompressedLimit true if the limit applied to the content-encoded
+     *        (compressed) body, false if the limit applied to the decoded body
+     */
+    public ResponseSizeLimitExceededException(long limit, boolean isCompressedLimit) {
+        super(
+            (isCompressedLimit ? "compressed" : "decoded")
+                + " response body exceeds maximum size of " + limit + " bytes" //
+        );
+
+        this.limit = limit;
+        this.isCompressedLimit = isCompressedLimit;
+    }
+
+    /**
+     * Returns the exceeded limit.
+     *
+     * @return exceeded limit in bytes
+     */
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * Indicates if the limit applied to the content-encoded (compressed) body as
+     * transferred or to the decoded body.
+     *
+     * @return true if the compressed limit has been exceeded, false if the decoded
+     *         limit has been exceeded
+     */
+    public boolean isCompressedLimit() {
+        return isCompressedLimit;
+    }
+}
@@ -0,0 +1,152 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides {@link ExecutorService}s suitable for running retrievals through
+ * {@link HttpPromiseBuilder#withExecutor(java.util.concurrent.Executor)}.
+ * <p>
+ * Blocking retrievals should not be run on the common pool as they would
+ * occupy threads intended for CPU-bound work.
+ * </p>
+ */
+public class RetrievalExecutors {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final String SHARED_VIRTUAL_THREAD_NAME_PREFIX = "RetrievalExecutors-virtual";
+
+    private RetrievalExecutors() {
+        // utility class
+    }
+
+    /**
+     * Creates a new bounded pool intended for blocking I/O.
+     * <p>
+     * The pool runs at most the given number of tasks concurrently, holding up to
+     * the given number of further tasks in queue. Tasks exceeding the queue
+     * capacity are rejected; futures of {@link HttpPromiseBuilder} complete
+     * exceptionally in that case. Idle threads are terminated after a minute.
+     * Threads are named by the given prefix and do not prevent JVM shutdown.
+     * </p>
+     *
+     * @param namePrefix prefix of thread names; must not be null or empty
+     * @param maximumThreads maximum number of concurrently run tasks; must be
+     *        positive
+     * @param queueCapacity maximum number of waiting tasks; must be positive
+     * @return new bounded I/O pool; should be shut down when no longer needed
+     */
+    public static ExecutorService newBoundedIoPool(String namePrefix, int maximumThreads, int queueCapacity) {
+        if ((namePrefix == null) || namePrefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("thread name prefix must not be null or empty");
+        }
+
+        if (maximumThreads < 1) {
+            throw new IllegalArgumentException("maximum number of threads must be positive");
+        }
+
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be positive");
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            maximumThreads,
+            maximumThreads,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            new NamedDaemonThreadFactory(namePrefix),
+            new ThreadPoolExecutor.AbortPolicy() //
+        );
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    /**
+     * Checks if virtual threads are supported by the runtime. Virtual threads
+     * require Java 21 or later.
+     *
+     * @return Are virtual threads supported?
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadSupport.isSupported();
+    }
+
+    /**
+     * Creates a new executor starting a new virtual thread for each task.
+     * <p>
+     * Virtual threads make blocking retrievals cheap: tens of thousands of
+     * requests can be waiting for the network concurrently without occupying
+     * platform threads. The number of concurrent tasks is not limited.
+     * </p>
+     *
+     * @param namePrefix prefix of thread names; must not be null or empty
+     * @return new executor running each task on a new virtual thread
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     *         by the runtime, see {@link #isVirtualThreadSupported()}
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        if ((namePrefix == null) || namePrefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("thread name prefix must not be null or empty");
+        }
+
+        return VirtualThreadSupport.newVirtualThreadPerTaskExecutor(namePrefix);
+    }
+
+    /**
+     * Returns an executor starting a new virtual thread for each task which is
+     * shared by the whole application.
+     * <p>
+     * The executor is created on first use and lives as long as the JVM; it
+     * cannot be shut down. As virtual threads do not occupy platform threads
+     * while idle, there is no need to release it. Use
+     * {@link #newVirtualThreadPerTaskExecutor(String)} instead if tasks need to
+     * be awaited or terminated on shutdown.
+     * </p>
+     *
+     * @return shared executor running each task on a new virtual thread
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     *         by the runtime, see {@link #isVirtualThreadSupported()}
+     */
+    public static Executor getSharedVirtualThreadExecutor() {
+        // checked before initializing the holder which would otherwise fail
+        // permanently
+        if (!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        }
+
+        return SharedVirtualThreadExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Holds the shared virtual thread executor, created when first accessed.
+     */
+    private static class SharedVirtualThreadExecutorHolder {
+        // only exposed as Executor so it cannot be shut down by users
+        static final Executor EXECUTOR = VirtualThreadSupport.newVirtualThreadPerTaskExecutor(SHARED_VIRTUAL_THREAD_NAME_PREFIX)::execute;
+    }
+
+    /**
+     * Creates daemon threads named by a prefix and a sequential number.
+     */
+    static class NamedDaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        NamedDaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Fails with a {@link ResponseSizeLimitExceededException} as soon as more than
+ * the given number of bytes are attempted to be read. At most one byte beyond
+ * the limit is read from the wrapped stream.
+ * <p>
+ * {@link ResponseSizeLimitExceededException}s thrown by the wrapped stream (i.e.
+ * from a limit applied before decoding) are passed through and also reported to
+ * the listener.
+ * </p>
+ */
+class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private final boolean isCompressedLimit;
+    private final Consumer<ResponseSizeLimitExceededException> onLimitExceeded;
+
+    private long count = 0;
+
+    /**
+     * Wraps the given stream.
+     *
+     * @param in stream to wrap
+     * @param limit maximum number of bytes to read; negative for no limit
+     * @param isCompressedLimit Does the limit apply to compressed content?
+     * @param onLimitExceeded notified when the limit has been exceeded; may be
+     *        null
+     */
+    SizeLimitedInputStream(InputStream in, long limit, boolean isCompressedLimit, Consumer<ResponseSizeLimitExceededException> onLimitExceeded) {
+        super(in);
+        this.limit = limit;
+        this.isCompressedLimit = isCompressedLimit;
+        this.onLimitExceeded = onLimitExceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b;
+        try {
+            b = super.read();
+        } catch (ResponseSizeLimitExceededException ex) {
+            throw reportLimitExceeded(ex);
+        }
+
+        if (b >= 0) {
+            count++;
+            checkLimit();
+        }
+
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int maxLength = len;
+        if (limit >= 0) {
+            // read up to one byte beyond the limit to detect excess
+            maxLength = (int) Math.min(len, limit - count + 1);
+        }
+
+        int read;
+        try {
+            read = super.read(b, off, maxLength);
+        } catch (ResponseSizeLimitExceededException ex) {
+            throw reportLimitExceeded(ex);
+        }
+
+        if (read > 0) {
+            count += read;
+            checkLimit();
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long maxSkip = n;
+        if (limit >= 0) {
+            maxSkip = Math.min(n, limit - count + 1);
+        }
+
+        long skipped;
+        try {
+            skipped = super.skip(maxSkip);
+        } catch (ResponseSizeLimitExceededException ex) {
+            throw reportLimitExceeded(ex);
+        }
+
+        if (skipped > 0) {
+            count += skipped;
+            checkLimit();
+        }
+
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkLimit() throws ResponseSizeLimitExceededException {
+        if ((limit >= 0) && (count > limit)) {
+            throw reportLimitExceeded(new ResponseSizeLimitExceededException(limit, isCompressedLimit));
+        }
+    }
+
+    private ResponseSizeLimitExceededException reportLimitExceeded(ResponseSizeLimitExceededException ex) {
+        if (onLimitExceeded != null) {
+            onLimitExceeded.accept(ex);
+        }
+
+        return ex;
+    }
+}
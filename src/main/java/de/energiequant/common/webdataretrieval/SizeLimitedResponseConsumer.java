@@ -0,0 +1,146 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+/**
+ * Buffers a response into a {@link SimpleHttpResponse} like the default
+ * consumer of asynchronous clients, but fails the exchange as soon as the body
+ * exceeds the applicable size limit.
+ * <p>
+ * Bodies received from asynchronous clients are not decoded yet, so the
+ * compressed limit applies to content-encoded bodies, otherwise the decoded
+ * limit applies. Instances are stateful and must only be used for a single
+ * exchange.
+ * </p>
+ */
+class SizeLimitedResponseConsumer implements AsyncResponseConsumer<SimpleHttpResponse> {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final long maximumDecodedSize;
+    private final long maximumCompressedSize;
+    private final Consumer<ResponseSizeLimitExceededException> onLimitExceeded;
+
+    private final ByteArrayBuffer buffer = new ByteArrayBuffer(INITIAL_BUFFER_SIZE);
+    private volatile SimpleHttpResponse response;
+    private volatile ContentType contentType;
+    private volatile FutureCallback<SimpleHttpResponse> resultCallback;
+    private volatile long limit = -1;
+    private volatile boolean isCompressedLimit = false;
+
+    /**
+     * Creates a new consumer for a single exchange.
+     *
+     * @param maximumDecodedSize maximum size of bodies without content encoding;
+     *        negative for no limit
+     * @param maximumCompressedSize maximum size of content-encoded bodies;
+     *        negative for no limit
+     * @param onLimitExceeded notified when a limit has been exceeded; may be null
+     */
+    SizeLimitedResponseConsumer(long maximumDecodedSize, long maximumCompressedSize, Consumer<ResponseSizeLimitExceededException> onLimitExceeded) {
+        this.maximumDecodedSize = maximumDecodedSize;
+        this.maximumCompressedSize = maximumCompressedSize;
+        this.onLimitExceeded = onLimitExceeded;
+    }
+
+    @Override
+    public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context, FutureCallback<SimpleHttpResponse> resultCallback) throws HttpException, IOException {
+        SimpleHttpResponse simpleResponse = SimpleHttpResponse.copy(response);
+
+        if (entityDetails == null) {
+            resultCallback.completed(simpleResponse);
+            return;
+        }
+
+        isCompressedLimit = isContentEncoded(entityDetails.getContentEncoding());
+        limit = isCompressedLimit ? maximumCompressedSize : maximumDecodedSize;
+
+        // abort right away if announced length already exceeds the limit
+        checkLimit(entityDetails.getContentLength());
+
+        this.response = simpleResponse;
+        this.contentType = ContentType.parse(entityDetails.getContentType());
+        this.resultCallback = resultCallback;
+    }
+
+    private static boolean isContentEncoded(String contentEncoding) {
+        if (contentEncoding == null) {
+            return false;
+        }
+
+        String normalized = contentEncoding.trim().toLowerCase(Locale.ROOT);
+
+        return !(normalized.isEmpty() || "identity".equals(normalized));
+    }
+
+    private void checkLimit(long length) throws ResponseSizeLimitExceededException {
+        if ((limit >= 0) && (length > limit)) {
+            ResponseSizeLimitExceededException ex = new ResponseSizeLimitExceededException(limit, isCompressedLimit);
+            if (onLimitExceeded != null) {
+                onLimitExceeded.accept(ex);
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) throws HttpException, IOException {
+        // not relevant
+    }
+
+    @Override
+    public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+        capacityChannel.update(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void consume(ByteBuffer src) throws IOException {
+        checkLimit((long) buffer.length() + src.remaining());
+
+        if (src.hasArray()) {
+            buffer.append(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+        } else {
+            while (src.hasRemaining()) {
+                buffer.append(src.get());
+            }
+        }
+    }
+
+    @Override
+    public void streamEnd(List<? extends Header> trailers) throws HttpException, IOException {
+        SimpleHttpResponse simpleResponse = response;
+        simpleResponse.setBody(buffer.toByteArray(), contentType);
+
+        FutureCallback<SimpleHttpResponse> callback = resultCallback;
+        releaseResources();
+
+        callback.completed(simpleResponse);
+    }
+
+    @Override
+    public void failed(Exception cause) {
+        releaseResources();
+    }
+
+    @Override
+    public void releaseResources() {
+        buffer.clear();
+    }
+}
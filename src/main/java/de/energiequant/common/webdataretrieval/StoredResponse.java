@@ -0,0 +1,528 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+
+/**
+ * Holds a complete response as it has been stored to a {@link ResponseCache}
+ * in order to be restored for later requests of the same URL.
+ * <p>
+ * Validators of the response (ETag and Last-Modified headers) are used to
+ * request the URL conditionally; if the server indicates that the response
+ * has not been modified, the stored response is restored instead of
+ * transferring the body again.
+ * </p>
+ * <p>
+ * Responses which are still fresh according to their Cache-Control, Expires
+ * and Age headers can be restored without any request at all, see
+ * {@link #isFresh(Instant)}. Responses varying by request headers (Vary
+ * header) are only restored for requests sending the same values as the
+ * request they have been received for.
+ * </p>
+ * <p>
+ * The holder is immutable; the body is not copied and thus must not be
+ * modified.
+ * </p>
+ */
+public class StoredResponse {
+
+    /**
+     * Headers of a 304 response which describe the transferred (empty) message
+     * rather than the stored representation, so they must not replace stored
+     * headers.
+     */
+    private static final Set<String> NOT_UPDATED_HEADERS = new HashSet<>(Arrays.asList(
+        HttpHeaders.CONTENT_ENCODING.toLowerCase(Locale.ROOT),
+        HttpHeaders.CONTENT_LENGTH.toLowerCase(Locale.ROOT),
+        HttpHeaders.CONTENT_MD5.toLowerCase(Locale.ROOT),
+        HttpHeaders.CONTENT_TYPE.toLowerCase(Locale.ROOT),
+        HttpHeaders.TRANSFER_ENCODING.toLowerCase(Locale.ROOT)
+    ));
+
+    private final String requestedLocation;
+    private final String retrievedLocation;
+    private final int statusCode;
+    private final Header[] headers;
+    private final byte[] body;
+    private final String contentEncoding;
+    private final Instant storedTime;
+    private final Header[] varyingRequestHeaders;
+
+    /**
+     * Creates a new stored response.
+     *
+     * @param requestedLocation requested URL; must not be null
+     * @param retrievedLocation actual location of the response after following
+     *        any redirects; null if same as requested
+     * @param statusCode HTTP status code
+     * @param headers response headers; must not be null
+     * @param body response body as stored by {@link HttpRetrieval}; must not be
+     *        null and must not be modified afterwards
+     * @param contentEncoding Content-Encoding the body is still encoded with,
+     *        see {@link HttpRetrieval#getResponseContentEncoding()}; null if not
+     *        encoded
+     * @param storedTime time the response has been received or last been
+     *        validated; must not be null
+     */
+    public StoredResponse(String requestedLocation, String retrievedLocation, int statusCode, Header[] headers, byte[] body, String contentEncoding, Instant storedTime) {
+        this(requestedLocation, retrievedLocation, statusCode, headers, body, contentEncoding, storedTime, new Header[0]);
+    }
+
+    /**
+     * Creates a new stored response which varies by the given request headers.
+     *
+     * @param requestedLocation requested URL; must not be null
+     * @param retrievedLocation actual location of the response after following
+     *        any redirects; null if same as requested
+     * @param statusCode HTTP status code
+     * @param headers response headers; must not be null
+     * @param body response body as stored by {@link HttpRetrieval}; must not be
+     *        null and must not be modified afterwards
+     * @param contentEncoding Content-Encoding the body is still encoded with,
+     *        see {@link HttpRetrieval#getResponseContentEncoding()}; null if not
+     *        encoded
+     * @param storedTime time the response has been received or last been
+     *        validated; must not be null
+     * @param varyingRequestHeaders values of all request headers named by the
+     *        Vary response header as they have been sent; headers which have not
+     *        been sent are omitted; must not be null
+     */
+    public StoredResponse(String requestedLocation, String retrievedLocation, int statusCode, Header[] headers, byte[] body, String contentEncoding, Instant storedTime, Header[] varyingRequestHeaders) {
+        if (requestedLocation == null) {
+            throw new IllegalArgumentException("requested location must not be null");
+        }
+
+        if (headers == null) {
+            throw new IllegalArgumentException("headers must not be null");
+        }
+
+        if (body == null) {
+            throw new IllegalArgumentException("body must not be null");
+        }
+
+        if (storedTime == null) {
+            throw new IllegalArgumentException("stored time must not be null");
+        }
+
+        if (varyingRequestHeaders == null) {
+            throw new IllegalArgumentException("varying request headers must not be null");
+        }
+
+        this.requestedLocation = requestedLocation;
+        this.retrievedLocation = (retrievedLocation != null) ? retrievedLocation : requestedLocation;
+        this.statusCode = statusCode;
+        this.headers = headers.clone();
+        this.body = body;
+        this.contentEncoding = contentEncoding;
+        this.storedTime = storedTime;
+        this.varyingRequestHeaders = varyingRequestHeaders.clone();
+    }
+
+    /**
+     * Returns the initially requested location.
+     *
+     * @return initially requested location
+     */
+    public String getRequestedLocation() {
+        return requestedLocation;
+    }
+
+    /**
+     * Returns the actual location of the response after following any
+     * redirects.
+     *
+     * @return actual location of the response
+     */
+    public String getRetrievedLocation() {
+        return retrievedLocation;
+    }
+
+    /**
+     * Returns the HTTP status code of the response.
+     *
+     * @return HTTP status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns all response headers.
+     *
+     * @return copy of all response headers
+     */
+    public Header[] getHeaders() {
+        return headers.clone();
+    }
+
+    /**
+     * Returns the value of the first header of the given name.
+     *
+     * @param name header name, case-insensitive
+     * @return value of first header of given name; null if not present
+     */
+    public String getFirstHeaderValue(String name) {
+        for (Header header : headers) {
+            if (header.getName().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the response body as stored. The array is not copied and must not
+     * be modified.
+     *
+     * @return response body, encoded as indicated by
+     *         {@link #getContentEncoding()}
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the Content-Encoding the body is still encoded with.
+     *
+     * @return Content-Encoding of the body; null if not encoded
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Returns the time the response has been received or last been validated.
+     *
+     * @return time of reception or last validation
+     */
+    public Instant getStoredTime() {
+        return storedTime;
+    }
+
+    /**
+     * Returns the entity tag (ETag header) of the response.
+     *
+     * @return entity tag; null if not present
+     */
+    public String getETag() {
+        return getFirstHeaderValue(HttpHeaders.ETAG);
+    }
+
+    /**
+     * Returns the Last-Modified header value of the response.
+     *
+     * @return Last-Modified header value; null if not present
+     */
+    public String getLastModified() {
+        return getFirstHeaderValue(HttpHeaders.LAST_MODIFIED);
+    }
+
+    /**
+     * Checks if the response can be validated by a conditional request, i.e. if
+     * it holds an ETag or Last-Modified header.
+     *
+     * @return Can the response be validated?
+     */
+    public boolean hasValidators() {
+        return (getETag() != null) || (getLastModified() != null);
+    }
+
+    /**
+     * Creates a copy of this response after the server indicated that it has
+     * not been modified (304). Headers sent along with the 304 response replace
+     * all stored headers of the same name, except for those describing the
+     * transferred message.
+     *
+     * @param notModifiedHeaders headers of the 304 response; must not be null
+     * @param retrievedLocation actual location of the 304 response after
+     *        following any redirects; null to keep the stored location
+     * @param validatedTime time of validation; must not be null
+     * @return validated copy of this response
+     */
+    public StoredResponse revalidated(Header[] notModifiedHeaders, String retrievedLocation, Instant validatedTime) {
+        if (notModifiedHeaders == null) {
+            throw new IllegalArgumentException("headers must not be null");
+        }
+
+        Set<String> updatedNames = new HashSet<>();
+        for (Header header : notModifiedHeaders) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            if (!NOT_UPDATED_HEADERS.contains(name)) {
+                updatedNames.add(name);
+            }
+        }
+
+        List<Header> mergedHeaders = new ArrayList<>();
+        for (Header header : headers) {
+            if (!updatedNames.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                mergedHeaders.add(header);
+            }
+        }
+
+        for (Header header : notModifiedHeaders) {
+            if (updatedNames.contains(header.getName().toLowerCase(Locale.ROOT))) {
+                mergedHeaders.add(header);
+            }
+        }
+
+        return new StoredResponse(
+            requestedLocation,
+            (retrievedLocation != null) ? retrievedLocation : this.retrievedLocation,
+            statusCode,
+            mergedHeaders.toArray(new Header[0]),
+            body,
+            contentEncoding,
+            validatedTime,
+            varyingRequestHeaders //
+        );
+    }
+
+    /**
+     * Returns the request headers the response varies by, as they have been
+     * sent when the response was received.
+     *
+     * @return copy of varying request headers
+     */
+    public Header[] getVaryingRequestHeaders() {
+        return varyingRequestHeaders.clone();
+    }
+
+    /**
+     * Checks if the response may be restored for a request sending the given
+     * header values, as indicated by the Vary header.
+     *
+     * @param requestHeaderValues provides the value of the request header of the
+     *        given (lower-case) name; null if the header is not sent
+     * @return Does the response match the request?
+     */
+    public boolean matchesVaryingRequestHeaders(Function<String, String> requestHeaderValues) {
+        for (String name : getVaryHeaderNames(headers)) {
+            if ("*".equals(name)) {
+                // varies by something other than request headers
+                return false;
+            }
+
+            String storedValue = null;
+            for (Header header : varyingRequestHeaders) {
+                if (header.getName().equalsIgnoreCase(name)) {
+                    storedValue = header.getValue();
+                    break;
+                }
+            }
+
+            if (!Objects.equals(storedValue, requestHeaderValues.apply(name))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the names of all request headers the given response headers vary
+     * by, as listed in Vary headers.
+     *
+     * @param headers response headers
+     * @return lower-case names of request headers the response varies by,
+     *         including {@code *} if it varies by other aspects; empty if it does
+     *         not vary
+     */
+    static List<String> getVaryHeaderNames(Header[] headers) {
+        List<String> names = new ArrayList<>();
+
+        for (Header header : headers) {
+            if (!header.getName().equalsIgnoreCase(HttpHeaders.VARY)) {
+                continue;
+            }
+
+            for (String name : header.getValue().split(",")) {
+                name = name.trim().toLowerCase(Locale.ROOT);
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Checks if the response may be stored at all, i.e. if it has not been
+     * marked by a {@code no-store} Cache-Control directive.
+     *
+     * @return May the response be stored?
+     */
+    public boolean isStorable() {
+        return !getCacheControlDirectives().containsKey("no-store");
+    }
+
+    /**
+     * Checks if the response can be of any use when stored, i.e. if it is a
+     * successful (200) and storable response which is either fresh for some
+     * time or can be validated by a conditional request.
+     *
+     * @return Should the response be stored?
+     */
+    boolean isWorthStoring() {
+        if ((statusCode != HttpStatus.SC_OK) || !isStorable()) {
+            return false;
+        }
+
+        return hasValidators() || !getFreshnessLifetime().isZero();
+    }
+
+    /**
+     * Returns the time the response may be restored for without validation
+     * after it has been generated. The lifetime is given by the {@code max-age}
+     * Cache-Control directive or else by the Expires header relative to the
+     * Date header. Responses marked by a {@code no-cache} directive always need
+     * validation.
+     *
+     * @return freshness lifetime; zero if the response always needs validation
+     */
+    public Duration getFreshnessLifetime() {
+        Map<String, String> directives = getCacheControlDirectives();
+
+        if (directives.containsKey("no-cache")) {
+            return Duration.ZERO;
+        }
+
+        if (directives.containsKey("max-age")) {
+            try {
+                return Duration.ofSeconds(Math.max(0, Long.parseLong(directives.get("max-age"))));
+            } catch (NumberFormatException ex) {
+                // invalid values must be regarded as stale
+                return Duration.ZERO;
+            }
+        }
+
+        String expiresValue = getFirstHeaderValue(HttpHeaders.EXPIRES);
+        if (expiresValue == null) {
+            return Duration.ZERO;
+        }
+
+        Instant expires = parseHttpDate(expiresValue);
+        if (expires == null) {
+            // invalid values must be regarded as already expired
+            return Duration.ZERO;
+        }
+
+        String dateValue = getFirstHeaderValue(HttpHeaders.DATE);
+        Instant date = (dateValue != null) ? parseHttpDate(dateValue) : null;
+        if (date == null) {
+            date = storedTime;
+        }
+
+        Duration lifetime = Duration.between(date, expires);
+        return lifetime.isNegative() ? Duration.ZERO : lifetime;
+    }
+
+    /**
+     * Returns the age of the response at the given time, being the age
+     * indicated by the Age header when it has been stored plus the time it has
+     * been stored for.
+     *
+     * @param now current time
+     * @return age of the response; never negative
+     */
+    public Duration getAge(Instant now) {
+        long ageSeconds = 0;
+
+        String ageValue = getFirstHeaderValue(HttpHeaders.AGE);
+        if (ageValue != null) {
+            try {
+                ageSeconds = Math.max(0, Long.parseLong(ageValue.trim()));
+            } catch (NumberFormatException ex) {
+                // ignore invalid values
+            }
+        }
+
+        Duration storedDuration = Duration.between(storedTime, now);
+        if (storedDuration.isNegative()) {
+            storedDuration = Duration.ZERO;
+        }
+
+        return storedDuration.plusSeconds(ageSeconds);
+    }
+
+    /**
+     * Checks if the response is still fresh at the given time, i.e. if it may be
+     * restored without validating it by a request.
+     *
+     * @param now current time
+     * @return Is the response still fresh?
+     */
+    public boolean isFresh(Instant now) {
+        return getFreshnessLifetime().compareTo(getAge(now)) > 0;
+    }
+
+    /**
+     * Collects all directives of Cache-Control headers.
+     *
+     * @return lower-case directive names mapped to their unquoted values; null
+     *         values for directives without value
+     */
+    private Map<String, String> getCacheControlDirectives() {
+        Map<String, String> directives = new HashMap<>();
+
+        for (Header header : headers) {
+            if (!header.getName().equalsIgnoreCase(HttpHeaders.CACHE_CONTROL)) {
+                continue;
+            }
+
+            for (String directive : header.getValue().split(",")) {
+                int separatorIndex = directive.indexOf('=');
+                String name = (separatorIndex < 0) ? directive : directive.substring(0, separatorIndex);
+                name = name.trim().toLowerCase(Locale.ROOT);
+                if (name.isEmpty()) {
+                    continue;
+                }
+
+                String value = null;
+                if (separatorIndex >= 0) {
+                    value = directive.substring(separatorIndex + 1).trim();
+                    if ((value.length() >= 2) && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                }
+
+                // first occurrence takes precedence
+                directives.putIfAbsent(name, value);
+            }
+        }
+
+        return directives;
+    }
+
+    /**
+     * Parses an HTTP date as used by Date and Expires headers.
+     *
+     * @param value header value
+     * @return parsed time; null if invalid
+     */
+    private static Instant parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a response body while it is being received, as an alternative to
+ * decoders which are applied to fully buffered {@link HttpRetrieval}s. See
+ * {@link HttpPromiseBuilder#HttpPromiseBuilder(StreamingDecoder)}.
+ *
+ * @param <T> type of decoded result
+ */
+@FunctionalInterface
+public interface StreamingDecoder<T> {
+    /**
+     * Decodes the response body. Status and headers of the response are already
+     * available through the given retrieval, see
+     * {@link HttpRetrieval#getResponseStatusCode()} and
+     * {@link HttpRetrieval#getResponseHeaders()}.
+     * <p>
+     * The stream provides the decoded content, i.e. compression as indicated by
+     * Content-Encoding has already been reverted. The stream must not be used
+     * after this method returns; it will be closed by the caller.
+     * </p>
+     *
+     * @param retrieval retrieval the response has been received by
+     * @param content decoded response body
+     * @return decoded result
+     * @throws IOException if reading or decoding the body fails
+     */
+    T decode(HttpRetrieval retrieval, InputStream content) throws IOException;
+}
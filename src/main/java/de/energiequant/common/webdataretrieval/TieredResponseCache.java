@@ -0,0 +1,88 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Combines multiple caches into tiers, usually a fast but volatile
+ * {@link MemoryResponseCache} in front of a persistent
+ * {@link DiskResponseCache}.
+ * <p>
+ * Lookups query all tiers in order until a response is found; responses found
+ * in a later tier are copied to all earlier tiers. Responses are stored to and
+ * invalidated in all tiers. Each tier decides on its own whether to keep a
+ * response.
+ * </p>
+ */
+public class TieredResponseCache implements ResponseCache {
+
+    private final List<ResponseCache> tiers;
+
+    /**
+     * Combines the given caches, queried in given order.
+     *
+     * @param tiers caches to combine, fastest first; must not be empty or
+     *        contain null
+     */
+    public TieredResponseCache(ResponseCache... tiers) {
+        if ((tiers == null) || (tiers.length == 0)) {
+            throw new IllegalArgumentException("at least one tier is required");
+        }
+
+        if (Arrays.asList(tiers).contains(null)) {
+            throw new IllegalArgumentException("tiers must not be null");
+        }
+
+        this.tiers = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(tiers)));
+    }
+
+    @Override
+    public StoredResponse lookup(String url) {
+        for (int i = 0; i < tiers.size(); i++) {
+            StoredResponse response = tiers.get(i).lookup(url);
+            if (response == null) {
+                continue;
+            }
+
+            for (int j = 0; j < i; j++) {
+                tiers.get(j).store(url, response);
+            }
+
+            return response;
+        }
+
+        return null;
+    }
+
+    @Override
+    public void store(String url, StoredResponse response) {
+        for (ResponseCache tier : tiers) {
+            tier.store(url, response);
+        }
+    }
+
+    @Override
+    public void storeRevalidated(String url, StoredResponse previous, StoredResponse revalidated) {
+        for (ResponseCache tier : tiers) {
+            tier.storeRevalidated(url, previous, revalidated);
+        }
+    }
+
+    @Override
+    public void invalidate(String url) {
+        for (ResponseCache tier : tiers) {
+            tier.invalidate(url);
+        }
+    }
+
+    /**
+     * Returns all combined caches.
+     *
+     * @return unmodifiable list of tiers, fastest first
+     */
+    public List<ResponseCache> getTiers() {
+        return tiers;
+    }
+}
@@ -0,0 +1,50 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the last response of each URL which can be validated by a conditional
+ * request (i.e. which holds an ETag or Last-Modified header). This is useful
+ * to poll URLs which only change occasionally: the body is only transferred
+ * again once it has changed.
+ * <p>
+ * Responses without validators or marked by a {@code no-store} Cache-Control
+ * directive are not stored. The cache is not bounded, so it should only be
+ * used for a limited set of URLs; see {@link MemoryResponseCache} for a
+ * bounded cache.
+ * </p>
+ */
+public class ValidatorCache implements ResponseCache {
+
+    private final ConcurrentMap<String, StoredResponse> responsesByUrl = new ConcurrentHashMap<>();
+
+    @Override
+    public StoredResponse lookup(String url) {
+        return responsesByUrl.get(url);
+    }
+
+    @Override
+    public void store(String url, StoredResponse response) {
+        if (!response.hasValidators() || !response.isStorable()) {
+            invalidate(url);
+            return;
+        }
+
+        responsesByUrl.put(url, response);
+    }
+
+    @Override
+    public void invalidate(String url) {
+        responsesByUrl.remove(url);
+    }
+
+    /**
+     * Returns the number of stored responses.
+     *
+     * @return number of stored responses
+     */
+    public int size() {
+        return responsesByUrl.size();
+    }
+}
@@ -0,0 +1,38 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Provides access to virtual threads if supported by the runtime.
+ * <p>
+ * This is the implementation for Java versions not supporting virtual threads.
+ * The library is packaged as a multi-release JAR; a replacement of this class
+ * is used when running on Java 21 or later.
+ * </p>
+ */
+class VirtualThreadSupport {
+
+    private VirtualThreadSupport() {
+        // utility class
+    }
+
+    /**
+     * Checks if virtual threads are supported.
+     *
+     * @return Are virtual threads supported?
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates a new executor starting a new virtual thread for each task.
+     *
+     * @param namePrefix prefix of thread names
+     * @return new executor running each task on a new virtual thread
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+    }
+}
@@ -0,0 +1,41 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides access to virtual threads if supported by the runtime.
+ * <p>
+ * This is the implementation for Java 21 or later, packaged into the versioned
+ * section of the multi-release JAR.
+ * </p>
+ */
+class VirtualThreadSupport {
+
+    private VirtualThreadSupport() {
+        // utility class
+    }
+
+    /**
+     * Checks if virtual threads are supported.
+     *
+     * @return Are virtual threads supported?
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates a new executor starting a new virtual thread for each task.
+     *
+     * @param namePrefix prefix of thread names
+     * @return new executor running each task on a new virtual thread
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual()
+                .name(namePrefix + "-", 1)
+                .factory() //
+        );
+    }
+}
@@ -0,0 +1,419 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class ArchiveDecodersTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final ArchiveEntryDecoder<String> ENTRY_AS_STRING = (entry, content) -> entry.getName() + "=" + IOUtils.toString(content, StandardCharsets.UTF_8);
+
+    private ArchiveDecoders decoders;
+    private HttpRetrieval mockRetrieval;
+
+    @Before
+    public void setUp() {
+        decoders = new ArchiveDecoders();
+        mockRetrieval = mock(HttpRetrieval.class);
+    }
+
+    private static OutputStream compress(CompressionFormat format, OutputStream out) throws IOException {
+        if (format == null) {
+            return out;
+        }
+
+        switch (format) {
+            case GZIP:
+                return new GzipCompressorOutputStream(out);
+            case BZIP2:
+                return new BZip2CompressorOutputStream(out);
+            case XZ:
+                return new XZCompressorOutputStream(out);
+            default:
+                throw new IllegalArgumentException("unsupported format " + format);
+        }
+    }
+
+    private static CompressionFormat getCompressionFormat(ArchiveFormat format) {
+        switch (format) {
+            case TAR_GZIP:
+                return CompressionFormat.GZIP;
+            case TAR_BZIP2:
+                return CompressionFormat.BZIP2;
+            case TAR_XZ:
+                return CompressionFormat.XZ;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Creates an archive of the given format holding a directory "dir/" and
+     * entries named by the given names, each holding its name as content.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static byte[] createArchive(ArchiveFormat format, String... names) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (OutputStream compressed = compress(getCompressionFormat(format), baos)) {
+            ArchiveOutputStream archive = (format == ArchiveFormat.ZIP)
+                ? new ZipArchiveOutputStream(compressed)
+                : new TarArchiveOutputStream(compressed);
+
+            archive.putArchiveEntry(createEntry(format, "dir/", 0));
+            archive.closeArchiveEntry();
+
+            for (String name : names) {
+                byte[] content = name.getBytes(StandardCharsets.UTF_8);
+                archive.putArchiveEntry(createEntry(format, name, content.length));
+                archive.write(content);
+                archive.closeArchiveEntry();
+            }
+
+            archive.finish();
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static ArchiveEntry createEntry(ArchiveFormat format, String name, long size) {
+        if (format == ArchiveFormat.ZIP) {
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setSize(size);
+            return entry;
+        }
+
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(size);
+        return entry;
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderArchiveFormats() {
+        ArchiveFormat[] formats = ArchiveFormat.values();
+        Object[][] out = new Object[formats.length][];
+        for (int i = 0; i < formats.length; i++) {
+            out[i] = new Object[] { formats[i] };
+        }
+        return out;
+    }
+
+    private static byte[] createLargeContent(int seed, int size) {
+        Random random = new Random(seed);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + random.nextInt(20));
+        }
+        return content;
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderCompressionFormats() {
+        CompressionFormat[] formats = CompressionFormat.values();
+        Object[][] out = new Object[formats.length][];
+        for (int i = 0; i < formats.length; i++) {
+            out[i] = new Object[] { formats[i] };
+        }
+        return out;
+    }
+
+    @Test
+    @DataProvider({ "true, false, false", "false, true, false", "false, false, true" })
+    public void testFirstArchiveEntry_nullArgument_throwsIllegalArgumentException(boolean nullFormat, boolean nullFilter, boolean nullDecoder) {
+        // Arrange
+        ArchiveFormat format = nullFormat ? null : ArchiveFormat.ZIP;
+        Predicate<String> filter = nullFilter ? null : name -> true;
+        ArchiveEntryDecoder<String> decoder = nullDecoder ? null : ENTRY_AS_STRING;
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        decoders.firstArchiveEntry(format, filter, decoder);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testFirstArchiveEntry_matchingEntry_returnsDecodedEntry(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "a.txt", "dir/b.csv", "c.csv");
+
+        // Act
+        String res = decoders.firstArchiveEntry(format, name -> name.endsWith(".csv"), ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, is(equalTo("dir/b.csv=dir/b.csv")));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testFirstArchiveEntry_matchingEntry_abandonsRemainingBody(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "a.txt", "b.txt");
+
+        // Act
+        decoders.firstArchiveEntry(format, name -> name.equals("a.txt"), ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        verify(mockRetrieval).abandonResponseBody();
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testFirstArchiveEntry_noMatchingEntry_returnsNull(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "a.txt", "b.txt");
+
+        // Act
+        String res = decoders.firstArchiveEntry(format, name -> name.equals("missing"), ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, is(nullValue()));
+        verify(mockRetrieval, never()).abandonResponseBody();
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testFirstArchiveEntry_directoryMatchingFilter_isIgnored(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "dir/a.txt");
+
+        // Act
+        String res = decoders.firstArchiveEntry(format, name -> name.startsWith("dir/"), ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, is(equalTo("dir/a.txt=dir/a.txt")));
+    }
+
+    @Test
+    @DataProvider({ "true, false, false", "false, true, false", "false, false, true" })
+    public void testArchiveEntries_nullArgument_throwsIllegalArgumentException(boolean nullFormat, boolean nullFilter, boolean nullDecoder) {
+        // Arrange
+        ArchiveFormat format = nullFormat ? null : ArchiveFormat.ZIP;
+        Predicate<String> filter = nullFilter ? null : name -> true;
+        ArchiveEntryDecoder<String> decoder = nullDecoder ? null : ENTRY_AS_STRING;
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        decoders.archiveEntries(format, filter, decoder);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testArchiveEntries_matchingEntries_returnsDecodedEntriesInOrder(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "a.csv", "b.txt", "c.csv");
+
+        // Act
+        List<String> res = decoders.archiveEntries(format, name -> name.endsWith(".csv"), ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, contains("a.csv=a.csv", "c.csv=c.csv"));
+        verify(mockRetrieval, never()).abandonResponseBody();
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testArchiveEntries_entriesPartiallyRead_returnsAllDecodedEntries(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "aaaaaaaa", "bbbbbbbb", "cccccccc");
+
+        // Act
+        List<Integer> res = decoders.archiveEntries(format, name -> true, (entry, content) -> content.read())
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, contains((int) 'a', (int) 'b', (int) 'c'));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderArchiveFormats")
+    public void testArchiveEntries_noMatchingEntry_returnsEmptyList(ArchiveFormat format) throws Exception {
+        // Arrange
+        byte[] archive = createArchive(format, "a.txt");
+
+        // Act
+        List<String> res = decoders.archiveEntries(format, name -> false, ENTRY_AS_STRING)
+            .decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, is(empty()));
+    }
+
+    @Test
+    public void testArchiveEntries_decoderClosesContent_continuesWithNextEntry() throws Exception {
+        // Arrange
+        byte[] archive = createArchive(ArchiveFormat.TAR, "a.txt", "b.txt");
+
+        // Act
+        List<String> res = decoders.archiveEntries(ArchiveFormat.TAR, name -> true, (entry, content) -> {
+            content.close();
+            return entry.getName();
+        }).decode(mockRetrieval, new ByteArrayInputStream(archive));
+
+        // Assert
+        assertThat(res, contains("a.txt", "b.txt"));
+    }
+
+    @Test
+    @DataProvider({ "true, false", "false, true" })
+    public void testDecompressed_nullArgument_throwsIllegalArgumentException(boolean nullFormat, boolean nullDecoder) {
+        // Arrange
+        CompressionFormat format = nullFormat ? null : CompressionFormat.GZIP;
+        StreamingDecoder<String> decoder = nullDecoder ? null : (retrieval, content) -> "";
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        decoders.decompressed(format, decoder);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCompressionFormats")
+    public void testDecompressed_compressedContent_passesDecompressedContentToDecoder(CompressionFormat format) throws Exception {
+        // Arrange
+        byte[] expected = "some content to be compressed".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = compress(format, baos)) {
+            os.write(expected);
+        }
+
+        // Act
+        byte[] res = decoders.decompressed(format, (retrieval, content) -> IOUtils.toByteArray(content))
+            .decode(mockRetrieval, new ByteArrayInputStream(baos.toByteArray()));
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCompressionFormats")
+    public void testDecompressed_concatenatedStreams_decompressesAllStreams(CompressionFormat format) throws Exception {
+        // Arrange
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (String part : new String[] { "first,", "second" }) {
+            ByteArrayOutputStream partStream = new ByteArrayOutputStream();
+            try (OutputStream os = compress(format, partStream)) {
+                os.write(part.getBytes(StandardCharsets.UTF_8));
+            }
+            baos.write(partStream.toByteArray());
+        }
+
+        // Act
+        String res = decoders.decompressed(format, (retrieval, content) -> IOUtils.toString(content, StandardCharsets.UTF_8))
+            .decode(mockRetrieval, new ByteArrayInputStream(baos.toByteArray()));
+
+        // Assert
+        assertThat(res, is(equalTo("first,second")));
+    }
+
+    @Test
+    @DataProvider({ "true, false, false", "false, true, false", "false, false, true" })
+    public void testDecompressedInParallel_nullArgument_throwsIllegalArgumentException(boolean nullFormat, boolean nullDecoder, boolean nullPool) {
+        // Arrange
+        CompressionFormat format = nullFormat ? null : CompressionFormat.GZIP;
+        StreamingDecoder<String> decoder = nullDecoder ? null : (retrieval, content) -> "";
+        ForkJoinPool pool = nullPool ? null : ForkJoinPool.commonPool();
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        decoders.decompressedInParallel(format, decoder, pool);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCompressionFormats")
+    public void testDecompressedInParallel_concatenatedStreams_passesAllStreamsInOrderToDecoder(CompressionFormat format) throws Exception {
+        // Arrange
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            byte[] part = createLargeContent(i, 1500000);
+            expected.write(part);
+            try (OutputStream os = compress(format, CloseShieldOutputStream.wrap(baos))) {
+                os.write(part);
+            }
+        }
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(baos.toByteArray()).asReadOnlyBuffer());
+
+        // Act
+        byte[] res = decoders.decompressedInParallel(format, (retrieval, content) -> IOUtils.toByteArray(content))
+            .apply(mockRetrieval);
+
+        // Assert
+        assertThat(res, is(equalTo(expected.toByteArray())));
+    }
+
+    @Test
+    public void testDecompressedInParallel_corruptContent_throwsUncheckedIOException() throws Exception {
+        // Arrange
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = compress(CompressionFormat.GZIP, baos)) {
+            os.write(createLargeContent(0, 100000));
+        }
+        byte[] compressed = baos.toByteArray();
+        compressed[compressed.length / 2] ^= 0x55;
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(compressed).asReadOnlyBuffer());
+
+        thrown.expect(UncheckedIOException.class);
+
+        // Act
+        decoders.decompressedInParallel(CompressionFormat.GZIP, (retrieval, content) -> IOUtils.toByteArray(content))
+            .apply(mockRetrieval);
+
+        // Assert (nothing to do)
+    }
+}
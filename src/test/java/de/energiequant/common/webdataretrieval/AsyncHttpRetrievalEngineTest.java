@@ -0,0 +1,565 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.TestBodies.gzip;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class AsyncHttpRetrievalEngineTest {
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private CloseableHttpAsyncClient mockClient;
+    private AsyncHttpRetrievalEngine engine;
+
+    @Before
+    public void setUp() {
+        mockClient = mock(CloseableHttpAsyncClient.class);
+        engine = new AsyncHttpRetrievalEngine(mockClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    private FutureCallback<SimpleHttpResponse> captureCallback() {
+        ArgumentCaptor<FutureCallback<SimpleHttpResponse>> captor = ArgumentCaptor.forClass(FutureCallback.class);
+        verify(mockClient).execute(
+            Mockito.any(SimpleHttpRequest.class),
+            Mockito.any(HttpContext.class),
+            captor.capture() //
+        );
+        return captor.getValue();
+    }
+
+    @Test
+    public void testConstructor_always_startsClient() {
+        // Arrange (nothing to do)
+
+        // Act (nothing to do, performed during setup)
+
+        // Assert
+        verify(mockClient).start();
+    }
+
+    @Test
+    public void testRequestByGet_unsupportedProtocol_completesWithFalseWithoutExecution() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "ftp://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+        verify(mockClient, never()).execute(
+            Mockito.any(SimpleHttpRequest.class),
+            Mockito.any(HttpContext.class),
+            Mockito.any() //
+        );
+    }
+
+    @Test
+    public void testRequestByGet_pending_doesNotComplete() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        assertThat(future.isDone(), is(false));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequestByGet_abortedWhilePending_cancelsExchange() {
+        // Arrange
+        Future<SimpleHttpResponse> mockExchange = mock(Future.class);
+        when(mockClient.execute(Mockito.any(SimpleHttpRequest.class), Mockito.any(HttpContext.class), Mockito.any()))
+            .thenReturn(mockExchange);
+        HttpRetrieval retrieval = new HttpRetrieval();
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Act
+        retrieval.abort();
+
+        // Assert
+        verify(mockExchange).cancel(true);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequestByGet_abortedAfterCompletion_doesNotCancelExchange() {
+        // Arrange
+        Future<SimpleHttpResponse> mockExchange = mock(Future.class);
+        when(mockClient.execute(Mockito.any(SimpleHttpRequest.class), Mockito.any(HttpContext.class), Mockito.any()))
+            .thenReturn(mockExchange);
+        HttpRetrieval retrieval = new HttpRetrieval();
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+        captureCallback().completed(SimpleHttpResponse.create(200, "test", ContentType.TEXT_PLAIN));
+
+        // Act
+        retrieval.abort();
+
+        // Assert
+        verify(mockExchange, never()).cancel(Mockito.anyBoolean());
+    }
+
+    @Test
+    public void testRequestByGet_aborted_completesWithFalseWithoutExecution() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        retrieval.abort();
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+        verify(mockClient, never()).execute(
+            Mockito.any(SimpleHttpRequest.class),
+            Mockito.any(HttpContext.class),
+            Mockito.any() //
+        );
+    }
+
+    @Test
+    public void testRequestByGet_always_appliesUserAgent() {
+        // Arrange
+        String expectedUserAgent = "Expected UA/1.2";
+        HttpRetrieval retrieval = new HttpRetrieval().setUserAgent(expectedUserAgent);
+
+        // Act
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        ArgumentCaptor<SimpleHttpRequest> captor = ArgumentCaptor.forClass(SimpleHttpRequest.class);
+        verify(mockClient).execute(captor.capture(), Mockito.any(HttpContext.class), Mockito.any());
+        assertThat(captor.getValue().getFirstHeader(HttpHeaders.USER_AGENT).getValue(), is(expectedUserAgent));
+    }
+
+    @Test
+    public void testRequestByGet_always_appliesMaximumFollowedRedirects() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval().setMaximumFollowedRedirects(3);
+
+        // Act
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        ArgumentCaptor<SimpleHttpRequest> captor = ArgumentCaptor.forClass(SimpleHttpRequest.class);
+        verify(mockClient).execute(captor.capture(), Mockito.any(HttpContext.class), Mockito.any());
+        assertThat(captor.getValue().getConfig().getMaxRedirects(), is(3));
+    }
+
+    @Test
+    public void testRequestByGet_always_advertisesSupportedContentEncodingsInOrder() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        String expected = String.join(", ", retrieval.getContentDecoderMap().keySet());
+
+        // Act
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        ArgumentCaptor<SimpleHttpRequest> captor = ArgumentCaptor.forClass(SimpleHttpRequest.class);
+        verify(mockClient).execute(captor.capture(), Mockito.any(HttpContext.class), Mockito.any());
+        String acceptEncoding = captor.getValue().getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue();
+        assertThat(acceptEncoding, is(equalTo(expected)));
+        assertThat(acceptEncoding, startsWith("br, "));
+    }
+
+    @Test
+    public void testRequestByGet_completed_completesWithTrueAndStoresResponse() throws Exception {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody("test", ContentType.TEXT_PLAIN);
+
+        // Act
+        captureCallback().completed(response);
+
+        // Assert
+        assertThat(future.getNow(null), is(true));
+        assertThat(retrieval.hasCompleteContentResponseStatus(), is(true));
+        assertThat(new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8), is(equalTo("test")));
+    }
+
+    @Test
+    public void testRequestByGet_gzipEncoded_storesDecodedContent() throws Exception {
+        // Arrange
+        String expected = "some content that has been compressed";
+        HttpRetrieval retrieval = new HttpRetrieval();
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody(gzip(expected.getBytes(StandardCharsets.UTF_8)), ContentType.TEXT_PLAIN);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        // Act
+        captureCallback().completed(response);
+
+        // Assert
+        assertThat(new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8), is(equalTo(expected)));
+        assertThat(retrieval.getResponseHeaders().getFirstByName(HttpHeaders.CONTENT_ENCODING), is(nullValue()));
+    }
+
+    @Test
+    public void testRequestByGet_deflateEncoded_storesDecodedContent() throws Exception {
+        // Arrange
+        String expected = "some content that has been compressed";
+        HttpRetrieval retrieval = new HttpRetrieval();
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(baos)) {
+            dos.write(expected.getBytes(StandardCharsets.UTF_8));
+        }
+
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody(baos.toByteArray(), ContentType.TEXT_PLAIN);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "deflate");
+
+        // Act
+        captureCallback().completed(response);
+
+        // Assert
+        assertThat(new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8), is(equalTo(expected)));
+    }
+
+    @Test
+    public void testRequestByGet_completed_decodesOnExecutor() {
+        // Arrange
+        Executor mockExecutor = mock(Executor.class);
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        CompletableFuture<Boolean> future = engine.requestByGet(spyRetrieval, "http://a.local/", mockExecutor);
+
+        // Act
+        captureCallback().completed(new SimpleHttpResponse(200));
+
+        // Assert
+        verify(mockExecutor).execute(Mockito.any(Runnable.class));
+        verify(spyRetrieval, never()).onAsyncHttpResponseCompleted(Mockito.any(), Mockito.any());
+        assertThat(future.isDone(), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_executorRejects_completesWithFalse() {
+        // Arrange
+        Executor rejectingExecutor = runnable -> {
+            throw new RejectedExecutionException();
+        };
+        HttpRetrieval retrieval = new HttpRetrieval();
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", rejectingExecutor);
+
+        // Act
+        captureCallback().completed(new SimpleHttpResponse(200));
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_failed_completesWithFalse() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Act
+        captureCallback().failed(new IOException());
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+        assertThat(retrieval.hasCompleteContentResponseStatus(), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_cancelled_completesWithFalse() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Act
+        captureCallback().cancelled();
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_always_executesWithContextFromRetrieval() {
+        // Arrange
+        HttpClientContext mockContext = mock(HttpClientContext.class);
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        Mockito.doReturn(mockContext).when(spyRetrieval).createHttpClientContext();
+
+        // Act
+        engine.requestByGet(spyRetrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        verify(mockClient).execute(Mockito.any(SimpleHttpRequest.class), Mockito.same(mockContext), Mockito.any());
+    }
+
+    @Test
+    public void testClose_always_closesClient() {
+        // Arrange
+        doNothing().when(mockClient).close(Mockito.any());
+
+        // Act
+        engine.close();
+
+        // Assert
+        verify(mockClient).close(Mockito.any());
+    }
+
+    @Test
+    public void testRequestByGet_closed_completesExceptionallyWithoutExecution() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval();
+        engine.close();
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        Throwable cause = future.handle((result, ex) -> ex).join();
+        assertThat(cause, is(instanceOf(IllegalStateException.class)));
+        verify(mockClient, never()).execute(
+            Mockito.any(SimpleHttpRequest.class),
+            Mockito.any(HttpContext.class),
+            Mockito.any() //
+        );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRequestByGet_closedAndRetrievalForNewMode_doesNotBuildClient() {
+        // Arrange
+        Function<HttpVersionMode, CloseableHttpAsyncClient> mockClientFactory = mock(Function.class);
+        when(mockClientFactory.apply(Mockito.any())).thenReturn(mockClient);
+        AsyncHttpRetrievalEngine engine = new AsyncHttpRetrievalEngine(mockClientFactory);
+        engine.close();
+        HttpRetrieval retrieval = new HttpRetrieval().setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE);
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        assertThat(future.isCompletedExceptionally(), is(true));
+        verify(mockClientFactory, never()).apply(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE);
+    }
+
+    @Test
+    public void testIsClosed_closed_returnsTrue() {
+        // Arrange
+        engine.close();
+
+        // Act
+        boolean result = engine.isClosed();
+
+        // Assert
+        assertThat(result, is(true));
+    }
+
+    @Test
+    public void testIsClosed_notClosed_returnsFalse() {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean result = engine.isClosed();
+
+        // Assert
+        assertThat(result, is(false));
+    }
+
+    @Test
+    public void testRequestByGet_http2Retrieval_executesOnClientForMode() {
+        // Arrange
+        CloseableHttpAsyncClient mockHttp11Client = mock(CloseableHttpAsyncClient.class);
+        CloseableHttpAsyncClient mockHttp2Client = mock(CloseableHttpAsyncClient.class);
+        AsyncHttpRetrievalEngine engine = new AsyncHttpRetrievalEngine(
+            mode -> (mode == HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE) ? mockHttp2Client : mockHttp11Client //
+        );
+        HttpRetrieval retrieval = new HttpRetrieval().setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE);
+
+        // Act
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        verify(mockHttp2Client).start();
+        verify(mockHttp2Client).execute(Mockito.any(SimpleHttpRequest.class), Mockito.any(HttpContext.class), Mockito.any());
+        verify(mockHttp11Client, never()).execute(
+            Mockito.any(SimpleHttpRequest.class),
+            Mockito.any(HttpContext.class),
+            Mockito.any() //
+        );
+    }
+
+    @Test
+    public void testRequestByGet_withResponseSizeLimit_executesWithSizeLimitedConsumer() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval().setMaximumResponseBodySize(1000);
+
+        // Act
+        engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        // Assert
+        verify(mockClient).execute(
+            Mockito.any(AsyncRequestProducer.class),
+            Mockito.any(SizeLimitedResponseConsumer.class),
+            Mockito.any(HttpContext.class),
+            Mockito.any() //
+        );
+    }
+
+    @Test
+    public void testRequestByGet_decodedSizeLimitExceeded_completesWithFalseAndRecordsException() throws Exception {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval().setMaximumResponseBodySize(10);
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, "http://a.local/", DIRECT_EXECUTOR);
+
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody(gzip(new byte[11]), ContentType.TEXT_PLAIN);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<FutureCallback<SimpleHttpResponse>> captor = ArgumentCaptor.forClass(FutureCallback.class);
+        verify(mockClient).execute(
+            Mockito.any(AsyncRequestProducer.class),
+            Mockito.any(SizeLimitedResponseConsumer.class),
+            Mockito.any(HttpContext.class),
+            captor.capture() //
+        );
+
+        // Act
+        captor.getValue().completed(response);
+
+        // Assert
+        assertThat(future.getNow(null), is(false));
+        assertThat(retrieval.getResponseSizeLimitExceededException(), is(notNullValue()));
+    }
+
+    @Test
+    public void testRequestByGet_cachedResponseWithETag_requestsConditionally() {
+        // Arrange
+        String url = "http://a.local/";
+        ResponseCache cache = new ValidatorCache();
+        cache.store(url, new StoredResponse(
+            url,
+            null,
+            200,
+            new Header[] { new BasicHeader(HttpHeaders.ETAG, "\"abc\"") },
+            new byte[0],
+            null,
+            Instant.now() //
+        ));
+        HttpRetrieval retrieval = new HttpRetrieval().setResponseCache(cache);
+
+        // Act
+        engine.requestByGet(retrieval, url, DIRECT_EXECUTOR);
+
+        // Assert
+        ArgumentCaptor<SimpleHttpRequest> captor = ArgumentCaptor.forClass(SimpleHttpRequest.class);
+        verify(mockClient).execute(captor.capture(), Mockito.any(HttpContext.class), Mockito.any());
+        assertThat(captor.getValue().getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(), is(equalTo("\"abc\"")));
+    }
+
+    @Test
+    public void testRequestByGet_notModified_restoresCachedResponse() throws Exception {
+        // Arrange
+        String url = "http://a.local/";
+        byte[] body = "cached".getBytes(StandardCharsets.UTF_8);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(url, new StoredResponse(
+            url,
+            null,
+            200,
+            new Header[] { new BasicHeader(HttpHeaders.ETAG, "\"abc\"") },
+            body,
+            null,
+            Instant.now() //
+        ));
+        HttpRetrieval retrieval = new HttpRetrieval().setResponseCache(cache);
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, url, DIRECT_EXECUTOR);
+
+        // Act
+        captureCallback().completed(new SimpleHttpResponse(304));
+
+        // Assert
+        assertThat(future.getNow(null), is(true));
+        assertThat(retrieval.isResponseNotModified(), is(true));
+        assertThat(retrieval.getResponseBodyBytes(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testRequestByGet_freshCachedResponse_restoresWithoutRequest() {
+        // Arrange
+        String url = "http://a.local/";
+        byte[] body = "cached".getBytes(StandardCharsets.UTF_8);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(url, new StoredResponse(
+            url,
+            null,
+            200,
+            new Header[] {
+                new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+                new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=3600"),
+            },
+            body,
+            null,
+            Instant.now() //
+        ));
+        HttpRetrieval retrieval = new HttpRetrieval().setResponseCache(cache);
+
+        // Act
+        CompletableFuture<Boolean> future = engine.requestByGet(retrieval, url, DIRECT_EXECUTOR);
+
+        // Assert
+        assertThat(future.getNow(null), is(true));
+        assertThat(retrieval.isResponseFromCache(), is(true));
+        assertThat(retrieval.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(retrieval.getLastRetrievedLocation(), is(url));
+        verify(mockClient, never()).execute(Mockito.any(SimpleHttpRequest.class), Mockito.any(HttpContext.class), Mockito.any());
+    }
+}
@@ -0,0 +1,144 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class BodyBufferPoolTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    @DataProvider({ "0, 1", "-1, 1", "1, 0", "1, -1" })
+    public void testConstructor_invalidLimits_throwsIllegalArgumentException(int maximumRetainedBufferSize, int maximumRetainedBuffersPerSize) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new BodyBufferPool(maximumRetainedBufferSize, maximumRetainedBuffersPerSize);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testAcquire_negativeSize_throwsIllegalArgumentException() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        pool.acquire(-1);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "0", "1", "4096", "4097", "1000000", "33554432", "33554433" })
+    public void testAcquire_empty_returnsBufferOfAtLeastRequestedSize(int minimumSize) {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+
+        // Act
+        byte[] buffer = pool.acquire(minimumSize);
+
+        // Assert
+        assertThat(buffer.length, is(greaterThanOrEqualTo(minimumSize)));
+    }
+
+    @Test
+    public void testAcquire_afterRelease_returnsReleasedBuffer() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+        byte[] released = pool.acquire(10000);
+        pool.release(released);
+
+        // Act
+        byte[] buffer = pool.acquire(9000);
+
+        // Assert
+        assertThat(buffer, is(sameInstance(released)));
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    public void testAcquire_releasedBufferOfOtherSizeClass_returnsNewBuffer() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+        byte[] released = pool.acquire(10000);
+        pool.release(released);
+
+        // Act
+        byte[] buffer = pool.acquire(100000);
+
+        // Assert
+        assertThat(buffer, is(not(sameInstance(released))));
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testRelease_exceedingBuffersPerSize_dropsBuffer() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool(1024 * 1024, 2);
+        byte[] first = pool.acquire(5000);
+        byte[] second = pool.acquire(5000);
+        byte[] third = pool.acquire(5000);
+
+        // Act
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        // Assert
+        assertThat(pool.size(), is(2));
+    }
+
+    @Test
+    public void testRelease_exceedingRetainedBufferSize_dropsBuffer() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool(8192, 2);
+        byte[] buffer = pool.acquire(10000);
+
+        // Act
+        pool.release(buffer);
+
+        // Assert
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    @DataProvider({ "1", "100", "5000" })
+    public void testRelease_bufferNotSizedByPool_dropsBuffer(int size) {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+
+        // Act
+        pool.release(new byte[size]);
+
+        // Assert
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    public void testRelease_null_ignored() {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+
+        // Act
+        pool.release(null);
+
+        // Assert
+        assertThat(pool.size(), is(0));
+    }
+}
@@ -0,0 +1,105 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class ByteBufferReadableChannelTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static ByteBuffer createSource(int size) {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put((byte) i);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    @DataProvider({ "10, 20, 10", "20, 10, 10", "10, 10, 10" })
+    public void testRead_remainingSource_returnsNumberOfBytesCopied(int sourceSize, int destinationSize, int expectedLength) throws Exception {
+        // Arrange
+        ByteBufferReadableChannel channel = new ByteBufferReadableChannel(createSource(sourceSize));
+        ByteBuffer destination = ByteBuffer.allocate(destinationSize);
+
+        // Act
+        int res = channel.read(destination);
+
+        // Assert
+        assertThat(res, is(expectedLength));
+        assertThat(destination.position(), is(expectedLength));
+    }
+
+    @Test
+    public void testRead_repeatedly_copiesWholeSourceInOrder() throws Exception {
+        // Arrange
+        ByteBuffer source = createSource(25);
+        ByteBuffer expected = source.duplicate();
+        ByteBufferReadableChannel channel = new ByteBufferReadableChannel(source);
+        ByteBuffer destination = ByteBuffer.allocate(25);
+        ByteBuffer chunk = ByteBuffer.allocate(10);
+
+        // Act
+        while (channel.read(chunk) >= 0) {
+            chunk.flip();
+            destination.put(chunk);
+            chunk.clear();
+        }
+
+        // Assert
+        destination.flip();
+        assertThat(destination, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testRead_exhaustedSource_returnsMinusOne() throws Exception {
+        // Arrange
+        ByteBufferReadableChannel channel = new ByteBufferReadableChannel(createSource(0));
+
+        // Act
+        int res = channel.read(ByteBuffer.allocate(10));
+
+        // Assert
+        assertThat(res, is(-1));
+    }
+
+    @Test
+    public void testRead_closed_throwsClosedChannelException() throws Exception {
+        // Arrange
+        ByteBufferReadableChannel channel = new ByteBufferReadableChannel(createSource(10));
+        channel.close();
+        thrown.expect(ClosedChannelException.class);
+
+        // Act
+        channel.read(ByteBuffer.allocate(10));
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testIsOpen_afterClose_returnsFalse() {
+        // Arrange
+        ByteBufferReadableChannel channel = new ByteBufferReadableChannel(createSource(10));
+
+        // Act
+        channel.close();
+
+        // Assert
+        assertThat(channel.isOpen(), is(false));
+    }
+}
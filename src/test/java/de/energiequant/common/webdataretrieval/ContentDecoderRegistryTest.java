@@ -0,0 +1,220 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.TestBodies.createTestBody;
+import static de.energiequant.common.webdataretrieval.TestBodies.deflate;
+import static de.energiequant.common.webdataretrieval.TestBodies.gzip;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.github.luben.zstd.Zstd;
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class ContentDecoderRegistryTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    /**
+     * Brotli stream holding no data: WBITS 16, ISLAST, ISLASTEMPTY
+     */
+    private static final byte[] BROTLI_EMPTY = new byte[] { 0x06 };
+
+    private static byte[] decode(InputStreamFactory decoder, byte[] bytes) throws IOException {
+        try (InputStream is = decoder.create(new ByteArrayInputStream(bytes))) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    @Test
+    public void testCreateDecoders_allAvailable_returnsEncodingsInOrderOfPreference() {
+        // Arrange (nothing to do)
+
+        // Act
+        Map<String, InputStreamFactory> res = ContentDecoderRegistry.createDecoders(true, true);
+
+        // Assert
+        assertThat(res.keySet(), contains("br", "zstd", "gzip", "x-gzip", "deflate"));
+    }
+
+    @Test
+    public void testCreateDecoders_noneAvailable_returnsOnlyBuiltInEncodings() {
+        // Arrange (nothing to do)
+
+        // Act
+        Map<String, InputStreamFactory> res = ContentDecoderRegistry.createDecoders(false, false);
+
+        // Assert
+        assertThat(res.keySet(), contains("gzip", "x-gzip", "deflate"));
+    }
+
+    @Test
+    @DataProvider({ "gzip", "x-gzip" })
+    public void testCreateDecoders_gzip_decodesContent(String encoding) throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(10000);
+        InputStreamFactory decoder = ContentDecoderRegistry.createDecoders(false, false).get(encoding);
+
+        // Act
+        byte[] res = decode(decoder, gzip(expected));
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    @DataProvider({ "false", "true" })
+    public void testCreateDecoders_deflate_decodesZlibWrappedAndRawContent(boolean nowrap) throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(10000);
+        InputStreamFactory decoder = ContentDecoderRegistry.createDecoders(false, false).get("deflate");
+
+        // Act
+        byte[] res = decode(decoder, deflate(expected, nowrap));
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testCreateDecoders_brotli_decodesContent() throws IOException {
+        // Arrange
+        InputStreamFactory decoder = ContentDecoderRegistry.createDecoders(true, false).get("br");
+
+        // Act
+        byte[] res = decode(decoder, BROTLI_EMPTY);
+
+        // Assert
+        assertThat(res, is(equalTo(new byte[0])));
+    }
+
+    @Test
+    public void testGetDefaultDecoders_always_isUnmodifiable() {
+        // Arrange
+        Map<String, InputStreamFactory> map = ContentDecoderRegistry.getDefaultDecoders();
+
+        thrown.expect(UnsupportedOperationException.class);
+
+        // Act
+        map.put("test", null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetDefaultDecoders_always_supportsBrotli() {
+        // Arrange (nothing to do)
+
+        // Act
+        Map<String, InputStreamFactory> res = ContentDecoderRegistry.getDefaultDecoders();
+
+        // Assert
+        assertThat(res.containsKey("br"), is(true));
+    }
+
+    @Test
+    public void testGetDefaultDecoders_zstdNativeLibraryLoadable_decodesZstd() throws IOException {
+        // Arrange
+        byte[] expected = "zstd encoded content".getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = Zstd.compress(expected);
+
+        // Act
+        Map<String, InputStreamFactory> res = ContentDecoderRegistry.getDefaultDecoders();
+
+        // Assert
+        assertThat(res.containsKey("zstd"), is(true));
+        try (InputStream is = res.get("zstd").create(new ByteArrayInputStream(encoded))) {
+            assertThat(IOUtils.toByteArray(is), is(equalTo(expected)));
+        }
+    }
+
+    @Test
+    @DataProvider({ "-1", "0", "1000" })
+    public void testGetDefaultRegistry_sameLimit_returnsSameInstance(long limit) {
+        // Arrange
+        Map<String, InputStreamFactory> first = ContentDecoderRegistry.getDefaultRegistry(limit);
+
+        // Act
+        Map<String, InputStreamFactory> second = ContentDecoderRegistry.getDefaultRegistry(limit);
+
+        // Assert
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void testGetDefaultRegistry_differentLimits_returnsDifferentInstances() {
+        // Arrange
+        Map<String, InputStreamFactory> first = ContentDecoderRegistry.getDefaultRegistry(1000);
+
+        // Act
+        Map<String, InputStreamFactory> second = ContentDecoderRegistry.getDefaultRegistry(2000);
+
+        // Assert
+        assertThat(second, is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void testGetDefaultRegistry_always_keepsOrderOfDefaultDecoders() {
+        // Arrange (nothing to do)
+
+        // Act
+        Map<String, InputStreamFactory> res = ContentDecoderRegistry.getDefaultRegistry(1000);
+
+        // Assert
+        assertThat(res.keySet(), contains(ContentDecoderRegistry.getDefaultDecoders().keySet().toArray()));
+    }
+
+    @Test
+    public void testLimitCompressedSize_limitExceeded_failsDecoding() throws IOException {
+        // Arrange
+        byte[] compressed = deflate(createTestBody(100000), false);
+        InputStreamFactory decoder = ContentDecoderRegistry.limitCompressedSize(
+            ContentDecoderRegistry.createDecoders(false, false),
+            compressed.length - 1 //
+        ).get("deflate");
+
+        thrown.expect(ResponseSizeLimitExceededException.class);
+
+        // Act
+        decode(decoder, compressed);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "-1", "0" })
+    public void testLimitCompressedSize_withinLimitOrUnlimited_decodesContent(int additionalLimit) throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(100000);
+        byte[] compressed = deflate(expected, false);
+        long limit = (additionalLimit < 0) ? -1 : compressed.length + additionalLimit;
+        InputStreamFactory decoder = ContentDecoderRegistry.limitCompressedSize(
+            ContentDecoderRegistry.createDecoders(false, false),
+            limit //
+        ).get("deflate");
+
+        // Act
+        byte[] res = decode(decoder, compressed);
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+}
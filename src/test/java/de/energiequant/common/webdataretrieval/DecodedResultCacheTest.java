@@ -0,0 +1,406 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class DecodedResultCacheTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final String URL = "http://a.local/";
+
+    private static HttpRetrieval createRetrieval(CaseInsensitiveHeaders headers, byte[] body, String contentEncoding) {
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseHeaders()).thenReturn(headers);
+        when(mockRetrieval.getEncodedResponseBody()).thenReturn((body != null) ? ByteBuffer.wrap(body).asReadOnlyBuffer() : null);
+        when(mockRetrieval.getResponseContentEncoding()).thenReturn(contentEncoding);
+        return mockRetrieval;
+    }
+
+    @Test
+    @DataProvider({ "0", "-1" })
+    public void testConstructor_nonPositiveMaximumEntries_throwsIllegalArgumentException(int maximumEntries) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new DecodedResultCache<Object>(maximumEntries);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testLookup_nothingStored_returnsNull() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+
+        // Act
+        Object res = cache.lookup(URL, "sha256:00");
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testLookup_storedWithSameValidator_returnsSameInstance() {
+        // Arrange
+        Object value = new Object();
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        cache.store(URL, "etag:\"abc\"", value);
+
+        // Act
+        Object res = cache.lookup(URL, "etag:\"abc\"");
+
+        // Assert
+        assertThat(res, is(sameInstance(value)));
+    }
+
+    @Test
+    public void testLookup_storedWithOtherValidator_returnsNull() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        cache.store(URL, "etag:\"abc\"", new Object());
+
+        // Act
+        Object res = cache.lookup(URL, "etag:\"def\"");
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testLookup_storedForOtherUrl_returnsNull() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        cache.store("http://b.local/", "etag:\"abc\"", new Object());
+
+        // Act
+        Object res = cache.lookup(URL, "etag:\"abc\"");
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testStore_sameUrl_replacesPreviousResult() {
+        // Arrange
+        Object value = new Object();
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        cache.store(URL, "etag:\"abc\"", new Object());
+
+        // Act
+        cache.store(URL, "etag:\"def\"", value);
+
+        // Assert
+        assertThat(cache.size(), is(1));
+        assertThat(cache.lookup(URL, "etag:\"abc\""), is(nullValue()));
+        assertThat(cache.lookup(URL, "etag:\"def\""), is(sameInstance(value)));
+    }
+
+    @Test
+    public void testStore_exceedingMaximumEntries_evictsLeastRecentlyUsed() {
+        // Arrange
+        Object valueA = new Object();
+        Object valueB = new Object();
+        Object valueC = new Object();
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(2);
+        cache.store("http://a.local/", "x", valueA);
+        cache.store("http://b.local/", "x", valueB);
+        cache.lookup("http://a.local/", "x");
+
+        // Act
+        cache.store("http://c.local/", "x", valueC);
+
+        // Assert
+        assertThat(cache.size(), is(2));
+        assertThat(cache.lookup("http://a.local/", "x"), is(sameInstance(valueA)));
+        assertThat(cache.lookup("http://b.local/", "x"), is(nullValue()));
+        assertThat(cache.lookup("http://c.local/", "x"), is(sameInstance(valueC)));
+    }
+
+    @Test
+    public void testStore_nullValue_throwsIllegalArgumentException() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        cache.store(URL, "x", null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testStore_nullValidator_throwsIllegalArgumentException() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        cache.store(URL, null, new Object());
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testStore_notCacheableValue_throwsIllegalArgumentException() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        cache.store(URL, "x", new StringReader("abc"));
+
+        // Assert (nothing to do)
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderNotCacheableValues() {
+        return new Object[][] {
+            { new StringReader("abc") },
+            { new ByteArrayInputStream(new byte[0]) },
+            { Stream.of("a") },
+            { Arrays.asList("a").iterator() },
+            { Arrays.asList("a").spliterator() },
+            { ByteBuffer.allocate(1) }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderNotCacheableValues")
+    public void testIsCacheable_notMaterialized_returnsFalse(Object value) {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean result = DecodedResultCache.isCacheable(value);
+
+        // Assert
+        assertThat(result, is(false));
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderCacheableValues() {
+        return new Object[][] {
+            { "abc" },
+            { new byte[0] },
+            { Arrays.asList("a") },
+            { new Object() }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderCacheableValues")
+    public void testIsCacheable_materialized_returnsTrue(Object value) {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean result = DecodedResultCache.isCacheable(value);
+
+        // Assert
+        assertThat(result, is(true));
+    }
+
+    @Test
+    public void testInvalidate_stored_removesResult() {
+        // Arrange
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        cache.store(URL, "x", new Object());
+
+        // Act
+        cache.invalidate(URL);
+
+        // Assert
+        assertThat(cache.lookup(URL, "x"), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testComputeValidator_strongETag_returnsETagValidatorWithoutReadingBody() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\""), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res = DecodedResultCache.computeValidator(mockRetrieval);
+
+        // Assert
+        assertThat(res, startsWith("etag:"));
+        verify(mockRetrieval, never()).getEncodedResponseBody();
+        verify(mockRetrieval, never()).getResponseBody();
+    }
+
+    @Test
+    public void testComputeValidator_sameStrongETagDifferentContentEncoding_returnsDifferentValidators() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\""), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\""), new byte[] { 1, 2, 3 }, "gzip");
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(not(equalTo(res2))));
+    }
+
+    @Test
+    public void testComputeValidator_sameStrongETagDifferentContentType_returnsDifferentValidators() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\"").add("Content-Type", "text/plain"), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\"").add("Content-Type", "text/html"), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(not(equalTo(res2))));
+    }
+
+    @Test
+    @DataProvider({ "Accept-Encoding", "accept-encoding", " Accept-Encoding " })
+    public void testComputeValidator_strongETagVaryingByAcceptEncoding_returnsETagValidator(String vary) {
+        // Arrange
+        HttpRetrieval mockRetrieval = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\"").add("Vary", vary), new byte[] { 1, 2, 3 }, "gzip");
+
+        // Act
+        String res = DecodedResultCache.computeValidator(mockRetrieval);
+
+        // Assert
+        assertThat(res, startsWith("etag:"));
+    }
+
+    @Test
+    @DataProvider(splitBy = "\\|", value = { "*", "Accept-Language", "Accept-Encoding, Cookie" })
+    public void testComputeValidator_strongETagVaryingByOtherRequestHeaders_returnsHashOfBody(String vary) {
+        // Arrange
+        HttpRetrieval mockRetrieval = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "\"abc\"").add("Vary", vary), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res = DecodedResultCache.computeValidator(mockRetrieval);
+
+        // Assert
+        assertThat(res, startsWith("sha256:"));
+    }
+
+    @Test
+    @DataProvider({ "\"abc\"", "W/\"abc\"" })
+    public void testComputeValidator_etagAndNoETag_returnDifferentValidators(String etag) {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", etag), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders(), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1.equals(res2), is(etag.startsWith("W/")));
+    }
+
+    @Test
+    public void testComputeValidator_weakETagSameBody_returnsSameHash() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "W/\"abc\""), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders().add("ETag", "W/\"def\""), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(equalTo(res2)));
+    }
+
+    @Test
+    public void testComputeValidator_noETag_returnsSha256OfBody() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createRetrieval(new CaseInsensitiveHeaders(), new byte[0], null);
+
+        // Act
+        String res = DecodedResultCache.computeValidator(mockRetrieval);
+
+        // Assert
+        // SHA-256 of two separator bytes (no content type and no encoding)
+        assertThat(res, is(equalTo("sha256:96a296d224f285c67bee93c30f8a309157f0daa35dc5b87e410b78630a09cfc7")));
+    }
+
+    @Test
+    public void testComputeValidator_differentBody_returnsDifferentHash() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders(), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders(), new byte[] { 1, 2, 4 }, null);
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(not(equalTo(res2))));
+    }
+
+    @Test
+    public void testComputeValidator_differentContentEncoding_returnsDifferentHash() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders(), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders(), new byte[] { 1, 2, 3 }, "gzip");
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(not(equalTo(res2))));
+    }
+
+    @Test
+    public void testComputeValidator_differentContentType_returnsDifferentHash() {
+        // Arrange
+        HttpRetrieval mockRetrieval1 = createRetrieval(new CaseInsensitiveHeaders().add("Content-Type", "text/plain; charset=UTF-8"), new byte[] { 1, 2, 3 }, null);
+        HttpRetrieval mockRetrieval2 = createRetrieval(new CaseInsensitiveHeaders().add("Content-Type", "text/plain; charset=ISO-8859-1"), new byte[] { 1, 2, 3 }, null);
+
+        // Act
+        String res1 = DecodedResultCache.computeValidator(mockRetrieval1);
+        String res2 = DecodedResultCache.computeValidator(mockRetrieval2);
+
+        // Assert
+        assertThat(res1, is(not(equalTo(res2))));
+    }
+
+    @Test
+    public void testComputeValidator_noBody_returnsNull() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createRetrieval(new CaseInsensitiveHeaders(), null, null);
+
+        // Act
+        String res = DecodedResultCache.computeValidator(mockRetrieval);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+}
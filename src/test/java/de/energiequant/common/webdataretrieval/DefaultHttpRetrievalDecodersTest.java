@@ -13,14 +13,29 @@ import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -75,6 +90,21 @@ public class DefaultHttpRetrievalDecodersTest {
         return out;
     }
 
+    @Test
+    public void testBodyAsByteBuffer_always_returnsResponseBodyBuffer() {
+        // Arrange
+        ByteBuffer expectedBuffer = ByteBuffer.wrap(byteArray(1, 2, 3)).asReadOnlyBuffer();
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(expectedBuffer);
+
+        // Act
+        ByteBuffer res = spyDecoders.bodyAsByteBuffer().apply(mockRetrieval);
+
+        // Assert
+        assertThat(res, is(sameInstance(expectedBuffer)));
+        verify(mockRetrieval, never()).getResponseBodyBytes();
+    }
+
     @Test
     public void testBodyAsStringWithFixedCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
         // Arrange
@@ -307,6 +337,632 @@ public class DefaultHttpRetrievalDecodersTest {
         assertThat(result.getRetrievedLocation(), is(nullValue()));
     }
 
+    private static HttpRetrieval createCompleteRetrieval(String url, String etag, byte[] body) {
+        CaseInsensitiveHeaders headers = new CaseInsensitiveHeaders();
+        if (etag != null) {
+            headers.add("ETag", etag);
+        }
+
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getLastRequestedLocation()).thenReturn(url);
+        when(mockRetrieval.hasCompleteContentResponseStatus()).thenReturn(true);
+        when(mockRetrieval.getResponseHeaders()).thenReturn(headers);
+        when(mockRetrieval.getEncodedResponseBody()).thenReturn(ByteBuffer.wrap(body).asReadOnlyBuffer());
+        return mockRetrieval;
+    }
+
+    @Test
+    public void testWithDecodedResultCache_nullDecoder_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.withDecodedResultCache(null, new DecodedResultCache<>(10));
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testWithDecodedResultCache_nullCache_throwsIllegalArgumentException() {
+        // Arrange
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.withDecodedResultCache(mockDecoder, null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "\"abc\"", "null" })
+    public void testWithDecodedResultCache_unchangedBody_returnsPreviousResultWithoutDecoding(String etag) {
+        // Arrange
+        Object expectedResult = new Object();
+        HttpRetrieval mockRetrieval1 = createCompleteRetrieval("http://a.local/", etag, byteArray(1, 2, 3));
+        HttpRetrieval mockRetrieval2 = createCompleteRetrieval("http://a.local/", etag, byteArray(1, 2, 3));
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(expectedResult, new Object());
+
+        Function<HttpRetrieval, Object> decoder = spyDecoders.withDecodedResultCache(mockDecoder, new DecodedResultCache<>(10));
+        decoder.apply(mockRetrieval1);
+
+        // Act
+        Object result = decoder.apply(mockRetrieval2);
+
+        // Assert
+        assertThat(result, is(sameInstance(expectedResult)));
+        verify(mockDecoder, never()).apply(mockRetrieval2);
+    }
+
+    @Test
+    public void testWithDecodedResultCache_changedBody_decodesAgain() {
+        // Arrange
+        Object expectedResult = new Object();
+        HttpRetrieval mockRetrieval1 = createCompleteRetrieval("http://a.local/", null, byteArray(1, 2, 3));
+        HttpRetrieval mockRetrieval2 = createCompleteRetrieval("http://a.local/", null, byteArray(1, 2, 4));
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(new Object(), expectedResult);
+
+        Function<HttpRetrieval, Object> decoder = spyDecoders.withDecodedResultCache(mockDecoder, new DecodedResultCache<>(10));
+        decoder.apply(mockRetrieval1);
+
+        // Act
+        Object result = decoder.apply(mockRetrieval2);
+
+        // Assert
+        assertThat(result, is(sameInstance(expectedResult)));
+    }
+
+    @Test
+    public void testWithDecodedResultCache_changedETag_decodesAgain() {
+        // Arrange
+        Object expectedResult = new Object();
+        HttpRetrieval mockRetrieval1 = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+        HttpRetrieval mockRetrieval2 = createCompleteRetrieval("http://a.local/", "\"def\"", byteArray(1, 2, 3));
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(new Object(), expectedResult);
+
+        Function<HttpRetrieval, Object> decoder = spyDecoders.withDecodedResultCache(mockDecoder, new DecodedResultCache<>(10));
+        decoder.apply(mockRetrieval1);
+
+        // Act
+        Object result = decoder.apply(mockRetrieval2);
+
+        // Assert
+        assertThat(result, is(sameInstance(expectedResult)));
+    }
+
+    @Test
+    public void testWithDecodedResultCache_incompleteContent_alwaysDecodes() {
+        // Arrange
+        Object expectedResult = new Object();
+        HttpRetrieval mockRetrieval = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+        when(mockRetrieval.hasCompleteContentResponseStatus()).thenReturn(false);
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(new Object(), expectedResult);
+
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+        Function<HttpRetrieval, Object> decoder = spyDecoders.withDecodedResultCache(mockDecoder, cache);
+        decoder.apply(mockRetrieval);
+
+        // Act
+        Object result = decoder.apply(mockRetrieval);
+
+        // Assert
+        assertThat(result, is(sameInstance(expectedResult)));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testWithDecodedResultCache_nullResult_isNotCached() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+
+        DecodedResultCache<Object> cache = new DecodedResultCache<>(10);
+
+        // Act
+        Object result = spyDecoders.withDecodedResultCache(mockDecoder, cache).apply(mockRetrieval);
+
+        // Assert
+        assertThat(result, is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testWithDecodedResultCache_readerResult_throwsIllegalArgumentException() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+
+        Function<HttpRetrieval, Reader> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(new StringReader("abc"));
+
+        Function<HttpRetrieval, Reader> decoder = spyDecoders.withDecodedResultCache(mockDecoder, new DecodedResultCache<>(10));
+
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        decoder.apply(mockRetrieval);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testWithDecodedResultCache_streamResult_closesStreamWithoutCaching() {
+        // Arrange
+        HttpRetrieval mockRetrieval = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+
+        AtomicBoolean isClosed = new AtomicBoolean();
+        Function<HttpRetrieval, Stream<String>> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(Stream.of("a").onClose(() -> isClosed.set(true)));
+
+        DecodedResultCache<Stream<String>> cache = new DecodedResultCache<>(10);
+        Function<HttpRetrieval, Stream<String>> decoder = spyDecoders.withDecodedResultCache(mockDecoder, cache);
+
+        // Act
+        try {
+            decoder.apply(mockRetrieval);
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+
+        // Assert
+        assertThat(isClosed.get(), is(true));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testWithDecodedResultCache_wrappedWithMetaData_containerHoldsCurrentTimeAndCachedResult() {
+        // Arrange
+        Object expectedResult = new Object();
+        HttpRetrieval mockRetrieval1 = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+        HttpRetrieval mockRetrieval2 = createCompleteRetrieval("http://a.local/", "\"abc\"", byteArray(1, 2, 3));
+
+        Function<HttpRetrieval, Object> mockDecoder = mock(Function.class);
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(expectedResult);
+
+        Function<HttpRetrieval, RetrievedData<Object>> decoder = spyDecoders.withMetaData(spyDecoders.withDecodedResultCache(mockDecoder, new DecodedResultCache<>(10)));
+
+        doReturn(Instant.ofEpochMilli(1000)).when(spyDecoders).getInstantNow();
+        decoder.apply(mockRetrieval1);
+        doReturn(Instant.ofEpochMilli(2000)).when(spyDecoders).getInstantNow();
+
+        // Act
+        RetrievedData<Object> result = decoder.apply(mockRetrieval2);
+
+        // Assert
+        assertThat(result.getRetrievedTime().toEpochMilli(), is(equalTo(2000L)));
+        assertThat(result.getData(), is(sameInstance(expectedResult)));
+        verify(mockDecoder, never()).apply(mockRetrieval2);
+    }
+
+    @Test
+    public void testStreamingBodyAsStringWithFixedCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.streamingBodyAsStringWithFixedCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testStreamingBodyAsStringWithFixedCharacterSet_always_decodesBodyWithGivenCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+
+        // Act
+        String res = spyDecoders.streamingBodyAsStringWithFixedCharacterSet(charset)
+            .decode(mockRetrieval, new ByteArrayInputStream(bytes));
+
+        // Assert
+        assertThat(res, is(equalTo(expectedResult)));
+    }
+
+    @Test
+    public void testStreamingBodyAsStringWithHeaderCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.streamingBodyAsStringWithHeaderCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testStreamingBodyAsStringWithHeaderCharacterSet_headerWithCorrectCharset_decodesBodyWithHeaderCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type")))
+            .thenReturn("text/plain; charset=" + charsetName);
+
+        Charset wrongCharset = !charset.name().equals("KOI8-R") ? Charset.forName("KOI8-R") : Charset.forName("UTF-8");
+
+        // Act
+        String res = spyDecoders.streamingBodyAsStringWithHeaderCharacterSet(wrongCharset)
+            .decode(mockRetrieval, new ByteArrayInputStream(bytes));
+
+        // Assert
+        assertThat(res, is(equalTo(expectedResult)));
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testStreamingBodyAsStringWithHeaderCharacterSet_headerMissing_decodesBodyWithFallbackCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type"))).thenReturn(null);
+
+        // Act
+        String res = spyDecoders.streamingBodyAsStringWithHeaderCharacterSet(charset)
+            .decode(mockRetrieval, new ByteArrayInputStream(bytes));
+
+        // Assert
+        assertThat(res, is(equalTo(expectedResult)));
+    }
+
+    @Test
+    public void testStreamingWithMetaData_nullDecoder_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.streamingWithMetaData(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testStreamingWithMetaData_anyDecoder_containerHoldsDecodedResultAndMetaData() throws Exception {
+        // Arrange
+        Object expectedResult = new Object();
+        InputStream content = new ByteArrayInputStream(new byte[0]);
+
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        doReturn("http://requested/").when(mockRetrieval).getLastRequestedLocation();
+        doReturn("http://retrieved/").when(mockRetrieval).getLastRetrievedLocation();
+        doReturn(Instant.ofEpochMilli(123456)).when(spyDecoders).getInstantNow();
+
+        StreamingDecoder<Object> mockDecoder = mock(StreamingDecoder.class);
+        when(mockDecoder.decode(Mockito.same(mockRetrieval), Mockito.same(content))).thenReturn(expectedResult);
+
+        // Act
+        RetrievedData<Object> result = spyDecoders.streamingWithMetaData(mockDecoder).decode(mockRetrieval, content);
+
+        // Assert
+        assertThat(result.getData(), is(sameInstance(expectedResult)));
+        assertThat(result.getRequestedLocation(), is(equalTo("http://requested/")));
+        assertThat(result.getRetrievedLocation(), is(equalTo("http://retrieved/")));
+        assertThat(result.getRetrievedTime().toEpochMilli(), is(equalTo(123456L)));
+    }
+
+    @Test
+    public void testBodyAsReaderWithFixedCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.bodyAsReaderWithFixedCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testBodyAsReaderWithFixedCharacterSet_always_decodesBodyWithGivenCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        // Act
+        Reader res = spyDecoders.bodyAsReaderWithFixedCharacterSet(charset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(IOUtils.toString(res), is(equalTo(expectedResult)));
+        verify(mockRetrieval, never()).getResponseBodyBytes();
+    }
+
+    @Test
+    public void testBodyAsReaderWithFixedCharacterSet_noBody_returnsEmptyReader() throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(null);
+
+        // Act
+        Reader res = spyDecoders.bodyAsReaderWithFixedCharacterSet(Charset.forName("UTF-8")).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.read(), is(-1));
+    }
+
+    @Test
+    public void testBodyAsReaderWithFixedCharacterSet_malformedInput_replacesLikeString() throws Exception {
+        // Arrange
+        byte[] bytes = byteArray(0x41, 0xc3, 0x28, 0x42, 0xff);
+        Charset charset = Charset.forName("UTF-8");
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        // Act
+        Reader res = spyDecoders.bodyAsReaderWithFixedCharacterSet(charset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(IOUtils.toString(res), is(equalTo(new String(bytes, charset))));
+    }
+
+    @Test
+    public void testBodyAsReaderWithHeaderCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.bodyAsReaderWithHeaderCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testBodyAsReaderWithHeaderCharacterSet_headerWithCorrectCharset_decodesBodyWithHeaderCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type")))
+            .thenReturn("text/plain; charset=" + charsetName);
+
+        Charset wrongCharset = !charset.name().equals("KOI8-R") ? Charset.forName("KOI8-R") : Charset.forName("UTF-8");
+
+        // Act
+        Reader res = spyDecoders.bodyAsReaderWithHeaderCharacterSet(wrongCharset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(IOUtils.toString(res), is(equalTo(expectedResult)));
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testBodyAsReaderWithHeaderCharacterSet_headerMissing_decodesBodyWithFallbackCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type"))).thenReturn(null);
+
+        // Act
+        Reader res = spyDecoders.bodyAsReaderWithHeaderCharacterSet(charset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(IOUtils.toString(res), is(equalTo(expectedResult)));
+    }
+
+    @Test
+    @DataProvider({ "true, false", "false, true" })
+    public void testStreamingBodyAsReaderWithFixedCharacterSet_nullArgument_throwsIllegalArgumentException(boolean nullCharacterSet, boolean nullDecoder) {
+        // Arrange
+        Charset charset = nullCharacterSet ? null : Charset.forName("UTF-8");
+        ReaderDecoder<String> decoder = nullDecoder ? null : (retrieval, reader) -> IOUtils.toString(reader);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.streamingBodyAsReaderWithFixedCharacterSet(charset, decoder);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testStreamingBodyAsReaderWithFixedCharacterSet_always_passesReaderDecodingWithGivenCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+
+        // Act
+        String res = spyDecoders.streamingBodyAsReaderWithFixedCharacterSet(charset, (retrieval, reader) -> IOUtils.toString(reader))
+            .decode(mockRetrieval, new ByteArrayInputStream(bytes));
+
+        // Assert
+        assertThat(res, is(equalTo(expectedResult)));
+    }
+
+    @Test
+    @DataProvider({ "true, false", "false, true" })
+    public void testStreamingBodyAsReaderWithHeaderCharacterSet_nullArgument_throwsIllegalArgumentException(boolean nullCharacterSet, boolean nullDecoder) {
+        // Arrange
+        Charset charset = nullCharacterSet ? null : Charset.forName("UTF-8");
+        ReaderDecoder<String> decoder = nullDecoder ? null : (retrieval, reader) -> IOUtils.toString(reader);
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.streamingBodyAsReaderWithHeaderCharacterSet(charset, decoder);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testStreamingBodyAsReaderWithHeaderCharacterSet_headerWithCorrectCharset_passesReaderDecodingWithHeaderCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) throws Exception {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type")))
+            .thenReturn("text/plain; charset=" + charsetName);
+
+        Charset wrongCharset = !charset.name().equals("KOI8-R") ? Charset.forName("KOI8-R") : Charset.forName("UTF-8");
+
+        // Act
+        String res = spyDecoders.streamingBodyAsReaderWithHeaderCharacterSet(wrongCharset, (retrieval, reader) -> IOUtils.toString(reader))
+            .decode(mockRetrieval, new ByteArrayInputStream(bytes));
+
+        // Assert
+        assertThat(res, is(equalTo(expectedResult)));
+    }
+
+    @Test
+    public void testBodyAsLinesWithFixedCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.bodyAsLinesWithFixedCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testBodyAsLinesWithFixedCharacterSet_always_decodesLinesWithGivenCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+
+        // Act
+        Stream<String> res = spyDecoders.bodyAsLinesWithFixedCharacterSet(charset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.collect(Collectors.toList()), is(equalTo(Arrays.asList(expectedResult.split("\n")))));
+        verify(mockRetrieval, never()).getResponseBodyBytes();
+    }
+
+    @Test
+    public void testBodyAsLinesWithFixedCharacterSet_noBody_returnsEmptyStream() {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(null);
+
+        // Act
+        Stream<String> res = spyDecoders.bodyAsLinesWithFixedCharacterSet(Charset.forName("UTF-8")).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.count(), is(0L));
+    }
+
+    @Test
+    public void testBodyAsLinesWithFixedCharacterSet_utf16_decodesLinesSequentially() {
+        // Arrange
+        Charset charset = Charset.forName("UTF-16BE");
+        byte[] bytes = "first\r\nsecond\nthird".getBytes(charset);
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        // Act
+        Stream<String> res = spyDecoders.bodyAsLinesWithFixedCharacterSet(charset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.collect(Collectors.toList()), is(equalTo(Arrays.asList("first", "second", "third"))));
+    }
+
+    @Test
+    public void testBodyAsLinesWithFixedCharacterSet_parallel_keepsOrder() {
+        // Arrange
+        List<String> expectedLines = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            expectedLines.add("line " + i);
+        }
+        byte[] bytes = String.join("\n", expectedLines).getBytes(StandardCharsets.UTF_8);
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+
+        // Act
+        Stream<String> res = spyDecoders.bodyAsLinesWithFixedCharacterSet(StandardCharsets.UTF_8).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.parallel().collect(Collectors.toList()), is(equalTo(expectedLines)));
+    }
+
+    @Test
+    public void testBodyAsLinesWithHeaderCharacterSet_nullCharacterSet_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.bodyAsLinesWithHeaderCharacterSet(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataproviderCharsetDecoding")
+    public void testBodyAsLinesWithHeaderCharacterSet_headerWithCorrectCharset_decodesLinesWithHeaderCharacterSet(byte[] bytes, String charsetName, Charset charset, String expectedResult) {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class, Answers.RETURNS_DEEP_STUBS);
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+        when(mockRetrieval.getResponseHeaders().getFirstByName(argEqIgnoreCase("content-type")))
+            .thenReturn("text/plain; charset=" + charsetName);
+
+        Charset wrongCharset = !charset.name().equals("KOI8-R") ? Charset.forName("KOI8-R") : Charset.forName("UTF-8");
+
+        // Act
+        Stream<String> res = spyDecoders.bodyAsLinesWithHeaderCharacterSet(wrongCharset).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.collect(Collectors.toList()), is(equalTo(Arrays.asList(expectedResult.split("\n")))));
+    }
+
+    @Test
+    public void testRecordsInParallel_nullRecordParser_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.recordsInParallel((byte) '\n', null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRecordsInParallel_nullPool_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyDecoders.recordsInParallel((byte) '\n', record -> record, null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRecordsInParallel_largeBody_returnsParsedRecordsInOrder() {
+        // Arrange
+        List<Integer> expectedRecords = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            expectedRecords.add(i);
+            sb.append(i).append(',');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+
+        Function<ByteBuffer, Integer> recordParser = record -> Integer.parseInt(StandardCharsets.US_ASCII.decode(record).toString());
+
+        // Act
+        List<Integer> res = spyDecoders.recordsInParallel((byte) ',', recordParser).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res, is(equalTo(expectedRecords)));
+    }
+
+    @Test
+    public void testRecordsInParallel_noBody_returnsEmptyList() {
+        // Arrange
+        HttpRetrieval mockRetrieval = mock(HttpRetrieval.class);
+        when(mockRetrieval.getResponseBody()).thenReturn(null);
+
+        // Act
+        List<ByteBuffer> res = spyDecoders.recordsInParallel((byte) '\n', record -> record).apply(mockRetrieval);
+
+        // Assert
+        assertThat(res.isEmpty(), is(true));
+    }
+
     @Test
     public void testGetInstantNow_always_returnsCurrentInstant() {
         // Arrange
@@ -0,0 +1,583 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class DiskResponseCacheTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final String URL_A = "http://a.local/";
+    private static final String URL_B = "http://b.local/";
+    private static final String URL_C = "http://c.local/";
+    private static final Instant TIME = Instant.ofEpochSecond(1000);
+
+    private static final Header ETAG = new BasicHeader(HttpHeaders.ETAG, "\"abc\"");
+
+    private DiskResponseCache cache;
+
+    @After
+    public void tearDown() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private static byte[] createBody(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+
+    private Path getDirectory() {
+        return temporaryFolder.getRoot().toPath().resolve("cache");
+    }
+
+    private DiskResponseCache openCache(long maximumSize) throws IOException {
+        return new DiskResponseCache(getDirectory(), maximumSize);
+    }
+
+    private long countBodyFiles() throws IOException {
+        try (Stream<Path> files = Files.list(getDirectory())) {
+            return files.filter(file -> file.getFileName().toString().endsWith(DiskResponseCache.BODY_FILE_SUFFIX))
+                        .count();
+        }
+    }
+
+    private List<Path> listBodyFiles() throws IOException {
+        try (Stream<Path> files = Files.list(getDirectory())) {
+            return files.filter(file -> file.getFileName().toString().endsWith(DiskResponseCache.BODY_FILE_SUFFIX))
+                        .collect(Collectors.toList());
+        }
+    }
+
+    private void appendIndexRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.length);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+
+        try (FileChannel channel = FileChannel.open(getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME), StandardOpenOption.APPEND)) {
+            channel.write(record);
+        }
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(haystack, i, i + needle.length), needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    @DataProvider({ "0", "-1" })
+    public void testConstructor_nonPositiveMaximumSize_throwsIllegalArgumentException(long maximumSize) throws IOException {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new DiskResponseCache(getDirectory(), maximumSize);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConstructor_nullDirectory_throwsIllegalArgumentException() throws IOException {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new DiskResponseCache(null, 1000);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConstructor_notAnIndex_throwsIOException() throws IOException {
+        // Arrange
+        Files.createDirectories(getDirectory());
+        Files.write(getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME), createBody(100));
+        thrown.expect(IOException.class);
+
+        // Act
+        openCache(10000);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testLookup_nothingStored_returnsNull() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testLookup_stored_returnsEqualResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, new StoredResponse(
+            URL_A,
+            "http://b.local/",
+            200,
+            new Header[] { ETAG, new BasicHeader(HttpHeaders.CONTENT_TYPE, "text/plain") },
+            body,
+            "gzip",
+            Instant.ofEpochSecond(1000, 123),
+            new Header[] { new BasicHeader("user-agent", "agent") } //
+        ));
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+        assertThat(res.getRequestedLocation(), is(URL_A));
+        assertThat(res.getRetrievedLocation(), is("http://b.local/"));
+        assertThat(res.getStatusCode(), is(200));
+        assertThat(res.getETag(), is("\"abc\""));
+        assertThat(res.getFirstHeaderValue(HttpHeaders.CONTENT_TYPE), is("text/plain"));
+        assertThat(res.getContentEncoding(), is("gzip"));
+        assertThat(res.getStoredTime(), is(Instant.ofEpochSecond(1000, 123)));
+        assertThat(res.getVaryingRequestHeaders()[0].getValue(), is("agent"));
+    }
+
+    @Test
+    public void testLookup_reopened_returnsPreviouslyStoredResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        }
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testLookup_reopenedAfterInvalidation_returnsNull() throws IOException {
+        // Arrange
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+            previous.invalidate(URL_A);
+        }
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testLookup_storedByOtherInstance_returnsResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.lookup(URL_A);
+        try (DiskResponseCache other = openCache(10000)) {
+            other.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        }
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testLookup_indexUnchanged_doesNotLockIndex() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        StoredResponse res;
+
+        // Act
+        try (
+            FileChannel channel = FileChannel.open(getDirectory().resolve(DiskResponseCache.LOCK_FILE_NAME), StandardOpenOption.WRITE);
+            FileLock lock = channel.lock() //
+        ) {
+            // locking again from within the same JVM would fail
+            res = cache.lookup(URL_A);
+        }
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testLookup_appendedByOtherInstanceAfterLookup_returnsResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(10), TIME, ETAG));
+        cache.lookup(URL_A);
+        try (DiskResponseCache other = openCache(10000)) {
+            other.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        }
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testLookup_compactedByOtherInstance_returnsResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(100);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(10), TIME, ETAG));
+        try (DiskResponseCache other = openCache(10000)) {
+            for (int i = 0; i <= DiskResponseCache.COMPACTION_MINIMUM_RECORDS; i++) {
+                other.store(URL_B, createStoredResponse(URL_B, body, TIME, ETAG));
+            }
+        }
+
+        // Act
+        StoredResponse res = cache.lookup(URL_B);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+        assertThat(cache.lookup(URL_A).getBody(), is(equalTo(createBody(10))));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void testLookup_incompleteRecordAppended_ignoresRecord() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        }
+        try (FileChannel channel = FileChannel.open(getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 1, 0, 1, 2, 3 }));
+        }
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testStore_afterIncompleteRecord_persistsNewRecord() throws IOException {
+        // Arrange
+        byte[] body = createBody(500);
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+        }
+        try (FileChannel channel = FileChannel.open(getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME), StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 1, 0, 1, 2, 3 }));
+        }
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_B, createStoredResponse(URL_B, body, TIME, ETAG));
+        }
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_B);
+
+        // Assert
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testStore_afterUnsupportedRecord_keepsUnsupportedRecord() throws IOException {
+        // Arrange
+        byte[] body = createBody(500);
+        byte[] unsupportedPayload = new byte[] { 99, 1, 2, 3, 4, 5, 6, 7 };
+        try (DiskResponseCache previous = openCache(10000)) {
+            previous.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+        }
+        appendIndexRecord(unsupportedPayload);
+        cache = openCache(10000);
+
+        // Act
+        cache.store(URL_B, createStoredResponse(URL_B, body, TIME, ETAG));
+
+        // Assert
+        byte[] index = Files.readAllBytes(getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME));
+        assertThat(indexOf(index, unsupportedPayload), is(greaterThan(0)));
+        try (DiskResponseCache other = openCache(10000)) {
+            assertThat(other.lookup(URL_A).getBody().length, is(1000));
+            assertThat(other.lookup(URL_B).getBody(), is(equalTo(body)));
+        }
+    }
+
+    @Test
+    public void testLookup_bodyFileMissing_returnsNull() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+        try (Stream<Path> files = Files.list(getDirectory())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(DiskResponseCache.BODY_FILE_SUFFIX)) {
+                    Files.delete(file);
+                }
+            }
+        }
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testStore_withoutValidatorsOrFreshness_doesNotStoreResponse() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(100), TIME));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(countBodyFiles(), is(0L));
+    }
+
+    @Test
+    public void testStore_noStore_doesNotStoreResponse() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(100), TIME, ETAG, new BasicHeader(HttpHeaders.CACHE_CONTROL, "no-store")));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+    }
+
+    @Test
+    public void testStore_replacingResponse_deletesPreviousBody() throws IOException {
+        // Arrange
+        byte[] body = createBody(200);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+
+        // Assert
+        assertThat(cache.lookup(URL_A).getBody(), is(equalTo(body)));
+        assertThat(countBodyFiles(), is(1L));
+        assertThat(cache.getTotalSize(), is(200L));
+    }
+
+    @Test
+    public void testStore_exceedingMaximumSize_evictsOldestStoredResponses() throws IOException {
+        // Arrange
+        cache = openCache(2500);
+        cache.store(URL_B, createStoredResponse(URL_B, createBody(1000), TIME.plusSeconds(10), ETAG));
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(1000), TIME, ETAG));
+
+        // Act
+        cache.store(URL_C, createStoredResponse(URL_C, createBody(1000), TIME.plusSeconds(20), ETAG));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(cache.lookup(URL_B).getBody().length, is(1000));
+        assertThat(cache.lookup(URL_C).getBody().length, is(1000));
+        assertThat(cache.getTotalSize(), is(2000L));
+        assertThat(countBodyFiles(), is(2L));
+    }
+
+    @Test
+    public void testStore_largerThanMaximumSize_doesNotStoreResponse() throws IOException {
+        // Arrange
+        cache = openCache(1000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(1001), TIME, ETAG));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(countBodyFiles(), is(0L));
+    }
+
+    @Test
+    public void testStore_manyReplacements_compactsIndex() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+        Path indexFile = getDirectory().resolve(DiskResponseCache.INDEX_FILE_NAME);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(10), TIME, ETAG));
+        long singleRecordIndexSize = Files.size(indexFile);
+
+        // Act
+        for (int i = 0; i <= DiskResponseCache.COMPACTION_MINIMUM_RECORDS; i++) {
+            cache.store(URL_A, createStoredResponse(URL_A, createBody(10), TIME, ETAG));
+        }
+
+        // Assert
+        assertThat(Files.size(indexFile) < 2 * singleRecordIndexSize, is(true));
+        assertThat(cache.lookup(URL_A).getBody(), is(equalTo(createBody(10))));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void testStoreRevalidated_unchangedEntry_keepsBodyFile() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        StoredResponse previous = cache.lookup(URL_A);
+        List<Path> bodyFilesBefore = listBodyFiles();
+        StoredResponse revalidated = previous.revalidated(new Header[] { new BasicHeader(HttpHeaders.ETAG, "\"def\"") }, null, TIME.plusSeconds(10));
+
+        // Act
+        cache.storeRevalidated(URL_A, previous, revalidated);
+
+        // Assert
+        assertThat(listBodyFiles(), is(equalTo(bodyFilesBefore)));
+        StoredResponse res = cache.lookup(URL_A);
+        assertThat(res.getETag(), is("\"def\""));
+        assertThat(res.getStoredTime(), is(TIME.plusSeconds(10)));
+        assertThat(res.getBody(), is(equalTo(body)));
+        assertThat(cache.getTotalSize(), is(1000L));
+    }
+
+    @Test
+    public void testStoreRevalidated_reopened_returnsRevalidatedResponse() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        try (DiskResponseCache previousCache = openCache(10000)) {
+            previousCache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+            StoredResponse previous = previousCache.lookup(URL_A);
+            previousCache.storeRevalidated(URL_A, previous, previous.revalidated(new Header[0], null, TIME.plusSeconds(10)));
+        }
+        cache = openCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res.getStoredTime(), is(TIME.plusSeconds(10)));
+        assertThat(res.getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testStoreRevalidated_replacedMeanwhile_storesRevalidatedBody() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        StoredResponse previous = cache.lookup(URL_A);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(200), TIME.plusSeconds(5), ETAG));
+
+        // Act
+        cache.storeRevalidated(URL_A, previous, previous.revalidated(new Header[0], null, TIME.plusSeconds(10)));
+
+        // Assert
+        StoredResponse res = cache.lookup(URL_A);
+        assertThat(res.getStoredTime(), is(TIME.plusSeconds(10)));
+        assertThat(res.getBody(), is(equalTo(body)));
+        assertThat(countBodyFiles(), is(1L));
+    }
+
+    @Test
+    public void testStoreRevalidated_invalidatedMeanwhile_storesRevalidatedBody() throws IOException {
+        // Arrange
+        byte[] body = createBody(1000);
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, body, TIME, ETAG));
+        StoredResponse previous = cache.lookup(URL_A);
+        cache.invalidate(URL_A);
+
+        // Act
+        cache.storeRevalidated(URL_A, previous, previous.revalidated(new Header[0], null, TIME.plusSeconds(10)));
+
+        // Assert
+        assertThat(cache.lookup(URL_A).getBody(), is(equalTo(body)));
+        assertThat(countBodyFiles(), is(1L));
+    }
+
+    @Test
+    public void testLookup_expiredWithoutValidators_returnsNull() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(10), Instant.now().minusSeconds(120), new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")));
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testInvalidate_stored_deletesBody() throws IOException {
+        // Arrange
+        cache = openCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, createBody(100), TIME, ETAG));
+
+        // Act
+        cache.invalidate(URL_A);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(countBodyFiles(), is(0L));
+        assertThat(cache.getTotalSize(), is(0L));
+    }
+}
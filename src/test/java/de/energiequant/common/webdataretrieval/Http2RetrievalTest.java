@@ -0,0 +1,156 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityConsumer;
+import org.apache.hc.core5.http.nio.entity.StringAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.reactor.ListenerEndpoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Performs actual requests against a local server only speaking HTTP/2 with
+ * prior knowledge (h2c).
+ */
+public class Http2RetrievalTest {
+
+    private static final String RESPONSE_BODY = "hello via h2c";
+
+    private HttpAsyncServer server;
+    private String baseUrl;
+
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() throws Exception {
+        server = H2ServerBootstrap.bootstrap()
+            .setVersionPolicy(HttpVersionPolicy.FORCE_HTTP_2)
+            .setCanonicalHostName("127.0.0.1")
+            .register("*", new AsyncServerRequestHandler<Message<HttpRequest, String>>() {
+                @Override
+                public AsyncRequestConsumer<Message<HttpRequest, String>> prepare(HttpRequest request, EntityDetails entityDetails, HttpContext context) throws HttpException {
+                    return new BasicRequestConsumer<>(entityDetails != null ? new StringAsyncEntityConsumer() : null);
+                }
+
+                @Override
+                public void handle(Message<HttpRequest, String> requestObject, ResponseTrigger responseTrigger, HttpContext context) throws HttpException, IOException {
+                    responseTrigger.submitResponse(
+                        new BasicResponseProducer(200, new StringAsyncEntityProducer(RESPONSE_BODY, ContentType.TEXT_PLAIN)),
+                        context //
+                    );
+                }
+            })
+            .create();
+        server.start();
+
+        ListenerEndpoint endpoint = server.listen(new InetSocketAddress("127.0.0.1", 0)).get(5, TimeUnit.SECONDS);
+        int port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        baseUrl = "http://127.0.0.1:" + port + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.close(CloseMode.IMMEDIATE);
+    }
+
+    @Test
+    public void testRequestByGet_priorKnowledge_retrievesContent() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval().setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE);
+
+        // Act
+        boolean success = retrieval.requestByGet(baseUrl);
+
+        // Assert
+        assertThat(success, is(true));
+        assertThat(retrieval.hasCompleteContentResponseStatus(), is(true));
+        assertThat(new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8), is(equalTo(RESPONSE_BODY)));
+    }
+
+    @Test
+    public void testRequestByGet_http11_failsAgainstHttp2OnlyServer() {
+        // Arrange
+        HttpRetrieval retrieval = new HttpRetrieval().setTimeout(Duration.ofSeconds(5));
+
+        // Act
+        boolean success = retrieval.requestByGet(baseUrl);
+
+        // Assert
+        assertThat(success && retrieval.hasCompleteContentResponseStatus(), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_priorKnowledgeWithPool_retrievesContentThroughSharedClient() {
+        // Arrange
+        try (HttpClientPool pool = new HttpClientPool()) {
+            HttpRetrieval retrieval = new HttpRetrieval()
+                .setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE)
+                .setHttpClientPool(pool);
+
+            // Act
+            boolean firstSuccess = retrieval.requestByGet(baseUrl + "first");
+            boolean firstComplete = retrieval.hasCompleteContentResponseStatus();
+            String firstBody = new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8);
+            boolean secondSuccess = retrieval.requestByGet(baseUrl + "second");
+
+            // Assert
+            assertThat(firstSuccess, is(true));
+            assertThat(firstComplete, is(true));
+            assertThat(firstBody, is(equalTo(RESPONSE_BODY)));
+            assertThat(secondSuccess, is(true));
+            assertThat(retrieval.hasCompleteContentResponseStatus(), is(true));
+            assertThat(new String(retrieval.getResponseBodyBytes(), StandardCharsets.UTF_8), is(equalTo(RESPONSE_BODY)));
+            assertThat(pool.size(), is(1));
+        }
+    }
+
+    @Test
+    public void testRequestByGet_priorKnowledgeThroughBuilderWithEngine_multiplexesConcurrentRequests() throws Exception {
+        // Arrange
+        DefaultHttpRetrievalDecoders decoders = new DefaultHttpRetrievalDecoders();
+
+        try (AsyncHttpRetrievalEngine engine = new AsyncHttpRetrievalEngine()) {
+            HttpPromiseBuilder<String> builder = new HttpPromiseBuilder<String>(
+                decoders.bodyAsStringWithFixedCharacterSet(StandardCharsets.UTF_8) //
+            ).withConfiguration(
+                new HttpRetrieval().setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE) //
+            ).withAsyncEngine(engine);
+
+            // Act
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(builder.requestByGet(baseUrl + i));
+            }
+
+            // Assert
+            for (CompletableFuture<String> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS), is(equalTo(RESPONSE_BODY)));
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.io.CloseMode;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class HttpClientPoolTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private HttpClientPool spyPool;
+
+    @Before
+    public void setUp() {
+        spyPool = spy(new HttpClientPool());
+        doReturn(mock(HttpClientConnectionManager.class)).when(spyPool).createConnectionManager();
+    }
+
+    private HttpRetrieval spyRetrievalBuildingMockClients() {
+        HttpRetrieval spyRetrieval = spy(HttpRetrieval.class);
+        Mockito.doAnswer(invocation -> mock(CloseableHttpClient.class))
+            .when(spyRetrieval)
+            .buildHttpClient(Mockito.any(HttpClientConnectionManager.class));
+        return spyRetrieval;
+    }
+
+    @Test
+    @DataProvider({ "0, 1", "-1, 1", "10, 0", "10, -1", "10, 11" })
+    public void testConstructor_invalidLimits_throwsIllegalArgumentException(int maximumConnectionsTotal, int maximumConnectionsPerRoute) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new HttpClientPool(maximumConnectionsTotal, maximumConnectionsPerRoute);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetHttpClient_sameRetrievalTwice_returnsSameClient() {
+        // Arrange
+        HttpRetrieval spyRetrieval = spyRetrievalBuildingMockClients();
+        CloseableHttpClient firstClient = spyPool.getHttpClient(spyRetrieval);
+
+        // Act
+        CloseableHttpClient secondClient = spyPool.getHttpClient(spyRetrieval);
+
+        // Assert
+        assertThat(secondClient, is(sameInstance(firstClient)));
+    }
+
+    @Test
+    public void testGetHttpClient_equalConfiguration_buildsClientOnlyOnce() {
+        // Arrange
+        HttpRetrieval firstRetrieval = spyRetrievalBuildingMockClients();
+        HttpRetrieval secondRetrieval = spyRetrievalBuildingMockClients();
+        firstRetrieval.setUserAgent("same");
+        secondRetrieval.setUserAgent("same");
+
+        // Act
+        CloseableHttpClient firstClient = spyPool.getHttpClient(firstRetrieval);
+        CloseableHttpClient secondClient = spyPool.getHttpClient(secondRetrieval);
+
+        // Assert
+        assertThat(secondClient, is(sameInstance(firstClient)));
+        verify(secondRetrieval, times(0)).buildHttpClient(Mockito.any(HttpClientConnectionManager.class));
+    }
+
+    @Test
+    public void testGetHttpClient_differentUserAgent_returnsDifferentClients() {
+        // Arrange
+        HttpRetrieval firstRetrieval = spyRetrievalBuildingMockClients().setUserAgent("first");
+        HttpRetrieval secondRetrieval = spyRetrievalBuildingMockClients().setUserAgent("second");
+
+        // Act
+        CloseableHttpClient firstClient = spyPool.getHttpClient(firstRetrieval);
+        CloseableHttpClient secondClient = spyPool.getHttpClient(secondRetrieval);
+
+        // Assert
+        assertThat(secondClient, is(not(sameInstance(firstClient))));
+    }
+
+    @Test
+    public void testGetHttpClient_differentTimeout_returnsDifferentClients() {
+        // Arrange
+        HttpRetrieval firstRetrieval = spyRetrievalBuildingMockClients().setTimeout(Duration.ofSeconds(1));
+        HttpRetrieval secondRetrieval = spyRetrievalBuildingMockClients().setTimeout(Duration.ofSeconds(2));
+
+        // Act
+        CloseableHttpClient firstClient = spyPool.getHttpClient(firstRetrieval);
+        CloseableHttpClient secondClient = spyPool.getHttpClient(secondRetrieval);
+
+        // Assert
+        assertThat(secondClient, is(not(sameInstance(firstClient))));
+    }
+
+    @Test
+    public void testGetHttpClient_differentMaximumFollowedRedirects_returnsDifferentClients() {
+        // Arrange
+        HttpRetrieval firstRetrieval = spyRetrievalBuildingMockClients().setMaximumFollowedRedirects(1);
+        HttpRetrieval secondRetrieval = spyRetrievalBuildingMockClients().setMaximumFollowedRedirects(2);
+
+        // Act
+        CloseableHttpClient firstClient = spyPool.getHttpClient(firstRetrieval);
+        CloseableHttpClient secondClient = spyPool.getHttpClient(secondRetrieval);
+
+        // Assert
+        assertThat(secondClient, is(not(sameInstance(firstClient))));
+    }
+
+    @Test
+    public void testGetHttpClient_closed_throwsIllegalStateException() {
+        // Arrange
+        HttpRetrieval spyRetrieval = spyRetrievalBuildingMockClients();
+        spyPool.close();
+
+        thrown.expect(IllegalStateException.class);
+
+        // Act
+        spyPool.getHttpClient(spyRetrieval);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testClose_withClients_closesAllClients() {
+        // Arrange
+        CloseableHttpClient firstClient = spyPool.getHttpClient(spyRetrievalBuildingMockClients().setUserAgent("a"));
+        CloseableHttpClient secondClient = spyPool.getHttpClient(spyRetrievalBuildingMockClients().setUserAgent("b"));
+
+        // Act
+        spyPool.close();
+
+        // Assert
+        verify(firstClient).close(CloseMode.GRACEFUL);
+        verify(secondClient).close(CloseMode.GRACEFUL);
+        assertThat(spyPool.size(), is(0));
+        assertThat(spyPool.isClosed(), is(true));
+    }
+}
@@ -1,5 +1,6 @@
 package de.energiequant.common.webdataretrieval;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -12,13 +13,30 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -297,6 +315,223 @@ public class HttpPromiseBuilderTest {
         // Assert (nothing to do)
     }
 
+    @Test
+    public void testRequestByGet_withHttpClientPool_appliesPoolAfterConfiguration() {
+        // Arrange
+        HttpRetrieval mockCustomConfiguration = mock(HttpRetrieval.class);
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+
+        // Act
+        spyBuilder.withConfiguration(mockCustomConfiguration)
+            .withHttpClientPool(mockPool)
+            .requestByGet("http://myUrl.local/")
+            .join();
+
+        // Assert
+        InOrder inOrder = inOrder(mockCustomConfiguration, mockRetrieval);
+        inOrder.verify(mockCustomConfiguration).copyConfigurationTo(Mockito.same(mockRetrieval));
+        inOrder.verify(mockRetrieval).setHttpClientPool(Mockito.same(mockPool));
+        inOrder.verify(mockRetrieval).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_withoutHttpClientPool_doesNotOverridePool() {
+        // Arrange (nothing to do)
+
+        // Act
+        spyBuilder.requestByGet("http://myUrl.local/").join();
+
+        // Assert
+        verify(mockRetrieval, never()).setHttpClientPool(Mockito.any());
+    }
+
+    @Test
+    public void testWithHttpClientPool_notNull_returnsSameBuilder() {
+        // Arrange
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+
+        // Act
+        HttpPromiseBuilder<?> res = spyBuilder.withHttpClientPool(mockPool);
+
+        // Assert
+        assertThat(res, is(sameInstance(spyBuilder)));
+    }
+
+    @Test
+    public void testWithHttpClientPool_null_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyBuilder.withHttpClientPool(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRequestByGet_withAsyncEngine_requestsThroughEngine() {
+        // Arrange
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(CompletableFuture.completedFuture(true)).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+
+        // Act
+        spyBuilder.withAsyncEngine(mockEngine).requestByGet("http://myUrl.local/").join();
+
+        // Assert
+        verify(mockEngine).requestByGet(
+            Mockito.same(mockRetrieval),
+            Mockito.eq("http://myUrl.local/"),
+            Mockito.any(Executor.class) //
+        );
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_withAsyncEngine_returnsDecoderResult() throws Exception {
+        // Arrange
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(CompletableFuture.completedFuture(true)).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+
+        Object expectedDecoderResult = new Object();
+        when(mockDecoder.apply(Mockito.same(mockRetrieval))).thenReturn(expectedDecoderResult);
+
+        // Act
+        Object res = spyBuilder.withAsyncEngine(mockEngine).requestByGet("http://myUrl.local/").get();
+
+        // Assert
+        assertThat(res, is(sameInstance(expectedDecoderResult)));
+    }
+
+    @Test
+    public void testRequestByGet_withAsyncEngineFailingOnNetworkLevel_futureCompletesExceptionallyWithRuntimeException() {
+        // Arrange
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(CompletableFuture.completedFuture(false)).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+
+        Function<Throwable, Object> mockExceptionHandler = mock(Function.class);
+
+        // Act
+        spyBuilder.withAsyncEngine(mockEngine).requestByGet("http://myUrl.local/")
+            .exceptionally(mockExceptionHandler)
+            .join();
+
+        // Assert
+        verify(mockExceptionHandler).apply(Mockito.isA(RuntimeException.class));
+        verify(mockDecoder, never()).apply(Mockito.any(HttpRetrieval.class));
+    }
+
+    @Test
+    public void testWithAsyncEngine_null_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyBuilder.withAsyncEngine(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRequestByGet_withExecutor_runsRetrievalOnExecutor() {
+        // Arrange
+        Executor mockExecutor = mock(Executor.class);
+
+        // Act
+        CompletableFuture<Object> future = spyBuilder.withExecutor(mockExecutor).requestByGet("http://myUrl.local/");
+
+        // Assert
+        verify(mockExecutor).execute(Mockito.any(Runnable.class));
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class));
+        assertThat(future.isDone(), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_executorRejects_futureCompletesExceptionallyWithRejectedExecutionException() {
+        // Arrange
+        Executor rejectingExecutor = runnable -> {
+            throw new RejectedExecutionException();
+        };
+
+        Function<Throwable, Object> mockExceptionHandler = mock(Function.class);
+
+        // Act
+        spyBuilder.withExecutor(rejectingExecutor).requestByGet("http://myUrl.local/")
+            .exceptionally(mockExceptionHandler)
+            .join();
+
+        // Assert
+        verify(mockExceptionHandler).apply(Mockito.isA(RejectedExecutionException.class));
+    }
+
+    @Test
+    public void testRequestByGet_withAsyncEngineAndExecutor_passesExecutorToEngine() {
+        // Arrange
+        Executor mockExecutor = mock(Executor.class);
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(CompletableFuture.completedFuture(true)).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+
+        // Act
+        spyBuilder.withAsyncEngine(mockEngine).withExecutor(mockExecutor).requestByGet("http://myUrl.local/").join();
+
+        // Assert
+        verify(mockEngine).requestByGet(
+            Mockito.same(mockRetrieval),
+            Mockito.any(CharSequence.class),
+            Mockito.same(mockExecutor) //
+        );
+    }
+
+    @Test
+    public void testGetEffectiveExecutor_unconfigured_returnsCommonPool() {
+        // Arrange (nothing to do)
+
+        // Act
+        Executor res = spyBuilder.getEffectiveExecutor();
+
+        // Assert
+        assertThat(res, is(sameInstance(ForkJoinPool.commonPool())));
+    }
+
+    @Test
+    public void testWithVirtualThreads_unsupported_throwsUnsupportedOperationException() {
+        // Arrange
+        Assume.assumeFalse(RetrievalExecutors.isVirtualThreadSupported());
+        thrown.expect(UnsupportedOperationException.class);
+
+        // Act
+        spyBuilder.withVirtualThreads();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testWithVirtualThreads_supported_usesSharedExecutor() {
+        // Arrange
+        Assume.assumeTrue(RetrievalExecutors.isVirtualThreadSupported());
+        HttpPromiseBuilder<Object> otherBuilder = new HttpPromiseBuilder<>(mockDecoder).withVirtualThreads();
+
+        // Act
+        spyBuilder.withVirtualThreads();
+
+        // Assert
+        assertThat(spyBuilder.getEffectiveExecutor(), is(sameInstance(otherBuilder.getEffectiveExecutor())));
+    }
+
+    @Test
+    public void testWithExecutor_null_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        spyBuilder.withExecutor(null);
+
+        // Assert (nothing to do)
+    }
+
     private HttpRetrieval mockHttpRetrievalIndicatingSuccess() {
         HttpRetrieval mock = mock(HttpRetrieval.class);
         stubHttpRetrievalIndicatingSuccess(mock);
@@ -313,4 +548,490 @@ public class HttpPromiseBuilderTest {
         when(mockRetrieval.requestByGet(Mockito.any(CharSequence.class))).thenReturn(true);
         when(mockRetrieval.hasCompleteContentResponseStatus()).thenReturn(true);
     }
+
+    @Test
+    public void testRequestByGet_responseSizeLimitExceeded_futureCompletesExceptionallyCausedByLimitException() throws Exception {
+        // Arrange
+        ResponseSizeLimitExceededException expectedException = new ResponseSizeLimitExceededException(100, false);
+        when(mockRetrieval.requestByGet(Mockito.any(CharSequence.class))).thenReturn(false);
+        when(mockRetrieval.getResponseSizeLimitExceededException()).thenReturn(expectedException);
+
+        CompletableFuture<Object> future = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        Throwable cause = null;
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            cause = ex.getCause();
+        }
+
+        // Assert
+        assertThat(cause, is(sameInstance(expectedException)));
+    }
+
+    private HttpPromiseBuilder<Object> spyStreamingBuilder(StreamingDecoder<Object> streamingDecoder) {
+        HttpPromiseBuilder<Object> templateBuilder = new HttpPromiseBuilder<Object>(streamingDecoder) {
+            @Override
+            HttpRetrieval createDefaultConfigurationTemplate() {
+                return mockDefaultConfigurationTemplate;
+            }
+        };
+        HttpPromiseBuilder<Object> spyStreamingBuilder = spy(templateBuilder);
+        doReturn(mockRetrieval).when(spyStreamingBuilder).createRetrieval();
+
+        return spyStreamingBuilder;
+    }
+
+    private void stubStreamedResponse(byte[] body) throws IOException {
+        doAnswer(invocation -> {
+            ResponseBodyConsumer consumer = invocation.getArgument(1);
+            consumer.consume(mockRetrieval, new ByteArrayInputStream(body));
+            return true;
+        }).when(mockRetrieval).requestByGet(Mockito.any(CharSequence.class), Mockito.any(ResponseBodyConsumer.class));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoder_returnsDecoderResult() throws Exception {
+        // Arrange
+        byte[] body = new byte[] { 1, 2, 3 };
+        stubStreamedResponse(body);
+
+        Object expectedDecoderResult = new Object();
+        StreamingDecoder<Object> mockStreamingDecoder = mock(StreamingDecoder.class);
+        when(mockStreamingDecoder.decode(Mockito.same(mockRetrieval), Mockito.any(InputStream.class)))
+            .thenReturn(expectedDecoderResult);
+
+        // Act
+        Object res = spyStreamingBuilder(mockStreamingDecoder).requestByGet("http://myUrl.local/").get();
+
+        // Assert
+        assertThat(res, is(sameInstance(expectedDecoderResult)));
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoder_decoderReadsStreamedBody() throws Exception {
+        // Arrange
+        byte[] expectedBody = new byte[] { 1, 2, 3 };
+        stubStreamedResponse(expectedBody);
+
+        // Act
+        Object res = spyStreamingBuilder((retrieval, content) -> IOUtils.toByteArray(content))
+            .requestByGet("http://myUrl.local/")
+            .get();
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoderIncompleteContent_doesNotDecodeAndCompletesExceptionally() throws Exception {
+        // Arrange
+        stubStreamedResponse(new byte[] { 1, 2, 3 });
+        when(mockRetrieval.hasCompleteContentResponseStatus()).thenReturn(false);
+        StreamingDecoder<Object> mockStreamingDecoder = mock(StreamingDecoder.class);
+
+        // Act
+        CompletableFuture<Object> future = spyStreamingBuilder(mockStreamingDecoder).requestByGet("http://myUrl.local/");
+
+        // Assert
+        assertThat(future.handle((result, throwable) -> throwable).get(), is(notNullValue()));
+        verify(mockStreamingDecoder, never()).decode(Mockito.any(HttpRetrieval.class), Mockito.any(InputStream.class));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoderFails_futureCompletesExceptionallyCausedByDecoderException() throws Exception {
+        // Arrange
+        stubStreamedResponse(new byte[] { 1, 2, 3 });
+        IOException expectedException = new IOException("test");
+
+        CompletableFuture<Object> future = spyStreamingBuilder((retrieval, content) -> {
+            throw expectedException;
+        }).requestByGet("http://myUrl.local/");
+
+        // Act
+        Throwable cause = null;
+        try {
+            future.get();
+        } catch (ExecutionException ex) {
+            cause = ex.getCause();
+        }
+
+        // Assert
+        assertThat(cause, is(sameInstance(expectedException)));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoderWithAsyncEngine_decodesBufferedBody() throws Exception {
+        // Arrange
+        byte[] expectedBody = new byte[] { 1, 2, 3 };
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(expectedBody)));
+
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(CompletableFuture.completedFuture(true)).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+
+        // Act
+        Object res = spyStreamingBuilder((retrieval, content) -> IOUtils.toByteArray(content))
+            .withAsyncEngine(mockEngine)
+            .requestByGet("http://myUrl.local/")
+            .get();
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class), Mockito.any(ResponseBodyConsumer.class));
+    }
+
+    @Test
+    public void testRequestByGet_streamingDecoderWithResponseCache_decodesBufferedBody() throws Exception {
+        // Arrange
+        byte[] expectedBody = new byte[] { 1, 2, 3 };
+        when(mockRetrieval.getResponseCache()).thenReturn(new ValidatorCache());
+        when(mockRetrieval.openResponseBodyChannel()).thenReturn(Channels.newChannel(new ByteArrayInputStream(expectedBody)));
+
+        // Act
+        Object res = spyStreamingBuilder((retrieval, content) -> IOUtils.toByteArray(content))
+            .requestByGet("http://myUrl.local/")
+            .get();
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+        verify(mockRetrieval).requestByGet(Mockito.any(CharSequence.class));
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class), Mockito.any(ResponseBodyConsumer.class));
+    }
+
+    private static class QueueingExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            pending.forEach(Runnable::run);
+        }
+    }
+
+    @Test
+    public void testWithRequestCoalescing_always_returnsSameBuilder() {
+        // Arrange (nothing to do)
+
+        // Act
+        HttpPromiseBuilder<Object> res = spyBuilder.withRequestCoalescing();
+
+        // Assert
+        assertThat(res, is(sameInstance(spyBuilder)));
+    }
+
+    @Test
+    @DataProvider({ "true", "false" })
+    public void testWithRequestCoalescingBoolean_always_returnsSameBuilder(boolean isRequestCoalescing) {
+        // Arrange (nothing to do)
+
+        // Act
+        HttpPromiseBuilder<Object> res = spyBuilder.withRequestCoalescing(isRequestCoalescing);
+
+        // Assert
+        assertThat(res, is(sameInstance(spyBuilder)));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingDisabledAgainConcurrentSameUrl_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing().withRequestCoalescing(false);
+
+        spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingConcurrentDifferentExecutors_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor1 = new QueueingExecutor();
+        QueueingExecutor executor2 = new QueueingExecutor();
+        spyBuilder.withExecutor(executor1).withRequestCoalescing();
+
+        spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.withExecutor(executor2).requestByGet("http://myUrl.local/");
+
+        // Act
+        executor1.runAll();
+        executor2.runAll();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingConcurrentDifferentHttpClientPools_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.withHttpClientPool(mock(HttpClientPool.class)).requestByGet("http://myUrl.local/");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingConcurrentSameUrl_performsSingleRequest() {
+        // Arrange
+        Object expectedDecoderResult = new Object();
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(expectedDecoderResult);
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet(new StringBuilder("http://myUrl.local/"));
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        assertThat(first.join(), is(sameInstance(expectedDecoderResult)));
+        assertThat(second.join(), is(sameInstance(expectedDecoderResult)));
+        verify(spyBuilder, times(1)).createRetrieval();
+        verify(mockRetrieval, times(1)).requestByGet(Mockito.any(CharSequence.class));
+        verify(mockDecoder, times(1)).apply(Mockito.any(HttpRetrieval.class));
+    }
+
+    @Test
+    public void testRequestByGet_withoutCoalescingConcurrentSameUrl_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor);
+
+        spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingConcurrentDifferentUrls_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        spyBuilder.requestByGet("http://myUrl.local/a");
+        spyBuilder.requestByGet("http://myUrl.local/b");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval).requestByGet(Mockito.eq("http://myUrl.local/a"));
+        verify(mockRetrieval).requestByGet(Mockito.eq("http://myUrl.local/b"));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingConcurrentDifferentConfigurations_performsAllRequests() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.withConfiguration(mock(HttpRetrieval.class)).requestByGet("http://myUrl.local/");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAfterCompletion_performsNewRequest() {
+        // Arrange
+        spyBuilder.withExecutor(Runnable::run).withRequestCoalescing();
+        spyBuilder.requestByGet("http://myUrl.local/").join();
+
+        // Act
+        spyBuilder.requestByGet("http://myUrl.local/").join();
+
+        // Assert
+        verify(mockRetrieval, times(2)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingOneSubscriberCancelled_otherSubscriberCompletes() {
+        // Arrange
+        Object expectedDecoderResult = new Object();
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(expectedDecoderResult);
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        first.cancel(false);
+        executor.runAll();
+
+        // Assert
+        assertThat(first.isCancelled(), is(true));
+        assertThat(second.join(), is(sameInstance(expectedDecoderResult)));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAllSubscribersCancelled_abandonsRequest() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        first.cancel(false);
+        second.cancel(false);
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, never()).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAllSubscribersCancelledBeforeStart_abortsRetrieval() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        first.cancel(false);
+        second.cancel(false);
+
+        // Assert
+        verify(mockRetrieval).abort();
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAllSubscribersCancelledWhileRequesting_abortsRunningRequest() throws Exception {
+        // Arrange
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        when(mockRetrieval.requestByGet(Mockito.any(CharSequence.class))).thenAnswer(invocation -> {
+            requestStarted.countDown();
+            return !aborted.await(10, TimeUnit.SECONDS);
+        });
+        doAnswer(invocation -> {
+            aborted.countDown();
+            return null;
+        }).when(mockRetrieval).abort();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+            CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+            CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+            requestStarted.await(10, TimeUnit.SECONDS);
+
+            // Act
+            first.cancel(false);
+            second.cancel(false);
+
+            // Assert
+            assertThat(aborted.await(10, TimeUnit.SECONDS), is(true));
+            verify(mockRetrieval, times(1)).requestByGet(Mockito.any(CharSequence.class));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAllSubscribersCancelledWithAsyncEngine_abortsExchange() {
+        // Arrange
+        AsyncHttpRetrievalEngine mockEngine = mock(AsyncHttpRetrievalEngine.class);
+        doReturn(new CompletableFuture<Boolean>()).when(mockEngine)
+            .requestByGet(Mockito.same(mockRetrieval), Mockito.any(CharSequence.class), Mockito.any(Executor.class));
+        spyBuilder.withAsyncEngine(mockEngine).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        first.cancel(false);
+        second.cancel(false);
+
+        // Assert
+        verify(mockRetrieval).abort();
+    }
+
+    @Test
+    public void testRequestByGet_coalescingOneSubscriberCancelled_doesNotAbortRetrieval() {
+        // Arrange
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        first.cancel(false);
+        executor.runAll();
+
+        // Assert
+        verify(mockRetrieval, never()).abort();
+    }
+
+    @Test
+    public void testRequestByGet_coalescingAfterAllSubscribersCancelled_performsNewRequest() {
+        // Arrange
+        Object expectedDecoderResult = new Object();
+        when(mockDecoder.apply(Mockito.any(HttpRetrieval.class))).thenReturn(expectedDecoderResult);
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+        spyBuilder.requestByGet("http://myUrl.local/").cancel(false);
+
+        // Act
+        CompletableFuture<Object> future = spyBuilder.requestByGet("http://myUrl.local/");
+        executor.runAll();
+
+        // Assert
+        assertThat(future.join(), is(sameInstance(expectedDecoderResult)));
+        verify(mockRetrieval, times(1)).requestByGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testRequestByGet_coalescingRequestFails_allSubscribersCompleteExceptionally() {
+        // Arrange
+        when(mockRetrieval.requestByGet(Mockito.any(CharSequence.class))).thenReturn(false);
+        QueueingExecutor executor = new QueueingExecutor();
+        spyBuilder.withExecutor(executor).withRequestCoalescing();
+
+        CompletableFuture<Object> first = spyBuilder.requestByGet("http://myUrl.local/");
+        CompletableFuture<Object> second = spyBuilder.requestByGet("http://myUrl.local/");
+
+        // Act
+        executor.runAll();
+
+        // Assert
+        assertThat(first.isCompletedExceptionally(), is(true));
+        assertThat(second.isCompletedExceptionally(), is(true));
+        verify(mockRetrieval, times(1)).requestByGet(Mockito.any(CharSequence.class));
+    }
 }
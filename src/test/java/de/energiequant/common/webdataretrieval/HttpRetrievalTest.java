@@ -1,5 +1,8 @@
 package de.energiequant.common.webdataretrieval;
 
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static de.energiequant.common.webdataretrieval.TestBodies.createTestBody;
+import static de.energiequant.common.webdataretrieval.TestBodies.gzip;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
@@ -7,9 +10,14 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.doAnswer;
@@ -18,41 +26,68 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequest;
 import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.client5.http.protocol.RedirectLocations;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.concurrent.FutureCallback;
 import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.apache.hc.core5.http.protocol.HttpContext;
 import org.hamcrest.junit.ExpectedException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.Invocation;
 
@@ -77,6 +112,9 @@ public class HttpRetrievalTest {
     @Rule
     public ExpectedException thrown = ExpectedException.none();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Before
     public void setUp() {
         testLogger.clearAll();
@@ -252,6 +290,122 @@ public class HttpRetrievalTest {
         verify(sourceSpy).getMaximumFollowedRedirects();
     }
 
+    @Test
+    public void testCopyConfigurationTo_setHttpClientPool_invokesSetterWithSameArgument() {
+        // Arrange
+        HttpClientPool pool = new HttpClientPool();
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setHttpClientPool(pool);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setHttpClientPool(pool);
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setHttpVersionMode_invokesSetterWithSameArgument() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setHttpVersionMode(HttpVersionMode.HTTP_2_NEGOTIATE);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setHttpVersionMode(HttpVersionMode.HTTP_2_NEGOTIATE);
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setBodyBufferPool_invokesSetterWithSameArgument() {
+        // Arrange
+        BodyBufferPool expectedPool = new BodyBufferPool();
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setBodyBufferPool(expectedPool);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setBodyBufferPool(Mockito.same(expectedPool));
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setResponseBodySpillThreshold_invokesSetterWithSameArgument() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setResponseBodySpillThreshold(12345);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setResponseBodySpillThreshold(12345);
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setMaximumResponseBodySize_invokesSetterWithSameArgument() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setMaximumResponseBodySize(1234);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setMaximumResponseBodySize(1234);
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setMaximumCompressedResponseBodySize_invokesSetterWithSameArgument() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setMaximumCompressedResponseBodySize(4321);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setMaximumCompressedResponseBodySize(4321);
+    }
+
+    @Test
+    @DataProvider({ "true", "false" })
+    public void testCopyConfigurationTo_setResponseBodyDecodingDeferred_invokesSetterWithSameArgument(boolean deferred) {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setResponseBodyDecodingDeferred(deferred);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setResponseBodyDecodingDeferred(deferred);
+    }
+
+    @Test
+    public void testCopyConfigurationTo_setResponseCache_invokesSetterWithSameArgument() {
+        // Arrange
+        ResponseCache responseCache = new ValidatorCache();
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.setResponseCache(responseCache);
+        HttpRetrieval mock = mock(HttpRetrieval.class);
+
+        // Act
+        httpRetrieval.copyConfigurationTo(mock);
+
+        // Assert
+        verify(mock).setResponseCache(Mockito.same(responseCache));
+    }
+
     @Test
     public void testSetTimeout_anyValue_appliesToInternalAttribute() {
         // Arrange
@@ -652,6 +806,23 @@ public class HttpRetrievalTest {
         assertThat(isEnabled, is(true));
     }
 
+    @Test
+    public void testBuildHttpClient_decodingDeferred_disablesCompressionByClient() {
+        // Arrange
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        spy.setResponseBodyDecodingDeferred(true);
+        HttpClientBuilder spyBuilder = spy(HttpClientBuilder.class);
+        when(spy.getHttpClientBuilder()).thenReturn(spyBuilder);
+
+        // Act
+        spy.buildHttpClient();
+
+        // Assert
+        RequestConfig requestConfig = getRequestConfigFromInvocations(mockingDetails(spyBuilder).getInvocations());
+        boolean isEnabled = requestConfig.isContentCompressionEnabled();
+        assertThat(isEnabled, is(false));
+    }
+
     @Test
     public void testBuildHttpClient_setUserAgent_appliedToBuilder() {
         // Arrange
@@ -728,6 +899,45 @@ public class HttpRetrievalTest {
         assertThat(factoredInputStream, is(instanceOf(GZIPInputStream.class)));
     }
 
+    @Test
+    public void testGetContentDecoderMap_differentInstances_returnsSameSharedInstance() {
+        // Arrange
+        Map<String, InputStreamFactory> firstMap = new HttpRetrieval().getContentDecoderMap();
+
+        // Act
+        Map<String, InputStreamFactory> secondMap = new HttpRetrieval().getContentDecoderMap();
+
+        // Assert
+        assertThat(secondMap, is(sameInstance(firstMap)));
+    }
+
+    @Test
+    public void testGetContentDecoderMap_initially_containsBrotliAndDeflate() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        Map<String, InputStreamFactory> map = httpRetrieval.getContentDecoderMap();
+
+        // Assert
+        assertThat(map.containsKey("br"), is(true));
+        assertThat(map.containsKey("deflate"), is(true));
+    }
+
+    @Test
+    public void testGetContentDecoderMap_customMapSet_returnsCustomMap() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        Map<String, InputStreamFactory> expectedMap = Collections.singletonMap("custom", instream -> instream);
+        httpRetrieval.unmodifiableContentDecoderMap = expectedMap;
+
+        // Act
+        Map<String, InputStreamFactory> map = httpRetrieval.getContentDecoderMap();
+
+        // Assert
+        assertThat(map, is(sameInstance(expectedMap)));
+    }
+
     @Test
     public void testRequestByGet_supportedProtocol_invokesBuildHttpClient() throws IOException {
         // Arrange
@@ -1483,4 +1693,1965 @@ public class HttpRetrievalTest {
         // Assert
         verify(mockClient).execute(Mockito.any(HttpUriRequest.class), Mockito.same(mockSecondContext));
     }
+
+    @Test
+    public void testGetHttpClientPool_initially_returnsNull() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        HttpClientPool res = httpRetrieval.getHttpClientPool();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testSetHttpClientPool_always_returnsSameInstance() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        HttpRetrieval res = httpRetrieval.setHttpClientPool(new HttpClientPool());
+
+        // Assert
+        assertThat(res, is(sameInstance(httpRetrieval)));
+    }
+
+    @Test
+    public void testRequestByGet_withHttpClientPool_executesWithPooledClient() throws Exception {
+        // Arrange
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class, RETURNS_DEEP_STUBS);
+
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        spyRetrieval.setHttpClientPool(mockPool);
+        doReturn(mockClient).when(mockPool).getHttpClient(Mockito.same(spyRetrieval));
+        doNothing().when(spyRetrieval).onHttpResponseCompleted(Mockito.any());
+
+        // Act
+        spyRetrieval.requestByGet("https://some-url.local/");
+
+        // Assert
+        verify(mockClient).execute(Mockito.any(HttpUriRequest.class), Mockito.any(HttpClientContext.class));
+        verify(spyRetrieval, never()).buildHttpClient();
+    }
+
+    @Test
+    public void testRequestByGet_withHttpClientPool_doesNotClosePooledClient() throws Exception {
+        // Arrange
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class, RETURNS_DEEP_STUBS);
+
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        spyRetrieval.setHttpClientPool(mockPool);
+        doReturn(mockClient).when(mockPool).getHttpClient(Mockito.same(spyRetrieval));
+        doNothing().when(spyRetrieval).onHttpResponseCompleted(Mockito.any());
+
+        // Act
+        spyRetrieval.requestByGet("https://some-url.local/");
+
+        // Assert
+        verify(mockClient, never()).close();
+    }
+
+    @Test
+    public void testRequestByGet_withoutHttpClientPool_closesClient() throws Exception {
+        // Arrange
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class, RETURNS_DEEP_STUBS);
+
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        doReturn(mockClient).when(spyRetrieval).buildHttpClient();
+        doNothing().when(spyRetrieval).onHttpResponseCompleted(Mockito.any());
+
+        // Act
+        spyRetrieval.requestByGet("https://some-url.local/");
+
+        // Assert
+        verify(mockClient).close();
+    }
+
+    @Test
+    public void testRequestByGet_closedHttpClientPool_returnsFalse() throws Exception {
+        // Arrange
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        spyRetrieval.setHttpClientPool(mockPool);
+        doThrow(new IllegalStateException()).when(mockPool).getHttpClient(Mockito.any(HttpRetrieval.class));
+
+        // Act
+        boolean res = spyRetrieval.requestByGet("https://some-url.local/");
+
+        // Assert
+        assertThat(res, is(false));
+    }
+
+    @Test
+    public void testGetHttpVersionMode_initially_returnsHttp11() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        HttpVersionMode res = httpRetrieval.getHttpVersionMode();
+
+        // Assert
+        assertThat(res, is(HttpVersionMode.HTTP_1_1));
+    }
+
+    @Test
+    public void testSetHttpVersionMode_null_throwsIllegalArgumentException() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        httpRetrieval.setHttpVersionMode(null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRequestByGet_http2WithHttpClientPool_usesPooledAsyncClient() throws Exception {
+        // Arrange
+        HttpClientPool mockPool = mock(HttpClientPool.class);
+        CloseableHttpAsyncClient mockClient = mock(CloseableHttpAsyncClient.class);
+
+        HttpRetrieval spyRetrieval = spy(new HttpRetrieval());
+        spyRetrieval.setHttpClientPool(mockPool).setHttpVersionMode(HttpVersionMode.HTTP_2_PRIOR_KNOWLEDGE);
+        doReturn(mockClient).when(mockPool).getHttpAsyncClient(Mockito.same(spyRetrieval));
+        doAnswer(invocation -> {
+            FutureCallback<SimpleHttpResponse> callback = invocation.getArgument(2);
+            callback.completed(new SimpleHttpResponse(200));
+            return null;
+        }).when(mockClient).execute(Mockito.any(SimpleHttpRequest.class), Mockito.any(HttpContext.class), Mockito.any());
+
+        // Act
+        boolean res = spyRetrieval.requestByGet("http://some-url.local/");
+
+        // Assert
+        assertThat(res, is(true));
+        verify(spyRetrieval, never()).buildHttpClient();
+        verify(mockPool, never()).getHttpClient(Mockito.any());
+        verify(mockClient, never()).close(Mockito.any());
+    }
+
+    private CloseableHttpResponse mockStreamedResponse(int code, byte[] body) throws IOException {
+        CloseableHttpResponse mockResponse = mock(CloseableHttpResponse.class);
+        HttpEntity mockEntity = mock(HttpEntity.class);
+        when(mockResponse.getCode()).thenReturn(code);
+        when(mockResponse.getHeaders()).thenReturn(new Header[0]);
+        when(mockResponse.getEntity()).thenReturn(mockEntity);
+        when(mockEntity.getContent()).thenReturn(new ByteArrayInputStream(body));
+        return mockResponse;
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_nullConsumer_throwsIllegalArgumentException() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        httpRetrieval.requestByGet("http://a.local/", null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_networkLevelSuccess_passesContentAndStatusToConsumer() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        byte[] expectedContent = new byte[] { 1, 2, 3 };
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedContent);
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenReturn(mockResponse);
+
+        byte[][] consumedContent = new byte[1][];
+        boolean[] consumedCompleteStatus = new boolean[1];
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> {
+            consumedCompleteStatus[0] = retrieval.hasCompleteContentResponseStatus();
+            consumedContent[0] = IOUtils.toByteArray(content);
+        });
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(consumedContent[0], is(equalTo(expectedContent)));
+        assertThat(consumedCompleteStatus[0], is(true));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(true));
+        assertThat(spy.getResponseBodyBytes(), is(nullValue()));
+        verify(mockResponse).close();
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_consumerFails_returnsFalseAndClosesResponse() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, new byte[10]);
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenReturn(mockResponse);
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> {
+            throw new IOException("test");
+        });
+
+        // Assert
+        assertThat(res, is(false));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(false));
+        verify(mockResponse).close();
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_unsupportedProtocol_returnsFalseWithoutConsumption() {
+        // Arrange
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        ResponseBodyConsumer mockConsumer = mock(ResponseBodyConsumer.class);
+
+        // Act
+        boolean res = spy.requestByGet("ftp://a.local/", mockConsumer);
+
+        // Assert
+        assertThat(res, is(false));
+        verify(spy, never()).buildHttpClient();
+        verifyNoInteractions(mockConsumer);
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderBodySizesAndContentLengths() {
+        return new Object[][] {
+            { 0, -1 },
+            { 0, 0 },
+            { 100, -1 },
+            { 100, 100 },
+            { 100, 50 },
+            { 100, 200 },
+            { 8192, 8192 },
+            { 8193, -1 },
+            { 50000, -1 },
+            { 50000, 50000 },
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderBodySizesAndContentLengths")
+    public void testOnHttpResponseCompleted_withoutPool_storesExactBody(int bodySize, long contentLength) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(bodySize);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(contentLength);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+        assertThat(httpRetrieval.getResponseBodyLength(), is(bodySize));
+        assertThat(httpRetrieval.getResponseBodyBackingArray().length, is(bodySize));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_exactContentLength_storesBodyWithoutCopying() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(1000);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(1000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Act
+        byte[] first = httpRetrieval.getResponseBodyBytes();
+        byte[] second = httpRetrieval.getResponseBodyBytes();
+
+        // Assert
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    @UseDataProvider("dataProviderBodySizesAndContentLengths")
+    public void testOnHttpResponseCompleted_withPool_storesBodyInBackingArray(int bodySize, long contentLength) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(bodySize);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(contentLength);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setBodyBufferPool(new BodyBufferPool());
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyLength(), is(bodySize));
+        assertThat(
+            Arrays.copyOf(httpRetrieval.getResponseBodyBackingArray(), bodySize),
+            is(equalTo(expectedBody)) //
+        );
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_withPoolAndBodyFillingBuffer_returnsCopyNotSharedWithPool() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(8192);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(8192L);
+        BodyBufferPool pool = new BodyBufferPool();
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setBodyBufferPool(pool);
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+        byte[] backingArray = httpRetrieval.getResponseBodyBackingArray();
+
+        // Act
+        byte[] res = httpRetrieval.getResponseBodyBytes();
+
+        // Assert
+        assertThat(backingArray.length, is(8192));
+        assertThat(res, is(not(sameInstance(backingArray))));
+        httpRetrieval.releaseResponseBody();
+        Arrays.fill(pool.acquire(8192), (byte) 0);
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_hugeAnnouncedContentLength_doesNotPreallocateAnnouncedSize() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(100);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(2000000000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setBodyBufferPool(new BodyBufferPool());
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+        assertThat(httpRetrieval.getResponseBodyBackingArray().length, is(lessThanOrEqualTo(4 * 1024 * 1024)));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_bodyLargerThanPresizedBuffer_storesExactBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5 * 1024 * 1024 + 3);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn((long) expectedBody.length);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testReleaseResponseBody_withPool_returnsBufferToPool() throws IOException {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, createTestBody(1000));
+        when(mockResponse.getEntity().getContentLength()).thenReturn(1000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setBodyBufferPool(pool);
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+        byte[] backingArray = httpRetrieval.getResponseBodyBackingArray();
+
+        // Act
+        httpRetrieval.releaseResponseBody();
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyLength(), is(0));
+        assertThat(httpRetrieval.hasCompleteContentResponseStatus(), is(true));
+        assertThat(pool.acquire(1000), is(sameInstance(backingArray)));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_readFailsWithPool_releasesBuffer() throws IOException {
+        // Arrange
+        BodyBufferPool pool = new BodyBufferPool();
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, new byte[0]);
+        InputStream mockStream = mock(InputStream.class);
+        when(mockStream.read(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt())).thenThrow(IOException.class);
+        when(mockResponse.getEntity().getContent()).thenReturn(mockStream);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(1000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setBodyBufferPool(pool);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(nullValue()));
+        assertThat(pool.size(), is(1));
+    }
+
+    private HttpRetrieval spyRetrievalResponding(int code, byte[] body) throws IOException {
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(code, body);
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenReturn(mockResponse);
+        return spy;
+    }
+
+    @Test
+    public void testRequestByGetToFile_nullTarget_throwsIllegalArgumentException() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        httpRetrieval.requestByGetToFile("http://a.local/", null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRequestByGetToFile_completeContent_writesBodyToTarget() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(3 * 1024 * 1024 + 17);
+        HttpRetrieval spy = spyRetrievalResponding(200, expectedBody);
+        Path target = temporaryFolder.getRoot().toPath().resolve("download.bin");
+
+        // Act
+        boolean res = spy.requestByGetToFile("http://a.local/", target);
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(Files.readAllBytes(target), is(equalTo(expectedBody)));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(true));
+        assertThat(spy.getLastRetrievedLocation(), is("http://a.local/"));
+    }
+
+    @Test
+    public void testRequestByGetToFile_existingTarget_replacesTargetWithoutLeavingTemporaryFiles() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(100);
+        HttpRetrieval spy = spyRetrievalResponding(200, expectedBody);
+        Path target = temporaryFolder.newFile("download.bin").toPath();
+        Files.write(target, new byte[] { 1, 2, 3 });
+
+        // Act
+        spy.requestByGetToFile("http://a.local/", target);
+
+        // Assert
+        assertThat(Files.readAllBytes(target), is(equalTo(expectedBody)));
+        assertThat(temporaryFolder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testRequestByGetToFile_incompleteContent_leavesTargetUntouched() throws IOException {
+        // Arrange
+        byte[] expectedContent = new byte[] { 1, 2, 3 };
+        HttpRetrieval spy = spyRetrievalResponding(404, createTestBody(100));
+        Path target = temporaryFolder.newFile("download.bin").toPath();
+        Files.write(target, expectedContent);
+
+        // Act
+        boolean res = spy.requestByGetToFile("http://a.local/", target);
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(false));
+        assertThat(Files.readAllBytes(target), is(equalTo(expectedContent)));
+        assertThat(temporaryFolder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testWriteToFileAtomically_readFails_removesTemporaryFileAndKeepsTarget() throws IOException {
+        // Arrange
+        byte[] expectedContent = new byte[] { 1, 2, 3 };
+        Path target = temporaryFolder.newFile("download.bin").toPath();
+        Files.write(target, expectedContent);
+        InputStream mockStream = mock(InputStream.class);
+        when(mockStream.read(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt())).thenThrow(IOException.class);
+
+        // Act
+        try {
+            HttpRetrieval.writeToFileAtomically(mockStream, target);
+        } catch (IOException ex) {
+            // expected
+        }
+
+        // Assert
+        assertThat(Files.readAllBytes(target), is(equalTo(expectedContent)));
+        assertThat(temporaryFolder.getRoot().list().length, is(1));
+    }
+
+    @Test
+    public void testWriteToFileAtomically_existingTarget_keepsPermissions() throws IOException {
+        // Arrange
+        Path target = temporaryFolder.newFile("download.bin").toPath();
+        assumeTrue(Files.getFileAttributeView(target, PosixFileAttributeView.class) != null);
+        Set<PosixFilePermission> expectedPermissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(target, expectedPermissions);
+
+        // Act
+        HttpRetrieval.writeToFileAtomically(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), target);
+
+        // Assert
+        assertThat(Files.getPosixFilePermissions(target), is(equalTo(expectedPermissions)));
+    }
+
+    @Test
+    public void testWriteToFileAtomically_newTarget_hasDefaultPermissions() throws IOException {
+        // Arrange
+        Path reference = temporaryFolder.getRoot().toPath().resolve("reference");
+        Files.createFile(reference);
+        assumeTrue(Files.getFileAttributeView(reference, PosixFileAttributeView.class) != null);
+        Path target = temporaryFolder.getRoot().toPath().resolve("download.bin");
+
+        // Act
+        HttpRetrieval.writeToFileAtomically(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), target);
+
+        // Assert
+        assertThat(Files.getPosixFilePermissions(target), is(equalTo(Files.getPosixFilePermissions(reference))));
+    }
+
+    @Test
+    @DataProvider({ "-1", "-2", "-1000" })
+    public void testSetResponseBodySpillThreshold_negative_disablesSpilling(long threshold) {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.setResponseBodySpillThreshold(threshold);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodySpillThreshold(), is(-1L));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_spillingDisabled_holdsBodyOnHeap() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(50000);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(-1L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyMapped(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyBackingArray(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    @DataProvider({ "1000, -1", "1000, 1000", "1000, 20000", "20000, -1", "20000, 20000" })
+    public void testOnHttpResponseCompleted_bodyBelowSpillThreshold_holdsBodyOnHeap(int bodySize, long contentLength) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(bodySize);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(contentLength);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodySpillThreshold(20000);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyMapped(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    @DataProvider({ "20001, -1", "20001, 20001", "50000, -1", "50000, 50000", "50000, 1000" })
+    public void testOnHttpResponseCompleted_bodyAboveSpillThreshold_mapsBody(int bodySize, long contentLength) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(bodySize);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(contentLength);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodySpillThreshold(20000);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        ByteBuffer mapped = httpRetrieval.getResponseBodyMapped();
+        assertThat(mapped.isReadOnly(), is(true));
+        assertThat(mapped.remaining(), is(bodySize));
+        byte[] actualMapped = new byte[mapped.remaining()];
+        mapped.get(actualMapped);
+        assertThat(actualMapped, is(equalTo(expectedBody)));
+        assertThat(httpRetrieval.getResponseBodyLength(), is(bodySize));
+        assertThat(httpRetrieval.getResponseBodyBackingArray(), is(nullValue()));
+    }
+
+    @Test
+    @DataProvider({ "-1", "20000" })
+    public void testOnHttpResponseCompleted_announcedContentLengthAboveMappableSize_failsWithoutReadingBody(long spillThreshold) throws IOException {
+        // Arrange
+        InputStream mockStream = mock(InputStream.class);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, new byte[0]);
+        when(mockResponse.getEntity().getContent()).thenReturn(mockStream);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(10L * 1024 * 1024 * 1024);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodySpillThreshold(spillThreshold);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Assert
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyMapped(), is(nullValue()));
+        verify(mockStream, never()).read();
+        verify(mockStream, never()).read(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt());
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_spilledBody_materializesBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(50000);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(50000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodySpillThreshold(1000);
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Act
+        byte[] res = httpRetrieval.getResponseBodyBytes();
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    @DataProvider({ "-1", "-2", "-1000" })
+    public void testSetMaximumResponseBodySize_negative_disablesLimit(long limit) {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.setMaximumResponseBodySize(limit);
+
+        // Assert
+        assertThat(httpRetrieval.getMaximumResponseBodySize(), is(-1L));
+    }
+
+    @Test
+    @DataProvider({ "-1", "-2", "-1000" })
+    public void testSetMaximumCompressedResponseBodySize_negative_disablesLimit(long limit) {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.setMaximumCompressedResponseBodySize(limit);
+
+        // Assert
+        assertThat(httpRetrieval.getMaximumCompressedResponseBodySize(), is(-1L));
+    }
+
+    @Test
+    public void testDescribeHttpClientConfiguration_differentMaximumCompressedResponseBodySize_notEqual() {
+        // Arrange
+        HttpRetrieval first = new HttpRetrieval().setMaximumCompressedResponseBodySize(1000);
+        HttpRetrieval second = new HttpRetrieval().setMaximumCompressedResponseBodySize(2000);
+
+        // Act
+        List<Object> firstDescription = first.describeHttpClientConfiguration();
+        List<Object> secondDescription = second.describeHttpClientConfiguration();
+
+        // Assert
+        assertThat(firstDescription, is(not(equalTo(secondDescription))));
+    }
+
+    @Test
+    public void testBuildContentDecoderRegistry_calledTwice_returnsSameInstance() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setMaximumCompressedResponseBodySize(1234);
+        Map<String, InputStreamFactory> firstRegistry = httpRetrieval.buildContentDecoderRegistry();
+
+        // Act
+        Map<String, InputStreamFactory> secondRegistry = httpRetrieval.buildContentDecoderRegistry();
+
+        // Assert
+        assertThat(secondRegistry, is(sameInstance(firstRegistry)));
+    }
+
+    @Test
+    public void testBuildContentDecoderRegistry_customMapSet_containsCustomEncodings() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.unmodifiableContentDecoderMap = Collections.singletonMap("custom", instream -> instream);
+
+        // Act
+        Map<String, InputStreamFactory> registry = httpRetrieval.buildContentDecoderRegistry();
+
+        // Assert
+        assertThat(registry.keySet(), contains("custom"));
+    }
+
+    @Test
+    public void testBuildContentDecoderRegistry_maximumCompressedSizeExceeded_failsDecoding() throws IOException {
+        // Arrange
+        byte[] compressed = gzip(createTestBody(100000));
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setMaximumCompressedResponseBodySize(compressed.length - 1);
+        InputStreamFactory decoder = httpRetrieval.buildContentDecoderRegistry().get("gzip");
+
+        // Act
+        ResponseSizeLimitExceededException thrownException = null;
+        try (InputStream is = decoder.create(new ByteArrayInputStream(compressed))) {
+            IOUtils.toByteArray(is);
+        } catch (ResponseSizeLimitExceededException ex) {
+            thrownException = ex;
+        }
+
+        // Assert
+        assertThat(thrownException.isCompressedLimit(), is(true));
+    }
+
+    @Test
+    public void testBuildContentDecoderRegistry_withinMaximumCompressedSize_decodesContent() throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(100000);
+        byte[] compressed = gzip(expected);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setMaximumCompressedResponseBodySize(compressed.length);
+        InputStreamFactory decoder = httpRetrieval.buildContentDecoderRegistry().get("gzip");
+
+        // Act
+        byte[] res;
+        try (InputStream is = decoder.create(new ByteArrayInputStream(compressed))) {
+            res = IOUtils.toByteArray(is);
+        }
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testRequestByGet_maximumResponseBodySizeExceeded_abortsRequestAndFails() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1001));
+        spy.setMaximumResponseBodySize(1000);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        boolean res = spy.requestByGet(url);
+
+        // Assert
+        assertThat(res, is(false));
+        assertThat(spy.getResponseSizeLimitExceededException().getLimit(), is(1000L));
+        assertThat(spy.getResponseSizeLimitExceededException().isCompressedLimit(), is(false));
+        assertThat(spy.getResponseBodyBytes(), is(nullValue()));
+        verify(mockGet).cancel();
+    }
+
+    @Test
+    public void testRequestByGet_abortedDuringRequest_cancelsRequest() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, createTestBody(10));
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenAnswer(invocation -> {
+                // simulates abort by another thread while request is being executed
+                spy.abort();
+                return mockResponse;
+            });
+
+        // Act
+        spy.requestByGet(url);
+
+        // Assert
+        verify(mockGet).cancel();
+        assertThat(spy.isAborted(), is(true));
+    }
+
+    @Test
+    public void testRequestByGet_aborted_returnsFalseWithoutRequest() throws IOException {
+        // Arrange
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.abort();
+
+        // Act
+        boolean res = spy.requestByGet("http://a.local/");
+
+        // Assert
+        assertThat(res, is(false));
+        verify(spy, never()).buildHttpGet(Mockito.any(CharSequence.class));
+    }
+
+    @Test
+    public void testOnRequestStarted_afterAbort_cancelsRequestImmediately() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        Cancellable mockRequest = mock(Cancellable.class);
+        httpRetrieval.abort();
+
+        // Act
+        httpRetrieval.onRequestStarted(mockRequest);
+
+        // Assert
+        verify(mockRequest).cancel();
+    }
+
+    @Test
+    public void testAbort_afterRequestFinished_doesNotCancelRequest() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        Cancellable mockRequest = mock(Cancellable.class);
+        httpRetrieval.onRequestStarted(mockRequest);
+        httpRetrieval.onRequestFinished();
+
+        // Act
+        httpRetrieval.abort();
+
+        // Assert
+        verify(mockRequest, never()).cancel();
+    }
+
+    @Test
+    public void testRequestByGet_announcedContentLengthExceedsMaximumResponseBodySize_failsWithoutReadingBody() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, createTestBody(10));
+        when(mockResponse.getEntity().getContentLength()).thenReturn(2000000000L);
+        HttpRetrieval spy = spyRetrievalResponding(mockResponse);
+        spy.setMaximumResponseBodySize(1000);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        boolean res = spy.requestByGet(url);
+
+        // Assert
+        assertThat(res, is(false));
+        assertThat(spy.getResponseSizeLimitExceededException().getLimit(), is(1000L));
+        assertThat(spy.getResponseSizeLimitExceededException().isCompressedLimit(), is(false));
+        verify(mockResponse.getEntity(), never()).getContent();
+        verify(mockGet).cancel();
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_announcedContentLengthExceedsMaximumCompressedResponseBodySize_throwsCompressedLimitException() throws IOException {
+        // Arrange
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, createTestBody(10));
+        when(mockResponse.getFirstHeader(HttpHeaders.CONTENT_ENCODING)).thenReturn(new BasicHeader(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        when(mockResponse.getEntity().getContentLength()).thenReturn(2000000000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval()
+            .setResponseBodyDecodingDeferred(true)
+            .setMaximumCompressedResponseBodySize(1000);
+
+        // Act
+        ResponseSizeLimitExceededException thrownException = null;
+        try {
+            httpRetrieval.onHttpResponseCompleted(mockResponse);
+        } catch (ResponseSizeLimitExceededException ex) {
+            thrownException = ex;
+        }
+
+        // Assert
+        assertThat(thrownException.isCompressedLimit(), is(true));
+        verify(mockResponse.getEntity(), never()).getContent();
+    }
+
+    @Test
+    public void testRequestByGet_withinMaximumResponseBodySize_succeeds() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(1000);
+        HttpRetrieval spy = spyRetrievalResponding(200, expectedBody);
+        spy.setMaximumResponseBodySize(1000);
+
+        // Act
+        boolean res = spy.requestByGet("http://a.local/");
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(spy.getResponseSizeLimitExceededException(), is(nullValue()));
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testRequestByGet_afterExceededLimit_clearsPreviousException() throws IOException {
+        // Arrange
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1001));
+        spy.setMaximumResponseBodySize(1000);
+        spy.requestByGet("http://a.local/");
+
+        // Act
+        spy.requestByGet("ftp://a.local/");
+
+        // Assert
+        assertThat(spy.getResponseSizeLimitExceededException(), is(nullValue()));
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_consumerSwallowsExceededLimit_fails() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1001));
+        spy.setMaximumResponseBodySize(1000);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> {
+            try {
+                IOUtils.toByteArray(content);
+            } catch (IOException ex) {
+                // swallowed
+            }
+        });
+
+        // Assert
+        assertThat(res, is(false));
+        assertThat(spy.getResponseSizeLimitExceededException(), is(notNullValue()));
+        verify(mockGet).cancel();
+    }
+
+    @Test
+    public void testOnAsyncHttpResponseCompleted_decodedSizeExceeded_recordsExceptionWithoutResponse() throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setMaximumResponseBodySize(1000);
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody(gzip(createTestBody(1001)), ContentType.APPLICATION_OCTET_STREAM);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        // Act
+        httpRetrieval.onAsyncHttpResponseCompleted(response, HttpClientContext.create());
+
+        // Assert
+        assertThat(httpRetrieval.getResponseSizeLimitExceededException(), is(notNullValue()));
+        assertThat(httpRetrieval.hasCompleteContentResponseStatus(), is(false));
+    }
+
+    private static byte[] readFully(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.get(out);
+        return out;
+    }
+
+    @Test
+    public void testGetResponseBody_noResponse_returnsNull() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    @DataProvider({ "0, -1, false", "1000, 1000, false", "1000, -1, true", "5000, 10, true" })
+    public void testGetResponseBody_bodyOnHeap_returnsReadOnlyBufferLimitedToBody(int bodySize, long contentLength, boolean usePool) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(bodySize);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(contentLength);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        if (usePool) {
+            httpRetrieval.setBodyBufferPool(new BodyBufferPool());
+        }
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(res.isReadOnly(), is(true));
+        assertThat(res.position(), is(0));
+        assertThat(readFully(res), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testGetResponseBody_bodyOnHeap_doesNotCopyBody() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(1000);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, body);
+        when(mockResponse.getEntity().getContentLength()).thenReturn(1000L);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Act
+        httpRetrieval.getResponseBodyBackingArray()[10] = (byte) ~body[10];
+
+        // Assert
+        assertThat(res.get(10), is((byte) ~body[10]));
+    }
+
+    @Test
+    public void testGetResponseBody_spilledBody_returnsMappedBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(50000);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, expectedBody);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodySpillThreshold(1000);
+        httpRetrieval.onHttpResponseCompleted(mockResponse);
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(res.isReadOnly(), is(true));
+        assertThat(res.isDirect(), is(true));
+        assertThat(readFully(res), is(equalTo(expectedBody)));
+        assertThat(httpRetrieval.getResponseBodyBackingArray(), is(nullValue()));
+    }
+
+    @Test
+    public void testGetResponseBody_calledTwice_returnsIndependentBuffers() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(1000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.onHttpResponseCompleted(mockStreamedResponse(200, expectedBody));
+        readFully(httpRetrieval.getResponseBody());
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(readFully(res), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testGetResponseBody_released_returnsNull() throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.onHttpResponseCompleted(mockStreamedResponse(200, createTestBody(1000)));
+        httpRetrieval.releaseResponseBody();
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testOpenResponseBodyChannel_noResponse_returnsNull() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        ReadableByteChannel res = httpRetrieval.openResponseBodyChannel();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    @DataProvider({ "false", "true" })
+    public void testOpenResponseBodyChannel_withBody_readsWholeBody(boolean spill) throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(50000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        if (spill) {
+            httpRetrieval.setResponseBodySpillThreshold(1000);
+        }
+        httpRetrieval.onHttpResponseCompleted(mockStreamedResponse(200, expectedBody));
+
+        // Act
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ReadableByteChannel channel = httpRetrieval.openResponseBodyChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                baos.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+
+        // Assert
+        assertThat(baos.toByteArray(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testGetResponseStatusCode_noResponse_returnsMinusOne() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        int res = httpRetrieval.getResponseStatusCode();
+
+        // Assert
+        assertThat(res, is(-1));
+    }
+
+    @Test
+    @DataProvider({ "200", "404" })
+    public void testGetResponseStatusCode_withResponse_returnsCode(int expectedCode) throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+        httpRetrieval.onHttpResponseCompleted(mockStreamedResponse(expectedCode, new byte[0]));
+
+        // Act
+        int res = httpRetrieval.getResponseStatusCode();
+
+        // Assert
+        assertThat(res, is(expectedCode));
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_bodyAbandoned_abortsRequestAndSucceeds() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1000));
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> {
+            content.read(new byte[10]);
+            retrieval.abandonResponseBody();
+        });
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(true));
+        verify(mockGet).cancel();
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_bodyAbandonedClosingFails_succeeds() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, new byte[0]);
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, new byte[0]);
+        when(mockResponse.getEntity().getContent()).thenReturn(new ByteArrayInputStream(createTestBody(1000)) {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("test");
+            }
+        });
+        doThrow(new IOException("test")).when(mockResponse).close();
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenReturn(mockResponse);
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> retrieval.abandonResponseBody());
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_bodyNotAbandoned_doesNotAbortRequest() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1000));
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        boolean res = spy.requestByGet(url, (retrieval, content) -> content.read(new byte[10]));
+
+        // Assert
+        assertThat(res, is(true));
+        verify(mockGet, never()).cancel();
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_abandonedInPreviousRequest_doesNotAbortRequest() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(1000));
+        spy.requestByGet(url, (retrieval, content) -> retrieval.abandonResponseBody());
+
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        spy.requestByGet(url, (retrieval, content) -> content.read(new byte[10]));
+
+        // Assert
+        verify(mockGet, never()).cancel();
+    }
+
+    @Test
+    public void testIsResponseBodyDecodingDeferred_initially_returnsFalse() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        boolean res = httpRetrieval.isResponseBodyDecodingDeferred();
+
+        // Assert
+        assertThat(res, is(false));
+    }
+
+    @Test
+    public void testDescribeHttpClientConfiguration_differentResponseBodyDecodingDeferred_notEqual() {
+        // Arrange
+        HttpRetrieval first = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        HttpRetrieval second = new HttpRetrieval().setResponseBodyDecodingDeferred(false);
+
+        // Act
+        List<Object> firstDescription = first.describeHttpClientConfiguration();
+        List<Object> secondDescription = second.describeHttpClientConfiguration();
+
+        // Assert
+        assertThat(firstDescription, is(not(equalTo(secondDescription))));
+    }
+
+    @Test
+    public void testRequestByGet_decodingDeferred_advertisesSupportedEncodings() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseBodyDecodingDeferred(true);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        spy.requestByGet(url);
+
+        // Assert
+        verify(mockGet).setHeader(HttpHeaders.ACCEPT_ENCODING, spy.buildAcceptEncodingHeaderValue());
+    }
+
+    @Test
+    public void testRequestByGet_decodingNotDeferred_leavesAcceptEncodingToClient() throws IOException {
+        // Arrange
+        String url = "http://a.local/";
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(url);
+
+        // Act
+        spy.requestByGet(url);
+
+        // Assert
+        verify(mockGet, never()).setHeader(Mockito.eq(HttpHeaders.ACCEPT_ENCODING), Mockito.any());
+    }
+
+    private CloseableHttpResponse mockEncodedResponse(byte[] encodedBody, String contentEncoding) throws IOException {
+        CloseableHttpResponse mockResponse = mockStreamedResponse(200, encodedBody);
+        Header contentEncodingHeader = new BasicHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        when(mockResponse.getHeaders()).thenReturn(new Header[] { contentEncodingHeader });
+        when(mockResponse.getFirstHeader(HttpHeaders.CONTENT_ENCODING)).thenReturn(contentEncodingHeader);
+        when(mockResponse.getEntity().getContentLength()).thenReturn((long) encodedBody.length);
+        return mockResponse;
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_decodingDeferred_retainsEncodedBody() throws IOException {
+        // Arrange
+        byte[] encodedBody = gzip(createTestBody(5000));
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(encodedBody, "gzip"));
+
+        // Assert
+        assertThat(httpRetrieval.getResponseContentEncoding(), is("gzip"));
+        assertThat(readFully(httpRetrieval.getEncodedResponseBody()), is(equalTo(encodedBody)));
+        assertThat(httpRetrieval.getResponseBodyLength(), is(encodedBody.length));
+        assertThat(httpRetrieval.getResponseHeaders().getFirstByName(HttpHeaders.CONTENT_ENCODING), is("gzip"));
+    }
+
+    @Test
+    @DataProvider({ "identity", "", " " })
+    public void testOnHttpResponseCompleted_decodingDeferredIdentity_hasNoContentEncoding(String contentEncoding) throws IOException {
+        // Arrange
+        byte[] body = createTestBody(1000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(body, contentEncoding));
+
+        // Assert
+        assertThat(httpRetrieval.getResponseContentEncoding(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_decodingNotDeferred_hasNoContentEncoding() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(1000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(body, "unknown"));
+
+        // Assert
+        assertThat(httpRetrieval.getResponseContentEncoding(), is(nullValue()));
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testOnHttpResponseCompleted_decodingDeferredExceedsCompressedLimit_recordsException() throws IOException {
+        // Arrange
+        byte[] encodedBody = gzip(createTestBody(5000));
+        HttpRetrieval httpRetrieval = new HttpRetrieval()
+            .setResponseBodyDecodingDeferred(true)
+            .setMaximumCompressedResponseBodySize(encodedBody.length - 1)
+            .setMaximumResponseBodySize(10000);
+
+        // Act
+        try {
+            httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(encodedBody, "gzip"));
+        } catch (ResponseSizeLimitExceededException ex) {
+            // expected, also recorded
+        }
+
+        // Assert
+        ResponseSizeLimitExceededException res = httpRetrieval.getResponseSizeLimitExceededException();
+        assertThat(res, is(notNullValue()));
+        assertThat(res.isCompressedLimit(), is(true));
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_decodingDeferred_returnsDecodedBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(gzip(expectedBody), "gzip"));
+
+        // Act
+        byte[] res = httpRetrieval.getResponseBodyBytes();
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testGetResponseBody_decodingDeferred_returnsDecodedBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(gzip(expectedBody), "gzip"));
+
+        // Act
+        ByteBuffer res = httpRetrieval.getResponseBody();
+
+        // Assert
+        assertThat(res.isReadOnly(), is(true));
+        assertThat(readFully(res), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testOpenDecodedResponseBody_multipleEncodingsDeferred_returnsDecodedBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(gzip(gzip(expectedBody)), "gzip, identity, x-gzip"));
+
+        // Act
+        byte[] res;
+        try (InputStream is = httpRetrieval.openDecodedResponseBody()) {
+            res = IOUtils.toByteArray(is);
+        }
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testOpenDecodedResponseBody_notEncoded_returnsStoredBody() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        httpRetrieval.onHttpResponseCompleted(mockStreamedResponse(200, expectedBody));
+
+        // Act
+        byte[] res;
+        try (InputStream is = httpRetrieval.openDecodedResponseBody()) {
+            res = IOUtils.toByteArray(is);
+        }
+
+        // Assert
+        assertThat(res, is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testOpenDecodedResponseBody_noResponse_returnsNull() throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        InputStream res = httpRetrieval.openDecodedResponseBody();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testOpenDecodedResponseBody_unsupportedEncoding_throwsIOException() throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(createTestBody(100), "unknown"));
+
+        thrown.expect(IOException.class);
+
+        // Act
+        httpRetrieval.openDecodedResponseBody();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_decodingDeferredExceedsDecodedLimit_returnsNull() throws IOException {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval()
+            .setResponseBodyDecodingDeferred(true)
+            .setMaximumResponseBodySize(1000);
+        httpRetrieval.onHttpResponseCompleted(mockEncodedResponse(gzip(createTestBody(1001)), "gzip"));
+
+        // Act
+        byte[] res = httpRetrieval.getResponseBodyBytes();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testOnHttpResponseStreamed_decodingDeferred_passesDecodedContent() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        ByteArrayOutputStream consumed = new ByteArrayOutputStream();
+
+        // Act
+        httpRetrieval.onHttpResponseStreamed(
+            mockEncodedResponse(gzip(expectedBody), "gzip"),
+            (retrieval, content) -> IOUtils.copy(content, consumed) //
+        );
+
+        // Assert
+        assertThat(consumed.toByteArray(), is(equalTo(expectedBody)));
+    }
+
+    @Test
+    public void testOnAsyncHttpResponseCompleted_decodingDeferred_retainsEncodedBodyAndHeaders() throws IOException {
+        // Arrange
+        byte[] expectedBody = createTestBody(5000);
+        byte[] encodedBody = gzip(expectedBody);
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseBodyDecodingDeferred(true);
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setBody(encodedBody, ContentType.APPLICATION_OCTET_STREAM);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, Integer.toString(encodedBody.length));
+
+        // Act
+        httpRetrieval.onAsyncHttpResponseCompleted(response, HttpClientContext.create());
+
+        // Assert
+        assertThat(httpRetrieval.getResponseContentEncoding(), is("gzip"));
+        assertThat(readFully(httpRetrieval.getEncodedResponseBody()), is(equalTo(encodedBody)));
+        assertThat(httpRetrieval.getResponseHeaders().getFirstByName(HttpHeaders.CONTENT_LENGTH), is(Integer.toString(encodedBody.length)));
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(expectedBody)));
+    }
+
+    private static final String CACHED_URL = "http://a.local/feed";
+    private static final Instant CACHED_TIME = Instant.ofEpochSecond(1000);
+
+    private CloseableHttpResponse mockResponseWithHeaders(int code, byte[] body, Header... headers) throws IOException {
+        CloseableHttpResponse mockResponse = mockStreamedResponse(code, (body != null) ? body : new byte[0]);
+        when(mockResponse.getHeaders()).thenReturn(headers);
+        if (body == null) {
+            when(mockResponse.getEntity()).thenReturn(null);
+        }
+        return mockResponse;
+    }
+
+    private HttpRetrieval spyRetrievalResponding(CloseableHttpResponse firstResponse, CloseableHttpResponse... furtherResponses) throws IOException {
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        CloseableHttpClient mockClient = mock(CloseableHttpClient.class);
+        when(spy.buildHttpClient()).thenReturn(mockClient);
+        when(mockClient.execute(Mockito.any(ClassicHttpRequest.class), Mockito.any(HttpClientContext.class)))
+            .thenReturn(firstResponse, furtherResponses);
+        return spy;
+    }
+
+    @Test
+    public void testGetResponseCache_initially_returnsNull() {
+        // Arrange
+        HttpRetrieval httpRetrieval = new HttpRetrieval();
+
+        // Act
+        ResponseCache res = httpRetrieval.getResponseCache();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testRequestByGet_cachedResponseWithValidators_requestsConditionally() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(
+            CACHED_URL,
+            createTestBody(10),
+            CACHED_TIME,
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT") //
+        ));
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(cache);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        verify(mockGet).setHeader(HttpHeaders.IF_NONE_MATCH, "\"abc\"");
+        verify(mockGet).setHeader(HttpHeaders.IF_MODIFIED_SINCE, "Wed, 21 Oct 2015 07:28:00 GMT");
+    }
+
+    @Test
+    public void testRequestByGet_nothingCached_requestsUnconditionally() throws IOException {
+        // Arrange
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(new ValidatorCache());
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        verify(mockGet, never()).setHeader(Mockito.eq(HttpHeaders.IF_NONE_MATCH), Mockito.any());
+        verify(mockGet, never()).setHeader(Mockito.eq(HttpHeaders.IF_MODIFIED_SINCE), Mockito.any());
+    }
+
+    @Test
+    public void testRequestByGetWithConsumer_cachedResponseWithValidators_requestsUnconditionally() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, createTestBody(10), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(cache);
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL, (retrieval, content) -> IOUtils.toByteArray(content));
+
+        // Assert
+        verify(mockGet, never()).setHeader(Mockito.eq(HttpHeaders.IF_NONE_MATCH), Mockito.any());
+    }
+
+    @Test
+    public void testRequestByGet_okWithValidators_storesResponseToCache() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(200, body, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")) //
+        );
+        spy.setResponseCache(cache);
+        doReturn(Instant.ofEpochSecond(1234)).when(spy).getInstantNow();
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        StoredResponse res = cache.lookup(CACHED_URL);
+        assertThat(res.getBody(), is(equalTo(body)));
+        assertThat(res.getETag(), is("\"abc\""));
+        assertThat(res.getStatusCode(), is(200));
+        assertThat(res.getStoredTime(), is(Instant.ofEpochSecond(1234)));
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_storedResponseModified_doesNotChangeCachedResponse() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(200, body.clone(), new BasicHeader(HttpHeaders.ETAG, "\"abc\"")) //
+        );
+        spy.setResponseCache(cache);
+        spy.requestByGet(CACHED_URL);
+
+        // Act
+        Arrays.fill(spy.getResponseBodyBytes(), (byte) 0);
+
+        // Assert
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(cache.lookup(CACHED_URL).getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_notModifiedResponseModified_doesNotChangeCachedResponse() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, body.clone(), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval spy = spyRetrievalResponding(mockResponseWithHeaders(304, null));
+        spy.setResponseCache(cache);
+        spy.requestByGet(CACHED_URL);
+
+        // Act
+        Arrays.fill(spy.getResponseBodyBytes(), (byte) 0);
+
+        // Assert
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(cache.lookup(CACHED_URL).getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testRequestByGet_okWithPooledBuffer_storedBodySurvivesRelease() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        CloseableHttpResponse mockResponse = mockResponseWithHeaders(200, body, new BasicHeader(HttpHeaders.ETAG, "\"abc\""));
+        when(mockResponse.getEntity().getContentLength()).thenReturn(100L);
+        BodyBufferPool pool = new BodyBufferPool();
+        HttpRetrieval spy = spyRetrievalResponding(mockResponse);
+        spy.setResponseCache(cache).setBodyBufferPool(pool);
+        spy.requestByGet(CACHED_URL);
+
+        // Act
+        spy.releaseResponseBody();
+        Arrays.fill(pool.acquire(100), (byte) 0);
+
+        // Assert
+        assertThat(cache.lookup(CACHED_URL).getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testRequestByGet_okWithSpilledBody_doesNotStoreAndInvalidatesCache() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(50000);
+        ResponseCache mockCache = mock(ResponseCache.class);
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(200, body, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")) //
+        );
+        spy.setResponseCache(mockCache).setResponseBodySpillThreshold(1000);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.getResponseBodyMapped(), is(notNullValue()));
+        verify(mockCache, never()).store(Mockito.anyString(), Mockito.any());
+        verify(mockCache).invalidate(CACHED_URL);
+    }
+
+    @Test
+    public void testRequestByGet_notModified_restoresCachedResponse() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(
+            CACHED_URL,
+            body,
+            CACHED_TIME,
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CONTENT_TYPE, "text/plain") //
+        ));
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(304, null, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")) //
+        );
+        spy.setResponseCache(cache);
+
+        // Act
+        boolean res = spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(spy.isResponseNotModified(), is(true));
+        assertThat(spy.getResponseStatusCode(), is(200));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(true));
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(spy.getResponseHeaders().getFirstByName(HttpHeaders.CONTENT_TYPE), is("text/plain"));
+    }
+
+    @Test
+    public void testRequestByGet_notModified_updatesCachedResponse() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, createTestBody(100), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(304, null, new BasicHeader(HttpHeaders.ETAG, "\"def\"")) //
+        );
+        spy.setResponseCache(cache);
+        doReturn(Instant.ofEpochSecond(5000)).when(spy).getInstantNow();
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        StoredResponse res = cache.lookup(CACHED_URL);
+        assertThat(res.getETag(), is("\"def\""));
+        assertThat(res.getStoredTime(), is(Instant.ofEpochSecond(5000)));
+    }
+
+    @Test
+    public void testRequestByGet_notModified_storesRevalidatedResponseReferringToPrevious() throws IOException {
+        // Arrange
+        StoredResponse previous = createStoredResponse(CACHED_URL, createTestBody(100), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\""));
+        ResponseCache mockCache = mock(ResponseCache.class);
+        when(mockCache.lookup(CACHED_URL)).thenReturn(previous);
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(304, null, new BasicHeader(HttpHeaders.ETAG, "\"def\"")) //
+        );
+        spy.setResponseCache(mockCache);
+        doReturn(Instant.ofEpochSecond(5000)).when(spy).getInstantNow();
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        ArgumentCaptor<StoredResponse> captor = ArgumentCaptor.forClass(StoredResponse.class);
+        verify(mockCache).storeRevalidated(eq(CACHED_URL), same(previous), captor.capture());
+        verify(mockCache, never()).store(any(), any());
+        assertThat(captor.getValue().getETag(), is("\"def\""));
+        assertThat(captor.getValue().getStoredTime(), is(Instant.ofEpochSecond(5000)));
+    }
+
+    @Test
+    public void testRequestByGet_notModifiedWithoutCache_isIncomplete() throws IOException {
+        // Arrange
+        HttpRetrieval spy = spyRetrievalResponding(mockResponseWithHeaders(304, null));
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseNotModified(), is(false));
+        assertThat(spy.hasCompleteContentResponseStatus(), is(false));
+    }
+
+    @Test
+    public void testRequestByGet_modified_replacesCachedResponse() throws IOException {
+        // Arrange
+        byte[] newBody = createTestBody(200);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, createTestBody(100), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(200, newBody, new BasicHeader(HttpHeaders.ETAG, "\"def\"")) //
+        );
+        spy.setResponseCache(cache);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseNotModified(), is(false));
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(newBody)));
+        assertThat(cache.lookup(CACHED_URL).getBody(), is(equalTo(newBody)));
+    }
+
+    @Test
+    public void testRequestByGet_afterNotModified_resetsIndication() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, createTestBody(100), CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(304, null),
+            mockResponseWithHeaders(200, createTestBody(10)) //
+        );
+        spy.setResponseCache(cache);
+        spy.requestByGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseNotModified(), is(false));
+    }
+
+    @Test
+    public void testOnAsyncHttpResponseCompleted_notModified_restoresCachedResponse() {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(CACHED_URL, body, CACHED_TIME, new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseCache(cache);
+        httpRetrieval.beginRequest(CACHED_URL);
+
+        // Act
+        httpRetrieval.onAsyncHttpResponseCompleted(new SimpleHttpResponse(304), HttpClientContext.create());
+
+        // Assert
+        assertThat(httpRetrieval.isResponseNotModified(), is(true));
+        assertThat(httpRetrieval.getResponseBodyBytes(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testApplyConditionalRequestHeaders_cachedResponseWithoutValidators_addsNoHeaders() {
+        // Arrange
+        ResponseCache mockCache = mock(ResponseCache.class);
+        when(mockCache.lookup(CACHED_URL)).thenReturn(createStoredResponse(CACHED_URL, createTestBody(10), CACHED_TIME));
+        HttpRetrieval httpRetrieval = new HttpRetrieval().setResponseCache(mockCache);
+        httpRetrieval.beginRequest(CACHED_URL);
+        HttpGet request = new HttpGet(CACHED_URL);
+
+        // Act
+        httpRetrieval.applyConditionalRequestHeaders(request);
+
+        // Assert
+        assertThat(request.getHeaders().length, is(0));
+    }
+
+    @Test
+    public void testRequestByGet_freshCachedResponse_restoresWithoutRequest() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, new StoredResponse(
+            CACHED_URL,
+            "http://b.local/feed",
+            200,
+            new Header[] {
+                new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+                new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60"),
+            },
+            body,
+            null,
+            Instant.ofEpochSecond(1000) //
+        ));
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        spy.setResponseCache(cache);
+        doReturn(Instant.ofEpochSecond(1030)).when(spy).getInstantNow();
+
+        // Act
+        boolean res = spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(res, is(true));
+        assertThat(spy.isResponseFromCache(), is(true));
+        assertThat(spy.isResponseNotModified(), is(false));
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(spy.getLastRequestedLocation(), is(CACHED_URL));
+        assertThat(spy.getLastRetrievedLocation(), is("http://b.local/feed"));
+        verify(spy, never()).buildHttpClient();
+    }
+
+    @Test
+    public void testGetResponseBodyBytes_freshCachedResponseModified_doesNotChangeCachedResponse() throws IOException {
+        // Arrange
+        byte[] body = createTestBody(100);
+        ResponseCache cache = new MemoryResponseCache(10000);
+        cache.store(CACHED_URL, createStoredResponse(
+            CACHED_URL,
+            body.clone(),
+            CACHED_TIME,
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60") //
+        ));
+        HttpRetrieval spy = spy(HttpRetrieval.class);
+        spy.setResponseCache(cache);
+        doReturn(CACHED_TIME.plusSeconds(30)).when(spy).getInstantNow();
+        spy.requestByGet(CACHED_URL);
+
+        // Act
+        Arrays.fill(spy.getResponseBodyBytes(), (byte) 0);
+
+        // Assert
+        assertThat(spy.getResponseBodyBytes(), is(equalTo(body)));
+        assertThat(cache.lookup(CACHED_URL).getBody(), is(equalTo(body)));
+    }
+
+    @Test
+    public void testRequestByGet_staleCachedResponse_requestsConditionally() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(
+            CACHED_URL,
+            createTestBody(10),
+            CACHED_TIME,
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60") //
+        ));
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(cache);
+        doReturn(Instant.ofEpochSecond(1060)).when(spy).getInstantNow();
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseFromCache(), is(false));
+        verify(mockGet).setHeader(HttpHeaders.IF_NONE_MATCH, "\"abc\"");
+    }
+
+    @Test
+    public void testRequestByGet_freshCachedResponseVaryingByOtherUserAgent_requestsUnconditionally() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, new StoredResponse(
+            CACHED_URL,
+            null,
+            200,
+            new Header[] {
+                new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+                new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60"),
+                new BasicHeader(HttpHeaders.VARY, "User-Agent"),
+            },
+            createTestBody(10),
+            null,
+            Instant.ofEpochSecond(1000),
+            new Header[] { new BasicHeader("user-agent", "other agent") } //
+        ));
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(cache).setUserAgent("my agent");
+        doReturn(Instant.ofEpochSecond(1030)).when(spy).getInstantNow();
+        HttpGet mockGet = mock(HttpGet.class);
+        doReturn(mockGet).when(spy).buildHttpGet(CACHED_URL);
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseFromCache(), is(false));
+        verify(mockGet, never()).setHeader(Mockito.eq(HttpHeaders.IF_NONE_MATCH), Mockito.any());
+    }
+
+    @Test
+    public void testRequestByGet_okVaryingByUserAgent_storesSentUserAgent() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        HttpRetrieval spy = spyRetrievalResponding(
+            mockResponseWithHeaders(
+                200,
+                createTestBody(10),
+                new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+                new BasicHeader(HttpHeaders.VARY, "User-Agent") //
+            ) //
+        );
+        spy.setResponseCache(cache).setUserAgent("my agent");
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        Header[] res = cache.lookup(CACHED_URL).getVaryingRequestHeaders();
+        assertThat(res.length, is(1));
+        assertThat(res[0].getName(), is("user-agent"));
+        assertThat(res[0].getValue(), is("my agent"));
+    }
+
+    @Test
+    public void testRequestByGet_afterRestoredFromCache_resetsIndication() throws IOException {
+        // Arrange
+        ResponseCache cache = new ValidatorCache();
+        cache.store(CACHED_URL, createStoredResponse(
+            CACHED_URL,
+            createTestBody(10),
+            CACHED_TIME,
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60") //
+        ));
+        HttpRetrieval spy = spyRetrievalResponding(200, createTestBody(10));
+        spy.setResponseCache(cache);
+        doReturn(Instant.ofEpochSecond(1030)).when(spy).getInstantNow();
+        spy.requestByGet(CACHED_URL);
+        doReturn(Instant.ofEpochSecond(1060)).when(spy).getInstantNow();
+
+        // Act
+        spy.requestByGet(CACHED_URL);
+
+        // Assert
+        assertThat(spy.isResponseFromCache(), is(false));
+        assertThat(spy.getLastRetrievedLocation(), is(CACHED_URL));
+    }
 }
@@ -0,0 +1,112 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.zip.Inflater;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class InflaterPoolTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    @DataProvider({ "0", "-1" })
+    public void testConstructor_invalidLimit_throwsIllegalArgumentException(int maximumRetainedInflaters) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new InflaterPool(maximumRetainedInflaters);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "false", "true" })
+    public void testAcquire_afterRelease_returnsReleasedInflater(boolean nowrap) {
+        // Arrange
+        InflaterPool pool = new InflaterPool(2);
+        Inflater released = pool.acquire(nowrap);
+        pool.release(released, nowrap);
+
+        // Act
+        Inflater inflater = pool.acquire(nowrap);
+
+        // Assert
+        assertThat(inflater, is(sameInstance(released)));
+        assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    @DataProvider({ "false", "true" })
+    public void testAcquire_releasedInflaterOfOtherType_returnsNewInflater(boolean nowrap) {
+        // Arrange
+        InflaterPool pool = new InflaterPool(2);
+        Inflater released = pool.acquire(!nowrap);
+        pool.release(released, !nowrap);
+
+        // Act
+        Inflater inflater = pool.acquire(nowrap);
+
+        // Assert
+        assertThat(inflater, is(not(sameInstance(released))));
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testRelease_withinCapacity_resetsInflaterWithoutEnding() {
+        // Arrange
+        InflaterPool pool = new InflaterPool(1);
+        Inflater mockInflater = mock(Inflater.class);
+
+        // Act
+        pool.release(mockInflater, true);
+
+        // Assert
+        verify(mockInflater).reset();
+        verify(mockInflater, never()).end();
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testRelease_exceedingCapacity_endsInflater() {
+        // Arrange
+        InflaterPool pool = new InflaterPool(1);
+        pool.release(mock(Inflater.class), true);
+        Inflater mockInflater = mock(Inflater.class);
+
+        // Act
+        pool.release(mockInflater, true);
+
+        // Assert
+        verify(mockInflater).end();
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testRelease_null_isIgnored() {
+        // Arrange
+        InflaterPool pool = new InflaterPool(1);
+
+        // Act
+        pool.release(null, true);
+
+        // Assert
+        assertThat(pool.size(), is(0));
+    }
+}
@@ -0,0 +1,176 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class LineSpliteratorTest {
+
+    private static LineSpliterator createSpliterator(String text, int minimumSplitSize) {
+        ByteBuffer body = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        return new LineSpliterator(body, StandardCharsets.UTF_8, minimumSplitSize, 0, body.limit());
+    }
+
+    private static List<String> collect(Spliterator<String> spliterator) {
+        List<String> lines = new ArrayList<>();
+        spliterator.forEachRemaining(lines::add);
+        return lines;
+    }
+
+    private static List<String> linesByBufferedReader(String text) {
+        return new BufferedReader(new StringReader(text)).lines().collect(Collectors.toList());
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderTexts() {
+        return new Object[][] {
+            { "" },
+            { "\n" },
+            { "a" },
+            { "a\n" },
+            { "a\nb" },
+            { "a\nb\n" },
+            { "a\r\nb\r\n" },
+            { "a\rb\r" },
+            { "a\n\nb" },
+            { "\r\n\r\n" },
+            { "äöü\nß\r\n€" }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderTexts")
+    public void testTryAdvance_unsplit_returnsSameLinesAsBufferedReader(String text) {
+        // Arrange
+        LineSpliterator spliterator = createSpliterator(text, Integer.MAX_VALUE);
+
+        // Act
+        List<String> res = collect(spliterator);
+
+        // Assert
+        assertThat(res, is(equalTo(linesByBufferedReader(text))));
+    }
+
+    @Test
+    @DataProvider({ "1", "2", "3", "5", "16" })
+    public void testStream_parallelWithSmallSplitSize_returnsSameLinesInOrder(int minimumSplitSize) {
+        // Arrange
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("line ").append(i).append((i % 3 == 0) ? "\r\n" : (i % 3 == 1) ? "\n" : "\r");
+        }
+        String text = sb.toString();
+
+        // Act
+        List<String> res = StreamSupport.stream(createSpliterator(text, minimumSplitSize), true)
+            .collect(Collectors.toList());
+
+        // Assert
+        assertThat(res, is(equalTo(linesByBufferedReader(text))));
+    }
+
+    @Test
+    @DataProvider({ "1", "2", "3", "4" })
+    public void testTrySplit_anySplitPoint_neitherLosesNorDuplicatesLines(int minimumSplitSize) {
+        // Arrange
+        String text = "a\r\nb\r\nc\nd\re";
+        LineSpliterator suffix = createSpliterator(text, minimumSplitSize);
+
+        // Act
+        Spliterator<String> prefix = suffix.trySplit();
+
+        // Assert
+        List<String> res = new ArrayList<>();
+        if (prefix != null) {
+            res.addAll(collect(prefix));
+        }
+        res.addAll(collect(suffix));
+        assertThat(res, contains("a", "b", "c", "d", "e"));
+    }
+
+    @Test
+    public void testTrySplit_belowMinimumSplitSize_returnsNull() {
+        // Arrange
+        LineSpliterator spliterator = createSpliterator("a\nb\nc\nd", 100);
+
+        // Act
+        Spliterator<String> res = spliterator.trySplit();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testTrySplit_noLineTerminatorAfterMiddle_returnsNull() {
+        // Arrange
+        LineSpliterator spliterator = createSpliterator("a\nbcdefghijklmnop", 1);
+
+        // Act
+        Spliterator<String> res = spliterator.trySplit();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testTrySplit_lineTerminatorAfterMiddle_returnsPrefix() {
+        // Arrange
+        LineSpliterator spliterator = createSpliterator("abcdefgh\nijk", 1);
+
+        // Act
+        Spliterator<String> res = spliterator.trySplit();
+
+        // Assert
+        assertThat(res, is(notNullValue()));
+        assertThat(collect(res), contains("abcdefgh"));
+        assertThat(collect(spliterator), contains("ijk"));
+    }
+
+    @Test
+    public void testTryAdvance_emptyBody_returnsFalse() {
+        // Arrange
+        LineSpliterator spliterator = createSpliterator("", 1);
+
+        // Act
+        List<String> res = collect(spliterator);
+
+        // Assert
+        assertThat(res, is(empty()));
+    }
+
+    @Test
+    @DataProvider({ "UTF-8, true", "ISO-8859-1, true", "US-ASCII, true", "UTF-16, false", "UTF-16LE, false", "UTF-32, false" })
+    public void testIsSupported_charset_returnsExpectedResult(String charsetName, boolean expectedResult) {
+        // Arrange
+        Charset charset = Charset.forName(charsetName);
+
+        // Act
+        boolean res = LineSpliterator.isSupported(charset);
+
+        // Assert
+        assertThat(res, is(expectedResult));
+    }
+}
@@ -0,0 +1,293 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import java.time.Instant;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class MemoryResponseCacheTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final String URL_A = "http://a.local/";
+    private static final String URL_B = "http://b.local/";
+    private static final String URL_C = "http://c.local/";
+    private static final Instant TIME = Instant.ofEpochSecond(1000);
+
+    private static final Header ETAG = new BasicHeader(HttpHeaders.ETAG, "\"abc\"");
+    private static final Header MAX_AGE = new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60");
+
+    private static MemoryResponseCache spyCacheAt(long maximumSize, Instant now) {
+        MemoryResponseCache spy = spy(new MemoryResponseCache(maximumSize));
+        doReturn(now).when(spy).getInstantNow();
+        return spy;
+    }
+
+    @Test
+    @DataProvider({ "0", "-1" })
+    public void testConstructor_nonPositiveMaximumSize_throwsIllegalArgumentException(long maximumSize) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new MemoryResponseCache(maximumSize);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testLookup_nothingStored_returnsNull() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testStore_withValidators_storesResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+        StoredResponse response = createStoredResponse(URL_A, new byte[100], TIME, ETAG);
+
+        // Act
+        cache.store(URL_A, response);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(sameInstance(response)));
+        assertThat(cache.getTotalSize(), is(MemoryResponseCache.estimateSize(URL_A, response)));
+    }
+
+    @Test
+    public void testStore_freshWithoutValidators_storesResponse() {
+        // Arrange
+        MemoryResponseCache cache = spyCacheAt(10000, TIME.plusSeconds(10));
+        StoredResponse response = createStoredResponse(URL_A, new byte[100], TIME, MAX_AGE);
+
+        // Act
+        cache.store(URL_A, response);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(sameInstance(response)));
+    }
+
+    @Test
+    public void testStore_neitherFreshNorValidators_removesPreviousResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[100], TIME, ETAG));
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[100], TIME));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getTotalSize(), is(0L));
+    }
+
+    @Test
+    public void testStore_noStore_doesNotStoreResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[100], TIME, ETAG, new BasicHeader(HttpHeaders.CACHE_CONTROL, "no-store")));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+    }
+
+    @Test
+    public void testStore_notOk_doesNotStoreResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, 404, new byte[100], TIME, ETAG));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+    }
+
+    @Test
+    public void testStore_largerThanMaximumSize_doesNotStoreResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(1000);
+
+        // Act
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[1000], TIME, ETAG));
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(cache.getTotalSize(), is(0L));
+    }
+
+    @Test
+    public void testStore_replacingResponse_updatesTotalSize() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[1000], TIME, ETAG));
+        StoredResponse replacement = createStoredResponse(URL_A, new byte[200], TIME, ETAG);
+
+        // Act
+        cache.store(URL_A, replacement);
+
+        // Assert
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getTotalSize(), is(MemoryResponseCache.estimateSize(URL_A, replacement)));
+    }
+
+    @Test
+    public void testStore_exceedingMaximumSize_evictsLeastRecentlyUsed() {
+        // Arrange
+        StoredResponse responseA = createStoredResponse(URL_A, new byte[1000], TIME, ETAG);
+        StoredResponse responseB = createStoredResponse(URL_B, new byte[1000], TIME, ETAG);
+        StoredResponse responseC = createStoredResponse(URL_C, new byte[1000], TIME, ETAG);
+        long maximumSize = MemoryResponseCache.estimateSize(URL_A, responseA)
+            + MemoryResponseCache.estimateSize(URL_B, responseB)
+            + MemoryResponseCache.estimateSize(URL_C, responseC)
+            - 1;
+
+        MemoryResponseCache cache = new MemoryResponseCache(maximumSize);
+        cache.store(URL_A, responseA);
+        cache.store(URL_B, responseB);
+        cache.lookup(URL_A);
+
+        // Act
+        cache.store(URL_C, responseC);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(sameInstance(responseA)));
+        assertThat(cache.lookup(URL_B), is(nullValue()));
+        assertThat(cache.lookup(URL_C), is(sameInstance(responseC)));
+        assertThat(cache.getTotalSize() <= maximumSize, is(true));
+    }
+
+    @Test
+    public void testStore_exceedingMaximumSizeAfterReplacement_evictsLeastRecentlyUsed() {
+        // Arrange
+        StoredResponse responseA = createStoredResponse(URL_A, new byte[1000], TIME, ETAG);
+        StoredResponse responseB = createStoredResponse(URL_B, new byte[1000], TIME, ETAG);
+        StoredResponse responseC = createStoredResponse(URL_C, new byte[1000], TIME, ETAG);
+        long maximumSize = MemoryResponseCache.estimateSize(URL_A, responseA)
+            + MemoryResponseCache.estimateSize(URL_B, responseB)
+            + MemoryResponseCache.estimateSize(URL_C, responseC)
+            - 1;
+
+        MemoryResponseCache cache = new MemoryResponseCache(maximumSize);
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[1000], TIME, ETAG));
+        cache.store(URL_B, responseB);
+        cache.store(URL_A, responseA);
+
+        // Act
+        cache.store(URL_C, responseC);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(sameInstance(responseA)));
+        assertThat(cache.lookup(URL_B), is(nullValue()));
+        assertThat(cache.lookup(URL_C), is(sameInstance(responseC)));
+    }
+
+    @Test
+    public void testStore_exceedingMaximumSizeAfterInvalidation_evictsLeastRecentlyUsed() {
+        // Arrange
+        StoredResponse responseA = createStoredResponse(URL_A, new byte[1000], TIME, ETAG);
+        StoredResponse responseB = createStoredResponse(URL_B, new byte[1000], TIME, ETAG);
+        StoredResponse responseC = createStoredResponse(URL_C, new byte[1000], TIME, ETAG);
+        long maximumSize = MemoryResponseCache.estimateSize(URL_B, responseB)
+            + MemoryResponseCache.estimateSize(URL_C, responseC)
+            - 1;
+
+        MemoryResponseCache cache = new MemoryResponseCache(maximumSize);
+        cache.store(URL_A, responseA);
+        cache.store(URL_B, responseB);
+        cache.invalidate(URL_A);
+
+        // Act
+        cache.store(URL_C, responseC);
+
+        // Assert
+        assertThat(cache.lookup(URL_B), is(nullValue()));
+        assertThat(cache.lookup(URL_C), is(sameInstance(responseC)));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void testLookup_expiredWithoutValidators_removesResponse() {
+        // Arrange
+        MemoryResponseCache cache = spyCacheAt(10000, TIME.plusSeconds(10));
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[100], TIME, MAX_AGE));
+        doReturn(TIME.plusSeconds(60)).when(cache).getInstantNow();
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getTotalSize(), is(0L));
+    }
+
+    @Test
+    public void testLookup_expiredWithValidators_returnsResponse() {
+        // Arrange
+        MemoryResponseCache cache = spyCacheAt(10000, TIME.plusSeconds(3600));
+        StoredResponse response = createStoredResponse(URL_A, new byte[100], TIME, MAX_AGE, ETAG);
+        cache.store(URL_A, response);
+
+        // Act
+        StoredResponse res = cache.lookup(URL_A);
+
+        // Assert
+        assertThat(res, is(sameInstance(response)));
+    }
+
+    @Test
+    public void testInvalidate_stored_removesResponse() {
+        // Arrange
+        MemoryResponseCache cache = new MemoryResponseCache(10000);
+        cache.store(URL_A, createStoredResponse(URL_A, new byte[100], TIME, ETAG));
+
+        // Act
+        cache.invalidate(URL_A);
+
+        // Assert
+        assertThat(cache.lookup(URL_A), is(nullValue()));
+        assertThat(cache.getTotalSize(), is(0L));
+    }
+
+    @Test
+    public void testEstimateSize_always_includesBodyHeadersAndOverhead() {
+        // Arrange
+        StoredResponse response = createStoredResponse(URL_A, new byte[100], TIME, new BasicHeader("ab", "cde"));
+
+        // Act
+        long res = MemoryResponseCache.estimateSize(URL_A, response);
+
+        // Assert
+        long expected = MemoryResponseCache.ENTRY_OVERHEAD + 100 + 2 * (2 * URL_A.length()) + 2 * 5;
+        assertThat(res, is(expected));
+    }
+}
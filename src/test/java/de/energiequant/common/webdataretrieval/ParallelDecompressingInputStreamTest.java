@@ -0,0 +1,266 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class ParallelDecompressingInputStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private static final byte[] FAKE_GZIP_HEADER = new byte[] { 0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 3 };
+
+    private static byte[] createContent(int seed, int size) {
+        Random random = new Random(seed);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + random.nextInt(20));
+        }
+        return content;
+    }
+
+    private static byte[] compress(CompressionFormat format, byte[] content) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = createCompressor(format, baos)) {
+            os.write(content);
+        }
+        return baos.toByteArray();
+    }
+
+    private static OutputStream createCompressor(CompressionFormat format, OutputStream out) throws IOException {
+        switch (format) {
+            case GZIP:
+                return new GZIPOutputStream(out);
+            case BZIP2:
+                return new BZip2CompressorOutputStream(out);
+            case XZ:
+                return new XZCompressorOutputStream(out);
+            default:
+                throw new IllegalArgumentException("unsupported format " + format);
+        }
+    }
+
+    private static byte[] storeAsGzip(byte[] content) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (
+            GZIPOutputStream gzos = new GZIPOutputStream(baos) {
+                {
+                    def.setLevel(Deflater.NO_COMPRESSION);
+                }
+            } //
+        ) {
+            gzos.write(content);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... arrays) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            baos.write(array);
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, CompressionFormat format, int minimumChunkSize) throws IOException {
+        return decompress(compressed, format, minimumChunkSize, ParallelDecompressingInputStream.DEFAULT_MAXIMUM_DECOMPRESSED_CHUNK_SIZE);
+    }
+
+    private static byte[] decompress(byte[] compressed, CompressionFormat format, int minimumChunkSize, int maximumDecompressedChunkSize) throws IOException {
+        ByteBuffer body = ByteBuffer.wrap(compressed).asReadOnlyBuffer();
+        try (InputStream is = new ParallelDecompressingInputStream(body, format, DIRECT_EXECUTOR, 2, minimumChunkSize, maximumDecompressedChunkSize)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderSplittableFormats() {
+        return new Object[][] {
+            { CompressionFormat.GZIP },
+            { CompressionFormat.BZIP2 },
+        };
+    }
+
+    @Test
+    @DataProvider({ "0, 1, 1", "1, 0, 1", "-1, 1, 1", "1, -1, 1", "1, 1, 0", "1, 1, -1" })
+    public void testConstructor_invalidLimits_throwsIllegalArgumentException(int maximumPendingChunks, int minimumChunkSize, int maximumDecompressedChunkSize) throws IOException {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new ParallelDecompressingInputStream(ByteBuffer.allocate(0), CompressionFormat.GZIP, DIRECT_EXECUTOR, maximumPendingChunks, minimumChunkSize, maximumDecompressedChunkSize);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @UseDataProvider("dataProviderSplittableFormats")
+    public void testFindChunkStarts_concatenatedStreams_returnsStreamStartsAfterMinimumSize(CompressionFormat format) throws IOException {
+        // Arrange
+        byte[] first = compress(format, createContent(1, 10000));
+        byte[] second = compress(format, createContent(2, 10000));
+        byte[] third = compress(format, createContent(3, 10000));
+        ByteBuffer body = ByteBuffer.wrap(concat(first, second, third));
+
+        // Act
+        int[] res = ParallelDecompressingInputStream.findChunkStarts(body, format, 1);
+
+        // Assert
+        assertThat(res, is(equalTo(new int[] { 0, first.length, first.length + second.length })));
+    }
+
+    @Test
+    public void testFindChunkStarts_streamsSmallerThanMinimumSize_combinesStreams() throws IOException {
+        // Arrange
+        byte[] first = compress(CompressionFormat.GZIP, createContent(1, 10000));
+        byte[] second = compress(CompressionFormat.GZIP, createContent(2, 10000));
+        byte[] third = compress(CompressionFormat.GZIP, createContent(3, 10000));
+        ByteBuffer body = ByteBuffer.wrap(concat(first, second, third));
+
+        // Act
+        int[] res = ParallelDecompressingInputStream.findChunkStarts(body, CompressionFormat.GZIP, first.length + 1);
+
+        // Assert
+        assertThat(res, is(equalTo(new int[] { 0, first.length + second.length })));
+    }
+
+    @Test
+    public void testFindChunkStarts_unsupportedFormat_returnsSingleChunk() throws IOException {
+        // Arrange
+        byte[] first = compress(CompressionFormat.XZ, createContent(1, 10000));
+        byte[] second = compress(CompressionFormat.XZ, createContent(2, 10000));
+        ByteBuffer body = ByteBuffer.wrap(concat(first, second));
+
+        // Act
+        int[] res = ParallelDecompressingInputStream.findChunkStarts(body, CompressionFormat.XZ, 1);
+
+        // Assert
+        assertThat(res, is(equalTo(new int[] { 0 })));
+    }
+
+    @Test
+    @DataProvider({ "GZIP, 1", "GZIP, 1000000", "BZIP2, 1", "BZIP2, 1000000", "XZ, 1" })
+    public void testRead_concatenatedStreams_returnsAllContentInOrder(CompressionFormat format, int minimumChunkSize) throws IOException {
+        // Arrange
+        byte[] first = createContent(1, 100000);
+        byte[] second = createContent(2, 0);
+        byte[] third = createContent(3, 200000);
+        byte[] compressed = concat(compress(format, first), compress(format, second), compress(format, third));
+
+        // Act
+        byte[] res = decompress(compressed, format, minimumChunkSize);
+
+        // Assert
+        assertThat(res, is(equalTo(concat(first, second, third))));
+    }
+
+    @Test
+    public void testRead_falsePositiveStreamStart_fallsBackToSequentialDecompression() throws IOException {
+        // Arrange
+        byte[] first = createContent(1, 100000);
+        System.arraycopy(FAKE_GZIP_HEADER, 0, first, 50000, FAKE_GZIP_HEADER.length);
+        byte[] second = createContent(2, 100000);
+        byte[] compressed = concat(storeAsGzip(first), compress(CompressionFormat.GZIP, second));
+
+        // Act
+        byte[] res = decompress(compressed, CompressionFormat.GZIP, 1);
+
+        // Assert
+        assertThat(res, is(equalTo(concat(first, second))));
+    }
+
+    @Test
+    @DataProvider({ "1", "150000", "199999" })
+    public void testRead_chunkExceedingMaximumDecompressedSize_returnsAllContentInOrder(int maximumDecompressedChunkSize) throws IOException {
+        // Arrange
+        byte[] first = createContent(1, 100000);
+        byte[] second = createContent(2, 200000);
+        byte[] third = createContent(3, 100000);
+        byte[] compressed = concat(
+            compress(CompressionFormat.GZIP, first),
+            compress(CompressionFormat.GZIP, second),
+            compress(CompressionFormat.GZIP, third) //
+        );
+
+        // Act
+        byte[] res = decompress(compressed, CompressionFormat.GZIP, 1, maximumDecompressedChunkSize);
+
+        // Assert
+        assertThat(res, is(equalTo(concat(first, second, third))));
+    }
+
+    @Test
+    public void testRead_corruptChunkExceedingMaximumDecompressedSize_throwsIOException() throws IOException {
+        // Arrange
+        byte[] compressed = concat(
+            compress(CompressionFormat.GZIP, createContent(1, 100000)),
+            compress(CompressionFormat.GZIP, createContent(2, 100000)) //
+        );
+        compressed[compressed.length - 1000] ^= 0x55;
+
+        thrown.expect(IOException.class);
+
+        // Act
+        decompress(compressed, CompressionFormat.GZIP, 1, 1000);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRead_corruptStream_throwsIOException() throws IOException {
+        // Arrange
+        byte[] compressed = concat(
+            compress(CompressionFormat.GZIP, createContent(1, 100000)),
+            compress(CompressionFormat.GZIP, createContent(2, 100000)) //
+        );
+        compressed[compressed.length - 1000] ^= 0x55;
+
+        thrown.expect(IOException.class);
+
+        // Act
+        decompress(compressed, CompressionFormat.GZIP, 1);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRead_closed_throwsIOException() throws IOException {
+        // Arrange
+        byte[] compressed = compress(CompressionFormat.GZIP, createContent(1, 1000));
+        InputStream is = new ParallelDecompressingInputStream(ByteBuffer.wrap(compressed), CompressionFormat.GZIP, DIRECT_EXECUTOR, 2, 1, 1000);
+        is.close();
+
+        thrown.expect(IOException.class);
+
+        // Act
+        is.read();
+
+        // Assert (nothing to do)
+    }
+}
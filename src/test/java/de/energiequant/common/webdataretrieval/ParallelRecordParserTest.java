@@ -0,0 +1,166 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+import com.tngtech.java.junit.dataprovider.UseDataProvider;
+
+@RunWith(DataProviderRunner.class)
+public class ParallelRecordParserTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final Function<ByteBuffer, String> DECODE_UTF8 = record -> StandardCharsets.UTF_8.decode(record).toString();
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private List<String> parse(String text, char delimiter, int minimumChunkSize) {
+        ByteBuffer body = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        return pool.invoke(new ParallelRecordParser<>(body, (byte) delimiter, DECODE_UTF8, minimumChunkSize));
+    }
+
+    @DataProvider
+    public static Object[][] dataProviderRecordsAndChunkSizes() {
+        List<Object[]> out = new ArrayList<>();
+
+        for (Object[] records : dataProviderRecords()) {
+            for (int minimumChunkSize : new int[] { 1, 2, 3, Integer.MAX_VALUE }) {
+                out.add(new Object[] { records[0], records[1], minimumChunkSize });
+            }
+        }
+
+        return out.toArray(new Object[0][]);
+    }
+
+    private static Object[][] dataProviderRecords() {
+        return new Object[][] {
+            { "", new String[0] },
+            { ";", new String[] { "" } },
+            { "a", new String[] { "a" } },
+            { "a;", new String[] { "a" } },
+            { "a;b", new String[] { "a", "b" } },
+            { "a;b;", new String[] { "a", "b" } },
+            { "a;;b", new String[] { "a", "", "b" } },
+            { ";a", new String[] { "", "a" } },
+            { "äö;ü", new String[] { "äö", "ü" } }, //
+        };
+    }
+
+    @Test
+    @UseDataProvider("dataProviderRecordsAndChunkSizes")
+    public void testCompute_anyChunkSize_returnsAllRecordsInOrder(String text, String[] expectedRecords, int minimumChunkSize) {
+        // Arrange (nothing to do)
+
+        // Act
+        List<String> res = parse(text, ';', minimumChunkSize);
+
+        // Assert
+        assertThat(res, is(equalTo(Arrays.asList(expectedRecords))));
+    }
+
+    @Test
+    @DataProvider({ "1", "16", "1024" })
+    public void testCompute_manyRecords_returnsAllRecordsInOrder(int minimumChunkSize) {
+        // Arrange
+        List<String> expectedRecords = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            expectedRecords.add("record " + i);
+        }
+        String text = String.join("\n", expectedRecords) + "\n";
+
+        // Act
+        List<String> res = parse(text, '\n', minimumChunkSize);
+
+        // Assert
+        assertThat(res, is(equalTo(expectedRecords)));
+    }
+
+    @Test
+    public void testCompute_always_passesReadOnlyBuffersHoldingOnlyRecord() {
+        // Arrange
+        ByteBuffer body = ByteBuffer.wrap("ab;cde;f".getBytes(StandardCharsets.UTF_8));
+        List<ByteBuffer> records = new ArrayList<>();
+
+        // Act
+        List<Boolean> res = pool.invoke(new ParallelRecordParser<>(body, (byte) ';', record -> {
+            synchronized (records) {
+                records.add(record);
+            }
+            return record.isReadOnly() && (record.position() == 0);
+        }, 1));
+
+        // Assert
+        assertThat(res, everyItem(is(true)));
+        assertThat(records.stream().mapToInt(ByteBuffer::remaining).sorted().toArray(), is(equalTo(new int[] { 1, 2, 3 })));
+    }
+
+    @Test
+    public void testCompute_bodyWithOffset_onlyParsesRemainingBytes() {
+        // Arrange
+        ByteBuffer body = ByteBuffer.wrap("skip;a;b".getBytes(StandardCharsets.UTF_8));
+        body.position(5);
+
+        // Act
+        List<String> res = pool.invoke(new ParallelRecordParser<>(body, (byte) ';', DECODE_UTF8, 1));
+
+        // Assert
+        assertThat(res, contains("a", "b"));
+    }
+
+    @Test
+    public void testCompute_parserFails_throwsSameException() {
+        // Arrange
+        ByteBuffer body = ByteBuffer.wrap("a;b;c".getBytes(StandardCharsets.UTF_8));
+        thrown.expect(IllegalStateException.class);
+
+        // Act
+        pool.invoke(new ParallelRecordParser<>(body, (byte) ';', record -> {
+            throw new IllegalStateException("test");
+        }, 1));
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testCompute_emptyBody_returnsEmptyList() {
+        // Arrange (nothing to do)
+
+        // Act
+        List<String> res = parse("", ';', 1);
+
+        // Assert
+        assertThat(res, is(empty()));
+    }
+}
@@ -0,0 +1,208 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.TestBodies.createTestBody;
+import static de.energiequant.common.webdataretrieval.TestBodies.gzip;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class PooledGzipInputStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final InflaterPool pool = new InflaterPool(1);
+
+    private static byte[] concat(byte[]... arrays) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            baos.write(array);
+        }
+        return baos.toByteArray();
+    }
+
+    private byte[] decode(byte[] compressed, int bufferSize) throws IOException {
+        try (InputStream is = new PooledGzipInputStream(new ByteArrayInputStream(compressed), pool, bufferSize)) {
+            return IOUtils.toByteArray(is);
+        }
+    }
+
+    @Test
+    @DataProvider({ "1", "512", "65536" })
+    public void testRead_singleMember_returnsDecodedContent(int bufferSize) throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(300000);
+
+        // Act
+        byte[] res = decode(gzip(expected), bufferSize);
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    @DataProvider({ "1", "512", "65536" })
+    public void testRead_multipleMembers_returnsConcatenatedContent(int bufferSize) throws IOException {
+        // Arrange
+        byte[] first = createTestBody(1000);
+        byte[] second = createTestBody(300000);
+        byte[] compressed = concat(gzip(first), gzip(new byte[0]), gzip(second));
+
+        // Act
+        byte[] res = decode(compressed, bufferSize);
+
+        // Assert
+        assertThat(res, is(equalTo(concat(first, second))));
+    }
+
+    @Test
+    public void testRead_trailingGarbage_ignoresGarbage() throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(300000);
+        byte[] compressed = concat(gzip(expected), new byte[] { 1, 2, 3, 4, 5 });
+
+        // Act
+        byte[] res = decode(compressed, 65536);
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testRead_optionalHeaderFields_returnsDecodedContent() throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(300000);
+        byte[] compressed = gzip(expected);
+
+        byte[] header = new byte[] {
+            0x1F, (byte) 0x8B, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3, // fixed header, all optional fields
+            3, 0, 'x', 'y', 'z', // extra field
+            'n', 'a', 'm', 'e', 0, // name
+            'c', 0, // comment
+        };
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header);
+        int headerCrcValue = (int) headerCrc.getValue();
+
+        byte[] modified = concat(
+            header,
+            new byte[] { (byte) headerCrcValue, (byte) (headerCrcValue >> 8) },
+            Arrays.copyOfRange(compressed, 10, compressed.length) //
+        );
+
+        // Act
+        byte[] res = decode(modified, 65536);
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testConstructor_empty_throwsEOFException() throws IOException {
+        // Arrange
+        thrown.expect(EOFException.class);
+
+        // Act
+        new PooledGzipInputStream(new ByteArrayInputStream(new byte[0]), pool, 65536);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConstructor_notGzip_throwsZipException() throws IOException {
+        // Arrange
+        thrown.expect(ZipException.class);
+
+        // Act
+        new PooledGzipInputStream(new ByteArrayInputStream(createTestBody(100)), pool, 65536);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConstructor_notGzip_releasesInflater() throws IOException {
+        // Arrange (nothing to do)
+
+        // Act
+        try {
+            new PooledGzipInputStream(new ByteArrayInputStream(createTestBody(100)), pool, 65536);
+        } catch (ZipException ex) {
+            // expected
+        }
+
+        // Assert
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testRead_corruptTrailer_throwsZipException() throws IOException {
+        // Arrange
+        byte[] compressed = gzip(createTestBody(1000));
+        compressed[compressed.length - 5] ^= 1;
+
+        thrown.expect(ZipException.class);
+
+        // Act
+        decode(compressed, 65536);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRead_truncated_throwsEOFException() throws IOException {
+        // Arrange
+        byte[] compressed = gzip(createTestBody(1000));
+
+        thrown.expect(EOFException.class);
+
+        // Act
+        decode(Arrays.copyOf(compressed, compressed.length - 3), 65536);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testClose_always_releasesInflater() throws IOException {
+        // Arrange
+        InputStream is = new PooledGzipInputStream(new ByteArrayInputStream(gzip(createTestBody(1000))), pool, 65536);
+
+        // Act
+        is.close();
+
+        // Assert
+        assertThat(pool.size(), is(1));
+    }
+
+    @Test
+    public void testClose_calledTwice_releasesInflaterOnlyOnce() throws IOException {
+        // Arrange
+        InflaterPool largePool = new InflaterPool(10);
+        InputStream is = new PooledGzipInputStream(new ByteArrayInputStream(gzip(createTestBody(1000))), largePool, 65536);
+        is.close();
+
+        // Act
+        is.close();
+
+        // Assert
+        assertThat(largePool.size(), is(1));
+    }
+}
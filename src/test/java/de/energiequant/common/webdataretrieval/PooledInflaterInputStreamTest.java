@@ -0,0 +1,96 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.TestBodies.createTestBody;
+import static de.energiequant.common.webdataretrieval.TestBodies.deflate;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class PooledInflaterInputStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final InflaterPool pool = new InflaterPool(1);
+
+    @Test
+    @DataProvider({ "false, 1", "false, 65536", "true, 1", "true, 65536" })
+    public void testDeflate_zlibWrappedOrRaw_returnsDecodedContent(boolean nowrap, int bufferSize) throws IOException {
+        // Arrange
+        byte[] expected = createTestBody(300000);
+        byte[] compressed = deflate(expected, nowrap);
+
+        // Act
+        byte[] res;
+        try (InputStream is = PooledInflaterInputStream.deflate(new ByteArrayInputStream(compressed), pool, bufferSize)) {
+            res = IOUtils.toByteArray(is);
+        }
+
+        // Assert
+        assertThat(res, is(equalTo(expected)));
+    }
+
+    @Test
+    public void testDeflate_empty_throwsEOFExceptionOnRead() throws IOException {
+        // Arrange
+        InputStream is = PooledInflaterInputStream.deflate(new ByteArrayInputStream(new byte[0]), pool, 65536);
+
+        thrown.expect(EOFException.class);
+
+        // Act
+        is.read();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "120, -100", "120, 1", "120, -38", "120, 94" })
+    public void testIsZlibHeader_validHeader_returnsTrue(int cmf, int flg) {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean res = PooledInflaterInputStream.isZlibHeader((byte) cmf, (byte) flg);
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    @DataProvider({ "120, 0", "121, 1", "-120, 1", "0, 0" })
+    public void testIsZlibHeader_invalidHeader_returnsFalse(int cmf, int flg) {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean res = PooledInflaterInputStream.isZlibHeader((byte) cmf, (byte) flg);
+
+        // Assert
+        assertThat(res, is(false));
+    }
+
+    @Test
+    public void testClose_always_releasesInflater() throws IOException {
+        // Arrange
+        InputStream is = PooledInflaterInputStream.deflate(new ByteArrayInputStream(deflate(createTestBody(1000), false)), pool, 65536);
+
+        // Act
+        is.close();
+
+        // Assert
+        assertThat(pool.size(), is(1));
+    }
+}
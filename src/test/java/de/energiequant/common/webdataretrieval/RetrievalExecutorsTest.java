@@ -0,0 +1,189 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class RetrievalExecutorsTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DataProvider({ "null, 1, 1", ", 1, 1", "name, 0, 1", "name, 1, 0", "name, -1, 1", "name, 1, -1" })
+    public void testNewBoundedIoPool_invalidArguments_throwsIllegalArgumentException(String namePrefix, int maximumThreads, int queueCapacity) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        RetrievalExecutors.newBoundedIoPool(namePrefix, maximumThreads, queueCapacity);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testNewBoundedIoPool_always_namesThreadsByPrefix() throws Exception {
+        // Arrange
+        executor = RetrievalExecutors.newBoundedIoPool("test-io", 1, 1);
+        AtomicReference<String> threadName = new AtomicReference<>();
+
+        // Act
+        executor.submit(() -> threadName.set(Thread.currentThread().getName())).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(threadName.get(), startsWith("test-io-"));
+    }
+
+    @Test
+    public void testNewBoundedIoPool_always_createsDaemonThreads() throws Exception {
+        // Arrange
+        executor = RetrievalExecutors.newBoundedIoPool("test-io", 1, 1);
+        AtomicReference<Boolean> isDaemon = new AtomicReference<>();
+
+        // Act
+        executor.submit(() -> isDaemon.set(Thread.currentThread().isDaemon())).get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(isDaemon.get(), is(true));
+    }
+
+    @Test
+    public void testNewBoundedIoPool_queueFull_rejectsTask() throws Exception {
+        // Arrange
+        executor = RetrievalExecutors.newBoundedIoPool("test-io", 1, 1);
+        CountDownLatch blockingLatch = new CountDownLatch(1);
+        CountDownLatch startedLatch = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            startedLatch.countDown();
+            try {
+                blockingLatch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        startedLatch.await(5, TimeUnit.SECONDS);
+        executor.execute(() -> {
+            // queued
+        });
+
+        thrown.expect(RejectedExecutionException.class);
+
+        // Act
+        try {
+            executor.execute(() -> {
+                // exceeds queue capacity
+            });
+        } finally {
+            blockingLatch.countDown();
+        }
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testNewVirtualThreadPerTaskExecutor_unsupported_throwsUnsupportedOperationException() {
+        // Arrange
+        Assume.assumeFalse(RetrievalExecutors.isVirtualThreadSupported());
+        thrown.expect(UnsupportedOperationException.class);
+
+        // Act
+        RetrievalExecutors.newVirtualThreadPerTaskExecutor("test-virtual");
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "null", "" })
+    public void testNewVirtualThreadPerTaskExecutor_invalidNamePrefix_throwsIllegalArgumentException(String namePrefix) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        RetrievalExecutors.newVirtualThreadPerTaskExecutor(namePrefix);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetSharedVirtualThreadExecutor_unsupported_throwsUnsupportedOperationException() {
+        // Arrange
+        Assume.assumeFalse(RetrievalExecutors.isVirtualThreadSupported());
+        thrown.expect(UnsupportedOperationException.class);
+
+        // Act
+        RetrievalExecutors.getSharedVirtualThreadExecutor();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetSharedVirtualThreadExecutor_unsupportedRepeatedly_throwsUnsupportedOperationException() {
+        // Arrange
+        Assume.assumeFalse(RetrievalExecutors.isVirtualThreadSupported());
+        try {
+            RetrievalExecutors.getSharedVirtualThreadExecutor();
+        } catch (UnsupportedOperationException ex) {
+            // expected
+        }
+        thrown.expect(UnsupportedOperationException.class);
+
+        // Act
+        RetrievalExecutors.getSharedVirtualThreadExecutor();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetSharedVirtualThreadExecutor_supported_returnsSameInstance() {
+        // Arrange
+        Assume.assumeTrue(RetrievalExecutors.isVirtualThreadSupported());
+        Executor first = RetrievalExecutors.getSharedVirtualThreadExecutor();
+
+        // Act
+        Executor second = RetrievalExecutors.getSharedVirtualThreadExecutor();
+
+        // Assert
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    public void testGetSharedVirtualThreadExecutor_supported_cannotBeShutDown() {
+        // Arrange
+        Assume.assumeTrue(RetrievalExecutors.isVirtualThreadSupported());
+
+        // Act
+        Executor result = RetrievalExecutors.getSharedVirtualThreadExecutor();
+
+        // Assert
+        assertThat(result instanceof ExecutorService, is(false));
+    }
+}
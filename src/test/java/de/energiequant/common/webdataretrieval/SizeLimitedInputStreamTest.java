@@ -0,0 +1,150 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.apache.commons.io.IOUtils;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class SizeLimitedInputStreamTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    @DataProvider({ "0, 0", "0, 10", "10, 10", "10, 11", "100000, 100000", "100000, -1" })
+    public void testRead_withinLimit_readsAllBytes(int size, long limit) throws IOException {
+        // Arrange
+        byte[] expected = new byte[size];
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(expected), limit, false, null);
+
+        // Act
+        byte[] res = IOUtils.toByteArray(stream);
+
+        // Assert
+        assertThat(res.length, is(size));
+    }
+
+    @Test
+    @DataProvider({ "1, 0", "11, 10", "100000, 99999", "100000, 10" })
+    public void testRead_exceedingLimit_throwsResponseSizeLimitExceededException(int size, long limit) throws IOException {
+        // Arrange
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[size]), limit, false, null);
+        thrown.expect(ResponseSizeLimitExceededException.class);
+
+        // Act
+        IOUtils.toByteArray(stream);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    @DataProvider({ "true", "false" })
+    public void testRead_exceedingLimit_notifiesListenerWithLimit(boolean isCompressedLimit) throws IOException {
+        // Arrange
+        @SuppressWarnings("unchecked")
+        Consumer<ResponseSizeLimitExceededException> mockListener = mock(Consumer.class);
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[20]), 10, isCompressedLimit, mockListener);
+
+        // Act
+        try {
+            IOUtils.toByteArray(stream);
+        } catch (ResponseSizeLimitExceededException ex) {
+            // expected
+        }
+
+        // Assert
+        ArgumentCaptor<ResponseSizeLimitExceededException> captor = ArgumentCaptor.forClass(ResponseSizeLimitExceededException.class);
+        verify(mockListener).accept(captor.capture());
+        assertThat(captor.getValue().getLimit(), is(10L));
+        assertThat(captor.getValue().isCompressedLimit(), is(isCompressedLimit));
+    }
+
+    @Test
+    public void testRead_singleBytesExceedingLimit_throwsResponseSizeLimitExceededException() throws IOException {
+        // Arrange
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[3]), 2, false, null);
+        stream.read();
+        stream.read();
+        thrown.expect(ResponseSizeLimitExceededException.class);
+
+        // Act
+        stream.read();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testRead_exceedingLimit_readsAtMostOneByteBeyondLimit() throws IOException {
+        // Arrange
+        ByteArrayInputStream wrapped = new ByteArrayInputStream(new byte[1000]);
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(wrapped, 10, false, null);
+
+        // Act
+        try {
+            stream.read(new byte[1000], 0, 1000);
+            stream.read(new byte[1000], 0, 1000);
+        } catch (ResponseSizeLimitExceededException ex) {
+            // expected
+        }
+
+        // Assert
+        assertThat(wrapped.available(), is(1000 - 11));
+    }
+
+    @Test
+    public void testRead_wrappedStreamExceedsLimit_passesExceptionToListener() throws IOException {
+        // Arrange
+        ResponseSizeLimitExceededException expectedException = new ResponseSizeLimitExceededException(5, true);
+        InputStream mockStream = mock(InputStream.class);
+        when(mockStream.read(Mockito.any(byte[].class), Mockito.anyInt(), Mockito.anyInt())).thenThrow(expectedException);
+        @SuppressWarnings("unchecked")
+        Consumer<ResponseSizeLimitExceededException> mockListener = mock(Consumer.class);
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(mockStream, -1, false, mockListener);
+
+        // Act
+        ResponseSizeLimitExceededException thrownException = null;
+        try {
+            stream.read(new byte[10], 0, 10);
+        } catch (ResponseSizeLimitExceededException ex) {
+            thrownException = ex;
+        }
+
+        // Assert
+        assertThat(thrownException, is(sameInstance(expectedException)));
+        verify(mockListener).accept(Mockito.same(expectedException));
+    }
+
+    @Test
+    public void testRead_withinLimit_doesNotNotifyListener() throws IOException {
+        // Arrange
+        @SuppressWarnings("unchecked")
+        Consumer<ResponseSizeLimitExceededException> mockListener = mock(Consumer.class);
+        SizeLimitedInputStream stream = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[10]), 10, false, mockListener);
+
+        // Act
+        IOUtils.toByteArray(stream);
+
+        // Assert
+        verify(mockListener, never()).accept(Mockito.any());
+    }
+}
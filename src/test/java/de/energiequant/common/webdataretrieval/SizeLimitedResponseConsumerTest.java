@@ -0,0 +1,132 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.message.BasicHttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class SizeLimitedResponseConsumerTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private Consumer<ResponseSizeLimitExceededException> mockListener;
+    private FutureCallback<SimpleHttpResponse> mockCallback;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        mockListener = mock(Consumer.class);
+        mockCallback = mock(FutureCallback.class);
+    }
+
+    private EntityDetails mockEntityDetails(String contentEncoding, long contentLength) {
+        EntityDetails mockDetails = mock(EntityDetails.class);
+        Mockito.when(mockDetails.getContentEncoding()).thenReturn(contentEncoding);
+        Mockito.when(mockDetails.getContentLength()).thenReturn(contentLength);
+        return mockDetails;
+    }
+
+    @Test
+    public void testStreamEnd_withinLimit_completesWithBody() throws Exception {
+        // Arrange
+        byte[] expectedBody = new byte[] { 1, 2, 3, 4, 5 };
+        SizeLimitedResponseConsumer consumer = new SizeLimitedResponseConsumer(5, -1, mockListener);
+        consumer.consumeResponse(new BasicHttpResponse(200), mockEntityDetails(null, -1), mock(HttpContext.class), mockCallback);
+        consumer.consume(ByteBuffer.wrap(expectedBody, 0, 2));
+        consumer.consume(ByteBuffer.wrap(expectedBody, 2, 3));
+
+        // Act
+        consumer.streamEnd(Collections.emptyList());
+
+        // Assert
+        ArgumentCaptor<SimpleHttpResponse> captor = ArgumentCaptor.forClass(SimpleHttpResponse.class);
+        verify(mockCallback).completed(captor.capture());
+        assertThat(captor.getValue().getCode(), is(200));
+        assertThat(captor.getValue().getBodyBytes(), is(equalTo(expectedBody)));
+        verify(mockListener, never()).accept(Mockito.any());
+    }
+
+    @Test
+    @DataProvider({ "5, -1, , 6", "-1, 5, gzip, 6", "5, 100, identity, 6" })
+    public void testConsume_exceedingLimit_throwsAndNotifiesListener(long maximumDecodedSize, long maximumCompressedSize, String contentEncoding, int size) throws Exception {
+        // Arrange
+        SizeLimitedResponseConsumer consumer = new SizeLimitedResponseConsumer(maximumDecodedSize, maximumCompressedSize, mockListener);
+        consumer.consumeResponse(
+            new BasicHttpResponse(200),
+            mockEntityDetails(contentEncoding.isEmpty() ? null : contentEncoding, -1),
+            mock(HttpContext.class),
+            mockCallback //
+        );
+
+        // Act
+        try {
+            consumer.consume(ByteBuffer.wrap(new byte[size]));
+        } catch (ResponseSizeLimitExceededException ex) {
+            // expected
+        }
+
+        // Assert
+        verify(mockListener).accept(Mockito.any(ResponseSizeLimitExceededException.class));
+    }
+
+    @Test
+    public void testConsumeResponse_announcedLengthExceedsLimit_throwsResponseSizeLimitExceededException() throws Exception {
+        // Arrange
+        SizeLimitedResponseConsumer consumer = new SizeLimitedResponseConsumer(5, -1, mockListener);
+        thrown.expect(ResponseSizeLimitExceededException.class);
+
+        // Act
+        consumer.consumeResponse(new BasicHttpResponse(200), mockEntityDetails(null, 6), mock(HttpContext.class), mockCallback);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConsume_encodedWithinCompressedLimit_doesNotApplyDecodedLimit() throws Exception {
+        // Arrange
+        SizeLimitedResponseConsumer consumer = new SizeLimitedResponseConsumer(5, 100, mockListener);
+        consumer.consumeResponse(new BasicHttpResponse(200), mockEntityDetails("gzip", -1), mock(HttpContext.class), mockCallback);
+
+        // Act
+        consumer.consume(ByteBuffer.wrap(new byte[50]));
+
+        // Assert
+        verify(mockListener, never()).accept(Mockito.any());
+    }
+
+    @Test
+    public void testConsumeResponse_withoutEntity_completesRightAway() throws Exception {
+        // Arrange
+        SizeLimitedResponseConsumer consumer = new SizeLimitedResponseConsumer(5, -1, mockListener);
+
+        // Act
+        consumer.consumeResponse(new BasicHttpResponse(204), null, mock(HttpContext.class), mockCallback);
+
+        // Assert
+        verify(mockCallback).completed(Mockito.any(SimpleHttpResponse.class));
+    }
+}
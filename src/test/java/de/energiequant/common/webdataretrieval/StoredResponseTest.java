@@ -0,0 +1,392 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.tngtech.java.junit.dataprovider.DataProvider;
+import com.tngtech.java.junit.dataprovider.DataProviderRunner;
+
+@RunWith(DataProviderRunner.class)
+public class StoredResponseTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final String URL = "http://a.local/";
+    private static final Instant TIME = Instant.ofEpochSecond(1000);
+
+    @Test
+    @DataProvider({ "true, false, false, false", "false, true, false, false", "false, false, true, false", "false, false, false, true" })
+    public void testConstructor_missingRequiredArgument_throwsIllegalArgumentException(boolean nullUrl, boolean nullHeaders, boolean nullBody, boolean nullTime) {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new StoredResponse(
+            nullUrl ? null : URL,
+            null,
+            200,
+            nullHeaders ? null : new Header[0],
+            nullBody ? null : new byte[0],
+            null,
+            nullTime ? null : TIME //
+        );
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testGetRetrievedLocation_null_returnsRequestedLocation() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+
+        // Act
+        String res = storedResponse.getRetrievedLocation();
+
+        // Assert
+        assertThat(res, is(URL));
+    }
+
+    @Test
+    public void testGetHeaders_modifyingResult_doesNotAffectStoredHeaders() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.ETAG, "\"a\""));
+
+        // Act
+        storedResponse.getHeaders()[0] = new BasicHeader(HttpHeaders.ETAG, "\"b\"");
+
+        // Assert
+        assertThat(storedResponse.getETag(), is("\"a\""));
+    }
+
+    @Test
+    @DataProvider({ "ETag, \"abc\"", "etag, W/\"abc\"" })
+    public void testGetETag_present_returnsValue(String name, String value) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(name, value));
+
+        // Act
+        String res = storedResponse.getETag();
+
+        // Assert
+        assertThat(res, is(value));
+    }
+
+    @Test
+    public void testGetLastModified_absent_returnsNull() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.ETAG, "\"abc\""));
+
+        // Act
+        String res = storedResponse.getLastModified();
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    @DataProvider({ "ETag, true", "Last-Modified, true", "Content-Type, false" })
+    public void testHasValidators_header_returnsExpectedResult(String name, boolean expectedResult) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(name, "x"));
+
+        // Act
+        boolean res = storedResponse.hasValidators();
+
+        // Assert
+        assertThat(res, is(expectedResult));
+    }
+
+    @Test
+    public void testRevalidated_newHeaders_replacesHeadersOfSameName() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=10"),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "public"),
+            new BasicHeader(HttpHeaders.CONTENT_TYPE, "text/plain") //
+        );
+
+        // Act
+        StoredResponse res = storedResponse.revalidated(
+            new Header[] { new BasicHeader("cache-control", "max-age=60") },
+            null,
+            TIME //
+        );
+
+        // Assert
+        assertThat(res.getETag(), is("\"abc\""));
+        assertThat(res.getFirstHeaderValue(HttpHeaders.CACHE_CONTROL), is("max-age=60"));
+        assertThat(res.getHeaders().length, is(3));
+    }
+
+    @Test
+    @DataProvider({ "Content-Length", "Content-Encoding", "Content-Type", "Transfer-Encoding" })
+    public void testRevalidated_messageHeaders_keepsStoredHeaders(String name) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(name, "stored"));
+
+        // Act
+        StoredResponse res = storedResponse.revalidated(new Header[] { new BasicHeader(name, "new") }, null, TIME);
+
+        // Assert
+        assertThat(res.getFirstHeaderValue(name), is("stored"));
+    }
+
+    @Test
+    public void testRevalidated_always_keepsBodyAndUpdatesTime() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+        Instant validatedTime = Instant.ofEpochSecond(2000);
+
+        // Act
+        StoredResponse res = storedResponse.revalidated(new Header[0], null, validatedTime);
+
+        // Assert
+        assertThat(res.getBody(), is(sameInstance(storedResponse.getBody())));
+        assertThat(res.getStoredTime(), is(validatedTime));
+        assertThat(res.getRetrievedLocation(), is(URL));
+    }
+
+    @Test
+    public void testRevalidated_retrievedLocation_updatesLocation() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+
+        // Act
+        StoredResponse res = storedResponse.revalidated(new Header[0], "http://b.local/", TIME);
+
+        // Assert
+        assertThat(res.getRetrievedLocation(), is("http://b.local/"));
+        assertThat(res.getRequestedLocation(), is(URL));
+    }
+
+    @Test
+    @DataProvider(splitBy = "\\|", value = {
+        "max-age=60 | 60",
+        "public, max-age=\"120\" | 120",
+        "max-age=60, no-cache | 0",
+        "max-age=invalid | 0",
+        "max-age=-5 | 0",
+        "private | 0",
+    })
+    public void testGetFreshnessLifetime_cacheControl_returnsExpectedLifetime(String cacheControl, long expectedSeconds) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.CACHE_CONTROL, cacheControl));
+
+        // Act
+        Duration res = storedResponse.getFreshnessLifetime();
+
+        // Assert
+        assertThat(res, is(Duration.ofSeconds(expectedSeconds)));
+    }
+
+    @Test
+    public void testGetFreshnessLifetime_maxAgeAndExpires_prefersMaxAge() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(
+            new BasicHeader(HttpHeaders.EXPIRES, "Thu, 01 Jan 1970 01:00:00 GMT"),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=30") //
+        );
+
+        // Act
+        Duration res = storedResponse.getFreshnessLifetime();
+
+        // Assert
+        assertThat(res, is(Duration.ofSeconds(30)));
+    }
+
+    @Test
+    @DataProvider(splitBy = "\\|", value = {
+        "Thu, 01 Jan 1970 00:17:40 GMT | Thu, 01 Jan 1970 00:16:40 GMT | 60",
+        "Thu, 01 Jan 1970 00:17:40 GMT |                               | 60",
+        "Thu, 01 Jan 1970 00:17:40 GMT | Thu, 01 Jan 1970 00:17:30 GMT | 10",
+        "Thu, 01 Jan 1970 00:00:00 GMT | Thu, 01 Jan 1970 00:16:40 GMT | 0",
+        "0                             | Thu, 01 Jan 1970 00:16:40 GMT | 0",
+    })
+    public void testGetFreshnessLifetime_expires_returnsDurationFromDate(String expires, String date, long expectedSeconds) {
+        // Arrange
+        List<Header> headers = new ArrayList<>();
+        headers.add(new BasicHeader(HttpHeaders.EXPIRES, expires));
+        if (!date.isEmpty()) {
+            headers.add(new BasicHeader(HttpHeaders.DATE, date));
+        }
+        StoredResponse storedResponse = createStoredResponse(headers.toArray(new Header[0]));
+
+        // Act
+        Duration res = storedResponse.getFreshnessLifetime();
+
+        // Assert
+        assertThat(res, is(Duration.ofSeconds(expectedSeconds)));
+    }
+
+    @Test
+    public void testGetFreshnessLifetime_noHeaders_returnsZero() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+
+        // Act
+        Duration res = storedResponse.getFreshnessLifetime();
+
+        // Assert
+        assertThat(res, is(Duration.ZERO));
+    }
+
+    @Test
+    @DataProvider({ "1000, , 0", "1030, , 30", "1030, 15, 45", "900, , 0", "1030, invalid, 30" })
+    public void testGetAge_always_returnsStoredDurationPlusAgeHeader(long nowSeconds, String age, long expectedSeconds) {
+        // Arrange
+        StoredResponse storedResponse = age.isEmpty()
+            ? createStoredResponse()
+            : createStoredResponse(new BasicHeader(HttpHeaders.AGE, age));
+
+        // Act
+        Duration res = storedResponse.getAge(Instant.ofEpochSecond(nowSeconds));
+
+        // Assert
+        assertThat(res, is(Duration.ofSeconds(expectedSeconds)));
+    }
+
+    @Test
+    @DataProvider({ "1000, 0, true", "1059, 0, true", "1060, 0, false", "1040, 20, false", "1039, 20, true" })
+    public void testIsFresh_maxAge_returnsExpectedResult(long nowSeconds, long age, boolean expectedResult) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "max-age=60"),
+            new BasicHeader(HttpHeaders.AGE, Long.toString(age)) //
+        );
+
+        // Act
+        boolean res = storedResponse.isFresh(Instant.ofEpochSecond(nowSeconds));
+
+        // Assert
+        assertThat(res, is(expectedResult));
+    }
+
+    @Test
+    @DataProvider(splitBy = "\\|", value = { "no-store | false", "max-age=60, NO-STORE | false", "max-age=60 | true", "no-cache | true" })
+    public void testIsStorable_cacheControl_returnsExpectedResult(String cacheControl, boolean expectedResult) {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.CACHE_CONTROL, cacheControl));
+
+        // Act
+        boolean res = storedResponse.isStorable();
+
+        // Assert
+        assertThat(res, is(expectedResult));
+    }
+
+    @Test
+    public void testIsStorable_noCacheControl_returnsTrue() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+
+        // Act
+        boolean res = storedResponse.isStorable();
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    public void testGetVaryHeaderNames_multipleHeaders_returnsAllLowerCaseNames() {
+        // Arrange
+        Header[] headers = new Header[] {
+            new BasicHeader(HttpHeaders.VARY, "Accept-Encoding, User-Agent"),
+            new BasicHeader(HttpHeaders.CONTENT_TYPE, "text/plain"),
+            new BasicHeader("vary", "Accept-Language"),
+        };
+
+        // Act
+        List<String> res = StoredResponse.getVaryHeaderNames(headers);
+
+        // Assert
+        assertThat(res, contains("accept-encoding", "user-agent", "accept-language"));
+    }
+
+    @Test
+    public void testMatchesVaryingRequestHeaders_noVary_returnsTrue() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse();
+
+        // Act
+        boolean res = storedResponse.matchesVaryingRequestHeaders(name -> "anything");
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    public void testMatchesVaryingRequestHeaders_varyAll_returnsFalse() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.VARY, "*"));
+
+        // Act
+        boolean res = storedResponse.matchesVaryingRequestHeaders(name -> null);
+
+        // Assert
+        assertThat(res, is(false));
+    }
+
+    @Test
+    @DataProvider({ "agent-a, true", "agent-b, false", ", false" })
+    public void testMatchesVaryingRequestHeaders_varyUserAgent_returnsExpectedResult(String currentUserAgent, boolean expectedResult) {
+        // Arrange
+        StoredResponse storedResponse = new StoredResponse(
+            URL, null, 200,
+            new Header[] { new BasicHeader(HttpHeaders.VARY, "User-Agent") },
+            new byte[0], null, TIME,
+            new Header[] { new BasicHeader("user-agent", "agent-a") } //
+        );
+        String value = currentUserAgent.isEmpty() ? null : currentUserAgent;
+
+        // Act
+        boolean res = storedResponse.matchesVaryingRequestHeaders(name -> "user-agent".equals(name) ? value : null);
+
+        // Assert
+        assertThat(res, is(expectedResult));
+    }
+
+    @Test
+    public void testMatchesVaryingRequestHeaders_headerNotSentEitherTime_returnsTrue() {
+        // Arrange
+        StoredResponse storedResponse = createStoredResponse(new BasicHeader(HttpHeaders.VARY, "Accept-Language"));
+
+        // Act
+        boolean res = storedResponse.matchesVaryingRequestHeaders(name -> null);
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    public void testRevalidated_always_keepsVaryingRequestHeaders() {
+        // Arrange
+        Header varyingHeader = new BasicHeader("user-agent", "agent-a");
+        StoredResponse storedResponse = new StoredResponse(URL, null, 200, new Header[0], new byte[0], null, TIME, new Header[] { varyingHeader });
+
+        // Act
+        StoredResponse res = storedResponse.revalidated(new Header[0], null, TIME);
+
+        // Assert
+        assertThat(res.getVaryingRequestHeaders(), is(arrayContaining(varyingHeader)));
+    }
+}
@@ -0,0 +1,56 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.time.Instant;
+
+import org.apache.hc.core5.http.Header;
+
+/**
+ * Creates {@link StoredResponse}s for tests of response caches and their use.
+ */
+final class StoredResponses {
+
+    static final String URL = "http://a.local/";
+    static final Instant STORED_TIME = Instant.ofEpochSecond(1000);
+
+    private StoredResponses() {
+        // utility class; not to be instantiated
+    }
+
+    /**
+     * Creates a successful response with a small body, stored for {@link #URL}
+     * at {@link #STORED_TIME}.
+     *
+     * @param headers response headers
+     * @return stored response
+     */
+    static StoredResponse createStoredResponse(Header... headers) {
+        return createStoredResponse(URL, new byte[] { 1, 2, 3 }, STORED_TIME, headers);
+    }
+
+    /**
+     * Creates a successful response.
+     *
+     * @param url requested URL
+     * @param body response body
+     * @param storedTime time the response has been stored
+     * @param headers response headers
+     * @return stored response
+     */
+    static StoredResponse createStoredResponse(String url, byte[] body, Instant storedTime, Header... headers) {
+        return createStoredResponse(url, 200, body, storedTime, headers);
+    }
+
+    /**
+     * Creates a response with the given status code.
+     *
+     * @param url requested URL
+     * @param statusCode HTTP status code
+     * @param body response body
+     * @param storedTime time the response has been stored
+     * @param headers response headers
+     * @return stored response
+     */
+    static StoredResponse createStoredResponse(String url, int statusCode, byte[] body, Instant storedTime, Header... headers) {
+        return new StoredResponse(url, null, statusCode, headers, body, null, storedTime);
+    }
+}
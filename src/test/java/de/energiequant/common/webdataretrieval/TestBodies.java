@@ -0,0 +1,67 @@
+package de.energiequant.common.webdataretrieval;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates response bodies for tests and compresses them as sent with common
+ * Content-Encodings.
+ */
+final class TestBodies {
+
+    private TestBodies() {
+        // utility class; not to be instantiated
+    }
+
+    /**
+     * Creates a body of the given size holding a repeating, compressible
+     * pattern.
+     *
+     * @param size number of bytes
+     * @return body
+     */
+    static byte[] createTestBody(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ((i * 31) % 251);
+        }
+        return body;
+    }
+
+    /**
+     * Compresses the given bytes in gzip format.
+     *
+     * @param bytes uncompressed bytes
+     * @return gzip-compressed bytes
+     * @throws IOException if compression fails
+     */
+    static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzos = new GZIPOutputStream(baos)) {
+            gzos.write(bytes);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Compresses the given bytes by deflate.
+     *
+     * @param bytes uncompressed bytes
+     * @param nowrap true for a raw deflate stream, false for zlib-wrapped
+     * @return deflate-compressed bytes
+     * @throws IOException if compression fails
+     */
+    static byte[] deflate(byte[] bytes, boolean nowrap) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(baos, deflater)) {
+            dos.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.hamcrest.junit.ExpectedException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TieredResponseCacheTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static final String URL = "http://a.local/";
+
+    @Test
+    public void testConstructor_noTiers_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new TieredResponseCache();
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testConstructor_nullTier_throwsIllegalArgumentException() {
+        // Arrange
+        thrown.expect(IllegalArgumentException.class);
+
+        // Act
+        new TieredResponseCache(mock(ResponseCache.class), null);
+
+        // Assert (nothing to do)
+    }
+
+    @Test
+    public void testLookup_foundInFirstTier_returnsResponseWithoutQueryingOthers() {
+        // Arrange
+        StoredResponse response = createStoredResponse();
+        ResponseCache first = mock(ResponseCache.class);
+        ResponseCache second = mock(ResponseCache.class);
+        when(first.lookup(URL)).thenReturn(response);
+        TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        // Act
+        StoredResponse res = cache.lookup(URL);
+
+        // Assert
+        assertThat(res, is(sameInstance(response)));
+        verify(second, never()).lookup(Mockito.anyString());
+    }
+
+    @Test
+    public void testLookup_foundInLaterTier_copiesResponseToEarlierTiers() {
+        // Arrange
+        StoredResponse response = createStoredResponse();
+        ResponseCache first = mock(ResponseCache.class);
+        ResponseCache second = mock(ResponseCache.class);
+        ResponseCache third = mock(ResponseCache.class);
+        when(third.lookup(URL)).thenReturn(response);
+        TieredResponseCache cache = new TieredResponseCache(first, second, third);
+
+        // Act
+        StoredResponse res = cache.lookup(URL);
+
+        // Assert
+        assertThat(res, is(sameInstance(response)));
+        verify(first).store(URL, response);
+        verify(second).store(URL, response);
+        verify(third, never()).store(Mockito.anyString(), Mockito.any());
+    }
+
+    @Test
+    public void testLookup_notFound_returnsNull() {
+        // Arrange
+        TieredResponseCache cache = new TieredResponseCache(mock(ResponseCache.class), mock(ResponseCache.class));
+
+        // Act
+        StoredResponse res = cache.lookup(URL);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testStore_always_storesToAllTiers() {
+        // Arrange
+        StoredResponse response = createStoredResponse();
+        ResponseCache first = mock(ResponseCache.class);
+        ResponseCache second = mock(ResponseCache.class);
+        TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        // Act
+        cache.store(URL, response);
+
+        // Assert
+        verify(first).store(URL, response);
+        verify(second).store(URL, response);
+    }
+
+    @Test
+    public void testStoreRevalidated_always_storesRevalidatedToAllTiers() {
+        // Arrange
+        StoredResponse previous = createStoredResponse();
+        StoredResponse revalidated = createStoredResponse();
+        ResponseCache first = mock(ResponseCache.class);
+        ResponseCache second = mock(ResponseCache.class);
+        TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        // Act
+        cache.storeRevalidated(URL, previous, revalidated);
+
+        // Assert
+        verify(first).storeRevalidated(URL, previous, revalidated);
+        verify(second).storeRevalidated(URL, previous, revalidated);
+    }
+
+    @Test
+    public void testInvalidate_always_invalidatesAllTiers() {
+        // Arrange
+        ResponseCache first = mock(ResponseCache.class);
+        ResponseCache second = mock(ResponseCache.class);
+        TieredResponseCache cache = new TieredResponseCache(first, second);
+
+        // Act
+        cache.invalidate(URL);
+
+        // Assert
+        verify(first).invalidate(URL);
+        verify(second).invalidate(URL);
+    }
+}
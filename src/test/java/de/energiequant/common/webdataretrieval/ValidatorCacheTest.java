@@ -0,0 +1,95 @@
+package de.energiequant.common.webdataretrieval;
+
+import static de.energiequant.common.webdataretrieval.StoredResponses.createStoredResponse;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.message.BasicHeader;
+import org.junit.Test;
+
+public class ValidatorCacheTest {
+
+    private static final String URL = "http://a.local/";
+
+    @Test
+    public void testLookup_nothingStored_returnsNull() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+
+        // Act
+        StoredResponse res = cache.lookup(URL);
+
+        // Assert
+        assertThat(res, is(nullValue()));
+    }
+
+    @Test
+    public void testStore_withValidators_storesResponse() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+        StoredResponse response = createStoredResponse(new BasicHeader(HttpHeaders.ETAG, "\"abc\""));
+
+        // Act
+        cache.store(URL, response);
+
+        // Assert
+        assertThat(cache.lookup(URL), is(sameInstance(response)));
+    }
+
+    @Test
+    public void testStore_withoutValidators_doesNotStoreResponse() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+
+        // Act
+        cache.store(URL, createStoredResponse());
+
+        // Assert
+        assertThat(cache.lookup(URL), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testStore_withoutValidators_removesPreviousResponse() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+        cache.store(URL, createStoredResponse(new BasicHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT")));
+
+        // Act
+        cache.store(URL, createStoredResponse());
+
+        // Assert
+        assertThat(cache.lookup(URL), is(nullValue()));
+    }
+
+    @Test
+    public void testStore_noStore_doesNotStoreResponse() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+
+        // Act
+        cache.store(URL, createStoredResponse(
+            new BasicHeader(HttpHeaders.ETAG, "\"abc\""),
+            new BasicHeader(HttpHeaders.CACHE_CONTROL, "no-store") //
+        ));
+
+        // Assert
+        assertThat(cache.lookup(URL), is(nullValue()));
+    }
+
+    @Test
+    public void testInvalidate_stored_removesResponse() {
+        // Arrange
+        ValidatorCache cache = new ValidatorCache();
+        cache.store(URL, createStoredResponse(new BasicHeader(HttpHeaders.ETAG, "\"abc\"")));
+
+        // Act
+        cache.invalidate(URL);
+
+        // Assert
+        assertThat(cache.lookup(URL), is(nullValue()));
+    }
+}
@@ -0,0 +1,123 @@
+package de.energiequant.common.webdataretrieval;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Verifies virtual thread execution on Java 21 or later. Needs to be run
+ * against the packaged multi-release JAR.
+ */
+public class VirtualThreadPinningIT {
+
+    private static final String EVENT_VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+
+    private static final int NUM_REQUESTS = 200;
+    private static final long RESPONSE_DELAY_MILLIS = 50;
+    private static final byte[] RESPONSE_BODY = "slow response".getBytes(StandardCharsets.UTF_8);
+
+    private ExecutorService serverExecutor;
+    private HttpServer server;
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        // server runs on platform threads, so only client threads can be pinned
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), NUM_REQUESTS);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try {
+                // keeps the client blocked on socket reads inside the actual request
+                Thread.sleep(RESPONSE_DELAY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            exchange.sendResponseHeaders(200, RESPONSE_BODY.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(RESPONSE_BODY);
+            }
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testIsVirtualThreadSupported_packagedJar_returnsTrue() {
+        // Arrange (nothing to do)
+
+        // Act
+        boolean res = RetrievalExecutors.isVirtualThreadSupported();
+
+        // Assert
+        assertThat(res, is(true));
+    }
+
+    @Test
+    public void testRequestByGet_withVirtualThreads_runsOnVirtualThreadsWithoutPinning() throws Exception {
+        // Arrange
+        List<Boolean> virtualThreadIndications = Collections.synchronizedList(new ArrayList<>());
+        List<RecordedEvent> pinnedEvents = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        HttpPromiseBuilder<Boolean> builder = new HttpPromiseBuilder<Boolean>(retrieval -> {
+            virtualThreadIndications.add(Thread.currentThread().isVirtual());
+            return retrieval.hasCompleteContentResponseStatus();
+        }).withConfiguration(
+            new HttpRetrieval().setTimeout(Duration.ofSeconds(20)) //
+        ).withVirtualThreads();
+
+        try (RecordingStream recordingStream = new RecordingStream()) {
+            recordingStream.enable(EVENT_VIRTUAL_THREAD_PINNED).withThreshold(Duration.ZERO).withStackTrace();
+            recordingStream.onEvent(EVENT_VIRTUAL_THREAD_PINNED, pinnedEvents::add);
+            recordingStream.startAsync();
+
+            // Act
+            for (int i = 0; i < NUM_REQUESTS; i++) {
+                futures.add(builder.requestByGet(baseUrl + i));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+
+            recordingStream.stop();
+        }
+
+        // Assert
+        for (CompletableFuture<Boolean> future : futures) {
+            assertThat(future.get(), is(true));
+        }
+        assertThat(virtualThreadIndications.size(), is(NUM_REQUESTS));
+        assertThat(virtualThreadIndications, everyItem(is(true)));
+        assertThat(pinnedEvents, is(empty()));
+    }
+}